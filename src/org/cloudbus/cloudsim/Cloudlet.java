@@ -768,6 +768,11 @@ public class Cloudlet {
 	 * NOTE: This method <tt>should</tt> be called only by a resource entity, not the user or owner
 	 * of this Cloudlet.
 	 * 
+	 * <p>
+	 * A Cloudlet which was reset (its resource index is back at -1) and is submitted again starts
+	 * a new list of resources, so its status, finish time and costs are those of the new run, not
+	 * of its first one.
+	 * 
 	 * @param resourceID the CloudResource ID
 	 * @param cost the cost running this CloudResource per second
 	 * @pre resourceID >= 0
@@ -780,6 +785,11 @@ public class Cloudlet {
 		res.costPerSec = cost;
 		res.resourceName = CloudSim.getEntityName(resourceID);
 
+		// a cloudlet which was reset must not read the resource of its previous run
+		if (index == -1) {
+			resList.clear();
+		}
+
 		// add into a list if moving to a new grid resource
 		resList.add(res);
 
@@ -0,0 +1,283 @@
+/*
+ * Title: CloudSim Toolkit Description: CloudSim (Cloud Simulation) Toolkit for Modeling and
+ * Simulation of Clouds Licence: GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * CloudletCompletionQueue keeps the executing cloudlets of a scheduler in which every cloudlet
+ * gets the same MIPS on each of its PEs, ordered by the point they complete. Progress is counted
+ * in virtual time, the MI each PE processed since the queue was created, so updating the
+ * scheduler advances one counter instead of every cloudlet. The progress of a cloudlet is
+ * brought up to date when it is looked at as the next to complete or when it leaves the queue.
+ * Adding, removing and finding the next completion cost O(log n). The queue also serves as the
+ * exec list of its scheduler, see {@link #asList()}.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class CloudletCompletionQueue {
+
+	/** Orders the entries by the order they were added. */
+	private static final Comparator<Entry> ADD_ORDER = new Comparator<Entry>() {
+
+		@Override
+		public int compare(Entry e1, Entry e2) {
+			return Long.compare(e1.sequence, e2.sequence);
+		}
+	};
+
+	/** Orders the entries by virtual finish time, then by the order they were added. */
+	private static final Comparator<Entry> FINISH_ORDER = new Comparator<Entry>() {
+
+		@Override
+		public int compare(Entry e1, Entry e2) {
+			int result = Double.compare(e1.finish, e2.finish);
+			if (result == 0) {
+				result = ADD_ORDER.compare(e1, e2);
+			}
+			return result;
+		}
+	};
+
+	/** The MI processed by each PE so far. */
+	private double virtualTime;
+
+	/** The entries of the cloudlets in the queue, by cloudlet id, in the order they were added. */
+	private final Map<Integer, Entry> entries;
+
+	/** The entries by virtual finish time. Removed entries are dropped lazily. */
+	private final PriorityQueue<Entry> heap;
+
+	/** The number of removed entries still in the heap. */
+	private int removed;
+
+	private long sequence;
+
+	public CloudletCompletionQueue() {
+		entries = new LinkedHashMap<Integer, Entry>();
+		heap = new PriorityQueue<Entry>(11, FINISH_ORDER);
+	}
+
+	/**
+	 * Advances the progress of all cloudlets in the queue.
+	 *
+	 * @param mipsPerPe the MIPS each PE of a cloudlet got since the last call
+	 * @param timeSpan the time since the last call
+	 */
+	public void advance(double mipsPerPe, double timeSpan) {
+		if (mipsPerPe > 0 && timeSpan > 0) {
+			virtualTime += mipsPerPe * timeSpan;
+		}
+	}
+
+	/**
+	 * Adds a cloudlet which starts or continues executing now.
+	 *
+	 * @param rcl the cloudlet
+	 */
+	public void add(ResCloudlet rcl) {
+		remove(rcl.getCloudletId());
+		Entry entry = new Entry(rcl, virtualTime, sequence++);
+		entries.put(rcl.getCloudletId(), entry);
+		heap.add(entry);
+	}
+
+	/**
+	 * Removes a cloudlet and brings its progress up to date.
+	 *
+	 * @param cloudletId the id of the cloudlet
+	 * @return the cloudlet, or $null if it is not in the queue
+	 */
+	public ResCloudlet remove(int cloudletId) {
+		Entry entry = entries.remove(cloudletId);
+		if (entry == null) {
+			return null;
+		}
+		update(entry);
+		drop(entry);
+		return entry.rcl;
+	}
+
+	/**
+	 * @param cloudletId the id of the cloudlet
+	 * @return the cloudlet, or $null if it is not in the queue
+	 */
+	public ResCloudlet get(int cloudletId) {
+		Entry entry = entries.get(cloudletId);
+		return entry == null ? null : entry.rcl;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Removes all cloudlets.
+	 */
+	public void clear() {
+		entries.clear();
+		heap.clear();
+		removed = 0;
+	}
+
+	/**
+	 * Gets a read-only view of the cloudlets in the queue, in the order they were added, as kept
+	 * by the exec list of a scheduler. Cloudlets leave it in O(1) along with the queue.
+	 *
+	 * @return the cloudlets
+	 */
+	public List<ResCloudlet> asList() {
+		return new AbstractList<ResCloudlet>() {
+
+			@Override
+			public ResCloudlet get(int position) {
+				if (position < 0 || position >= size()) {
+					throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size());
+				}
+				Iterator<ResCloudlet> it = iterator();
+				for (int i = 0; i < position; i++) {
+					it.next();
+				}
+				return it.next();
+			}
+
+			@Override
+			public int size() {
+				return entries.size();
+			}
+
+			@Override
+			public Iterator<ResCloudlet> iterator() {
+				final Iterator<Entry> it = entries.values().iterator();
+				return new Iterator<ResCloudlet>() {
+
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@Override
+					public ResCloudlet next() {
+						return it.next().rcl;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Removes the cloudlets which have no remaining length.
+	 *
+	 * @return the completed cloudlets, with their progress up to date, in the order they were
+	 *         added to the queue
+	 */
+	public List<ResCloudlet> pollFinished() {
+		List<Entry> completed = new ArrayList<Entry>();
+		for (ResCloudlet rcl = peek(); rcl != null && rcl.getRemainingCloudletLength() == 0; rcl = peek()) {
+			completed.add(heap.poll());
+			entries.remove(rcl.getCloudletId());
+		}
+		Collections.sort(completed, ADD_ORDER);
+
+		List<ResCloudlet> finished = new ArrayList<ResCloudlet>(completed.size());
+		for (Entry entry : completed) {
+			finished.add(entry.rcl);
+		}
+		return finished;
+	}
+
+	/**
+	 * @return the cloudlet which completes next, with its progress up to date, or $null if the
+	 *         queue is empty
+	 */
+	public ResCloudlet peek() {
+		while (!heap.isEmpty()) {
+			Entry entry = heap.peek();
+			if (!entry.removed) {
+				update(entry);
+				return entry.rcl;
+			}
+			heap.poll();
+			removed--;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the progress since the last update of the entry to its cloudlet.
+	 *
+	 * @param entry the entry
+	 */
+	private void update(Entry entry) {
+		double progress = virtualTime - entry.updated;
+		if (progress > 0) {
+			entry.rcl.updateCloudletFinishedSoFar((long) (progress * entry.rcl.getNumberOfPes() * Consts.MILLION));
+			entry.updated = virtualTime;
+		}
+	}
+
+	/**
+	 * Marks an entry as removed and rebuilds the heap when it holds more removed entries than
+	 * live ones.
+	 *
+	 * @param entry the entry
+	 */
+	private void drop(Entry entry) {
+		entry.removed = true;
+		removed++;
+		if (removed > entries.size()) {
+			heap.clear();
+			heap.addAll(entries.values());
+			removed = 0;
+		}
+	}
+
+	/**
+	 * A cloudlet in the queue.
+	 */
+	private static class Entry {
+
+		private final ResCloudlet rcl;
+
+		/** The virtual time at which the cloudlet completes, not rounded to whole MI. */
+		private final double finish;
+
+		private final long sequence;
+
+		/** The virtual time up to which the progress of the cloudlet was counted. */
+		private double updated;
+
+		private boolean removed;
+
+		public Entry(ResCloudlet rcl, double virtualTime, long sequence) {
+			this.rcl = rcl;
+			this.sequence = sequence;
+			updated = virtualTime;
+			finish = virtualTime + rcl.getExactRemainingCloudletLength() / rcl.getNumberOfPes();
+		}
+
+	}
+
+}
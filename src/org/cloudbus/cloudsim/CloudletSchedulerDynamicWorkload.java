@@ -93,7 +93,7 @@ public class CloudletSchedulerDynamicWorkload extends CloudletSchedulerTimeShare
 		}
 
 		for (ResCloudlet rgl : cloudletsToFinish) {
-			getCloudletExecList().remove(rgl);
+			removeFromExecList(rgl);
 			cloudletFinish(rgl);
 		}
 
@@ -137,7 +137,7 @@ public class CloudletSchedulerDynamicWorkload extends CloudletSchedulerTimeShare
 			rcl.setMachineAndPeId(0, i);
 		}
 
-		getCloudletExecList().add(rcl);
+		addToExecList(rcl);
 		return getEstimatedFinishTime(rcl, getPreviousTime());
 	}
 
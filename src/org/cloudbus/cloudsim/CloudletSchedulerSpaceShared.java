@@ -9,7 +9,10 @@
 package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.cloudbus.cloudsim.core.CloudSim;
 
@@ -18,7 +21,8 @@ import org.cloudbus.cloudsim.core.CloudSim;
  * consider that there will be only one cloudlet per VM. Other cloudlets will be in a waiting list.
  * We consider that file transfer from cloudlets waiting happens before cloudlet execution. I.e.,
  * even though cloudlets must wait for CPU, data transfer happens as soon as cloudlets are
- * submitted.
+ * submitted. The exec list is a view of a {@link CloudletCompletionQueue}, so an update costs
+ * O(log n) plus the cloudlets which completed and cloudlets leave the exec list in O(1).
  * 
  * @author Rodrigo N. Calheiros
  * @author Anton Beloglazov
@@ -29,7 +33,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	/** The cloudlet waiting list. */
 	private List<? extends ResCloudlet> cloudletWaitingList;
 
-	/** The cloudlet exec list. */
+	/** The cloudlet exec list, a view of the completion queue. */
 	private List<? extends ResCloudlet> cloudletExecList;
 
 	/** The cloudlet paused list. */
@@ -44,6 +48,15 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	/** The used PEs. */
 	protected int usedPes;
 
+	/** The cloudlets in the exec list, ordered by completion. */
+	private CloudletCompletionQueue completionQueue;
+
+	/** The cloudlets in the waiting list, by id. */
+	private Map<Integer, ResCloudlet> waitingCloudlets;
+
+	/** The cloudlets in the paused list, by id. */
+	private Map<Integer, ResCloudlet> pausedCloudlets;
+
 	/**
 	 * Creates a new CloudletSchedulerSpaceShared object. This method must be invoked before
 	 * starting the actual simulation.
@@ -54,11 +67,14 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	public CloudletSchedulerSpaceShared() {
 		super();
 		cloudletWaitingList = new ArrayList<ResCloudlet>();
-		cloudletExecList = new ArrayList<ResCloudlet>();
 		cloudletPausedList = new ArrayList<ResCloudlet>();
-		cloudletFinishedList = new ArrayList<ResCloudlet>();
+		cloudletFinishedList = new LinkedList<ResCloudlet>();
 		usedPes = 0;
 		currentCpus = 0;
+		completionQueue = new CloudletCompletionQueue();
+		cloudletExecList = completionQueue.asList();
+		waitingCloudlets = new HashMap<Integer, ResCloudlet>();
+		pausedCloudlets = new HashMap<Integer, ResCloudlet>();
 	}
 
 	/**
@@ -88,9 +104,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		capacity /= cpus; // average capacity of each cpu
 
 		// each machine in the exec list has the same amount of cpu
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			rcl.updateCloudletFinishedSoFar((long) (capacity * timeSpam * rcl.getNumberOfPes() * Consts.MILLION));
-		}
+		getCompletionQueue().advance(capacity, timeSpam);
 
 		// no more cloudlets in this scheduler
 		if (getCloudletExecList().size() == 0 && getCloudletWaitingList().size() == 0) {
@@ -100,16 +114,13 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 
 		// update each cloudlet
 		int finished = 0;
-		List<ResCloudlet> toRemove = new ArrayList<ResCloudlet>();
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			// finished anyway, rounding issue...
-			if (rcl.getRemainingCloudletLength() == 0) {
-				toRemove.add(rcl);
+		List<ResCloudlet> toRemove = getCompletionQueue().pollFinished();
+		if (!toRemove.isEmpty()) {
+			for (ResCloudlet rcl : toRemove) {
 				cloudletFinish(rcl);
 				finished++;
 			}
 		}
-		getCloudletExecList().removeAll(toRemove);
 
 		// for each finished cloudlet, add a new one from the waiting list
 		if (!getCloudletWaitingList().isEmpty()) {
@@ -121,9 +132,10 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 						for (int k = 0; k < rcl.getNumberOfPes(); k++) {
 							rcl.setMachineAndPeId(0, i);
 						}
-						getCloudletExecList().add(rcl);
+						addToExecList(rcl);
 						usedPes += rcl.getNumberOfPes();
 						toRemove.add(rcl);
+						waitingCloudlets.remove(rcl.getCloudletId());
 						break;
 					}
 				}
@@ -131,17 +143,16 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 			}
 		}
 
-		// estimate finish time of cloudlets in the execution queue
+		// estimate finish time of the cloudlet which completes next in the execution queue
 		double nextEvent = Double.MAX_VALUE;
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			double remainingLength = rcl.getRemainingCloudletLength();
-			double estimatedFinishTime = currentTime + (remainingLength / (capacity * rcl.getNumberOfPes()));
+		ResCloudlet next = getCompletionQueue().peek();
+		if (next != null) {
+			double remainingLength = next.getRemainingCloudletLength();
+			double estimatedFinishTime = currentTime + (remainingLength / (capacity * next.getNumberOfPes()));
 			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
 				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
 			}
-			if (estimatedFinishTime < nextEvent) {
-				nextEvent = estimatedFinishTime;
-			}
+			nextEvent = estimatedFinishTime;
 		}
 		setPreviousTime(currentTime);
 		return nextEvent;
@@ -166,33 +177,30 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		}
 
 		// Then searches in the exec list
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				getCloudletExecList().remove(rcl);
-				if (rcl.getRemainingCloudletLength() == 0) {
-					cloudletFinish(rcl);
-				} else {
-					rcl.setCloudletStatus(Cloudlet.CANCELED);
-				}
-				return rcl.getCloudlet();
+		ResCloudlet rcl = getCompletionQueue().get(cloudletId);
+		if (rcl != null) {
+			removeFromExecList(rcl);
+			if (rcl.getRemainingCloudletLength() == 0) {
+				cloudletFinish(rcl);
+			} else {
+				rcl.setCloudletStatus(Cloudlet.CANCELED);
 			}
+			return rcl.getCloudlet();
 		}
 
 		// Now, looks in the paused queue
-		for (ResCloudlet rcl : getCloudletPausedList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				getCloudletPausedList().remove(rcl);
-				return rcl.getCloudlet();
-			}
+		rcl = pausedCloudlets.remove(cloudletId);
+		if (rcl != null) {
+			getCloudletPausedList().remove(rcl);
+			return rcl.getCloudlet();
 		}
 
 		// Finally, looks in the waiting list
-		for (ResCloudlet rcl : getCloudletWaitingList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				rcl.setCloudletStatus(Cloudlet.CANCELED);
-				getCloudletWaitingList().remove(rcl);
-				return rcl.getCloudlet();
-			}
+		rcl = waitingCloudlets.remove(cloudletId);
+		if (rcl != null) {
+			rcl.setCloudletStatus(Cloudlet.CANCELED);
+			getCloudletWaitingList().remove(rcl);
+			return rcl.getCloudlet();
 		}
 
 		return null;
@@ -209,56 +217,29 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	 */
 	@Override
 	public boolean cloudletPause(int cloudletId) {
-		boolean found = false;
-		int position = 0;
-
 		// first, looks for the cloudlet in the exec list
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				found = true;
-				break;
-			}
-			position++;
-		}
-
-		if (found) {
+		ResCloudlet rgl = getCompletionQueue().get(cloudletId);
+		if (rgl != null) {
 			// moves to the paused list
-			ResCloudlet rgl = getCloudletExecList().remove(position);
-			if (rgl.getRemainingCloudletLength() == 0) {
-				cloudletFinish(rgl);
-			} else {
-				rgl.setCloudletStatus(Cloudlet.PAUSED);
-				getCloudletPausedList().add(rgl);
+			removeFromExecList(rgl);
+		} else {
+			// now, look for the cloudlet in the waiting list
+			rgl = waitingCloudlets.remove(cloudletId);
+			if (rgl == null) {
+				return false;
 			}
-			return true;
-
+			getCloudletWaitingList().remove(rgl);
 		}
 
-		// now, look for the cloudlet in the waiting list
-		position = 0;
-		found = false;
-		for (ResCloudlet rcl : getCloudletWaitingList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				found = true;
-				break;
-			}
-			position++;
+		// moves to the paused list
+		if (rgl.getRemainingCloudletLength() == 0) {
+			cloudletFinish(rgl);
+		} else {
+			rgl.setCloudletStatus(Cloudlet.PAUSED);
+			getCloudletPausedList().add(rgl);
+			pausedCloudlets.put(cloudletId, rgl);
 		}
-
-		if (found) {
-			// moves to the paused list
-			ResCloudlet rgl = getCloudletWaitingList().remove(position);
-			if (rgl.getRemainingCloudletLength() == 0) {
-				cloudletFinish(rgl);
-			} else {
-				rgl.setCloudletStatus(Cloudlet.PAUSED);
-				getCloudletPausedList().add(rgl);
-			}
-			return true;
-
-		}
-
-		return false;
+		return true;
 	}
 
 	/**
@@ -286,20 +267,10 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	 */
 	@Override
 	public double cloudletResume(int cloudletId) {
-		boolean found = false;
-		int position = 0;
-
 		// look for the cloudlet in the paused list
-		for (ResCloudlet rcl : getCloudletPausedList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				found = true;
-				break;
-			}
-			position++;
-		}
-
-		if (found) {
-			ResCloudlet rcl = getCloudletPausedList().remove(position);
+		ResCloudlet rcl = pausedCloudlets.remove(cloudletId);
+		if (rcl != null) {
+			getCloudletPausedList().remove(rcl);
 
 			// it can go to the exec list
 			if ((currentCpus - usedPes) >= rcl.getNumberOfPes()) {
@@ -312,7 +283,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 				size *= rcl.getNumberOfPes();
 				rcl.getCloudlet().setCloudletLength(size);
 
-				getCloudletExecList().add(rcl);
+				addToExecList(rcl);
 				usedPes += rcl.getNumberOfPes();
 
 				// calculate the expected time for cloudlet completion
@@ -340,6 +311,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 				rcl.getCloudlet().setCloudletLength(size);
 
 				getCloudletWaitingList().add(rcl);
+				waitingCloudlets.put(cloudletId, rcl);
 				return 0.0;
 			}
 
@@ -361,19 +333,18 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	 */
 	@Override
 	public double cloudletSubmit(Cloudlet cloudlet, double fileTransferTime) {
+		ResCloudlet rcl = new ResCloudlet(cloudlet);
 		// it can go to the exec list
 		if ((currentCpus - usedPes) >= cloudlet.getNumberOfPes()) {
-			ResCloudlet rcl = new ResCloudlet(cloudlet);
 			rcl.setCloudletStatus(Cloudlet.INEXEC);
 			for (int i = 0; i < cloudlet.getNumberOfPes(); i++) {
 				rcl.setMachineAndPeId(0, i);
 			}
-			getCloudletExecList().add(rcl);
 			usedPes += cloudlet.getNumberOfPes();
 		} else {// no enough free PEs: go to the waiting queue
-			ResCloudlet rcl = new ResCloudlet(cloudlet);
 			rcl.setCloudletStatus(Cloudlet.QUEUED);
 			getCloudletWaitingList().add(rcl);
+			waitingCloudlets.put(cloudlet.getCloudletId(), rcl);
 			return 0.0;
 		}
 
@@ -396,6 +367,9 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		long length = cloudlet.getCloudletLength();
 		length += extraSize;
 		cloudlet.setCloudletLength(length);
+
+		// added once its length, and so its completion, is known
+		addToExecList(rcl);
 		return cloudlet.getCloudletLength() / capacity;
 	}
 
@@ -418,24 +392,16 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	 */
 	@Override
 	public int getCloudletStatus(int cloudletId) {
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				return rcl.getCloudletStatus();
-			}
+		ResCloudlet rcl = getCompletionQueue().get(cloudletId);
+		if (rcl == null) {
+			rcl = pausedCloudlets.get(cloudletId);
 		}
-
-		for (ResCloudlet rcl : getCloudletPausedList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				return rcl.getCloudletStatus();
-			}
+		if (rcl == null) {
+			rcl = waitingCloudlets.get(cloudletId);
 		}
-
-		for (ResCloudlet rcl : getCloudletWaitingList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				return rcl.getCloudletStatus();
-			}
+		if (rcl != null) {
+			return rcl.getCloudletStatus();
 		}
-
 		return -1;
 	}
 
@@ -502,13 +468,41 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	 */
 	@Override
 	public Cloudlet migrateCloudlet() {
-		ResCloudlet rcl = getCloudletExecList().remove(0);
+		ResCloudlet rcl = getCloudletExecList().get(0);
+		removeFromExecList(rcl);
 		rcl.finalizeCloudlet();
 		Cloudlet cl = rcl.getCloudlet();
 		usedPes -= cl.getNumberOfPes();
 		return cl;
 	}
 
+	/**
+	 * Adds a cloudlet to the exec list.
+	 * 
+	 * @param rcl the cloudlet
+	 */
+	protected void addToExecList(ResCloudlet rcl) {
+		getCompletionQueue().add(rcl);
+	}
+
+	/**
+	 * Removes a cloudlet from the exec list and brings its progress up to date.
+	 * 
+	 * @param rcl the cloudlet
+	 */
+	protected void removeFromExecList(ResCloudlet rcl) {
+		getCompletionQueue().remove(rcl.getCloudletId());
+	}
+
+	/**
+	 * Gets the completion queue of the cloudlets in the exec list.
+	 * 
+	 * @return the completion queue
+	 */
+	protected CloudletCompletionQueue getCompletionQueue() {
+		return completionQueue;
+	}
+
 	/**
 	 * Gets the cloudlet waiting list.
 	 * 
@@ -548,7 +542,10 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 	 * @param cloudletExecList the new cloudlet exec list
 	 */
 	protected <T extends ResCloudlet> void setCloudletExecList(List<T> cloudletExecList) {
-		this.cloudletExecList = cloudletExecList;
+		getCompletionQueue().clear();
+		for (T rcl : cloudletExecList) {
+			addToExecList(rcl);
+		}
 	}
 
 	/**
@@ -8,13 +8,18 @@
 package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.cloudbus.cloudsim.core.CloudSim;
 
 /**
  * CloudletSchedulerTimeShared implements a policy of scheduling performed by a virtual machine.
- * Cloudlets execute time-shared in VM.
+ * Cloudlets execute time-shared in VM. The exec list is a view of a {@link CloudletCompletionQueue},
+ * so an update costs O(log n) plus the cloudlets which completed, cloudlets leave the exec list in
+ * O(1), and their progress is only brought up to date when they complete or leave the exec list.
  * 
  * @author Rodrigo N. Calheiros
  * @author Anton Beloglazov
@@ -22,7 +27,7 @@ import org.cloudbus.cloudsim.core.CloudSim;
  */
 public class CloudletSchedulerTimeShared extends CloudletScheduler {
 
-	/** The cloudlet exec list. */
+	/** The cloudlet exec list, a view of the completion queue. */
 	private List<? extends ResCloudlet> cloudletExecList;
 
 	/** The cloudlet paused list. */
@@ -34,6 +39,15 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	/** The current cp us. */
 	protected int currentCPUs;
 
+	/** The cloudlets in the exec list, ordered by completion. */
+	private CloudletCompletionQueue completionQueue;
+
+	/** The cloudlets in the paused list, by id. */
+	private Map<Integer, ResCloudlet> pausedCloudlets;
+
+	/** The number of PEs used by the cloudlets in the exec list. */
+	private int pesInUse;
+
 	/**
 	 * Creates a new CloudletSchedulerTimeShared object. This method must be invoked before starting
 	 * the actual simulation.
@@ -43,10 +57,13 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	 */
 	public CloudletSchedulerTimeShared() {
 		super();
-		cloudletExecList = new ArrayList<ResCloudlet>();
 		cloudletPausedList = new ArrayList<ResCloudlet>();
-		cloudletFinishedList = new ArrayList<ResCloudlet>();
+		cloudletFinishedList = new LinkedList<ResCloudlet>();
 		currentCPUs = 0;
+		completionQueue = new CloudletCompletionQueue();
+		cloudletExecList = completionQueue.asList();
+		pausedCloudlets = new HashMap<Integer, ResCloudlet>();
+		pesInUse = 0;
 	}
 
 	/**
@@ -64,9 +81,8 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		setCurrentMipsShare(mipsShare);
 		double timeSpam = currentTime - getPreviousTime();
 
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			rcl.updateCloudletFinishedSoFar((long) (getCapacity(mipsShare) * timeSpam * rcl.getNumberOfPes() * Consts.MILLION));
-		}
+		// all cloudlets get the same capacity on each of their PEs
+		getCompletionQueue().advance(getCapacity(mipsShare), timeSpam);
 
 		if (getCloudletExecList().size() == 0) {
 			setPreviousTime(currentTime);
@@ -75,28 +91,23 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 
 		// check finished cloudlets
 		double nextEvent = Double.MAX_VALUE;
-		List<ResCloudlet> toRemove = new ArrayList<ResCloudlet>();
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			long remainingLength = rcl.getRemainingCloudletLength();
-			if (remainingLength == 0) {// finished: remove from the list
-				toRemove.add(rcl);
+		List<ResCloudlet> toRemove = getCompletionQueue().pollFinished();
+		if (!toRemove.isEmpty()) {
+			for (ResCloudlet rcl : toRemove) {
+				pesInUse -= rcl.getNumberOfPes();
 				cloudletFinish(rcl);
-				continue;
 			}
 		}
-		getCloudletExecList().removeAll(toRemove);
 
-		// estimate finish time of cloudlets
-		for (ResCloudlet rcl : getCloudletExecList()) {
+		// estimate finish time of the cloudlet which completes next
+		ResCloudlet next = getCompletionQueue().peek();
+		if (next != null) {
 			double estimatedFinishTime = currentTime
-					+ (rcl.getRemainingCloudletLength() / (getCapacity(mipsShare) * rcl.getNumberOfPes()));
+					+ (next.getRemainingCloudletLength() / (getCapacity(mipsShare) * next.getNumberOfPes()));
 			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
 				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
 			}
-
-			if (estimatedFinishTime < nextEvent) {
-				nextEvent = estimatedFinishTime;
-			}
+			nextEvent = estimatedFinishTime;
 		}
 
 		setPreviousTime(currentTime);
@@ -120,11 +131,6 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		}
 		currentCPUs = cpus;
 
-		int pesInUse = 0;
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			pesInUse += rcl.getNumberOfPes();
-		}
-
 		if (pesInUse > currentCPUs) {
 			capacity /= pesInUse;
 		} else {
@@ -143,35 +149,18 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	 */
 	@Override
 	public Cloudlet cloudletCancel(int cloudletId) {
-		boolean found = false;
-		int position = 0;
-
 		// First, looks in the finished queue
-		found = false;
 		for (ResCloudlet rcl : getCloudletFinishedList()) {
 			if (rcl.getCloudletId() == cloudletId) {
-				found = true;
-				break;
+				getCloudletFinishedList().remove(rcl);
+				return rcl.getCloudlet();
 			}
-			position++;
-		}
-
-		if (found) {
-			return getCloudletFinishedList().remove(position).getCloudlet();
 		}
 
 		// Then searches in the exec list
-		position=0;
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				found = true;
-				break;
-			}
-			position++;
-		}
-
-		if (found) {
-			ResCloudlet rcl = getCloudletExecList().remove(position);
+		ResCloudlet rcl = getCompletionQueue().get(cloudletId);
+		if (rcl != null) {
+			removeFromExecList(rcl);
 			if (rcl.getRemainingCloudletLength() == 0) {
 				cloudletFinish(rcl);
 			} else {
@@ -181,19 +170,11 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		}
 
 		// Now, looks in the paused queue
-		found = false;
-		position=0;
-		for (ResCloudlet rcl : getCloudletPausedList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				found = true;
-				rcl.setCloudletStatus(Cloudlet.CANCELED);
-				break;
-			}
-			position++;
-		}
-
-		if (found) {
-			return getCloudletPausedList().remove(position).getCloudlet();
+		rcl = pausedCloudlets.remove(cloudletId);
+		if (rcl != null) {
+			getCloudletPausedList().remove(rcl);
+			rcl.setCloudletStatus(Cloudlet.CANCELED);
+			return rcl.getCloudlet();
 		}
 
 		return null;
@@ -209,25 +190,16 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	 */
 	@Override
 	public boolean cloudletPause(int cloudletId) {
-		boolean found = false;
-		int position = 0;
-
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				found = true;
-				break;
-			}
-			position++;
-		}
-
-		if (found) {
+		ResCloudlet rcl = getCompletionQueue().get(cloudletId);
+		if (rcl != null) {
 			// remove cloudlet from the exec list and put it in the paused list
-			ResCloudlet rcl = getCloudletExecList().remove(position);
+			removeFromExecList(rcl);
 			if (rcl.getRemainingCloudletLength() == 0) {
 				cloudletFinish(rcl);
 			} else {
 				rcl.setCloudletStatus(Cloudlet.PAUSED);
 				getCloudletPausedList().add(rcl);
+				pausedCloudlets.put(cloudletId, rcl);
 			}
 			return true;
 		}
@@ -258,22 +230,12 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	 */
 	@Override
 	public double cloudletResume(int cloudletId) {
-		boolean found = false;
-		int position = 0;
-
 		// look for the cloudlet in the paused list
-		for (ResCloudlet rcl : getCloudletPausedList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				found = true;
-				break;
-			}
-			position++;
-		}
-
-		if (found) {
-			ResCloudlet rgl = getCloudletPausedList().remove(position);
+		ResCloudlet rgl = pausedCloudlets.remove(cloudletId);
+		if (rgl != null) {
+			getCloudletPausedList().remove(rgl);
 			rgl.setCloudletStatus(Cloudlet.INEXEC);
-			getCloudletExecList().add(rgl);
+			addToExecList(rgl);
 
 			// calculate the expected time for cloudlet completion
 			// first: how many PEs do we have?
@@ -305,13 +267,17 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 			rcl.setMachineAndPeId(0, i);
 		}
 
-		getCloudletExecList().add(rcl);
+		addToExecList(rcl);
 
 		// use the current capacity to estimate the extra amount of
 		// time to file transferring. It must be added to the cloudlet length
 		double extraSize = getCapacity(getCurrentMipsShare()) * fileTransferTime;
 		long length = (long) (cloudlet.getCloudletLength() + extraSize);
-		cloudlet.setCloudletLength(length);
+		if (length != cloudlet.getCloudletLength()) {
+			cloudlet.setCloudletLength(length);
+			// the cloudlet completes later than when it was queued
+			getCompletionQueue().add(rcl);
+		}
 
 		return cloudlet.getCloudletLength() / getCapacity(getCurrentMipsShare());
 	}
@@ -335,15 +301,12 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	 */
 	@Override
 	public int getCloudletStatus(int cloudletId) {
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				return rcl.getCloudletStatus();
-			}
+		ResCloudlet rcl = getCompletionQueue().get(cloudletId);
+		if (rcl == null) {
+			rcl = pausedCloudlets.get(cloudletId);
 		}
-		for (ResCloudlet rcl : getCloudletPausedList()) {
-			if (rcl.getCloudletId() == cloudletId) {
-				return rcl.getCloudletStatus();
-			}
+		if (rcl != null) {
+			return rcl.getCloudletStatus();
 		}
 		return -1;
 	}
@@ -411,11 +374,41 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	 */
 	@Override
 	public Cloudlet migrateCloudlet() {
-		ResCloudlet rgl = getCloudletExecList().remove(0);
+		ResCloudlet rgl = getCloudletExecList().get(0);
+		removeFromExecList(rgl);
 		rgl.finalizeCloudlet();
 		return rgl.getCloudlet();
 	}
 
+	/**
+	 * Adds a cloudlet to the exec list.
+	 * 
+	 * @param rcl the cloudlet
+	 */
+	protected void addToExecList(ResCloudlet rcl) {
+		getCompletionQueue().add(rcl);
+		pesInUse += rcl.getNumberOfPes();
+	}
+
+	/**
+	 * Removes a cloudlet from the exec list and brings its progress up to date.
+	 * 
+	 * @param rcl the cloudlet
+	 */
+	protected void removeFromExecList(ResCloudlet rcl) {
+		getCompletionQueue().remove(rcl.getCloudletId());
+		pesInUse -= rcl.getNumberOfPes();
+	}
+
+	/**
+	 * Gets the completion queue of the cloudlets in the exec list.
+	 * 
+	 * @return the completion queue
+	 */
+	protected CloudletCompletionQueue getCompletionQueue() {
+		return completionQueue;
+	}
+
 	/**
 	 * Gets the cloudlet exec list.
 	 * 
@@ -434,7 +427,11 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	 * @param cloudletExecList the new cloudlet exec list
 	 */
 	protected <T extends ResCloudlet> void setCloudletExecList(List<T> cloudletExecList) {
-		this.cloudletExecList = cloudletExecList;
+		getCompletionQueue().clear();
+		pesInUse = 0;
+		for (T rcl : cloudletExecList) {
+			addToExecList(rcl);
+		}
 	}
 
 	/**
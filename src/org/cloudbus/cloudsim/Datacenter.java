@@ -8,10 +8,15 @@
 package org.cloudbus.cloudsim;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
@@ -54,6 +59,33 @@ public class Datacenter extends SimEntity {
 	/** The scheduling interval. */
 	private double schedulingInterval;
 
+	/** Hosts touched since their last update, which the next update processes. */
+	private final Set<Host> dirtyHosts = new LinkedHashSet<Host>();
+
+	/** Hosts updated or touched since the last check for finished cloudlets. */
+	private final Set<Host> touchedHosts = new LinkedHashSet<Host>();
+
+	/** The next completion time each host expects, as returned by its last update. */
+	private final Map<Host, Double> nextCompletions = new HashMap<Host, Double>();
+
+	/** The number of updates of each host, which tells the outdated completions apart. */
+	private final Map<Host, Integer> hostVersions = new HashMap<Host, Integer>();
+
+	/**
+	 * The next completion times of the hosts, earliest first. An entry is
+	 * outdated once its host has been updated again.
+	 */
+	private final PriorityQueue<HostCompletion> hostCompletions = new PriorityQueue<HostCompletion>();
+
+	/** Orders hosts by id, so hosts are always updated in the same order. */
+	private static final Comparator<Host> HOST_ORDER = new Comparator<Host>() {
+
+		@Override
+		public int compare(Host h1, Host h2) {
+			return Integer.compare(h1.getId(), h2.getId());
+		}
+	};
+
 	/**
 	 * Allocates a new PowerDatacenter object.
 	 * 
@@ -465,6 +497,7 @@ public class Datacenter extends SimEntity {
 
 		if (result) {
 			getVmList().add(vm);
+			markHostDirty(vm.getHost());
 
 			if (vm.isBeingInstantiated()) {
 				vm.setBeingInstantiated(false);
@@ -490,6 +523,7 @@ public class Datacenter extends SimEntity {
 	 */
 	protected void processVmDestroy(SimEvent ev, boolean ack) {
 		Vm vm = (Vm) ev.getData();
+		markHostDirty(vm.getHost());
 		getVmAllocationPolicy().deallocateHostForVm(vm);
 
 		if (ack) {
@@ -525,8 +559,10 @@ public class Datacenter extends SimEntity {
 		Vm vm = (Vm) migrate.get("vm");
 		Host host = (Host) migrate.get("host");
 
+		markHostDirty(vm.getHost());
 		getVmAllocationPolicy().deallocateHostForVm(vm);
 		host.removeMigratingInVm(vm);
+		markHostDirty(host);
 		boolean result = getVmAllocationPolicy().allocateHostForVm(vm, host);
 		if (!result) {
 			Log.printLine("[Datacenter.processVmMigrate] VM allocation to the destination host failed");
@@ -643,6 +679,7 @@ public class Datacenter extends SimEntity {
 		// get the cloudlet
 		Cloudlet cl = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId, userId).getCloudletScheduler()
 				.cloudletCancel(cloudletId);
+		markHostDirty(getVmAllocationPolicy().getHost(vmId, userId));
 
 		boolean failed = false;
 		if (cl == null) {// cloudlet doesn't exist
@@ -672,6 +709,7 @@ public class Datacenter extends SimEntity {
 					// time to transfer the files
 					double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());
 					vm.getCloudletScheduler().cloudletSubmit(cl, fileTransferTime);
+					markHostDirty(vm.getHost());
 				}
 			} else {// the cloudlet will migrate from one resource to another
 				int tag = ((type == CloudSimTags.CLOUDLET_MOVE_ACK) ? CloudSimTags.CLOUDLET_SUBMIT_ACK
@@ -704,6 +742,8 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletSubmit(SimEvent ev, boolean ack) {
+		// the host is brought up to date before the cloudlet joins it
+		markCloudletHostDirty(ev.getData());
 		updateCloudletProcessing();
 
 		try {
@@ -751,6 +791,7 @@ public class Datacenter extends SimEntity {
 			Vm vm = host.getVm(vmId, userId);
 			CloudletScheduler scheduler = vm.getCloudletScheduler();
 			double estimatedFinishTime = scheduler.cloudletSubmit(cl, fileTransferTime);
+			markHostDirty(host);
 
 			// if this cloudlet is in the exec queue
 			if (estimatedFinishTime > 0.0 && !Double.isInfinite(estimatedFinishTime)) {
@@ -819,6 +860,7 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletResume(int cloudletId, int userId, int vmId, boolean ack) {
+		markHostDirty(getVmAllocationPolicy().getHost(vmId, userId));
 		double eventTime = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId, userId).getCloudletScheduler()
 				.cloudletResume(cloudletId);
 
@@ -858,6 +900,7 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletPause(int cloudletId, int userId, int vmId, boolean ack) {
+		markHostDirty(getVmAllocationPolicy().getHost(vmId, userId));
 		boolean status = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId, userId).getCloudletScheduler()
 				.cloudletPause(cloudletId);
 
@@ -887,6 +930,7 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletCancel(int cloudletId, int userId, int vmId) {
+		markHostDirty(getVmAllocationPolicy().getHost(vmId, userId));
 		Cloudlet cl = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId, userId).getCloudletScheduler()
 				.cloudletCancel(cloudletId);
 		sendNow(userId, CloudSimTags.CLOUDLET_CANCEL, cl);
@@ -910,34 +954,133 @@ public class Datacenter extends SimEntity {
 
 
 		if (CloudSim.clock() < 0.111 || CloudSim.clock() > getLastProcessTime() + CloudSim.getMinTimeBetweenEvents()) {
-			List<? extends Host> list = getVmAllocationPolicy().getHostList();
-			double smallerTime = Double.MAX_VALUE;
-			// for each host...
-			for (int i = 0; i < list.size(); i++) {
-				// System.out.println("Datacenter updateCloudletProcessing " +
-				// i);
-				Host host = list.get(i);
-				// inform VMs to update processing
-				double time = host.updateVmsProcessing(CloudSim.clock());
-				// what time do we expect that the next cloudlet will finish?
-				if (time < smallerTime) {
-					smallerTime = time;
+			List<Host> hosts;
+			if (isDirtyHostsUpdate()) {
+				// only the hosts touched since their last update and the hosts
+				// whose next cloudlet is due have to be updated
+				hosts = new ArrayList<Host>(dirtyHosts);
+				while (!hostCompletions.isEmpty() && hostCompletions.peek().time <= CloudSim.clock()) {
+					HostCompletion completion = hostCompletions.poll();
+					if (completion.isCurrent() && !dirtyHosts.contains(completion.host)) {
+						hosts.add(completion.host);
+					}
 				}
+				Collections.sort(hosts, HOST_ORDER);
+			} else {
+				hosts = getVmAllocationPolicy().getHostList();
 			}
+			for (Host host : hosts) {
+				updateHostProcessing(host);
+			}
+
+			// what time do we expect that the next cloudlet will finish?
+			double smallerTime = getNextCompletionTime();
 			// gurantees a minimal interval before scheduling the event
 			if (smallerTime < CloudSim.clock() + CloudSim.getMinTimeBetweenEvents() + 0.01) {
 				smallerTime = CloudSim.clock() + CloudSim.getMinTimeBetweenEvents() + 0.01;
 			}
 			if (smallerTime != Double.MAX_VALUE) {
-				// System.out.println("CloudSim.clock()" + CloudSim.clock() + "
-				// : Dc updateCloudletProcessing smallerTime " + smallerTime);
-				// System.out.println(smallerTime - CloudSim.clock());
 				schedule(getId(), (smallerTime - CloudSim.clock()), CloudSimTags.VM_DATACENTER_EVENT);
 			}
 			setLastProcessTime(CloudSim.clock());
 		}
 	}
 
+	/**
+	 * Whether {@link #updateCloudletProcessing()} only updates the hosts
+	 * marked dirty (see {@link #markHostDirty(Host)}) and those whose next
+	 * cloudlet is due, instead of every host. This only holds if everything
+	 * which changes the VMs or cloudlets of a host marks it, which the
+	 * datacenters relying on it have to make sure of, so by default every host
+	 * is updated.
+	 * 
+	 * @return $true if only the dirty and due hosts are updated
+	 */
+	protected boolean isDirtyHostsUpdate() {
+		return false;
+	}
+
+	/**
+	 * Marks a host as touched by a packet, a cloudlet submission, a stage
+	 * change or a VM allocation. It is updated by the next update of the
+	 * cloudlet processing.
+	 * 
+	 * @param host
+	 *            the host, ignored if null
+	 */
+	public void markHostDirty(Host host) {
+		if (host != null) {
+			dirtyHosts.add(host);
+			touchedHosts.add(host);
+		}
+	}
+
+	/**
+	 * Updates the processing of the VMs of one host at once and records the
+	 * time the host expects its next cloudlet to finish.
+	 * 
+	 * @param host
+	 *            the host
+	 * @return the next completion time of the host, Double.MAX_VALUE if none
+	 */
+	public double updateHostProcessing(Host host) {
+		dirtyHosts.remove(host);
+		touchedHosts.add(host);
+		double time = host.updateVmsProcessing(CloudSim.clock());
+		Integer previous = hostVersions.get(host);
+		int version = previous == null ? 0 : previous + 1;
+		hostVersions.put(host, version);
+		if (time < Double.MAX_VALUE) {
+			nextCompletions.put(host, time);
+			hostCompletions.add(new HostCompletion(host, time, version));
+		} else {
+			nextCompletions.remove(host);
+		}
+		// drop the outdated entries once they outnumber the current ones
+		if (hostCompletions.size() > 2 * nextCompletions.size() + 16) {
+			hostCompletions.clear();
+			for (Map.Entry<Host, Double> entry : nextCompletions.entrySet()) {
+				Host pending = entry.getKey();
+				hostCompletions.add(new HostCompletion(pending, entry.getValue(), hostVersions.get(pending)));
+			}
+		}
+		return time;
+	}
+
+	/**
+	 * @return the earliest next completion time of all hosts,
+	 *         Double.MAX_VALUE if none
+	 */
+	protected double getNextCompletionTime() {
+		while (!hostCompletions.isEmpty() && !hostCompletions.peek().isCurrent()) {
+			hostCompletions.poll();
+		}
+		return hostCompletions.isEmpty() ? Double.MAX_VALUE : hostCompletions.peek().time;
+	}
+
+	/**
+	 * Gets the hosts updated or touched since the last call, in the order of
+	 * their ids. Only these hosts can have new finished cloudlets.
+	 * 
+	 * @return the touched hosts
+	 */
+	protected List<Host> takeTouchedHosts() {
+		List<Host> hosts = new ArrayList<Host>(touchedHosts);
+		touchedHosts.clear();
+		Collections.sort(hosts, HOST_ORDER);
+		return hosts;
+	}
+
+	/**
+	 * Marks the host of the VM a cloudlet is bound to as dirty.
+	 */
+	private void markCloudletHostDirty(Object data) {
+		if (data instanceof Cloudlet) {
+			Cloudlet cl = (Cloudlet) data;
+			markHostDirty(getVmAllocationPolicy().getHost(cl.getVmId(), cl.getUserId()));
+		}
+	}
+
 	/**
 	 * Verifies if some cloudlet inside this PowerDatacenter already finished.
 	 * If yes, send it to the User/Broker
@@ -1238,4 +1381,36 @@ public class Datacenter extends SimEntity {
 		this.schedulingInterval = schedulingInterval;
 	}
 
+	/**
+	 * The next completion time of a host.
+	 */
+	private class HostCompletion implements Comparable<HostCompletion> {
+
+		final Host host;
+
+		final double time;
+
+		/** The version of the host the time was computed by. */
+		final int version;
+
+		HostCompletion(Host host, double time, int version) {
+			this.host = host;
+			this.time = time;
+			this.version = version;
+		}
+
+		/**
+		 * @return true if the host has not been updated since
+		 */
+		boolean isCurrent() {
+			return hostVersions.get(host).intValue() == version;
+		}
+
+		@Override
+		public int compareTo(HostCompletion o) {
+			return Double.compare(time, o.time);
+		}
+
+	}
+
 }
@@ -82,10 +82,10 @@ public class DatacenterBroker extends SimEntity {
 	public DatacenterBroker(String name) throws Exception {
 		super(name);
 
-		setVmList(new ArrayList<Vm>());
-		setVmsCreatedList(new ArrayList<Vm>());
-		setCloudletList(new ArrayList<Cloudlet>());
-		setCloudletSubmittedList(new ArrayList<Cloudlet>());
+		setVmList(VmList.<Vm> createIndexedList());
+		setVmsCreatedList(VmList.<Vm> createIndexedList());
+		setCloudletList(CloudletList.<Cloudlet> createIndexedList());
+		setCloudletSubmittedList(CloudletList.<Cloudlet> createIndexedList());
 		setCloudletReceivedList(new ArrayList<Cloudlet>());
 
 		cloudletsSubmitted = 0;
@@ -14,6 +14,7 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.edge.util.CustomLog;
 import org.cloudbus.cloudsim.edge.util.TextUtil;
 import org.cloudbus.cloudsim.lists.PeList;
+import org.cloudbus.cloudsim.lists.VmList;
 import org.cloudbus.cloudsim.provisioners.BwProvisioner;
 import org.cloudbus.cloudsim.provisioners.RamProvisioner;
 
@@ -45,7 +46,7 @@ public class Host {
 	private VmScheduler vmScheduler;
 
 	/** The vm list. */
-	private final List<? extends Vm> vmList = new ArrayList<Vm>();
+	private final List<? extends Vm> vmList = VmList.<Vm> createIndexedList();
 
 	/** The pe list. */
 	private List<? extends Pe> peList;
@@ -272,6 +273,54 @@ public class Host {
 		return true;
 	}
 
+	/**
+	 * Reserves the storage, memory, bandwidth and PEs of a VM in the host, without starting the VM
+	 * in it. The reservation is released by {@link #vmCancelReservation(Vm)}.
+	 * 
+	 * @param vm
+	 *            the VM
+	 * @return $true if the host has room for the VM; $false otherwise
+	 * @pre $none
+	 * @post $none
+	 */
+	public boolean vmReserve(Vm vm) {
+		if (getStorage() < vm.getSize()) {
+			return false;
+		}
+
+		if (!getRamProvisioner().allocateRamForVm(vm, vm.getCurrentRequestedRam())) {
+			return false;
+		}
+
+		if (!getBwProvisioner().allocateBwForVm(vm, vm.getCurrentRequestedBw())) {
+			getRamProvisioner().deallocateRamForVm(vm);
+			return false;
+		}
+
+		if (!allocatePesForVm(vm, vm.getCurrentRequestedMips())) {
+			getRamProvisioner().deallocateRamForVm(vm);
+			getBwProvisioner().deallocateBwForVm(vm);
+			return false;
+		}
+
+		setStorage(getStorage() - vm.getSize());
+		return true;
+	}
+
+	/**
+	 * Releases the resources reserved for a VM by {@link #vmReserve(Vm)}.
+	 * 
+	 * @param vm
+	 *            the VM
+	 * @pre $none
+	 * @post $none
+	 */
+	public void vmCancelReservation(Vm vm) {
+		if (vm != null) {
+			vmDeallocate(vm);
+		}
+	}
+
 	/**
 	 * Destroys a VM running in the host.
 	 * 
@@ -0,0 +1,254 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * HostCapacityIndex keeps the free capacity of one resource (PEs, RAM, bandwidth, storage) of each
+ * host of a list, by the position of the host in the list. It answers worst fit, first fit and
+ * best fit queries and takes updates in O(log n), so that a VM allocation policy does not scan all
+ * hosts for each VM. The maximum capacities are kept in a tournament tree over the hosts, and the
+ * hosts are also kept in a set ordered by capacity.
+ * <p>
+ * A host which refused a VM can be excluded from the queries until {@link #includeAll()} is
+ * called, so that an allocation policy can go on with the next host.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class HostCapacityIndex {
+
+	/** The value of the empty leaves of the tree and of the leaves of excluded hosts. */
+	private static final long NONE = Long.MIN_VALUE;
+
+	/** The position of each host in the list. */
+	private final Map<Host, Integer> positions;
+
+	/** The free capacity of each host; the last element is the value searched by best fit. */
+	private final long[] capacities;
+
+	/** The tournament tree: node k is the maximum of nodes 2k and 2k + 1, the hosts are leaves. */
+	private final long[] tree;
+
+	/** The position of the first leaf in the tree. */
+	private final int leaves;
+
+	/** The included hosts, ordered by capacity and then by position. */
+	private final TreeSet<Integer> byCapacity;
+
+	/** The excluded hosts. */
+	private final List<Integer> excluded;
+
+	/** Whether each host is excluded. */
+	private final boolean[] isExcluded;
+
+	/**
+	 * Creates an index of the given hosts, with no free capacity.
+	 *
+	 * @param hosts the hosts
+	 */
+	public HostCapacityIndex(List<? extends Host> hosts) {
+		int size = hosts.size();
+		positions = new IdentityHashMap<Host, Integer>(size);
+		for (int i = 0; i < size; i++) {
+			positions.put(hosts.get(i), i);
+		}
+		capacities = new long[size + 1];
+
+		int n = 1;
+		while (n < size) {
+			n <<= 1;
+		}
+		leaves = n;
+		tree = new long[2 * n];
+		for (int i = size; i < n; i++) {
+			tree[n + i] = NONE;
+		}
+		for (int k = n - 1; k > 0; k--) {
+			tree[k] = Math.max(tree[2 * k], tree[2 * k + 1]);
+		}
+
+		final int probe = size;
+		byCapacity = new TreeSet<Integer>(new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer p1, Integer p2) {
+				int result = Long.compare(capacities[p1], capacities[p2]);
+				if (result == 0) {
+					// the probe of best fit comes before the hosts with the same capacity
+					result = Integer.compare(p1 == probe ? -1 : p1, p2 == probe ? -1 : p2);
+				}
+				return result;
+			}
+		});
+		for (int i = 0; i < size; i++) {
+			byCapacity.add(i);
+		}
+		excluded = new ArrayList<Integer>();
+		isExcluded = new boolean[size];
+	}
+
+	/**
+	 * @return the number of hosts
+	 */
+	public int size() {
+		return capacities.length - 1;
+	}
+
+	/**
+	 * @param position the position of a host
+	 * @return its free capacity
+	 */
+	public long get(int position) {
+		return capacities[position];
+	}
+
+	/**
+	 * Sets the free capacity of a host.
+	 *
+	 * @param position the position of the host
+	 * @param capacity the free capacity
+	 */
+	public void set(int position, long capacity) {
+		if (isExcluded[position]) {
+			capacities[position] = capacity;
+		} else {
+			byCapacity.remove(position);
+			capacities[position] = capacity;
+			byCapacity.add(position);
+			update(position, capacity);
+		}
+	}
+
+	/**
+	 * @return the free capacities by the position of the hosts, as a list backed by this index:
+	 *         setting an element of the list sets the capacity of the host
+	 */
+	public List<Integer> asList() {
+		return new AbstractList<Integer>() {
+
+			@Override
+			public Integer get(int position) {
+				return (int) HostCapacityIndex.this.get(position);
+			}
+
+			@Override
+			public Integer set(int position, Integer capacity) {
+				Integer previous = get(position);
+				HostCapacityIndex.this.set(position, capacity);
+				return previous;
+			}
+
+			@Override
+			public int size() {
+				return HostCapacityIndex.this.size();
+			}
+		};
+	}
+
+	/**
+	 * @param host a host
+	 * @return its position, or -1 if it is not in the index
+	 */
+	public int indexOf(Host host) {
+		Integer position = positions.get(host);
+		return position == null ? -1 : position;
+	}
+
+	/**
+	 * @return the position of the included host with the most free capacity, the first one if
+	 *         several have the same capacity, or -1 if no host is included
+	 */
+	public int worstFit() {
+		if (tree[1] == NONE) {
+			return -1;
+		}
+		int k = 1;
+		while (k < leaves) {
+			k = tree[2 * k] >= tree[2 * k + 1] ? 2 * k : 2 * k + 1;
+		}
+		return k - leaves;
+	}
+
+	/**
+	 * @param required the required capacity
+	 * @return the position of the first included host with at least the required free capacity,
+	 *         or -1 if there is none
+	 */
+	public int firstFit(long required) {
+		if (tree[1] == NONE || tree[1] < required) {
+			return -1;
+		}
+		int k = 1;
+		while (k < leaves) {
+			k = tree[2 * k] >= required ? 2 * k : 2 * k + 1;
+		}
+		return k - leaves;
+	}
+
+	/**
+	 * @param required the required capacity
+	 * @return the position of the included host with the least free capacity which is at least
+	 *         the required one, the first one if several have the same capacity, or -1 if there
+	 *         is none
+	 */
+	public int bestFit(long required) {
+		int probe = size();
+		capacities[probe] = required;
+		Integer position = byCapacity.ceiling(probe);
+		return position == null ? -1 : position;
+	}
+
+	/**
+	 * Excludes a host from the queries, for instance because it refused a VM.
+	 *
+	 * @param position the position of the host
+	 */
+	public void exclude(int position) {
+		if (!isExcluded[position]) {
+			byCapacity.remove(position);
+			update(position, NONE);
+			isExcluded[position] = true;
+			excluded.add(position);
+		}
+	}
+
+	/**
+	 * Includes again all excluded hosts.
+	 */
+	public void includeAll() {
+		for (int position : excluded) {
+			isExcluded[position] = false;
+			byCapacity.add(position);
+			update(position, capacities[position]);
+		}
+		excluded.clear();
+	}
+
+	/**
+	 * Sets a leaf of the tree and the maximums above it.
+	 *
+	 * @param position the position of the host
+	 * @param value the value of the leaf
+	 */
+	private void update(int position, long value) {
+		int k = leaves + position;
+		tree[k] = value;
+		for (k >>= 1; k > 0; k >>= 1) {
+			tree[k] = Math.max(tree[2 * k], tree[2 * k + 1]);
+		}
+	}
+
+}
@@ -9,6 +9,7 @@
 package org.cloudbus.cloudsim;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -17,11 +18,13 @@ import java.util.Map.Entry;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.edge.util.CustomLog;
 import org.cloudbus.cloudsim.edge.util.TextUtil;
+import org.cloudbus.cloudsim.network.CompactTopologicalGraph;
 import org.cloudbus.cloudsim.network.DelayMatrix_Float;
-import org.cloudbus.cloudsim.network.GraphReaderBrite;
+import org.cloudbus.cloudsim.network.GraphReaderBriteNio;
 import org.cloudbus.cloudsim.network.TopologicalGraph;
 import org.cloudbus.cloudsim.network.TopologicalLink;
 import org.cloudbus.cloudsim.network.TopologicalNode;
+import org.cloudbus.cloudsim.network.TopologyCache;
 
 /**
  * NetworkTopology is a class that implements network layer in CloudSim. It
@@ -53,6 +56,11 @@ public class NetworkTopology {
 
 	protected static Map<Integer, Integer> map = null;
 
+	/**
+	 * incremented on every change of the topology or the entity mapping
+	 */
+	protected static int version = 0;
+
 	/**
 	 * Creates the network topology if file exists and if file can be
 	 * succesfully parsed. File is written in the BRITE format and contains
@@ -67,12 +75,13 @@ public class NetworkTopology {
 		Log.printLine("Topology file: " + fileName);
 
 		// try to find the file
-		GraphReaderBrite reader = new GraphReaderBrite();
+		GraphReaderBriteNio reader = new GraphReaderBriteNio();
 
 		try {
-			graph = reader.readGraphFile(fileName);
+			graph = reader.readCompactGraphFile(fileName);
 			map = new HashMap<Integer, Integer>();
 			generateMatrices();
+			version++;
 			Log.printLine("Network activated...");
 		} catch (IOException e) {
 			// problem with the file. Does not simulate network
@@ -81,16 +90,66 @@ public class NetworkTopology {
 
 	}
 
+	/**
+	 * Creates the network topology like {@link #buildNetworkTopology(String)},
+	 * but keeps the parsed graph and the computed delay/next-hop matrices in a
+	 * binary cache file. If the cache is up to date with the BRITE file, it is
+	 * memory-mapped instead, so neither parsing nor the all pairs shortest
+	 * paths calculation is repeated.
+	 * 
+	 * @param fileName
+	 *            name of the BRITE file
+	 * @param cacheFileName
+	 *            name of the binary cache file
+	 * @pre fileName != null
+	 * @pre cacheFileName != null
+	 * @post $none
+	 */
+	public static void buildNetworkTopology(String fileName, String cacheFileName) {
+		if (TopologyCache.isUpToDate(cacheFileName, fileName)) {
+			Log.printLine("Topology cache: " + cacheFileName);
+			try {
+				TopologyCache cache = TopologyCache.load(cacheFileName);
+				graph = cache.getGraph();
+				map = new HashMap<Integer, Integer>();
+				delayMatrix = cache.getDelayMatrix();
+				bwMatrix = createBwMatrix(cache.getGraph(), false);
+				networkEnabled = true;
+				version++;
+				Log.printLine("Network activated...");
+				return;
+			} catch (IOException e) {
+				Log.printLine("Problem in loading topology cache, reading BRITE file. Error: " + e.getMessage());
+			}
+		}
+
+		buildNetworkTopology(fileName);
+
+		if (networkEnabled && graph instanceof CompactTopologicalGraph) {
+			try {
+				TopologyCache.write(cacheFileName, fileName, (CompactTopologicalGraph) graph, delayMatrix);
+			} catch (IOException e) {
+				Log.printLine("Problem in writing topology cache. Error: " + e.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * Generates the matrices used internally to set latency and bandwidth
 	 * between elements
 	 */
 	private static void generateMatrices() {
-		// creates the delay matrix
-		delayMatrix = new DelayMatrix_Float(graph, false);
-
-		// creates the bw matrix
-		bwMatrix = createBwMatrix(graph, false);
+		if (graph instanceof CompactTopologicalGraph) {
+			CompactTopologicalGraph compactGraph = (CompactTopologicalGraph) graph;
+			delayMatrix = new DelayMatrix_Float(compactGraph, false);
+			bwMatrix = createBwMatrix(compactGraph, false);
+		} else {
+			// creates the delay matrix
+			delayMatrix = new DelayMatrix_Float(graph, false);
+
+			// creates the bw matrix
+			bwMatrix = createBwMatrix(graph, false);
+		}
 
 		networkEnabled = true;
 	}
@@ -137,6 +196,7 @@ public class NetworkTopology {
 		graph.addLink(new TopologicalLink(map.get(srcId), map.get(destId), (float) lat, (float) bw));
 
 		generateMatrices();
+		version++;
 
 	}
 
@@ -175,6 +235,32 @@ public class NetworkTopology {
 		return mtx;
 	}
 
+	/**
+	 * Creates the matrix containiing the available bandiwdth beteen two nodes
+	 * from the primitive link arrays of the graph
+	 * 
+	 * @param graph
+	 *            topological graph describing the topology
+	 * @param directed
+	 *            true if the graph is directed; false otherwise
+	 * @return the bandwidth graph
+	 */
+	private static double[][] createBwMatrix(CompactTopologicalGraph graph, boolean directed) {
+		int nodes = graph.getNumberOfNodes();
+
+		double[][] mtx = new double[nodes][nodes];
+
+		for (int i = 0; i < graph.getNumberOfLinks(); i++) {
+			mtx[graph.getLinkSrc(i)][graph.getLinkDest(i)] = graph.getLinkBw(i);
+
+			if (!directed) {
+				mtx[graph.getLinkDest(i)][graph.getLinkSrc(i)] = graph.getLinkBw(i);
+			}
+		}
+
+		return mtx;
+	}
+
 	/**
 	 * Calculates the bw between two nodes
 	 * 
@@ -224,6 +310,7 @@ public class NetworkTopology {
 					if (!map.containsValue(briteID)) { // this BRITE node was
 														// already mapped?
 						map.put(cloudSimEntityID, briteID);
+						version++;
 					} else {
 						Log.printLine("Error in network mapping. BRITE node " + briteID + " already in use.");
 					}
@@ -249,7 +336,9 @@ public class NetworkTopology {
 	public static void unmapNode(int cloudSimEntityID) {
 		if (networkEnabled) {
 			try {
-				map.remove(cloudSimEntityID);
+				if (map.remove(cloudSimEntityID) != null) {
+					version++;
+				}
 			} catch (Exception e) {
 				Log.printLine("Error in network unmapping. CloudSim node: " + cloudSimEntityID);
 			}
@@ -315,6 +404,143 @@ public class NetworkTopology {
 		return -1;
 	}
 
+	/**
+	 * Compiles the next hops from one entity to all other mapped entities.
+	 * 
+	 * @param srcID
+	 *            ID of the source entity
+	 * @return an array indexed by destination entity id holding the entity id
+	 *         of the next hop, or -1 if there is none
+	 * @pre srcID >= 0
+	 * @post $none
+	 */
+	public static int[] getNextHopTable(int srcID) {
+		if (!networkEnabled || map == null || !map.containsKey(srcID)) {
+			return new int[0];
+		}
+
+		int maxEntityId = -1;
+		int[] netToEntity = new int[delayMatrix.getTotalNodeNum()];
+		Arrays.fill(netToEntity, -1);
+		for (Entry<Integer, Integer> entry : map.entrySet()) {
+			maxEntityId = Math.max(maxEntityId, entry.getKey());
+			if (entry.getValue() < netToEntity.length) {
+				netToEntity[entry.getValue()] = entry.getKey();
+			}
+		}
+
+		int[] table = new int[maxEntityId + 1];
+		Arrays.fill(table, -1);
+		int src = map.get(srcID);
+		for (Entry<Integer, Integer> entry : map.entrySet()) {
+			if (entry.getKey() == srcID) {
+				continue;
+			}
+			try {
+				int nextHop = delayMatrix.getNextHop(src, entry.getValue());
+				if (nextHop >= 0 && nextHop < netToEntity.length) {
+					table[entry.getKey()] = netToEntity[nextHop];
+				}
+			} catch (Exception e) {
+				// no route to this destination
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Compiles all equal-cost next hops from one entity to all other mapped
+	 * entities. A neighbour is an equal-cost next hop towards a destination
+	 * if the delay of the link to it plus its shortest path delay to the
+	 * destination equals the shortest path delay of the source. The next hop
+	 * returned by {@link #getNextHop(int, int)} is always the first one of a
+	 * group.
+	 * 
+	 * @param srcID
+	 *            ID of the source entity
+	 * @return an array indexed by destination entity id holding the entity
+	 *         ids of all equal-cost next hops, or null if there is none
+	 * @pre srcID >= 0
+	 * @post $none
+	 */
+	public static int[][] getNextHopGroups(int srcID) {
+		int[] primary = getNextHopTable(srcID);
+		int[][] groups = new int[primary.length][];
+		if (primary.length == 0) {
+			return groups;
+		}
+
+		int[] netToEntity = new int[delayMatrix.getTotalNodeNum()];
+		Arrays.fill(netToEntity, -1);
+		for (Entry<Integer, Integer> entry : map.entrySet()) {
+			if (entry.getValue() < netToEntity.length) {
+				netToEntity[entry.getValue()] = entry.getKey();
+			}
+		}
+
+		// neighbours of the source with the delay of the link to them
+		int src = map.get(srcID);
+		Map<Integer, Float> neighbours = new HashMap<Integer, Float>();
+		Iterator<TopologicalLink> iter = graph.getLinkIterator();
+		while (iter.hasNext()) {
+			TopologicalLink link = iter.next();
+			// links without delay are not used by the shortest path calculation
+			if (link.getLinkDelay() == 0) {
+				continue;
+			}
+			if (link.getSrcNodeID() == src) {
+				neighbours.put(link.getDestNodeID(), link.getLinkDelay());
+			} else if (link.getDestNodeID() == src) {
+				neighbours.put(link.getSrcNodeID(), link.getLinkDelay());
+			}
+		}
+
+		int[] candidates = new int[neighbours.size() + 1];
+		for (Entry<Integer, Integer> entry : map.entrySet()) {
+			int destID = entry.getKey();
+			int dest = entry.getValue();
+			if (destID == srcID || primary[destID] < 0 || dest >= netToEntity.length) {
+				continue;
+			}
+			float shortest = delayMatrix.getDelay(src, dest);
+			int count = 0;
+			candidates[count++] = primary[destID];
+			for (Entry<Integer, Float> neighbour : neighbours.entrySet()) {
+				int hop = netToEntity[neighbour.getKey()];
+				if (hop < 0 || hop == primary[destID]) {
+					continue;
+				}
+				float rest = neighbour.getKey() == dest ? 0 : delayMatrix.getDelay(neighbour.getKey(), dest);
+				if (rest == Float.MAX_VALUE) {
+					continue;
+				}
+				float cost = neighbour.getValue() + rest;
+				if (Math.abs(cost - shortest) <= 1e-6f * Math.max(1f, shortest)) {
+					candidates[count++] = hop;
+				}
+			}
+			groups[destID] = Arrays.copyOf(candidates, count);
+		}
+		return groups;
+	}
+
+	/**
+	 * @param cloudSimEntityID
+	 *            ID of the entity
+	 * @return true if the entity is mapped to a node in the network topology
+	 */
+	public static boolean isMapped(int cloudSimEntityID) {
+		return map != null && map.containsKey(cloudSimEntityID);
+	}
+
+	/**
+	 * @return the version of the topology, it changes whenever links are
+	 *         added or entities are (un)mapped
+	 */
+	public static int getVersion() {
+		return version;
+	}
+
 	/**
 	 * This method returns true if network simulation is working. If there were
 	 * some problem during creation of network (e.g., during parsing of BRITE
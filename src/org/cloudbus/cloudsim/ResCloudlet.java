@@ -440,6 +440,21 @@ public class ResCloudlet {
 		return (long) Math.floor(length / Consts.MILLION);
 	}
 
+	/**
+	 * Gets the remaining cloudlet length, including the part of an MI which is not complete yet.
+	 * 
+	 * @return cloudlet length
+	 * @pre $none
+	 * @post $result >= 0
+	 */
+	public double getExactRemainingCloudletLength() {
+		long length = cloudlet.getCloudletTotalLength() * Consts.MILLION - cloudletFinishedSoFar;
+		if (length < 0) {
+			return 0;
+		}
+		return (double) length / Consts.MILLION;
+	}
+
 	/**
 	 * Finalizes all relevant information before <tt>exiting</tt> the CloudResource entity. This
 	 * method sets the final data of:
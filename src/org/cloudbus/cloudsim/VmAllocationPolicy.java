@@ -97,6 +97,41 @@ public abstract class VmAllocationPolicy {
 	 */
 	public abstract Host getHost(int vmId, int userId);
 
+	/**
+	 * Reserves a host for a VM: the host keeps room for the VM, but does not create it. The VM is
+	 * created by {@link #allocateHostForVm(Vm, Host)} once the reservation is cancelled. This
+	 * policy takes the first host with room for the VM.
+	 * 
+	 * @param vm the vm
+	 * @return the reserved host; $null if no host has room for the vm
+	 */
+	public Host reserveHostForVm(Vm vm) {
+		for (Host host : getHostList()) {
+			if (host.vmReserve(vm)) {
+				return host;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Cancels the reservation of a host for a VM.
+	 * 
+	 * @param vm the vm
+	 * @param host the host reserved by {@link #reserveHostForVm(Vm)}
+	 */
+	public void cancelReservation(Vm vm, Host host) {
+		host.vmCancelReservation(vm);
+	}
+
+	/**
+	 * Prints the statistics of the policy when its datacenter shuts down. This policy has none.
+	 * 
+	 * @param datacenter the datacenter of the policy
+	 */
+	public void printStatistics(Datacenter datacenter) {
+	}
+
 	/**
 	 * Sets the host list.
 	 * 
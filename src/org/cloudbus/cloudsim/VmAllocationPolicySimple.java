@@ -8,7 +8,6 @@
 
 package org.cloudbus.cloudsim;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,7 +38,7 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	private Map<String, Integer> usedPes;
 
 	/** The number of free Pes for each host from {@link #getHostList() }. */
-	private List<Integer> freePes;
+	private HostCapacityIndex freePes;
 
 	/**
 	 * Creates a new VmAllocationPolicySimple object.
@@ -52,10 +51,9 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	public VmAllocationPolicySimple(List<? extends Host> list) {
 		super(list);
 
-		setFreePes(new ArrayList<Integer>());
-		for (Host host : getHostList()) {
-			getFreePes().add(host.getNumberOfPes());
-
+		setFreePesIndex(new HostCapacityIndex(getHostList()));
+		for (int i = 0; i < getHostList().size(); i++) {
+			getFreePesIndex().set(i, getHostList().get(i).getNumberOfPes());
 		}
 
 		setVmTable(new HashMap<String, Host>());
@@ -73,58 +71,73 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	 */
 	@Override
 	public boolean allocateHostForVm(Vm vm) {
-		int requiredPes = vm.getNumberOfPes();
-		boolean result = false;
-		int tries = 0;
-		List<Integer> freePesTmp = new ArrayList<Integer>();
-		for (Integer freePes : getFreePes()) {
-			freePesTmp.add(freePes);
-		}
+		return place(vm, false) != null;
+	}
 
-		if (!getVmTable().containsKey(vm.getUid())) { // if this vm was not
-														// created
-			do {// we still trying until we find a host or until we try all of
-				// them
-				int moreFree = Integer.MIN_VALUE;
-				int idx = -1;
-
-				// we want the host with less pes in use
-				for (int i = 0; i < freePesTmp.size(); i++) {
-					if (freePesTmp.get(i) > moreFree) {
-						moreFree = freePesTmp.get(i);
-						idx = i;
-					}
-				}
+	/**
+	 * Reserves the host with less PEs in use for a given VM. The VM is looked up in this policy
+	 * until the reservation is cancelled.
+	 * 
+	 * @param vm
+	 *            {@inheritDoc}
+	 * @return {@inheritDoc}
+	 */
+	@Override
+	public Host reserveHostForVm(Vm vm) {
+		return place(vm, true);
+	}
 
-				Host host = getHostList().get(idx);
+	@Override
+	public void cancelReservation(Vm vm, Host host) {
+		getVmTable().remove(vm.getUid());
+		int pes = getUsedPes().remove(vm.getUid());
+		host.vmCancelReservation(vm);
+		int idx = getFreePesIndex().indexOf(host);
+		getFreePesIndex().set(idx, getFreePesIndex().get(idx) + pes);
+	}
 
+	/**
+	 * Creates or reserves a VM in the host with less PEs in use, trying the next ones until one
+	 * accepts the VM.
+	 * 
+	 * @param vm
+	 *            the vm
+	 * @param reserve
+	 *            whether the host only reserves room for the vm
+	 * @return the host; $null if no host accepts the vm
+	 */
+	private Host place(Vm vm, boolean reserve) {
+		int requiredPes = vm.getNumberOfPes();
+		Host placed = null;
 
-				result = host.vmCreate(vm);
-				if (result) { // if vm were succesfully created in the host
+		if (!getVmTable().containsKey(vm.getUid())) { // if this vm was not created
+			// we want the host with less pes in use, and try the next ones until one accepts the vm
+			for (int idx = getFreePesIndex().worstFit(); idx >= 0; idx = getFreePesIndex().worstFit()) {
+				Host host = getHostList().get(idx);
+
+				if (reserve ? host.vmReserve(vm) : host.vmCreate(vm)) { // if vm were succesfully placed in the host
 					getVmTable().put(vm.getUid(), host);
 					getUsedPes().put(vm.getUid(), requiredPes);
-					getFreePes().set(idx, getFreePes().get(idx) - requiredPes);
-					result = true;
+					getFreePesIndex().set(idx, getFreePesIndex().get(idx) - requiredPes);
+					placed = host;
 					break;
-				} else {
-					freePesTmp.set(idx, Integer.MIN_VALUE);
 				}
-				tries++;
-			} while (!result && tries < getFreePes().size());
-
+				getFreePesIndex().exclude(idx);
+			}
+			getFreePesIndex().includeAll();
 		}
 
-		return result;
+		return placed;
 	}
 
 	@Override
 	public void deallocateHostForVm(Vm vm) {
 		Host host = getVmTable().remove(vm.getUid());
-		int idx = getHostList().indexOf(host);
+		int idx = getFreePesIndex().indexOf(host);
 		int pes = getUsedPes().remove(vm.getUid());
 		if (host != null) {
 			host.vmDestroy(vm);
-			getFreePes().set(idx, getFreePes().get(idx) + pes);
+			getFreePesIndex().set(idx, getFreePesIndex().get(idx) + pes);
 		}
 	}
 
@@ -179,19 +192,43 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 	/**
 	 * Gets the free pes.
 	 * 
-	 * @return the free pes
+	 * @return the free pes by the position of the hosts, backed by
+	 *         {@link #getFreePesIndex()}
 	 */
 	protected List<Integer> getFreePes() {
-		return freePes;
+		return freePes.asList();
 	}
 
 	/**
 	 * Sets the free pes.
 	 * 
 	 * @param freePes
-	 *            the new free pes
+	 *            the new free pes, by the position of the hosts
 	 */
 	protected void setFreePes(List<Integer> freePes) {
+		HostCapacityIndex index = new HostCapacityIndex(getHostList());
+		for (int i = 0; i < freePes.size(); i++) {
+			index.set(i, freePes.get(i));
+		}
+		setFreePesIndex(index);
+	}
+
+	/**
+	 * Gets the index of the free pes.
+	 * 
+	 * @return the index of the free pes
+	 */
+	protected HostCapacityIndex getFreePesIndex() {
+		return freePes;
+	}
+
+	/**
+	 * Sets the index of the free pes.
+	 * 
+	 * @param freePes
+	 *            the new index of the free pes
+	 */
+	protected void setFreePesIndex(HostCapacityIndex freePes) {
 		this.freePes = freePes;
 	}
 
@@ -208,9 +245,9 @@ public class VmAllocationPolicySimple extends VmAllocationPolicy {
 			getVmTable().put(vm.getUid(), host);
 
 			int requiredPes = vm.getNumberOfPes();
-			int idx = getHostList().indexOf(host);
+			int idx = getFreePesIndex().indexOf(host);
 			getUsedPes().put(vm.getUid(), requiredPes);
-			getFreePes().set(idx, getFreePes().get(idx) - requiredPes);
+			getFreePesIndex().set(idx, getFreePesIndex().get(idx) - requiredPes);
 
 			Log.formatLine("%.2f: VM #" + vm.getId() + " has been allocated to the host #" + host.getId(),
 					CloudSim.clock());
@@ -265,6 +265,38 @@ public class CloudSimTags {
 
 	public static final int NextCycle = BASE + 48;
 
+	/** Denotes the completion of the next flow of the flow-level network model */
+	public static final int Network_Event_Flow = BASE + 49;
+
+	/**
+	 * Denotes a stage transition of a NetworkCloudlet which is due, the data is
+	 * the VM the cloudlet runs on
+	 */
+	public static final int CLOUDLET_STAGE_EVENT = BASE + 50;
+
+	/**
+	 * Denotes a request to reserve hosts for all the VMs of a list at once, or
+	 * for none of them, the data is the list of VMs. A request refused while
+	 * hosts are reserved for others is answered once they are committed or
+	 * released
+	 */
+	public static final int VM_CHAIN_RESERVE = BASE + 51;
+
+	/**
+	 * Denotes the result of a reservation, the data is an int array with the
+	 * datacenter id and {@link #TRUE} or {@link #FALSE}
+	 */
+	public static final int VM_CHAIN_RESERVE_ACK = BASE + 52;
+
+	/**
+	 * Denotes that the VMs reserved for the sender are to be created, each one
+	 * is then acknowledged as with {@link #VM_CREATE_ACK}
+	 */
+	public static final int VM_CHAIN_COMMIT = BASE + 53;
+
+	/** Denotes that the hosts reserved for the sender are to be released */
+	public static final int VM_CHAIN_RELEASE = BASE + 54;
+
 	/** Private Constructor */
 	private CloudSimTags() {
 		throw new UnsupportedOperationException("CloudSim Tags cannot be instantiated");
@@ -46,6 +46,11 @@ public class CloudSimTagsExt {
 	public static final int KEEP_UP = BASEEDGE + 18;
 	public static final int BROKER_REQUEST = BASEEDGE + 19;
 	public static final int SERVICE_DESTROYED_ITSELF = BASEEDGE + 20;
+	public static final int SERVICE_AUTOSCALE = BASEEDGE + 21;
+	public static final int SERVICE_REQUEST = BASEEDGE + 22;
+	public static final int SERVICE_REQUEST_ACK = BASEEDGE + 23;
+	public static final int BROKER_REQUEST_QUEUE = BASEEDGE + 24;
+	public static final int SERVICE_REQUEST_REJECT = BASEEDGE + 25;
 	public static final long DATA_SIZE = 1000000000;
 	
 	
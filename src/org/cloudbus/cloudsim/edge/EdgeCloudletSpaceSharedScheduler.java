@@ -11,8 +11,10 @@ package org.cloudbus.cloudsim.edge;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.CloudletScheduler;
@@ -29,7 +31,6 @@ import org.cloudbus.cloudsim.lists.VmList;
 import org.cloudbus.cloudsim.network.datacenter.HostPacket;
 import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
 import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
-import org.cloudbus.cloudsim.network.datacenter.TaskStage;
 
 /**
  * CloudletSchedulerSpaceShared implements a policy of scheduling performed by a
@@ -67,7 +68,38 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 
 	public Map<Integer, List<HostPacket>> pkttosend;
 
-	public Map<Integer, List<HostPacket>> pktrecv;
+	/**
+	 * Received packets not yet consumed, by receiver cloudlet id and sender
+	 * cloudlet id.
+	 */
+	private Map<Integer, Map<Integer, LinkedList<HostPacket>>> inboxes;
+
+	/**
+	 * The packets whose receiver cloudlet finished or was cancelled before it
+	 * read them.
+	 */
+	private int droppedPackets;
+
+	/** Cloudlets in a WAIT_RECV stage whose packet has not arrived, by id. */
+	private Map<Integer, NetworkCloudlet> waitingCloudlets;
+
+	/** Cloudlets in the exec list, by id. */
+	private Map<Integer, ResCloudlet> runningCloudlets;
+
+	/** Cloudlets which entered the exec list and have not run a stage yet. */
+	private LinkedList<NetworkCloudlet> startingCloudlets;
+
+	/** Ids of the cloudlets which have run all their stages. */
+	private List<Integer> finishingCloudlets;
+
+	/** Completion times of the running EXECUTION stages, earliest first. */
+	private PriorityQueue<StageTimer> stageTimers;
+
+	/** Tie breaker of timers with the same deadline, in scheduling order. */
+	private long timerSequence;
+
+	/** true while the stages are updated by {@link #updateVmProcessing} */
+	private boolean updating;
 
 	/**
 	 * Creates a new CloudletSchedulerSpaceShared object. This method must be
@@ -85,7 +117,12 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 		usedPes = 0;
 		currentCpus = 0;
 		pkttosend = new HashMap<Integer, List<HostPacket>>();
-		pktrecv = new HashMap<Integer, List<HostPacket>>();
+		inboxes = new HashMap<Integer, Map<Integer, LinkedList<HostPacket>>>();
+		waitingCloudlets = new HashMap<Integer, NetworkCloudlet>();
+		runningCloudlets = new HashMap<Integer, ResCloudlet>();
+		startingCloudlets = new LinkedList<NetworkCloudlet>();
+		finishingCloudlets = new ArrayList<Integer>();
+		stageTimers = new PriorityQueue<StageTimer>();
 	}
 
 	/**
@@ -106,265 +143,341 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 	public double updateVmProcessing(double currentTime, List<Double> mipsShare) {
 
 		setCurrentMipsShare(mipsShare);
-		// update
-		double capacity = 0.0;
 		int cpus = 0;
-
 		for (Double mips : mipsShare) { // count the CPUs available to the VMM
-			capacity += mips;
 			if (mips > 0) {
 				cpus++;
 			}
 		}
 		currentCpus = cpus;
-		capacity /= cpus; // average capacity of each cpu
 
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			// each machine in the exec list has the same amount of cpu
+		updating = true;
+		do {
+			// cloudlets which entered the exec list start their first stage
+			while (!startingCloudlets.isEmpty()) {
+				runStages(startingCloudlets.poll());
+			}
 
-			NetworkCloudlet cl = (NetworkCloudlet) rcl.getCloudlet();
+			// complete the execution stages which are due
+			completeExecutions(currentTime);
 
-			// check status if execution stage update the cloudlet finishtime
-			// CHECK WHETHER IT IS WAITING FOR THE PACKET
-			// if packet received change the status of job and update the time.
+			// finished cloudlets free their PEs for the waiting ones, which
+			// start in the next round
+			finishCloudlets();
+		} while (!startingCloudlets.isEmpty());
+		updating = false;
 
-			if ((cl.getCurrStagenum() != -1)) {
-				TaskStage st = cl.getStages().get(cl.getCurrStagenum());
-				if (st.getType() != NetworkConstants.EXECUTION) {
-					// System.out.println(TextUtil.toString(CloudSim.clock())
-					// + " [DEBUG]: CL #" + cl.getCloudletId()
-					// + " Current stageNum " + cl.getCurrStagenum());
-				}
+		setPreviousTime(currentTime);
+		if (getCloudletExecList().size() == 0 && getCloudletWaitingList().size() == 0) { // no
+			// more cloudlets in this scheduler
+			return 0.0;
+		}
+		// execution stages schedule their own completion, waiting cloudlets
+		// are resumed by the arrival of their packet
+		return Double.MAX_VALUE;
+	}
 
-				if (cl.getCurrStagenum() == NetworkConstants.FINISH) {
-					break;
+	/**
+	 * Runs the current stage of a cloudlet and all following stages which
+	 * complete at once, i.e. WAIT_SEND stages and WAIT_RECV stages whose
+	 * packet has already arrived. Stops at an EXECUTION stage, whose completion
+	 * is scheduled, at a WAIT_RECV stage still waiting for its packet, or when
+	 * the cloudlet has run all its stages.
+	 */
+	private void runStages(NetworkCloudlet cl) {
+		if (cl.getCurrStagenum() == -1) {
+			cl.setCurrStagenum(0);
+		}
+		while (cl.getCurrStagenum() != NetworkConstants.FINISH) {
+			int stage = cl.getCurrStagenum();
+			if (stage >= cl.getStageCount()) {
+				cl.setCurrStagenum(NetworkConstants.FINISH);
+				finishingCloudlets.add(cl.getCloudletId());
+				if (!updating) {
+					// the datacenter has to collect the finished cloudlet
+					scheduleStageEvent(cl, 0);
 				}
-				if (st.getType() == NetworkConstants.EXECUTION) {
+				return;
+			}
+			int type = cl.getStageType(stage);
+			cl.setTimespentInStage(0);
+			cl.setTimetostartStage(CloudSim.clock());
 
-					// update the time
-					cl.setTimespentInStage(Math.round(CloudSim.clock() - cl.getTimetostartStage()));
-					if (cl.getTimespentInStage() >= st.getTime()) {
-						// change the stage
-						changetonextstage(cl, st);
-					}
-				}
-				if (st.getType() == NetworkConstants.WAIT_RECV) {
-					List<HostPacket> pktlist = pktrecv.get(st.getPeer());
-					List<HostPacket> pkttoremove = new ArrayList<HostPacket>();
-					if (pktlist != null) {
-						if (pktlist.isEmpty()) {
-							// changetonextstage(cl, st);
-							continue;
-						}
-						Iterator<HostPacket> it = pktlist.iterator();
-						HostPacket pkt = null;
-						if (it.hasNext()) {
-							pkt = it.next();
-							// Asumption packet will not arrive in the same
-							// cycle
-							if (pkt.getReciever() == cl.getVmId()) {
-								if (pkt.getVirtualrecvid() == cl.getCloudletId()) {
-
-									// if this Cloudlet belongs to a Broker
-									if (isCloudletOwnerBroker(cl)) {
-
-										CustomLog.printf("%s\t\t%s\t\t%s\t\t\t%s", TextUtil.toString(CloudSim.clock()),
-												"Service #" + Service.getServiceWithCloudletId(pkt.getVirtualsendid()).getId(),
-												TextUtil.toString(CloudSim.clock() - cl.getServiceTime()),
-												TextUtil.toString(st.getData()));
-
-										Service s = Service.getServiceWithCloudletId(pkt.getVirtualsendid());
-										CustomLog.printResponse("\t%s\t\t%s\t\t\t\t%s\t\t\t\t%s\t\t\t\t%s",
-												TextUtil.toString(CloudSim.clock()), "#" + s.getId(),
-												s.getServiceTyp().getName(),
-												TextUtil.toString(CloudSim.clock() - cl.getServiceTime()),
-												TextUtil.toString(st.getData()));
-
-										cl.setServiceTime(CloudSim.clock());
-									}
-
-									System.out.println(TextUtil.toString(CloudSim.clock()) + " [RECV]: CL #"
-											+ cl.getCloudletId() + " received a packet from CL #"
-											+ pkt.getVirtualsendid() + " with the data: " + pkt.getData());
-
-									pkt.setRecievetime(CloudSim.clock());
-									st.setTime(CloudSim.clock() - pkt.getSendtime());
-									changetonextstage(cl, st);
-									pkttoremove.add(pkt);
-								}
-							}
-						}
-						pktlist.removeAll(pkttoremove);
-						// else wait for recieving the packet
-					} else {
-						// System.out.println(TextUtil.toString(CloudSim.clock())
-						// + " [RECV_WAIT]: CL #"
-						// + cl.getCloudletId() + " waiting packet from CL #" +
-						// st.getVpeer());
-					}
+			if (type == NetworkConstants.EXECUTION && cl.getStageTime(stage) > 0) {
+				startExecution(cl, stage);
+				return;
+			}
+			if (type == NetworkConstants.WAIT_RECV) {
+				HostPacket pkt = pollPacket(cl, cl.getStageVpeer(stage));
+				if (pkt == null) {
+					// wait for the packet, its arrival wakes the cloudlet up
+					waitingCloudlets.put(cl.getCloudletId(), cl);
+					return;
 				}
-				if (st.getType() == NetworkConstants.WAIT_SEND) {
-
-					if (isCloudletOwnerBroker(cl)) {
-						cl.setServiceTime(CloudSim.clock());
-					}
+				recvpacket(cl, stage, pkt);
+			}
+			if (type == NetworkConstants.WAIT_SEND) {
+				sendpacket(cl, stage);
+			}
+			cl.setCurrStagenum(cl.getCurrStagenum() + 1);
+		}
+	}
 
-					System.out.println(TextUtil.toString(CloudSim.clock()) + " [SEND]: CL #" + cl.getCloudletId()
-							+ " in VM #" + cl.getVmId() + " sends packet to CL #" + st.getVpeer() + " in VM #"
-							+ st.getPeer() + " with data " + st.getData());
+	/**
+	 * Starts an EXECUTION stage. The cloudlet has the PEs it requested for
+	 * itself, so the stage completes after its time.
+	 * 
+	 * @param cl
+	 *            the cloudlet
+	 * @param stage
+	 *            the number of its current stage
+	 */
+	protected void startExecution(NetworkCloudlet cl, int stage) {
+		double time = cl.getStageTime(stage);
+		stageTimers.add(new StageTimer(CloudSim.clock() + time, timerSequence++, cl, stage));
+		scheduleStageEvent(cl, time);
+	}
 
-					HostPacket pkt = new HostPacket(cl.getVmId(), st.getPeer(), st.getData(), CloudSim.clock(), -1,
-							cl.getCloudletId(), st.getVpeer());
+	/**
+	 * Completes the EXECUTION stages which are due.
+	 * 
+	 * @param currentTime
+	 *            current simulation time
+	 */
+	protected void completeExecutions(double currentTime) {
+		while (!stageTimers.isEmpty() && stageTimers.peek().deadline <= currentTime) {
+			StageTimer timer = stageTimers.poll();
+			if (isCurrentStage(timer.cloudlet, timer.stage, timer.stagesVersion)) {
+				completeExecution(timer.cloudlet);
+			}
+		}
+	}
 
-					List<HostPacket> pktlist = pkttosend.get(cl.getVmId());
-					if (pktlist == null) {
-						pktlist = new ArrayList<HostPacket>();
-					}
-					pktlist.add(pkt);
-					pkttosend.put(cl.getVmId(), pktlist);
+	/**
+	 * Completes the current EXECUTION stage of a cloudlet and runs its next
+	 * stages.
+	 */
+	protected void completeExecution(NetworkCloudlet cl) {
+		cl.setTimespentInStage(CloudSim.clock() - cl.getTimetostartStage());
+		cl.setCurrStagenum(cl.getCurrStagenum() + 1);
+		runStages(cl);
+	}
 
-					// change the stage
-					changetonextstage(cl, st);
-				}
+	/**
+	 * Called when a cloudlet leaves the exec list before it finished, its
+	 * current stage is abandoned.
+	 * 
+	 * @param cloudletId
+	 *            the id of the cloudlet
+	 */
+	protected void stopExecution(int cloudletId) {
+		// stage timers of removed cloudlets are skipped when due
+	}
 
-			} else {
-				cl.setCurrStagenum(0);
-				cl.setTimetostartStage(CloudSim.clock());
+	/**
+	 * @param pes
+	 *            the PEs requested by a cloudlet
+	 * @return true if the cloudlet can go to the exec list
+	 */
+	protected boolean hasFreePes(int pes) {
+		return (currentCpus - usedPes) >= pes;
+	}
 
-				Datacenter dc = getCloudletDC(cl);
-				if (cl.getStages().get(0).getType() == NetworkConstants.EXECUTION) {
-					dc.schedule(dc.getId(), cl.getStages().get(0).getTime(), CloudSimTags.VM_DATACENTER_EVENT);
-				} else {
-					dc.schedule(dc.getId(), 0.0001, CloudSimTags.VM_DATACENTER_EVENT);
-					// sendstage
-				}
-			}
+	/**
+	 * @return true if the cloudlet is still running and in the given stage of
+	 *         the given version of its stages
+	 */
+	protected boolean isCurrentStage(NetworkCloudlet cl, int stage, int stagesVersion) {
+		return runningCloudlets.containsKey(cl.getCloudletId()) && cl.getCurrStagenum() == stage
+				&& cl.getStagesVersion() == stagesVersion;
+	}
 
+	/**
+	 * Removes the cloudlets which have run all their stages from the exec list
+	 * and moves waiting cloudlets into the freed PEs.
+	 */
+	private void finishCloudlets() {
+		if (finishingCloudlets.isEmpty()) {
+			return;
 		}
-
-		if (getCloudletExecList().size() == 0 && getCloudletWaitingList().size() == 0) { // no
-			// more cloudlets in this scheduler
-			setPreviousTime(currentTime);
-			return 0.0;
+		for (Integer cloudletId : finishingCloudlets) {
+			ResCloudlet rcl = runningCloudlets.get(cloudletId);
+			if (rcl == null) {
+				continue;
+			}
+			((NetworkCloudlet) rcl.getCloudlet()).setFinishtime(CloudSim.clock());
+			getCloudletExecList().remove(rcl);
+			cloudletFinish(rcl);
 		}
+		finishingCloudlets.clear();
 
-		// update each cloudlet
-		int finished = 0;
 		List<ResCloudlet> toRemove = new ArrayList<ResCloudlet>();
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			// rounding issue...
-			if (((NetworkCloudlet) (rcl.getCloudlet())).getCurrStagenum() == NetworkConstants.FINISH) {
-				// stage is changed and packet to send
-				((NetworkCloudlet) (rcl.getCloudlet())).setFinishtime(CloudSim.clock());
+		for (ResCloudlet rcl : getCloudletWaitingList()) {
+			if (hasFreePes(rcl.getNumberOfPes())) {
+				rcl.setCloudletStatus(Cloudlet.INEXEC);
+				for (int k = 0; k < rcl.getNumberOfPes(); k++) {
+					rcl.setMachineAndPeId(0, k);
+				}
+				addToExecList(rcl);
 				toRemove.add(rcl);
-				cloudletFinish(rcl);
-				finished++;
 			}
 		}
-		getCloudletExecList().removeAll(toRemove);
-		// add all the CloudletExecList in waitingList.
-		// sort the waitinglist
-
-		// for each finished cloudlet, add a new one from the waiting list
-		if (!getCloudletWaitingList().isEmpty()) {
-			for (int i = 0; i < finished; i++) {
-				toRemove.clear();
-				for (ResCloudlet rcl : getCloudletWaitingList()) {
-					if ((currentCpus - usedPes) >= rcl.getNumberOfPes()) {
-						rcl.setCloudletStatus(Cloudlet.INEXEC);
-						for (int k = 0; k < rcl.getNumberOfPes(); k++) {
-							rcl.setMachineAndPeId(0, i);
-						}
-						getCloudletExecList().add(rcl);
-						usedPes += rcl.getNumberOfPes();
-						toRemove.add(rcl);
-						break;
-					}
-				}
-				getCloudletWaitingList().removeAll(toRemove);
-			} // for(cont)
+		getCloudletWaitingList().removeAll(toRemove);
+	}
+
+	/**
+	 * Puts a cloudlet into the exec list. Its current stage runs at the next
+	 * update of the VM.
+	 */
+	private void addToExecList(ResCloudlet rcl) {
+		getCloudletExecList().add(rcl);
+		usedPes += rcl.getNumberOfPes();
+		runningCloudlets.put(rcl.getCloudletId(), rcl);
+		NetworkCloudlet cl = (NetworkCloudlet) rcl.getCloudlet();
+		startingCloudlets.add(cl);
+		if (!updating) {
+			scheduleStageEvent(cl, 0);
 		}
+	}
 
-		// estimate finish time of cloudlets in the execution queue
-		double nextEvent = Double.MAX_VALUE;
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			double remainingLength = rcl.getRemainingCloudletLength();
-			double estimatedFinishTime = currentTime + (remainingLength / (capacity * rcl.getNumberOfPes()));
-			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
-				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
-			}
-			if (estimatedFinishTime < nextEvent) {
-				nextEvent = estimatedFinishTime;
-			}
+	/**
+	 * Schedules the update of the VM of a cloudlet at its datacenter, which
+	 * runs the due stage transitions and collects finished cloudlets.
+	 */
+	protected void scheduleStageEvent(NetworkCloudlet cl, double delay) {
+		Vm vm = getCloudletVm(cl);
+		if (vm == null || vm.getHost() == null) {
+			return;
 		}
-		setPreviousTime(currentTime);
-		return nextEvent;
+		Datacenter dc = vm.getHost().getDatacenter();
+		dc.schedule(dc.getId(), delay, CloudSimTags.CLOUDLET_STAGE_EVENT, vm);
 	}
 
-	private boolean isCloudletOwnerBroker(Cloudlet cloudlet) {
-		int brID = cloudlet.getUserId();
-		SimEntity entity = CloudSim.getEntity(brID);
-		if (entity instanceof EdgeDatacenterBroker) {
-			return true;
+	/**
+	 * Delivers a packet to the inbox of its receiver cloudlet. If the cloudlet
+	 * is already waiting for it, the cloudlet moves on to its next stage.
+	 * 
+	 * @param pkt
+	 *            the received packet
+	 */
+	public void deliverPacket(HostPacket pkt) {
+		Map<Integer, LinkedList<HostPacket>> inbox = inboxes.get(pkt.getVirtualrecvid());
+		if (inbox == null) {
+			inbox = new HashMap<Integer, LinkedList<HostPacket>>();
+			inboxes.put(pkt.getVirtualrecvid(), inbox);
+		}
+		LinkedList<HostPacket> pktlist = inbox.get(pkt.getVirtualsendid());
+		if (pktlist == null) {
+			pktlist = new LinkedList<HostPacket>();
+			inbox.put(pkt.getVirtualsendid(), pktlist);
+		}
+		pktlist.add(pkt);
 
+		NetworkCloudlet cl = waitingCloudlets.get(pkt.getVirtualrecvid());
+		if (cl == null || cl.getCurrStagenum() < 0) {
+			return;
+		}
+		int stage = cl.getCurrStagenum();
+		if (cl.getStageType(stage) == NetworkConstants.WAIT_RECV
+				&& cl.getStageVpeer(stage) == pkt.getVirtualsendid() && pkt.getReciever() == cl.getVmId()) {
+			waitingCloudlets.remove(cl.getCloudletId());
+			recvpacket(cl, stage, pollPacket(cl, pkt.getVirtualsendid()));
+			cl.setCurrStagenum(cl.getCurrStagenum() + 1);
+			runStages(cl);
 		}
-		return false;
 	}
 
-	private void changetonextstage(NetworkCloudlet cl, TaskStage st) {
-		// for the new/next stage
-		cl.setTimespentInStage(0);
-		cl.setTimetostartStage(CloudSim.clock());
-		int currstage = cl.getCurrStagenum();
-		if (currstage > (cl.getStages().size() - 1)) {
-			cl.setCurrStagenum(NetworkConstants.FINISH);
-		} else {
-			cl.setCurrStagenum(currstage + 1);
-			int i = 0;
-			for (i = cl.getCurrStagenum(); i < cl.getStages().size(); i++) {
-				if (cl.getStages().get(i).getType() == NetworkConstants.WAIT_SEND) {
-
-					if (isCloudletOwnerBroker(cl)) {
-						cl.setServiceTime(CloudSim.clock());
-					}
+	/**
+	 * @return the oldest packet a cloudlet received from another cloudlet and
+	 *         addressed to the VM of the cloudlet, or null if there is none
+	 */
+	private HostPacket pollPacket(NetworkCloudlet cl, int sendCloudletId) {
+		Map<Integer, LinkedList<HostPacket>> inbox = inboxes.get(cl.getCloudletId());
+		if (inbox == null) {
+			return null;
+		}
+		LinkedList<HostPacket> pktlist = inbox.get(sendCloudletId);
+		if (pktlist == null) {
+			return null;
+		}
+		for (Iterator<HostPacket> it = pktlist.iterator(); it.hasNext();) {
+			HostPacket pkt = it.next();
+			if (pkt.getReciever() == cl.getVmId()) {
+				it.remove();
+				return pkt;
+			}
+		}
+		return null;
+	}
 
-					HostPacket pkt = new HostPacket(cl.getVmId(), cl.getStages().get(i).getPeer(),
-							cl.getStages().get(i).getData(), CloudSim.clock(), -1, cl.getCloudletId(),
-							cl.getStages().get(i).getVpeer());
-					List<HostPacket> pktlist = pkttosend.get(cl.getVmId());
+	/**
+	 * Completes the WAIT_RECV stage of a cloudlet with the packet it waited
+	 * for.
+	 */
+	private void recvpacket(NetworkCloudlet cl, int stage, HostPacket pkt) {
+		waitingCloudlets.remove(cl.getCloudletId());
+
+		// if this Cloudlet belongs to a Broker
+		if (isCloudletOwnerBroker(cl)) {
+			// the cloudlet of a request is mapped to its service, the copies
+			// of the service cloudlets which answer it are not
+			Service s = Service.getServiceWithCloudletId(
+					cl.getRequestId() == -1 ? pkt.getVirtualsendid() : cl.getCloudletId());
+
+			double data = cl.getStageData(stage);
+			CustomLog.printf("%s\t\t%s\t\t%s\t\t\t%s", TextUtil.toString(CloudSim.clock()),
+					"Service #" + s.getId(),
+					TextUtil.toString(CloudSim.clock() - cl.getServiceTime()), TextUtil.toString(data));
+
+			CustomLog.printResponse("\t%s\t\t%s\t\t\t\t%s\t\t\t\t%s\t\t\t\t%s", TextUtil.toString(CloudSim.clock()),
+					"#" + s.getId(), s.getServiceTyp().getName(),
+					TextUtil.toString(CloudSim.clock() - cl.getServiceTime()), TextUtil.toString(data));
+			s.responseReceived(CloudSim.clock() - cl.getServiceTime());
+
+			cl.setServiceTime(CloudSim.clock());
+		}
 
-					System.out.println(TextUtil.toString(CloudSim.clock()) + " [SEND]: CL #" + cl.getCloudletId()
-							+ " in VM #" + cl.getVmId() + " sends packet to CL #" + cl.getStages().get(i).getVpeer()
-							+ " in VM #" + cl.getStages().get(i).getPeer() + " with data "
-							+ cl.getStages().get(i).getData());
+		System.out.println(TextUtil.toString(CloudSim.clock()) + " [RECV]: CL #" + cl.getCloudletId()
+				+ " received a packet from CL #" + pkt.getVirtualsendid() + " with the data: " + pkt.getData());
 
-					if (pktlist == null) {
-						pktlist = new ArrayList<HostPacket>();
-					}
-					pktlist.add(pkt);
-					pkttosend.put(cl.getVmId(), pktlist);
+		pkt.setRecievetime(CloudSim.clock());
+		if (cl.getProgram() == null) {
+			// a program is shared, so only a list of stages keeps the time
+			cl.getStages().get(stage).setTime(CloudSim.clock() - pkt.getSendtime());
+		}
+	}
 
-				} else {
-					if (cl.getStages().get(i).getType() == NetworkConstants.EXECUTION) {
-						// Starts EXEC phase
-					}
-					break;
-				}
+	/**
+	 * Runs a WAIT_SEND stage: the packet is sent with the next packets of the
+	 * host.
+	 */
+	private void sendpacket(NetworkCloudlet cl, int stage) {
+		if (isCloudletOwnerBroker(cl)) {
+			cl.setServiceTime(CloudSim.clock());
+		}
 
-			}
-			Datacenter dc = getCloudletDC(cl);
-			dc.schedule(dc.getId(), 0.0001, CloudSimTags.VM_DATACENTER_EVENT);
-			if (i == cl.getStages().size()) {
-				cl.setCurrStagenum(NetworkConstants.FINISH);
-			} else {
-				cl.setCurrStagenum(i);
-				if (cl.getStages().get(i).getType() == NetworkConstants.EXECUTION) {
-					dc.schedule(dc.getId(), cl.getStages().get(i).getTime() + 1.0, CloudSimTags.VM_DATACENTER_EVENT);
-				}
+		System.out.println(TextUtil.toString(CloudSim.clock()) + " [SEND]: CL #" + cl.getCloudletId() + " in VM #"
+				+ cl.getVmId() + " sends packet to CL #" + cl.getStageVpeer(stage) + " in VM #"
+				+ cl.getStagePeer(stage) + " with data " + cl.getStageData(stage));
 
-			}
+		HostPacket pkt = new HostPacket(cl.getVmId(), cl.getStagePeer(stage), cl.getStageData(stage),
+				CloudSim.clock(), -1, cl.getCloudletId(), cl.getStageVpeer(stage));
+		List<HostPacket> pktlist = pkttosend.get(cl.getVmId());
+		if (pktlist == null) {
+			pktlist = new ArrayList<HostPacket>();
+			pkttosend.put(cl.getVmId(), pktlist);
 		}
+		pktlist.add(pkt);
+	}
 
+	private boolean isCloudletOwnerBroker(Cloudlet cloudlet) {
+		int brID = cloudlet.getUserId();
+		SimEntity entity = CloudSim.getEntity(brID);
+		if (entity instanceof EdgeDatacenterBroker) {
+			return true;
+
+		}
+		return false;
 	}
 
 	/**
@@ -390,10 +503,12 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 		for (ResCloudlet rcl : getCloudletExecList()) {
 			if (rcl.getCloudletId() == cloudletId) {
 				getCloudletExecList().remove(rcl);
+				removeRunning(cloudletId);
 				if (rcl.getRemainingCloudletLength() == 0.0) {
 					cloudletFinish(rcl);
 				} else {
 					rcl.setCloudletStatus(Cloudlet.CANCELED);
+					releaseInbox(cloudletId);
 				}
 				return rcl.getCloudlet();
 			}
@@ -403,6 +518,7 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 		for (ResCloudlet rcl : getCloudletPausedList()) {
 			if (rcl.getCloudletId() == cloudletId) {
 				getCloudletPausedList().remove(rcl);
+				releaseInbox(cloudletId);
 				return rcl.getCloudlet();
 			}
 		}
@@ -412,6 +528,7 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 			if (rcl.getCloudletId() == cloudletId) {
 				rcl.setCloudletStatus(Cloudlet.CANCELED);
 				getCloudletWaitingList().remove(rcl);
+				releaseInbox(cloudletId);
 				return rcl.getCloudlet();
 			}
 		}
@@ -446,6 +563,7 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 		if (found) {
 			// moves to the paused list
 			ResCloudlet rgl = getCloudletExecList().remove(position);
+			removeRunning(cloudletId);
 			if (rgl.getRemainingCloudletLength() == 0.0) {
 				cloudletFinish(rgl);
 			} else {
@@ -497,6 +615,47 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 		rcl.finalizeCloudlet();
 		getCloudletFinishedList().add(rcl);
 		usedPes -= rcl.getNumberOfPes();
+		removeRunning(rcl.getCloudletId());
+		releaseInbox(rcl.getCloudletId());
+	}
+
+	/**
+	 * Forgets a cloudlet which left the exec list.
+	 */
+	private void removeRunning(int cloudletId) {
+		if (runningCloudlets.remove(cloudletId) != null) {
+			stopExecution(cloudletId);
+		}
+		waitingCloudlets.remove(cloudletId);
+	}
+
+	/**
+	 * Forgets a cloudlet which finished or was cancelled, with its inbox. The
+	 * packets left in the inbox are never read and are counted as dropped.
+	 */
+	private void releaseInbox(int cloudletId) {
+		waitingCloudlets.remove(cloudletId);
+		Map<Integer, LinkedList<HostPacket>> inbox = inboxes.remove(cloudletId);
+		if (inbox == null) {
+			return;
+		}
+		int unread = 0;
+		for (LinkedList<HostPacket> pktlist : inbox.values()) {
+			unread += pktlist.size();
+		}
+		if (unread > 0) {
+			droppedPackets += unread;
+			System.out.println(TextUtil.toString(CloudSim.clock()) + " [DROP]: CL #" + cloudletId + " left " + unread
+					+ " unread packet(s), " + droppedPackets + " dropped in this VM");
+		}
+	}
+
+	/**
+	 * @return the packets whose receiver cloudlet finished or was cancelled
+	 *         before it read them
+	 */
+	public int getDroppedPackets() {
+		return droppedPackets;
 	}
 
 	/**
@@ -526,7 +685,7 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 			ResCloudlet rcl = getCloudletPausedList().remove(position);
 
 			// it can go to the exec list
-			if ((currentCpus - usedPes) >= rcl.getNumberOfPes()) {
+			if (hasFreePes(rcl.getNumberOfPes())) {
 				rcl.setCloudletStatus(Cloudlet.INEXEC);
 				for (int i = 0; i < rcl.getNumberOfPes(); i++) {
 					rcl.setMachineAndPeId(0, i);
@@ -536,8 +695,7 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 				size *= rcl.getNumberOfPes();
 				rcl.getCloudlet().setCloudletLength(size);
 
-				getCloudletExecList().add(rcl);
-				usedPes += rcl.getNumberOfPes();
+				addToExecList(rcl);
 
 				// calculate the expected time for cloudlet completion
 				double capacity = 0.0;
@@ -590,15 +748,14 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 	@Override
 	public double cloudletSubmit(Cloudlet cloudlet, double fileTransferTime) {
 		// it can go to the exec list
-		if ((currentCpus - usedPes) >= cloudlet.getNumberOfPes()) {
+		if (hasFreePes(cloudlet.getNumberOfPes())) {
 			ResCloudlet rcl = new ResCloudlet(cloudlet);
 			rcl.setCloudletStatus(Cloudlet.INEXEC);
 			for (int i = 0; i < cloudlet.getNumberOfPes(); i++) {
 				rcl.setMachineAndPeId(0, i);
 			}
 
-			getCloudletExecList().add(rcl);
-			usedPes += cloudlet.getNumberOfPes();
+			addToExecList(rcl);
 		} else {// no enough free PEs: go to the waiting queue
 			System.out.println(TextUtil.toString(CloudSim.clock())
 					+ ": [ERROR]: EdgeCloudletSpaceSharedScheduler no enough free PEs: go to the waiting queue : CL #"
@@ -746,6 +903,7 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 		rcl.finalizeCloudlet();
 		Cloudlet cl = rcl.getCloudlet();
 		usedPes -= cl.getNumberOfPes();
+		removeRunning(cl.getCloudletId());
 		return cl;
 	}
 
@@ -918,18 +1076,54 @@ public class EdgeCloudletSpaceSharedScheduler extends CloudletScheduler {
 	}
 
 	public Datacenter getCloudletDC(Cloudlet cl) {
+		Vm vm = getCloudletVm(cl);
+		return vm == null ? null : vm.getHost().getDatacenter();
+	}
+
+	/**
+	 * @return the VM a cloudlet runs on, looked up in the VMs of the service
+	 *         or broker owning the cloudlet
+	 */
+	private Vm getCloudletVm(Cloudlet cl) {
+		if (cl.getVmId() == -1) {
+			return null;
+		}
 		SimEntity entity = CloudSim.getEntity(cl.getUserId());
-		;
-		Vm vm;
-		if (cl.getVmId() != -1) {
-			try {
-				vm = VmList.getById(((Service) entity).getVmList(), cl.getVmId());
-			} catch (Exception e) {
-				vm = VmList.getById(((EdgeDatacenterBroker) entity).getVmList(), cl.getVmId());
-			}
-			return vm.getHost().getDatacenter();
+		if (entity instanceof Service) {
+			return VmList.getById(((Service) entity).getVmList(), cl.getVmId());
 		}
-		return null;
+		return VmList.getById(((EdgeDatacenterBroker) entity).getVmList(), cl.getVmId());
+	}
+
+	/**
+	 * The scheduled completion of an EXECUTION stage.
+	 */
+	private static class StageTimer implements Comparable<StageTimer> {
+
+		final double deadline;
+
+		final long sequence;
+
+		final NetworkCloudlet cloudlet;
+
+		final int stage;
+
+		final int stagesVersion;
+
+		StageTimer(double deadline, long sequence, NetworkCloudlet cloudlet, int stage) {
+			this.deadline = deadline;
+			this.sequence = sequence;
+			this.cloudlet = cloudlet;
+			this.stage = stage;
+			this.stagesVersion = cloudlet.getStagesVersion();
+		}
+
+		@Override
+		public int compareTo(StageTimer o) {
+			int c = Double.compare(deadline, o.deadline);
+			return c != 0 ? c : Long.compare(sequence, o.sequence);
+		}
+
 	}
 
 }
@@ -0,0 +1,202 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.edge;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
+
+/**
+ * EdgeCloudletTimeSharedScheduler runs all cloudlets submitted to a VM at once and shares the PEs
+ * of the VM among them (processor sharing), like a multi-threaded service. Only cloudlets in an
+ * EXECUTION stage use the PEs; cloudlets waiting for a packet or sending one do not slow the others
+ * down. The time of an EXECUTION stage is the time it takes with all the PEs it requested, with more
+ * requested PEs than the VM has all stages are slowed down by the same share.
+ * <p>
+ * As all executing cloudlets progress at the same rate, the progress is kept as a single virtual
+ * time, i.e. the work done by a stage which executed all the time. A stage completes when the
+ * virtual time reaches its virtual finish time, which does not change with the share, so the stages
+ * are kept in a queue ordered by it. Starting or completing a stage costs O(log n), and only the
+ * next completion is scheduled.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class EdgeCloudletTimeSharedScheduler extends EdgeCloudletSpaceSharedScheduler {
+
+	/** remaining work below which a stage counts as complete, to absorb rounding errors */
+	private static final double EPSILON = 1e-9;
+
+	/** work done by a stage which executed since the start of the VM */
+	private double virtualTime;
+
+	/** time up to which the virtual time is accounted */
+	private double lastUpdate;
+
+	/** PEs requested by the cloudlets in an EXECUTION stage */
+	private int executingPes;
+
+	/** the running EXECUTION stages, by virtual finish time */
+	private PriorityQueue<Execution> executions;
+
+	/** the running EXECUTION stages, by cloudlet id */
+	private Map<Integer, Execution> executing;
+
+	private long sequence;
+
+	/** time of the last scheduled stage event */
+	private double scheduledTime;
+
+	public EdgeCloudletTimeSharedScheduler() {
+		super();
+		executions = new PriorityQueue<Execution>();
+		executing = new HashMap<Integer, Execution>();
+		scheduledTime = -1;
+	}
+
+	/**
+	 * Every cloudlet runs at once, there is no waiting list.
+	 */
+	@Override
+	protected boolean hasFreePes(int pes) {
+		return true;
+	}
+
+	@Override
+	protected void startExecution(NetworkCloudlet cl, int stage) {
+		advance();
+		Execution execution = new Execution(cl, stage, virtualTime + cl.getStageTime(stage), sequence++);
+		executions.add(execution);
+		executing.put(cl.getCloudletId(), execution);
+		executingPes += cl.getNumberOfPes();
+		reschedule();
+	}
+
+	@Override
+	protected void completeExecutions(double currentTime) {
+		advance();
+		while (!executions.isEmpty()) {
+			Execution execution = executions.peek();
+			if (!execution.active) {
+				executions.poll();
+				continue;
+			}
+			// a rest which would finish within the resolution of the clock is
+			// a rounding error as well
+			double rest = execution.virtualFinish - virtualTime;
+			if (rest > EPSILON * Math.max(1, execution.virtualFinish)
+					&& currentTime + rest / getShare() != currentTime) {
+				break;
+			}
+			executions.poll();
+			remove(execution);
+			if (isCurrentStage(execution.cloudlet, execution.stage, execution.stagesVersion)) {
+				completeExecution(execution.cloudlet);
+			}
+		}
+		reschedule();
+	}
+
+	@Override
+	protected void stopExecution(int cloudletId) {
+		Execution execution = executing.get(cloudletId);
+		if (execution != null) {
+			advance();
+			remove(execution);
+			reschedule();
+		}
+	}
+
+	private void remove(Execution execution) {
+		execution.active = false;
+		executing.remove(execution.cloudlet.getCloudletId());
+		executingPes -= execution.cloudlet.getNumberOfPes();
+	}
+
+	/**
+	 * @return the fraction of its requested PEs every executing cloudlet gets
+	 */
+	private double getShare() {
+		if (executingPes <= currentCpus) {
+			return 1;
+		}
+		return (double) currentCpus / executingPes;
+	}
+
+	/**
+	 * Accounts the progress of the executing stages since the last update.
+	 */
+	private void advance() {
+		double now = CloudSim.clock();
+		if (executingPes > 0 && now > lastUpdate) {
+			virtualTime += getShare() * (now - lastUpdate);
+		}
+		lastUpdate = now;
+	}
+
+	/**
+	 * Schedules the update of the VM for the next stage to complete, unless
+	 * an update is scheduled before.
+	 */
+	private void reschedule() {
+		while (!executions.isEmpty() && !executions.peek().active) {
+			executions.poll();
+		}
+		double share = getShare();
+		if (executions.isEmpty() || share <= 0) {
+			return;
+		}
+		Execution next = executions.peek();
+		double now = CloudSim.clock();
+		double delay = Math.max(0, next.virtualFinish - virtualTime) / share;
+		if (scheduledTime > now && scheduledTime <= now + delay) {
+			return;
+		}
+		scheduledTime = now + delay;
+		scheduleStageEvent(next.cloudlet, delay);
+	}
+
+	/**
+	 * A running EXECUTION stage.
+	 */
+	private static class Execution implements Comparable<Execution> {
+
+		final NetworkCloudlet cloudlet;
+
+		final int stage;
+
+		final int stagesVersion;
+
+		/** virtual time at which the stage completes */
+		final double virtualFinish;
+
+		final long sequence;
+
+		/** false once the stage completed or the cloudlet left the VM */
+		boolean active = true;
+
+		Execution(NetworkCloudlet cloudlet, int stage, double virtualFinish, long sequence) {
+			this.cloudlet = cloudlet;
+			this.stage = stage;
+			this.stagesVersion = cloudlet.getStagesVersion();
+			this.virtualFinish = virtualFinish;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Execution o) {
+			int c = Double.compare(virtualFinish, o.virtualFinish);
+			return c != 0 ? c : Long.compare(sequence, o.sequence);
+		}
+
+	}
+
+}
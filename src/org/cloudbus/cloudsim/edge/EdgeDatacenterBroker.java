@@ -8,13 +8,14 @@ package org.cloudbus.cloudsim.edge;
  * Copyright (c) 2009-2012, The University of Melbourne, Australia
  */
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.Objects;
 import java.util.Random;
@@ -22,16 +23,18 @@ import java.util.Random;
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.DatacenterCharacteristics;
 import org.cloudbus.cloudsim.Log;
-import org.cloudbus.cloudsim.NetworkTopology;
 import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.edge.lists.ServiceList;
 import org.cloudbus.cloudsim.edge.service.Service;
+import org.cloudbus.cloudsim.edge.service.ServiceRequest;
 import org.cloudbus.cloudsim.edge.util.BaseDatacenter;
 import org.cloudbus.cloudsim.edge.util.CustomLog;
+import org.cloudbus.cloudsim.edge.util.NearestDatacenters;
 import org.cloudbus.cloudsim.edge.util.Request;
 import org.cloudbus.cloudsim.edge.util.TextUtil;
 import org.cloudbus.cloudsim.edge.vm.T2Small;
@@ -43,7 +46,10 @@ import org.cloudbus.cloudsim.lists.VmList;
 import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
 import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
 import org.cloudbus.cloudsim.network.datacenter.NetworkDatacenter;
-import org.cloudbus.cloudsim.network.datacenter.TaskStage;
+import org.cloudbus.cloudsim.network.datacenter.StageProgram;
+import org.cloudbus.cloudsim.util.IntIntMap;
+import org.cloudbus.cloudsim.util.IntObjectMap;
+import org.cloudbus.cloudsim.util.IntSet;
 
 /**
  * DatacentreBroker represents a broker acting on behalf of a user.
@@ -93,10 +99,18 @@ public class EdgeDatacenterBroker extends SimEntity {
 
 	private NetworkDatacenter userDC;
 
+	/** The user datacenters and the other datacenters, the nearest to the user datacenter first. */
+	private NearestDatacenters nearestUserDcs;
+
+	private NearestDatacenters nearestDcs;
+
+	/** The cursor over the user datacenters not requested yet. */
+	private NearestDatacenters.Cursor userDcCursor;
+
 	/**
 	 * the services to their first Cloudlets [Cloudlet Id, Vm Id] maps.
 	 */
-	private Map<Integer, int[]> servicesToServiceCloudletsMap;
+	private IntObjectMap<int[]> servicesToServiceCloudletsMap;
 
 	/** The service list. */
 	protected List<? extends Service> serviceList;
@@ -120,20 +134,62 @@ public class EdgeDatacenterBroker extends SimEntity {
 	 * The amount of services which have already sent their first cloudlet
 	 */
 	private int serviceAllCloudletsSent = 0;
-	private Map<Integer, Boolean> serviceAllCloudletsSentMap;
+
+	/**
+	 * The services which have sent all their cloudlets.
+	 */
+	private IntSet servicesAllCloudletsSent;
 
 	/**
 	 * Which Cloudlet is responsible for which service.
 	 */
-	private Map<Integer, Integer> servicesToBrokerCloudletsMap;
+	private IntIntMap servicesToBrokerCloudletsMap;
+
+	/**
+	 * Which service each Broker Cloudlet is responsible for, the reverse of
+	 * servicesToBrokerCloudletsMap.
+	 */
+	private IntIntMap brokerCloudletsToServicesMap;
 
-	private Map<Integer, Boolean> servicesProcessingRequestMap;
+	/**
+	 * The services which are processing a request.
+	 */
+	private IntSet servicesProcessingRequest;
 
 	/**
 	 * List of IDs of request this broker has to process, important to process
 	 * the requests in the right order.
 	 */
-	private Map<Integer, List<Integer>> servicesTorequestIdMap;
+	private IntObjectMap<List<Integer>> servicesTorequestIdMap;
+
+	/**
+	 * The number of requests of each service which arrived and wait for it.
+	 */
+	private IntIntMap servicesToQueuedRequestsMap;
+
+	/**
+	 * The requests in flight by the id of their broker cloudlet (see
+	 * {@link NetworkConstants#requestScopedExecution}).
+	 */
+	private final IntObjectMap<ServiceRequest> requestsByCloudlet = new IntObjectMap<>();
+
+	/**
+	 * The programs of the cloudlets of this broker by the data of the request,
+	 * the first cloudlet of the service being the only role.
+	 */
+	private final Map<Long, StageProgram> requestStages = new HashMap<>();
+
+	/** The statistics of the requests in flight of each service. */
+	private final IntObjectMap<RequestStats> servicesToRequestStatsMap = new IntObjectMap<>();
+
+	/**
+	 * The requests admitted for each service which wait for it, the oldest
+	 * first (see {@link NetworkConstants#admissionControl}).
+	 */
+	private final IntObjectMap<ArrayDeque<QueuedRequest>> servicesToRequestQueueMap = new IntObjectMap<>();
+
+	/** The services whose queue of requests is checked again later. */
+	private final IntSet servicesPollingRequestQueue = new IntSet();
 
 	/**
 	 * Mapping of services to the time of their first request
@@ -163,21 +219,22 @@ public class EdgeDatacenterBroker extends SimEntity {
 	public EdgeDatacenterBroker(String name, final double lifeLength) throws Exception {
 		super(name);
 
-		setServiceList(new ArrayList<Service>());
-		setVmList(new ArrayList<Vm>());
-		setCloudletList(new ArrayList<>());
-		setCloudletReceivedList(new ArrayList<>());
-		setCloudletSubmittedList(new ArrayList<>());
+		setServiceList(ServiceList.<Service> createIndexedList());
+		setVmList(VmList.<Vm> createIndexedList());
+		setCloudletList(CloudletList.<NetworkCloudlet> createIndexedList());
+		setCloudletReceivedList(CloudletList.<Cloudlet> createIndexedList());
+		setCloudletSubmittedList(CloudletList.<Cloudlet> createIndexedList());
 		setPresetEvents(new ArrayList<>());
-		setServicesToServiceCloudletsMap(new HashMap<>());
-		setServicesToBrokerCloudletsMap(new HashMap<>());
-		setVmsCreatedList(new ArrayList<>());
+		setServicesToServiceCloudletsMap(new IntObjectMap<int[]>());
+		setServicesToBrokerCloudletsMap(new IntIntMap());
+		setVmsCreatedList(VmList.<Vm> createIndexedList());
 		setVmsToDatacentersMap(new HashMap<>());
 		this.lifeLength = lifeLength;
-		this.setServicesProcessingRequestMap(new HashMap<>());
-		this.setServiceAllCloudletsSentMap(new HashMap<>());
+		this.setServicesProcessingRequest(new IntSet());
+		this.setServicesAllCloudletsSent(new IntSet());
 		this.setServicesToFirstrequestTimeMap(new HashMap<>());
-		this.servicesTorequestIdMap = new HashMap<>();
+		this.servicesTorequestIdMap = new IntObjectMap<>();
+		this.servicesToQueuedRequestsMap = new IntIntMap();
 
 		setDatacenterIdsList(new LinkedList<Integer>());
 		setDatacenterRequestedIdsList(new ArrayList<Integer>());
@@ -223,6 +280,11 @@ public class EdgeDatacenterBroker extends SimEntity {
 		case CloudSimTagsExt.BROKER_MESSAGE:
 			processBrokerMessage(ev);
 			break;
+		// check again a queue of requests waiting for a busy service
+		case CloudSimTagsExt.BROKER_REQUEST_QUEUE:
+			servicesPollingRequestQueue.remove((int) ev.getData());
+			processRequestQueue((int) ev.getData());
+			break;
 		case CloudSimTagsExt.BROKER_DESTROY_ITSELF_NOW:
 			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": [INFO]: Broker #" + getId()
 					+ " TIME TO LIVE reached: processing SERVICE_DESTROY_ITSELF_NOW.");
@@ -234,6 +296,12 @@ public class EdgeDatacenterBroker extends SimEntity {
 		case CloudSimTagsExt.SERVICE_ALL_CLOUDLETS_SENT:
 			processServiceAllCloudletsSent(ev);
 			break;
+		case CloudSimTagsExt.SERVICE_REQUEST_ACK:
+			processServiceRequestAck(ev);
+			break;
+		case CloudSimTagsExt.SERVICE_REQUEST_REJECT:
+			processServiceRequestReject(ev);
+			break;
 		case CloudSimTags.CLOUDLET_RETURN:
 			processCloudletReturn(ev);
 			break;
@@ -310,26 +378,22 @@ public class EdgeDatacenterBroker extends SimEntity {
 	 */
 	public int getNextDcIdWithShortestDelay() {
 		int datacenterId = -1;
-		double delay = Double.MAX_VALUE;
-		int userDcId = -1;
-
-		// get the list of UDCs which have not been querried yet.
-		List<Integer> querrableDcIds = new ArrayList<>();
-		for (Integer dcId : datacenterIdsList) {
-			if (((NetworkDatacenter) CloudSim.getEntity(dcId)).isUserDC()
-					&& !getDatacenterRequestedIdsList().contains(dcId)) {
-				querrableDcIds.add(dcId);
+
+		if (getUserDC() == null) {
+			// get the list of UDCs which have not been querried yet.
+			List<Integer> querrableDcIds = new ArrayList<>();
+			for (Integer dcId : datacenterIdsList) {
+				if (((NetworkDatacenter) CloudSim.getEntity(dcId)).isUserDC()
+						&& !getDatacenterRequestedIdsList().contains(dcId)) {
+					querrableDcIds.add(dcId);
+				}
 			}
-		}
 
-		if (querrableDcIds.size() == 0) {
-			// All DCs have been querried
-			return datacenterId;
-		}
+			if (querrableDcIds.size() == 0) {
+				// All DCs have been querried
+				return datacenterId;
+			}
 
-		try {
-			userDcId = getUserDC().getId();
-		} catch (Exception e) {
 			Random rand = new Random();
 			datacenterId = querrableDcIds.get(rand.nextInt(querrableDcIds.size()));
 			Log.printLine(TextUtil.toString(CloudSim.clock()) + "[INFO]: EdgeDatacenterBroker " + getName()
@@ -338,17 +402,35 @@ public class EdgeDatacenterBroker extends SimEntity {
 		}
 
 		// this part is necessary when the user has more than one UVM
-		for (Integer dcId : querrableDcIds) {
-			if (userDcId == -1)
-				return dcId;
-
-			double tmpDelay = NetworkTopology.getDelay(userDcId, dcId);
-			if (tmpDelay < delay && !(getDatacenterRequestedIdsList().contains(dcId))) {
-				datacenterId = dcId;
-				delay = tmpDelay;
-			}
+		if (userDcCursor == null || userDcCursor.getDatacenters() != getNearestUserDcs()
+				|| userDcCursor.getTried() != getDatacenterRequestedIdsList()) {
+			userDcCursor = getNearestUserDcs().cursor(getDatacenterRequestedIdsList());
 		}
-		return datacenterId;
+		return userDcCursor.nearest();
+	}
+
+	/**
+	 * @return the user datacenters, the nearest to the user datacenter of
+	 *         this broker first
+	 */
+	public NearestDatacenters getNearestUserDcs() {
+		int userDcId = getUserDC() == null ? -1 : getUserDC().getId();
+		if (nearestUserDcs == null || nearestUserDcs.getOriginId() != userDcId) {
+			nearestUserDcs = new NearestDatacenters(userDcId, true);
+		}
+		return nearestUserDcs;
+	}
+
+	/**
+	 * @return the datacenters which are not user datacenters, the nearest to
+	 *         the user datacenter of this broker first
+	 */
+	public NearestDatacenters getNearestDcs() {
+		int userDcId = getUserDC() == null ? -1 : getUserDC().getId();
+		if (nearestDcs == null || nearestDcs.getOriginId() != userDcId) {
+			nearestDcs = new NearestDatacenters(userDcId, false);
+		}
+		return nearestDcs;
 	}
 
 	/**
@@ -361,6 +443,11 @@ public class EdgeDatacenterBroker extends SimEntity {
 	 */
 	protected void processCloudletReturn(SimEvent ev) {
 		Cloudlet cloudlet = (Cloudlet) ev.getData();
+		ServiceRequest request = requestsByCloudlet.remove(cloudlet.getCloudletId());
+		if (request != null) {
+			processRequestCloudletReturn(cloudlet, request);
+			return;
+		}
 		getCloudletReceivedList().add(cloudlet);
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Broker #" + getId() + ": Cloudlet "
 				+ cloudlet.getCloudletId() + " received");
@@ -393,17 +480,82 @@ public class EdgeDatacenterBroker extends SimEntity {
 		}
 	}
 
+	/**
+	 * Processes the return of the cloudlet of a request: the request has got
+	 * its response, so another one of its service may be dispatched.
+	 * 
+	 * @param cloudlet
+	 *            the cloudlet of the request
+	 * @param request
+	 *            the request
+	 */
+	protected void processRequestCloudletReturn(Cloudlet cloudlet, ServiceRequest request) {
+		cloudletsSubmitted--;
+		getCloudletSubmittedList().remove(cloudlet);
+		Service.removeCloudletIdServiceMapping(cloudlet.getCloudletId());
+
+		RequestStats stats = getRequestStats(request.getServiceId());
+		stats.inFlight--;
+		if (cloudlet.getCloudletStatus() == Cloudlet.SUCCESS) {
+			stats.completed++;
+			stats.lastCompletion = CloudSim.clock();
+			stats.totalResponseTime += CloudSim.clock() - request.getDispatchTime();
+		}
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Broker #" + getId() + ": Cloudlet "
+				+ cloudlet.getCloudletId() + " of request #" + request.getRequestId() + " to Service #"
+				+ request.getServiceId() + " received, " + stats.inFlight + " request(s) in flight");
+		if (NetworkConstants.admissionControl) {
+			processRequestQueue(request.getServiceId());
+		}
+	}
+
+	/**
+	 * Processes the acknowledgement of a request by its service, which has
+	 * submitted the cloudlets of the request: the cloudlet of the broker is
+	 * submitted now, to send the request to the first of them.
+	 * 
+	 * @param ev
+	 *            a SimEvent object with the {@link ServiceRequest}
+	 */
+	protected void processServiceRequestAck(SimEvent ev) {
+		ServiceRequest request = (ServiceRequest) ev.getData();
+		NetworkCloudlet first = request.getFirstCloudlet();
+		createStages(request.getBrokerCloudlet(), first.getCloudletId(), first.getVmId(), request.getMessage());
+		submitCloudlet(request.getBrokerCloudlet());
+	}
+
+	/**
+	 * Processes a request its service dropped because it is over its
+	 * lifetime: the request is no longer in flight. It was admitted, so it
+	 * counts as dropped, not as rejected.
+	 * 
+	 * @param ev
+	 *            a SimEvent object with the {@link ServiceRequest}
+	 */
+	protected void processServiceRequestReject(SimEvent ev) {
+		ServiceRequest request = (ServiceRequest) ev.getData();
+		int cloudletId = request.getBrokerCloudlet().getCloudletId();
+		requestsByCloudlet.remove(cloudletId);
+		Service.removeCloudletIdServiceMapping(cloudletId);
+
+		RequestStats stats = getRequestStats(request.getServiceId());
+		stats.inFlight--;
+		stats.dropped++;
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Broker #" + getId() + ": Request #"
+				+ request.getRequestId() + " rejected by Service #" + request.getServiceId() + ", "
+				+ stats.inFlight + " request(s) in flight");
+		if (NetworkConstants.admissionControl) {
+			processRequestQueue(request.getServiceId());
+		}
+	}
+
 	public void processServiceAllCloudletsSent(SimEvent ev) {
-		getServiceAllCloudletsSentMap().put(ev.getSource(), true);
+		getServicesAllCloudletsSent().add(ev.getSource());
 		System.out.println("Amount of services : " + getServiceList().size());
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Broker : Service #" + ev.getSource()
 				+ " sent all its Cloudlets");
 
-		int amount = 0;
-		for (Entry<Integer, Boolean> entry : getServiceAllCloudletsSentMap().entrySet()) {
-			if (entry.getValue())
-				amount++;
-		}
+		int amount = getServicesAllCloudletsSent().size();
 		System.out.println("Amount of services whose cloudlets were completely sent: " + amount);
 		// Now submitting Cloudlet
 		submitCloudlet(CloudletList.getById(getCloudletList(), getServicesToBrokerCloudletsMap().get(ev.getSource())));
@@ -432,7 +584,7 @@ public class EdgeDatacenterBroker extends SimEntity {
 		System.out.println("PROCESSING SERVICE_DESTROYED_ITSELF FROM SERVICE #" + serviceId);
 
 		// set the flag to specify that this broker is no longer processing
-		getServicesProcessingRequestMap().put(serviceId, false);
+		getServicesProcessingRequest().remove(serviceId);
 
 		NetworkCloudlet brokerCloudlet = CloudletList.getById(getCloudletList(),
 				getServicesToBrokerCloudletsMap().get(serviceId));
@@ -494,7 +646,7 @@ public class EdgeDatacenterBroker extends SimEntity {
 		}
 
 		// Update the cloudlets before we send the kill event
-		vm.getHost().updateVmsProcessing(CloudSim.clock());
+		vm.getHost().getDatacenter().updateHostProcessing(vm.getHost());
 
 		Log.printLine(CloudSim.clock() + ": Broker #" + getId() + ": Trying to Destroy VM #" + vm.getId() + " in DC #"
 				+ getVmsToDatacentersMap().get(vm.getId()));
@@ -523,44 +675,313 @@ public class EdgeDatacenterBroker extends SimEntity {
 
 		Service service = (Service) CloudSim.getEntity(serviceId);
 
+		// a request which waited for the service carries the time it arrived
+		double arrivalTime = dat.length > 3 ? (double) dat[3] : CloudSim.clock();
+		if (dat.length > 3) {
+			dequeueRequest(serviceId);
+		}
+
 		if (this.getLifeLength() > 0 && CloudSim.clock() > this.getLifeLength()) {
 			// Drop Request, since it is over this entity lifetime
 			Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Broker #" + getId()
 					+ " DROPING REQUEST... to Service #" + serviceId + "... since over this broker lifetime");
+			if (NetworkConstants.admissionControl) {
+				rejectRequest(serviceId, requestId);
+			}
 
 		} else if (service.getLifeLength() > 0 && CloudSim.clock() > service.getLifeLength()) {
 			// Drop Request, since it is over the service lifetime
 			Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Broker #" + getId()
 					+ " DROPING REQUEST... to Service #" + serviceId + "... since over this service lifetime");
+			if (NetworkConstants.admissionControl) {
+				rejectRequest(serviceId, requestId);
+			}
+
+		} else if (NetworkConstants.admissionControl) {
+			admitRequest(requestId, serviceId, msg);
 
 		} else {
-			boolean isServiceProcessing = getServicesProcessingRequestMap().get(serviceId);
-			boolean containsBrokerId = getCloudletList().contains(brokerCloudlet);
-			boolean serviceHasCloudletMapping = getServicesToServiceCloudletsMap().containsKey(serviceId);
+			boolean isServiceReady = isServiceReady(service, brokerCloudlet);
 			boolean RequestIsNext = this.getServicesTorequestIdMap().get(serviceId).get(0) == requestId;
 			// if (!getServicesProcessingRequestMap().get(serviceId) &&
 			// getCloudletList().contains(brokerCloudlet)
 			// && getServicesToServiceCloudletsMap().containsKey(serviceId)
 			// && this.getServicesTorequestIdList().get(serviceId).get(0) ==
 			// requestId) {
-			if (!isServiceProcessing && containsBrokerId && serviceHasCloudletMapping && RequestIsNext) {
+			if (isServiceReady && RequestIsNext) {
 				// remove the request from the service request list
 				this.getServicesTorequestIdMap().get(serviceId).remove(0);
-				// mark this service as busy
-				getServicesProcessingRequestMap().put(serviceId, true);
-				createStages(serviceId, msg);
-				Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Broker #" + getId()
-						+ " process Request... sending to Service #" + serviceId);
-				sendNow(serviceId, CloudSimTagsExt.BROKER_MESSAGE, msg);
+				sendRequest(requestId, service, (NetworkCloudlet) brokerCloudlet, msg);
 			} else {
 				// System.out.println(TextUtil.toString(CloudSim.clock()) +
 				// "[DEBUG]: Broker #" + getId()
 				// + " postponing message sending to Service #" + serviceId + "
 				// for 100ms because broker not ready yet");
-				send(getId(), 100.0, CloudSimTagsExt.BROKER_MESSAGE, ev.getData());
+				getServicesToQueuedRequestsMap().put(serviceId, getQueuedRequests(serviceId) + 1);
+				send(getId(), 100.0, CloudSimTagsExt.BROKER_MESSAGE,
+						new Object[] { requestId, serviceId, msg, arrivalTime });
+			}
+		}
+
+	}
+
+	/**
+	 * @param service
+	 *            a service
+	 * @param brokerCloudlet
+	 *            the cloudlet of this broker for the service
+	 * @return $true if the service can take another request now
+	 */
+	protected boolean isServiceReady(Service service, Cloudlet brokerCloudlet) {
+		int serviceId = service.getId();
+		boolean isServiceProcessing = NetworkConstants.requestScopedExecution
+				? getRequestStats(serviceId).inFlight >= NetworkConstants.maxInFlightRequests
+				: getServicesProcessingRequest().contains(serviceId);
+		boolean containsBrokerId = getCloudletList().contains(brokerCloudlet);
+		boolean serviceHasCloudletMapping = getServicesToServiceCloudletsMap().containsKey(serviceId);
+		return !isServiceProcessing && containsBrokerId && serviceHasCloudletMapping;
+	}
+
+	/**
+	 * Sends a request to a service which is ready for it.
+	 * 
+	 * @param requestId
+	 *            the id of the request
+	 * @param service
+	 *            the service
+	 * @param brokerCloudlet
+	 *            the cloudlet of this broker for the service
+	 * @param msg
+	 *            the message of the request
+	 */
+	protected void sendRequest(int requestId, Service service, NetworkCloudlet brokerCloudlet, Message msg) {
+		int serviceId = service.getId();
+		if (service.getAutoscaler() != null) {
+			// the request goes to the next replica of each tier
+			service.getAutoscaler().balance();
+			getServicesToServiceCloudletsMap().get(serviceId)[1] = service.getFirstVmId();
+		}
+		if (NetworkConstants.requestScopedExecution) {
+			dispatchRequest(requestId, service, brokerCloudlet, msg);
+		} else {
+			// mark this service as busy
+			getServicesProcessingRequest().add(serviceId);
+			if (NetworkConstants.admissionControl) {
+				RequestStats stats = getRequestStats(serviceId);
+				stats.inFlight++;
+				stats.peakInFlight = Math.max(stats.peakInFlight, stats.inFlight);
+				if (stats.firstDispatch < 0) {
+					stats.firstDispatch = CloudSim.clock();
+				}
+				stats.lastDispatch = CloudSim.clock();
 			}
+			createStages(serviceId, msg);
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Broker #" + getId()
+					+ " process Request... sending to Service #" + serviceId);
+			sendNow(serviceId, CloudSimTagsExt.BROKER_MESSAGE, msg);
 		}
+	}
 
+	/**
+	 * Admits a request into the queue of its service (see
+	 * {@link NetworkConstants#admissionControl}), unless the queue is full and
+	 * the shedding policy drops this request, and sends the queue to the
+	 * service as far as it is ready.
+	 * 
+	 * @param requestId
+	 *            the id of the request
+	 * @param serviceId
+	 *            the id of its service
+	 * @param msg
+	 *            the message of the request
+	 */
+	protected void admitRequest(int requestId, int serviceId, Message msg) {
+		List<Integer> ids = getServicesTorequestIdMap().get(serviceId);
+		if (ids != null) {
+			ids.remove(Integer.valueOf(requestId));
+		}
+		RequestStats stats = getRequestStats(serviceId);
+		ArrayDeque<QueuedRequest> queue = getRequestQueue(serviceId);
+		expireRequests(serviceId, queue, stats);
+
+		double deadline = NetworkConstants.requestDeadline > 0 ? CloudSim.clock() + NetworkConstants.requestDeadline
+				: Double.MAX_VALUE;
+		QueuedRequest request = new QueuedRequest(requestId, msg, deadline);
+		if (queue.size() >= NetworkConstants.requestQueueCapacity) {
+			QueuedRequest shed = selectShedRequest(queue, request, stats);
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Broker #" + getId() + " DROPING REQUEST #"
+					+ shed.requestId + "... to Service #" + serviceId + "... since its queue is full");
+			if (shed == request) {
+				stats.rejected++;
+				return;
+			}
+			// the shed request was admitted on its arrival
+			queue.remove(shed);
+			stats.dropped++;
+		}
+		queue.add(request);
+		stats.accepted++;
+		processRequestQueue(serviceId);
+	}
+
+	/**
+	 * Sends the requests waiting in the queue of a service to it, as many as
+	 * it is ready for, and checks the queue again in 100 ms if some are left.
+	 * The expired requests are dropped, and all the requests if the service or
+	 * this broker are over their lifetime.
+	 * 
+	 * @param serviceId
+	 *            the id of the service
+	 */
+	protected void processRequestQueue(int serviceId) {
+		ArrayDeque<QueuedRequest> queue = servicesToRequestQueueMap.get(serviceId);
+		if (queue == null || queue.isEmpty()) {
+			return;
+		}
+		RequestStats stats = getRequestStats(serviceId);
+		Service service = (Service) CloudSim.getEntity(serviceId);
+		if ((this.getLifeLength() > 0 && CloudSim.clock() > this.getLifeLength())
+				|| (service.getLifeLength() > 0 && CloudSim.clock() > service.getLifeLength())) {
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Broker #" + getId() + " DROPING "
+					+ queue.size() + " REQUEST(S)... to Service #" + serviceId + "... since over its lifetime");
+			stats.dropped += queue.size();
+			queue.clear();
+			return;
+		}
+		expireRequests(serviceId, queue, stats);
+
+		Cloudlet brokerCloudlet = CloudletList.getById(getCloudletList(),
+				getServicesToBrokerCloudletsMap().get(serviceId));
+		while (!queue.isEmpty() && isServiceReady(service, brokerCloudlet)) {
+			QueuedRequest request = queue.poll();
+			sendRequest(request.requestId, service, (NetworkCloudlet) brokerCloudlet, request.message);
+		}
+		if (!queue.isEmpty() && servicesPollingRequestQueue.add(serviceId)) {
+			send(getId(), 100.0, CloudSimTagsExt.BROKER_REQUEST_QUEUE, serviceId);
+		}
+	}
+
+	/**
+	 * Drops the requests of a queue which are past their deadline.
+	 */
+	private void expireRequests(int serviceId, ArrayDeque<QueuedRequest> queue, RequestStats stats) {
+		for (Iterator<QueuedRequest> it = queue.iterator(); it.hasNext();) {
+			QueuedRequest request = it.next();
+			if (CloudSim.clock() > request.deadline) {
+				it.remove();
+				stats.expired++;
+				Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Broker #" + getId()
+						+ " DROPING REQUEST #" + request.requestId + "... to Service #" + serviceId
+						+ "... since past its deadline");
+			}
+		}
+	}
+
+	/**
+	 * @param queue
+	 *            a full queue of requests
+	 * @param arriving
+	 *            a request arriving for it
+	 * @param stats
+	 *            the statistics of the requests of the service
+	 * @return the request to drop, see {@link NetworkConstants#sheddingPolicy}.
+	 *         The slack of a request is the time left before its deadline when
+	 *         it is expected to be dispatched, after the requests ahead of it
+	 *         have taken the mean response time of the service, shared by the
+	 *         requests in flight at once; before any request has completed it
+	 *         is the time left before its deadline.
+	 */
+	private QueuedRequest selectShedRequest(ArrayDeque<QueuedRequest> queue, QueuedRequest arriving,
+			RequestStats stats) {
+		switch (NetworkConstants.sheddingPolicy) {
+		case NetworkConstants.DROP_OLDEST:
+			return queue.peek();
+		case NetworkConstants.DROP_LEAST_SLACK:
+			double turn = stats.completed > 0
+					? stats.totalResponseTime / stats.completed / getMaxRequestsInFlight() : 0;
+			QueuedRequest shed = arriving;
+			double leastSlack = arriving.deadline - CloudSim.clock() - queue.size() * turn;
+			int position = 0;
+			for (QueuedRequest request : queue) {
+				double slack = request.deadline - CloudSim.clock() - position * turn;
+				if (slack < leastSlack) {
+					leastSlack = slack;
+					shed = request;
+				}
+				position++;
+			}
+			return shed;
+		default:
+			return arriving;
+		}
+	}
+
+	/**
+	 * Counts a request dropped on its arrival.
+	 */
+	private void rejectRequest(int serviceId, int requestId) {
+		List<Integer> ids = getServicesTorequestIdMap().get(serviceId);
+		if (ids != null) {
+			ids.remove(Integer.valueOf(requestId));
+		}
+		getRequestStats(serviceId).rejected++;
+	}
+
+	private ArrayDeque<QueuedRequest> getRequestQueue(int serviceId) {
+		ArrayDeque<QueuedRequest> queue = servicesToRequestQueueMap.get(serviceId);
+		if (queue == null) {
+			queue = new ArrayDeque<>();
+			servicesToRequestQueueMap.put(serviceId, queue);
+		}
+		return queue;
+	}
+
+	/**
+	 * @return the number of requests a service processes at once
+	 */
+	private static int getMaxRequestsInFlight() {
+		return NetworkConstants.requestScopedExecution ? NetworkConstants.maxInFlightRequests : 1;
+	}
+
+	/**
+	 * Dispatches a request to run on cloudlets of its own (see
+	 * {@link ServiceRequest}), with a copy of the cloudlet of the broker for
+	 * the service.
+	 * 
+	 * @param requestId
+	 *            the id of the request
+	 * @param service
+	 *            the service
+	 * @param brokerCloudlet
+	 *            the cloudlet of the broker for the service
+	 * @param msg
+	 *            the message of the request
+	 */
+	protected void dispatchRequest(int requestId, Service service, NetworkCloudlet brokerCloudlet, Message msg) {
+		NetworkCloudlet cloudlet = new NetworkCloudlet(brokerCloudlet.getCloudletLength(),
+				brokerCloudlet.getNumberOfPes(), brokerCloudlet.getCloudletFileSize(),
+				brokerCloudlet.getCloudletOutputSize(), brokerCloudlet.getMemory(),
+				brokerCloudlet.getUtilizationModelCpu(), brokerCloudlet.getUtilizationModelRam(),
+				brokerCloudlet.getUtilizationModelBw(), getId());
+		cloudlet.setVmType(brokerCloudlet.getVmType());
+		cloudlet.setVmId(brokerCloudlet.getVmId());
+		cloudlet.setRequestId(requestId);
+		Service.addCloudletIdServiceMapping(cloudlet.getCloudletId(), service);
+
+		ServiceRequest request = new ServiceRequest(requestId, service.getId(), msg, cloudlet, CloudSim.clock());
+		requestsByCloudlet.put(cloudlet.getCloudletId(), request);
+
+		RequestStats stats = getRequestStats(service.getId());
+		stats.inFlight++;
+		stats.peakInFlight = Math.max(stats.peakInFlight, stats.inFlight);
+		if (stats.firstDispatch < 0) {
+			stats.firstDispatch = CloudSim.clock();
+		}
+
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Broker #" + getId() + " process Request #"
+				+ requestId + "... sending to Service #" + service.getId() + ", " + stats.inFlight
+				+ " request(s) in flight");
+		sendNow(service.getId(), CloudSimTagsExt.SERVICE_REQUEST, request);
 	}
 
 	/**
@@ -615,8 +1036,9 @@ public class EdgeDatacenterBroker extends SimEntity {
 			ncl.setVmId(eVm.getId());
 			getCloudletList().add(ncl);
 			getServicesToBrokerCloudletsMap().put(serv.getId(), ncl.getCloudletId());
-			getServicesProcessingRequestMap().put(serv.getId(), false);
-			getServiceAllCloudletsSentMap().put(serv.getId(), false);
+			brokerCloudletsToServicesMap.put(ncl.getCloudletId(), serv.getId());
+			getServicesProcessingRequest().remove(serv.getId());
+			getServicesAllCloudletsSent().remove(serv.getId());
 			getVmList().add(eVm);
 		}
 		for (Vm vm : getVmList()) {
@@ -680,6 +1102,26 @@ public class EdgeDatacenterBroker extends SimEntity {
 		}
 		clearDatacenters();
 
+		for (int slot = servicesToRequestStatsMap.nextSlot(-1); slot >= 0; slot = servicesToRequestStatsMap
+				.nextSlot(slot)) {
+			RequestStats stats = servicesToRequestStatsMap.valueAt(slot);
+			double period = (stats.lastCompletion - stats.firstDispatch) / 1000.0;
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Broker #" + getId() + ": Service #"
+					+ servicesToRequestStatsMap.keyAt(slot) + " completed " + stats.completed + " request(s), "
+					+ TextUtil.toString(period > 0 ? stats.completed / period : 0) + " per second, mean response "
+					+ TextUtil.toString(stats.completed > 0 ? stats.totalResponseTime / stats.completed : 0)
+					+ ", with up to " + stats.peakInFlight + " of " + getMaxRequestsInFlight() + " in flight");
+			if (NetworkConstants.admissionControl) {
+				ArrayDeque<QueuedRequest> queue = servicesToRequestQueueMap
+						.get(servicesToRequestStatsMap.keyAt(slot));
+				Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Broker #" + getId() + ": Service #"
+						+ servicesToRequestStatsMap.keyAt(slot) + " accepted " + stats.accepted + " and rejected "
+						+ stats.rejected + " request(s) on arrival, of the accepted ones " + stats.expired
+						+ " expired, " + stats.dropped + " were dropped later and "
+						+ (queue == null ? 0 : queue.size()) + " are still queued");
+			}
+		}
+
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Broker #" + getId() + " is shutting down...");
 	}
 
@@ -1009,7 +1451,7 @@ public class EdgeDatacenterBroker extends SimEntity {
 	/**
 	 * @return the servicesToServiceCloudletsMap
 	 */
-	public Map<Integer, int[]> getServicesToServiceCloudletsMap() {
+	public IntObjectMap<int[]> getServicesToServiceCloudletsMap() {
 		return servicesToServiceCloudletsMap;
 	}
 
@@ -1017,7 +1459,7 @@ public class EdgeDatacenterBroker extends SimEntity {
 	 * @param servicesToServiceCloudletsMap
 	 *            the servicesToServiceCloudletsMap to set
 	 */
-	public void setServicesToServiceCloudletsMap(Map<Integer, int[]> servicesToCloudletsMap) {
+	public void setServicesToServiceCloudletsMap(IntObjectMap<int[]> servicesToCloudletsMap) {
 		this.servicesToServiceCloudletsMap = servicesToCloudletsMap;
 	}
 
@@ -1148,11 +1590,7 @@ public class EdgeDatacenterBroker extends SimEntity {
 	}
 
 	public int getServiceIdForCloudletId(int cloudletId) {
-		for (Map.Entry<Integer, Integer> entry : getServicesToBrokerCloudletsMap().entrySet()) {
-			if (entry.getValue() == cloudletId)
-				return entry.getKey();
-		}
-		return -1;
+		return brokerCloudletsToServicesMap.get(cloudletId);
 	}
 
 	public void createStages(int serviceId, Message msg) {
@@ -1162,30 +1600,47 @@ public class EdgeDatacenterBroker extends SimEntity {
 		int firstCloudletId = serviceData[0];
 		int firstVmId = serviceData[1];
 
-		cloudlet.setStages(new ArrayList<TaskStage>());
-
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": [INFO]: Broker #" + getId()
 				+ ": called createStages with service # " + serviceId + ", service 1st CL #" + firstCloudletId
 				+ " and service 1st CL VM #" + firstVmId + " Cloudlet #" + cloudlet.getCloudletId() + " and Message "
 				+ msg + " and # of Cloudlet Submitted: " + getCloudletSubmittedList().size());
 
+		createStages(cloudlet, firstCloudletId, firstVmId, msg);
+	}
+
+	/**
+	 * Creates the stages of a cloudlet of the broker, which sends a request to
+	 * the first cloudlet of a service and waits for its response.
+	 * 
+	 * @param cloudlet
+	 *            the cloudlet of the broker
+	 * @param firstCloudletId
+	 *            the id of the first cloudlet of the service
+	 * @param firstVmId
+	 *            the id of its VM
+	 * @param msg
+	 *            the message of the request, or null
+	 */
+	public void createStages(NetworkCloudlet cloudlet, int firstCloudletId, int firstVmId, Message msg) {
 		long data = (msg != null) ? msg.getMips() + CloudSimTagsExt.DATA_SIZE : CloudSimTagsExt.DATA_SIZE;
 
-		cloudlet.setCurrStagenum(-1);
+		StageProgram program = requestStages.get(data);
+		if (program == null) {
+			program = new StageProgram.Builder()
+					// sending request to the Services.
+					.add(NetworkConstants.WAIT_SEND, data, 0, 0)
+					// waiting for responses from the services.
+					.add(NetworkConstants.WAIT_RECV, data, 0, 0).build();
+			requestStages.put(data, program);
+		}
 
-		// sending request to the Services.
 		cloudlet.setSubmittime(CloudSim.clock());
-		cloudlet.getStages().add(new TaskStage(NetworkConstants.WAIT_SEND, data, 0, 0, cloudlet.getMemory(), firstVmId,
-				firstCloudletId));
-
-		// waiting for responses from the services.
-		cloudlet.getStages().add(new TaskStage(NetworkConstants.WAIT_RECV, data, 0, 1, cloudlet.getMemory(), firstVmId,
-				firstCloudletId));
-
+		cloudlet.setProgram(program, new int[] { firstCloudletId }, new int[] { firstVmId });
+		cloudlet.setCurrStagenum(-1);
 		cloudlet.setNumStage(2);
 
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": [INFO]: Broker #" + getId() + " Cloudlet #"
-				+ cloudlet.getCloudletId() + " has " + cloudlet.getStages().size() + " Stages");
+				+ cloudlet.getCloudletId() + " has " + cloudlet.getStageCount() + " Stages");
 
 	}
 
@@ -1270,7 +1725,7 @@ public class EdgeDatacenterBroker extends SimEntity {
 			}
 
 			// Update the cloudlets before we send the kill event
-			vm.getHost().updateVmsProcessing(CloudSim.clock());
+			vm.getHost().getDatacenter().updateHostProcessing(vm.getHost());
 
 			Log.printLine(CloudSim.clock() + ": Broker #" + getId() + ": Trying to Destroy VM #" + vm.getId()
 					+ " in DC #" + getVmsToDatacentersMap().get(vm.getId()));
@@ -1369,13 +1824,11 @@ public class EdgeDatacenterBroker extends SimEntity {
 	 */
 	public void resetCloudlets() {
 		setCloudletList(getCloudletReceivedList().size() > 0 ? getCloudletReceivedList() : getCloudletList());
-		setCloudletSubmittedList(new ArrayList<Cloudlet>());
-		setCloudletReceivedList(new ArrayList<Cloudlet>());
+		setCloudletSubmittedList(CloudletList.<Cloudlet> createIndexedList());
+		setCloudletReceivedList(CloudletList.<Cloudlet> createIndexedList());
 		setCloudletsSubmitted(0);
 		setServiceAllCloudletsSent(0);
-		for (Service service : getServiceList()) {
-			getServicesProcessingRequestMap().put(service.getId(), false);
-		}
+		getServicesProcessingRequest().clear();
 
 		for (NetworkCloudlet networkCloudlet : getCloudletList()) {
 			networkCloudlet.reset();
@@ -1391,58 +1844,120 @@ public class EdgeDatacenterBroker extends SimEntity {
 		getCloudletReceivedList().remove(networkCloudlet);
 		getCloudletList().add(networkCloudlet);
 
-		for (Map.Entry<Integer, Integer> entry : getServicesToBrokerCloudletsMap().entrySet()) {
-			if (entry.getValue() == networkCloudlet.getCloudletId()) {
-				int serviceId = entry.getKey();
-				getServicesProcessingRequestMap().put(serviceId, false);
-				getServiceAllCloudletsSentMap().put(serviceId, false);
-				break;
-			}
+		int serviceId = getServiceIdForCloudletId(networkCloudlet.getCloudletId());
+		if (serviceId != -1) {
+			getServicesProcessingRequest().remove(serviceId);
+			getServicesAllCloudletsSent().remove(serviceId);
 		}
 
+		boolean success = networkCloudlet.getCloudletStatus() == Cloudlet.SUCCESS;
 		networkCloudlet.reset();
+
+		if (serviceId != -1 && NetworkConstants.admissionControl) {
+			// the request of the service got its response, unless its cloudlet failed
+			RequestStats stats = getRequestStats(serviceId);
+			if (stats.inFlight > 0) {
+				stats.inFlight--;
+				if (success) {
+					stats.completed++;
+					stats.lastCompletion = CloudSim.clock();
+					stats.totalResponseTime += CloudSim.clock() - stats.lastDispatch;
+				}
+			}
+			processRequestQueue(serviceId);
+		}
 	}
 
-	public Map<Integer, Integer> getServicesToBrokerCloudletsMap() {
+	public IntIntMap getServicesToBrokerCloudletsMap() {
 		return servicesToBrokerCloudletsMap;
 	}
 
-	public void setServicesToBrokerCloudletsMap(Map<Integer, Integer> servicesToBrokerCloudletsMap) {
+	public void setServicesToBrokerCloudletsMap(IntIntMap servicesToBrokerCloudletsMap) {
 		this.servicesToBrokerCloudletsMap = servicesToBrokerCloudletsMap;
+		brokerCloudletsToServicesMap = new IntIntMap(servicesToBrokerCloudletsMap.size());
+		for (int slot = servicesToBrokerCloudletsMap.nextSlot(-1); slot >= 0; slot = servicesToBrokerCloudletsMap
+				.nextSlot(slot)) {
+			brokerCloudletsToServicesMap.put(servicesToBrokerCloudletsMap.valueAt(slot),
+					servicesToBrokerCloudletsMap.keyAt(slot));
+		}
 	}
 
-	public Map<Integer, Boolean> getServicesProcessingRequestMap() {
-		return servicesProcessingRequestMap;
+	public IntSet getServicesProcessingRequest() {
+		return servicesProcessingRequest;
 	}
 
-	public void setServicesProcessingRequestMap(Map<Integer, Boolean> servicesProcessingRequestMap) {
-		this.servicesProcessingRequestMap = servicesProcessingRequestMap;
+	public void setServicesProcessingRequest(IntSet servicesProcessingRequest) {
+		this.servicesProcessingRequest = servicesProcessingRequest;
 	}
 
-	public Map<Integer, Boolean> getServiceAllCloudletsSentMap() {
-		return serviceAllCloudletsSentMap;
+	public IntSet getServicesAllCloudletsSent() {
+		return servicesAllCloudletsSent;
 	}
 
-	public void setServiceAllCloudletsSentMap(Map<Integer, Boolean> serviceAllCloudletsSentMap) {
-		this.serviceAllCloudletsSentMap = serviceAllCloudletsSentMap;
+	public void setServicesAllCloudletsSent(IntSet servicesAllCloudletsSent) {
+		this.servicesAllCloudletsSent = servicesAllCloudletsSent;
 	}
 
 	public void addRequestId(int serviceId, int requestId) {
-		List<Integer> ids;
-		if (this.getServicesTorequestIdMap().containsKey(serviceId)) {
-			ids = this.getServicesTorequestIdMap().get(serviceId);
-			ids.add(requestId);
-		} else {
+		List<Integer> ids = this.getServicesTorequestIdMap().get(serviceId);
+		if (ids == null) {
 			ids = new ArrayList<>();
-			ids.add(requestId);
+			this.getServicesTorequestIdMap().put(serviceId, ids);
 		}
-		this.getServicesTorequestIdMap().put(serviceId, ids);
+		ids.add(requestId);
 	}
 
-	public Map<Integer, List<Integer>> getServicesTorequestIdMap() {
+	public IntObjectMap<List<Integer>> getServicesTorequestIdMap() {
 		return servicesTorequestIdMap;
 	}
 
+	/**
+	 * @param serviceId
+	 *            the id of a service
+	 * @return the number of its requests dispatched which have not got their
+	 *         response yet
+	 */
+	public int getRequestsInFlight(int serviceId) {
+		RequestStats stats = servicesToRequestStatsMap.get(serviceId);
+		return stats == null ? 0 : stats.inFlight;
+	}
+
+	private RequestStats getRequestStats(int serviceId) {
+		RequestStats stats = servicesToRequestStatsMap.get(serviceId);
+		if (stats == null) {
+			stats = new RequestStats();
+			servicesToRequestStatsMap.put(serviceId, stats);
+		}
+		return stats;
+	}
+
+	public IntIntMap getServicesToQueuedRequestsMap() {
+		return servicesToQueuedRequestsMap;
+	}
+
+	/**
+	 * @param serviceId
+	 *            the id of a service
+	 * @return the number of its requests which arrived and wait for it
+	 */
+	public int getQueuedRequests(int serviceId) {
+		if (NetworkConstants.admissionControl) {
+			ArrayDeque<QueuedRequest> queue = servicesToRequestQueueMap.get(serviceId);
+			return queue == null ? 0 : queue.size();
+		}
+		int queued = getServicesToQueuedRequestsMap().get(serviceId);
+		return queued == IntIntMap.NO_VALUE ? 0 : queued;
+	}
+
+	private void dequeueRequest(int serviceId) {
+		int queued = getQueuedRequests(serviceId) - 1;
+		if (queued > 0) {
+			getServicesToQueuedRequestsMap().put(serviceId, queued);
+		} else {
+			getServicesToQueuedRequestsMap().remove(serviceId);
+		}
+	}
+
 	public Map<Integer, Double> getServicesToFirstrequestTimeMap() {
 		return servicesToFirstrequestTimeMap;
 	}
@@ -1479,4 +1994,63 @@ public class EdgeDatacenterBroker extends SimEntity {
 			Map<Integer, DatacenterCharacteristics> datacenterCharacteristicsList) {
 		this.datacenterCharacteristicsList = datacenterCharacteristicsList;
 	}
+
+	/**
+	 * The requests of a service dispatched to run on cloudlets of their own,
+	 * or admitted by the admission control.
+	 */
+	private static class RequestStats {
+
+		int inFlight;
+
+		int peakInFlight;
+
+		int completed;
+
+		double firstDispatch = -1;
+
+		/** The time the last request was sent to the service. */
+		double lastDispatch;
+
+		double lastCompletion;
+
+		double totalResponseTime;
+
+		/** The requests admitted into the queue on their arrival. */
+		int accepted;
+
+		/** The requests dropped on their arrival, the queue being full. */
+		int rejected;
+
+		/** The admitted requests which were past their deadline in the queue. */
+		int expired;
+
+		/**
+		 * The admitted requests dropped later: shed from a full queue for a
+		 * newer request, dropped at the end of a lifetime or refused by the
+		 * service.
+		 */
+		int dropped;
+
+	}
+
+	/**
+	 * A request admitted into the queue of its service.
+	 */
+	private static class QueuedRequest {
+
+		final int requestId;
+
+		final Message message;
+
+		/** The time the request expires if it still waits. */
+		final double deadline;
+
+		QueuedRequest(int requestId, Message message, double deadline) {
+			this.requestId = requestId;
+			this.message = message;
+			this.deadline = deadline;
+		}
+
+	}
 }
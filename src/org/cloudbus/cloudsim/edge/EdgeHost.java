@@ -1,9 +1,11 @@
 package org.cloudbus.cloudsim.edge;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
+import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.Pe;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmScheduler;
@@ -14,15 +16,25 @@ import org.cloudbus.cloudsim.edge.util.Id;
 import org.cloudbus.cloudsim.edge.util.TextUtil;
 import org.cloudbus.cloudsim.edge.vm.EdgeVm;
 import org.cloudbus.cloudsim.lists.VmList;
+import org.cloudbus.cloudsim.network.datacenter.FlowNetwork;
 import org.cloudbus.cloudsim.network.datacenter.HostPacket;
 import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
 import org.cloudbus.cloudsim.network.datacenter.NetworkHost;
 import org.cloudbus.cloudsim.network.datacenter.NetworkPacket;
+import org.cloudbus.cloudsim.network.datacenter.NetworkPacketBatch;
+import org.cloudbus.cloudsim.network.datacenter.LinkStatistics;
+import org.cloudbus.cloudsim.network.datacenter.PortQueue;
 import org.cloudbus.cloudsim.provisioners.BwProvisioner;
 import org.cloudbus.cloudsim.provisioners.RamProvisioner;
 
 public class EdgeHost extends NetworkHost {
 
+	/**
+	 * the traffic and egress queue of the uplink to the edge switch, if port
+	 * queues are simulated
+	 */
+	private LinkStatistics uplinkStatistics;
+
 	public EdgeHost(int id, RamProvisioner ramProvisioner, BwProvisioner bwProvisioner, long storage,
 			List<? extends Pe> peList, VmScheduler vmScheduler) {
 		super(Id.pollId(EdgeHost.class), ramProvisioner, bwProvisioner, storage, peList, vmScheduler);
@@ -73,64 +85,91 @@ public class EdgeHost extends NetworkHost {
 	 */
 	@Override
 	protected void sendpackets() {
-		for (Vm vm : super.getVmList()) {
-			for (Entry<Integer, List<HostPacket>> es : ((EdgeCloudletSpaceSharedScheduler) vm
-					.getCloudletScheduler()).pkttosend.entrySet()) {
-				List<HostPacket> pktlist = es.getValue();
-				for (HostPacket pkt : pktlist) {
-					NetworkPacket hpkt = new NetworkPacket(getId(), pkt, vm.getId(), pkt.getSender());
-					Vm vm2 = VmList.getById(this.getVmList(), hpkt.getRecievervmid());
-					if (vm2 != null) {
-						packetTosendLocal.add(hpkt);
-					} else {
-						packetTosendGlobal.add(hpkt);
+		// a packet delivered to a local VM may let its cloudlet send the next
+		// packets at once, so collect until no local packets are left
+		do {
+			packetTosendLocal.clear();
+			for (Vm vm : super.getVmList()) {
+				for (Entry<Integer, List<HostPacket>> es : ((EdgeCloudletSpaceSharedScheduler) vm
+						.getCloudletScheduler()).pkttosend.entrySet()) {
+					List<HostPacket> pktlist = es.getValue();
+					for (HostPacket pkt : pktlist) {
+						NetworkPacket hpkt = new NetworkPacket(getId(), pkt, vm.getId(), pkt.getSender());
+						Vm vm2 = VmList.getById(this.getVmList(), hpkt.getRecievervmid());
+						if (vm2 != null) {
+							packetTosendLocal.add(hpkt);
+						} else {
+							packetTosendGlobal.add(hpkt);
+						}
 					}
+					pktlist.clear();
+
 				}
-				pktlist.clear();
 
 			}
 
-		}
-
-		boolean flag = false;
-
-		for (NetworkPacket hs : packetTosendLocal) {
-			flag = true;
-			hs.setStime(hs.getRtime());
-			hs.getPkt().setRecievetime(CloudSim.clock());
-			// insert the packet in recievedlist
-			Vm vm = VmList.getById(getVmList(), hs.getPkt().getReciever());
-
-			List<HostPacket> pktlist = ((EdgeCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv
-					.get(hs.getPkt().getSender());
-			if (pktlist == null) {
-				pktlist = new ArrayList<HostPacket>();
-				((EdgeCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv.put(hs.getPkt().getSender(),
-						pktlist);
-			}
-			pktlist.add(hs.getPkt());
-		}
-		if (flag) {
-			for (Vm vm : super.getVmList()) {
-				vm.updateVmProcessing(CloudSim.clock(), getVmScheduler().getAllocatedMipsForVm(vm));
+			for (NetworkPacket hs : packetTosendLocal) {
+				hs.setStime(hs.getRtime());
+				hs.getPkt().setRecievetime(CloudSim.clock());
+				// insert the packet in the inbox of the receiver cloudlet,
+				// which moves on if it waits for it
+				Vm vm = VmList.getById(getVmList(), hs.getPkt().getReciever());
+				((EdgeCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).deliverPacket(hs.getPkt());
+				localData += hs.getPkt().getData();
 			}
-		}
+		} while (!packetTosendLocal.isEmpty());
 
 		// Sending packet to other VMs therefore packet is forwarded to a Edge
 		// switch
 		packetTosendLocal.clear();
+		FlowNetwork flowNetwork = FlowNetwork.getInstance();
+		if (flowNetwork != null && !packetTosendGlobal.isEmpty()) {
+			// every packet is a flow over its whole path, the flow network
+			// shares the links between them
+			for (NetworkPacket hs : packetTosendGlobal) {
+				NetworkConstants.totaldatatransfer += hs.getPkt().getData();
+				remoteData += hs.getPkt().getData();
+			}
+			flowNetwork.startFlows(this, packetTosendGlobal);
+			packetTosendGlobal.clear();
+			return;
+		}
 		double avband = bandwidth / packetTosendGlobal.size();
+		Map<Double, List<NetworkPacket>> batches = new LinkedHashMap<Double, List<NetworkPacket>>();
 		for (NetworkPacket hs : packetTosendGlobal) {
 			double delay = (hs.getPkt().getData()) / (avband * 1000);
+			if (NetworkConstants.portQueues) {
+				// the packet waits for the packets queued before it at the
+				// uplink of the host
+				if (uplinkStatistics == null) {
+					uplinkStatistics = new LinkStatistics(getId(), sw.getId(), false);
+					uplinkStatistics.setQueue(new PortQueue(NetworkConstants.portBufferSize));
+				}
+				double departure = uplinkStatistics.getQueue().offer(CloudSim.clock(), hs.getPkt().getData(),
+						bandwidth);
+				if (departure < 0) {
+					Log.printLine(TextUtil.toString(CloudSim.clock()) + ": EdgeHost #" + getId()
+							+ ": uplink buffer is full, dropping packet to VM #" + hs.getRecievervmid());
+					continue;
+				}
+				uplinkStatistics.record(hs.getPkt().getData(), bandwidth);
+				delay = departure - CloudSim.clock();
+			}
 			NetworkConstants.totaldatatransfer += hs.getPkt().getData();
+			remoteData += hs.getPkt().getData();
 
 			CustomLog.printf("%s\t\t%s\t\t%s\t\t\t%s\t\t\t%s", TextUtil.toString(CloudSim.clock()),
 					"Host#" + getId() + "->#" + sw.getId(),
 					TextUtil.toString((hs.getPkt().getData()) + "/(" + avband + "*" + 1000 + ")"), delay,
 					TextUtil.toString(hs.getPkt().getData()));
 
-			CloudSim.send(getDatacenter().getId(), sw.getId(), delay, CloudSimTags.Network_Event_UP, hs);
-			// send to switch with delay
+			NetworkPacketBatch.add(batches, delay, hs);
+		}
+		// send to switch with delay, packets arriving at the same time in one
+		// event
+		for (Entry<Double, List<NetworkPacket>> batch : batches.entrySet()) {
+			CloudSim.send(getDatacenter().getId(), sw.getId(), batch.getKey(), CloudSimTags.Network_Event_UP,
+					NetworkPacketBatch.wrap(batch.getValue()));
 		}
 		packetTosendGlobal.clear();
 	}
@@ -147,32 +186,29 @@ public class EdgeHost extends NetworkHost {
 		for (NetworkPacket hs : packetrecieved) {
 			hs.getPkt().setRecievetime(CloudSim.clock());
 
-			// insert the packet in recievedlist of VM
+			// insert the packet in the inbox of the receiver cloudlet
 			Vm vm = VmList.getById(getVmList(), hs.getPkt().getReciever());
-			List<HostPacket> pktlist = null;
-			try {
-				pktlist = ((EdgeCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv
-						.get(hs.getPkt().getSender());
-
-			} catch (Exception e) {
+			if (vm == null) {
 				System.out.println(TextUtil.toString(CloudSim.clock()) + ": EdgeHost #" + getId()
 						+ ": recvpackets() - VM (is null) has already been destroyed !!!");
 				continue;
 			}
 			System.out.println(String.format("%s\t%s\t%s", TextUtil.toString(CloudSim.clock()), "EdgeHost #" + getId(),
 					"RECVD PKT from Host #" + hs.getSenderhostid()));
-			if (pktlist == null) {
-				pktlist = new ArrayList<HostPacket>();
-				((EdgeCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv.put(hs.getPkt().getSender(),
-						pktlist);
-
-			}
-			pktlist.add(hs.getPkt());
+			((EdgeCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).deliverPacket(hs.getPkt());
 
 		}
 		packetrecieved.clear();
 	}
 
+	/**
+	 * @return the traffic and egress queue of the uplink to the edge switch,
+	 *         null unless port queues are simulated and a packet has been sent
+	 */
+	public LinkStatistics getUplinkStatistics() {
+		return uplinkStatistics;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
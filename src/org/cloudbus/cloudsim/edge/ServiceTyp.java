@@ -24,7 +24,12 @@ public enum ServiceTyp {
 	/**
 	 * StreamingService
 	 */
-	STREAMING(2, "STR");
+	STREAMING(2, "STR"),
+
+	/**
+	 * GraphService
+	 */
+	GRAPH(3, "GRA");
 
 	private int typ;
 	private String name;
@@ -38,6 +38,8 @@ public class EdgeExample {
 					resultFolderPath + System.getProperty("file.separator") + "vm_request.txt");
 			props.setProperty("serviceChainFilePath",
 					resultFolderPath + System.getProperty("file.separator") + "service_chain.txt");
+			props.setProperty("LinkFilePath",
+					resultFolderPath + System.getProperty("file.separator") + "link_utilization.txt");
 			props.setProperty("LogRealTimeClock", "true");
 			props.setProperty("LogFormat", "getMessage");
 
@@ -53,6 +55,8 @@ public class EdgeExample {
 					"DC ID", "RAM", "CPU", "MIPS", "BW", "Storage", "Num Of VMs");
 			CustomLog.printServiceChain("\t\t%s\t\t%s\t\t%s\t\t\t%s\t\t\t\t%s", "Time", "Service ID", "first", "second",
 					"third");
+			CustomLog.printLink("\t\t%s\t\t%s\t\t%s\t\t%s\t\t%s\t\t%s\t\t%s\t\t%s\t\t%s\t\t%s", "Time", "Link",
+					"Packets", "Data", "BW", "Utilization", "Drops", "ECN", "Queueing Delay", "Max Queue");
 
 			// before creating any entities.
 			int num_user = 1; // number of cloud users
@@ -71,10 +75,12 @@ public class EdgeExample {
 					// System.getProperty("file.separator") +
 					// "topology_double_bw.brite");
 					.buildNetworkTopology(
-							briteFolderPath + System.getProperty("file.separator") + "topology_baseline.brite");
+							briteFolderPath + System.getProperty("file.separator") + "topology_baseline.brite",
+							resultFolderPath + System.getProperty("file.separator") + "topology_baseline.cache");
 
 			BaseDatacenter
 					// .createNetworkWorkingFirst();
+					// .createNetworkWorkingGraph();
 					.createNetworkWorkingSecond();
 
 			// Ends after 30 min
@@ -6,7 +6,9 @@ import java.util.List;
 import org.cloudbus.cloudsim.edge.service.EdgeDbService;
 import org.cloudbus.cloudsim.edge.service.EdgeStreamingService;
 import org.cloudbus.cloudsim.edge.service.EdgeWebService;
+import org.cloudbus.cloudsim.edge.service.GraphService;
 import org.cloudbus.cloudsim.edge.service.Service;
+import org.cloudbus.cloudsim.lists.IndexedList;
 
 /**
  * @author Brice Kamneng Kwam
@@ -24,6 +26,9 @@ public class ServiceList {
 	 * @return the service with id
 	 */
 	public static <T extends Service> T getById(List<T> serviceList, int id) {
+		if (serviceList instanceof IndexedList) {
+			return ((IndexedList<T>) serviceList).getById(id);
+		}
 		for (T service : serviceList) {
 			if (service.getId() == id) {
 				return service;
@@ -32,6 +37,22 @@ public class ServiceList {
 		return null;
 	}
 
+	/**
+	 * Creates an empty list of services indexed by id, in which
+	 * {@link #getById(List, int)} does not scan the list.
+	 * 
+	 * @return the list
+	 */
+	public static <T extends Service> List<T> createIndexedList() {
+		return new IndexedList<T>() {
+
+			@Override
+			protected int getId(T service) {
+				return service.getId();
+			}
+		};
+	}
+
 	/**
 	 * @param serviceList
 	 *            the service list
@@ -73,4 +94,18 @@ public class ServiceList {
 		return results;
 	}
 
+	/**
+	 * @param serviceList
+	 *            the service list
+	 * @return a list of GraphService
+	 */
+	public static <T extends Service> List<T> getGraphServices(List<T> serviceList) {
+		List<T> results = new ArrayList<>();
+		for (T service : serviceList) {
+			if (service instanceof GraphService)
+				results.add(service);
+		}
+		return results;
+	}
+
 }
@@ -46,7 +46,7 @@ public abstract class EdgeService extends Service {
 
 
 	public void assignVmToCloudlets() {
-		ArrayList<Cloudlet> cList = (ArrayList<Cloudlet>) getCloudletList();
+		List<Cloudlet> cList = getCloudletList();
 		Vm vm;
 		for (int i = 0; i < cList.size(); i++) {
 			NetworkCloudlet cl = (NetworkCloudlet) cList.get(i);
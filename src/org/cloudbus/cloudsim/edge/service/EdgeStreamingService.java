@@ -1,7 +1,10 @@
 package org.cloudbus.cloudsim.edge.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.Log;
@@ -17,10 +20,19 @@ import org.cloudbus.cloudsim.edge.vm.T2Small;
 import org.cloudbus.cloudsim.edge.vm.VmType;
 import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
 import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
-import org.cloudbus.cloudsim.network.datacenter.TaskStage;
+import org.cloudbus.cloudsim.network.datacenter.StageProgram;
 
 public class EdgeStreamingService extends EdgeService {
 
+	/**
+	 * The programs of the cloudlets for the video streamed by default: 30 s in
+	 * chunks of 2 s at 550 kBps.
+	 */
+	private static final StageProgram[] DEFAULT_STAGES = compileStreamingStages(30, 2, 550);
+
+	/** The programs of the cloudlets for the other videos, by their parameters. */
+	private final Map<List<Double>, StageProgram[]> streamingStages = new HashMap<>();
+
 	public EdgeStreamingService(String name, double lifeLength) {
 		super("EdgeWebService-" + name, lifeLength);
 		 setServiceTyp(ServiceTyp.STREAMING);
@@ -84,6 +96,15 @@ public class EdgeStreamingService extends EdgeService {
 		}
 	}
 
+	/**
+	 * @return the programs of the video streamed by default, which is the one
+	 *         streamed for each request
+	 */
+	@Override
+	protected StageProgram[] getStagePrograms() {
+		return DEFAULT_STAGES;
+	}
+
 	public void createStages() {
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": [INFO]: Service #" + getId()
 				+ ": called createStages with " + " getCloudletReceivedList #" + getCloudletReceivedList().size()
@@ -104,11 +125,10 @@ public class EdgeStreamingService extends EdgeService {
 	public void createStreamingStages(double videoSize, double chunkSize, double bitRate) {
 
 		double numOfChunks = videoSize / chunkSize;
-		double packetsize = chunkSize * bitRate;
-
-		int firstCloudletStageId = 0;
-		int secondCloudletStageId = 0;
-		int thirdCloudletStageId = 0;
+		StageProgram[] programs = getStreamingStages(videoSize, chunkSize, bitRate);
+		// the cloudlets of the request share the ids bound to the roles
+		int[] cloudletIds = getRoleCloudletIds();
+		int[] vmIds = getRoleVmIds();
 
 		NetworkCloudlet firstCloudlet = getFirstCloudlet();
 		NetworkCloudlet secondCloudlet = getSecondCloudlet();
@@ -119,52 +139,74 @@ public class EdgeStreamingService extends EdgeService {
 		initCloudletStage(secondCloudlet, (numOfChunks * 6));
 		initCloudletStage(thirdCloudlet, (numOfChunks * 3));
 
-		firstCloudlet.getStages().add(new TaskStage(NetworkConstants.WAIT_RECV, packetsize, 0, firstCloudletStageId++,
-				firstCloudlet.getMemory(), getBrokerVmId(), getBrokerCloudletId()));
-		for (int j = 0; j < numOfChunks; j++) {
-			firstCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.EXECUTION, 0, 10240 * 0.8, firstCloudletStageId++,
-							firstCloudlet.getMemory(), firstCloudlet.getVmId(), firstCloudlet.getCloudletId()));
-			firstCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.WAIT_SEND, packetsize, 0, firstCloudletStageId++,
-							firstCloudlet.getMemory(), secondCloudlet.getVmId(), secondCloudlet.getCloudletId()));
-
-			secondCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.WAIT_RECV, packetsize, 0, secondCloudletStageId++,
-							secondCloudlet.getMemory(), firstCloudlet.getVmId(), firstCloudlet.getCloudletId()));
-			secondCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.EXECUTION, 0, 10240 * 0.8, secondCloudletStageId++,
-							secondCloudlet.getMemory(), secondCloudlet.getVmId(), secondCloudlet.getCloudletId()));
-			secondCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.WAIT_SEND, packetsize, 0, secondCloudletStageId++,
-							secondCloudlet.getMemory(), thirdCloudlet.getVmId(), thirdCloudlet.getCloudletId()));
-
-			thirdCloudlet.getStages().add(new TaskStage(NetworkConstants.WAIT_RECV, packetsize, 0, thirdCloudletStageId,
-					thirdCloudlet.getMemory(), secondCloudlet.getVmId(), getSecondCloudlet().getCloudletId()));
-			thirdCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.EXECUTION, 0, 10240 * 0.8, thirdCloudletStageId,
-							thirdCloudlet.getMemory(), thirdCloudlet.getVmId(), thirdCloudlet.getCloudletId()));
-			thirdCloudlet.getStages().add(new TaskStage(NetworkConstants.WAIT_SEND, packetsize, 0, thirdCloudletStageId,
-					thirdCloudlet.getMemory(), secondCloudlet.getVmId(), secondCloudlet.getCloudletId()));
-
-			secondCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.WAIT_RECV, packetsize, 0, secondCloudletStageId++,
-							secondCloudlet.getMemory(), thirdCloudlet.getVmId(), thirdCloudlet.getCloudletId()));
-			secondCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.EXECUTION, 0, 10240 * 0.8, secondCloudletStageId++,
-							secondCloudlet.getMemory(), secondCloudlet.getVmId(), secondCloudlet.getCloudletId()));
-			secondCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.WAIT_SEND, packetsize, 0, secondCloudletStageId++,
-							secondCloudlet.getMemory(), firstCloudlet.getVmId(), firstCloudlet.getCloudletId()));
-
-			firstCloudlet.getStages()
-					.add(new TaskStage(NetworkConstants.WAIT_RECV, packetsize, 0, firstCloudletStageId++,
-							firstCloudlet.getMemory(), secondCloudlet.getVmId(), secondCloudlet.getCloudletId()));
+		firstCloudlet.setProgram(programs[0], cloudletIds, vmIds);
+		secondCloudlet.setProgram(programs[1], cloudletIds, vmIds);
+		thirdCloudlet.setProgram(programs[2], cloudletIds, vmIds);
+	}
+
+	/**
+	 * @param videoSize
+	 *            duration of the video in seconds
+	 * @param chunkSize
+	 *            duration of the chunks in seconds
+	 * @param bitRate
+	 *            bandwidth between the VMs in kBps
+	 * @return the programs of the first, second and third cloudlets which
+	 *         stream the video, compiled once for all requests
+	 */
+	private StageProgram[] getStreamingStages(double videoSize, double chunkSize, double bitRate) {
+		if (videoSize == 30 && chunkSize == 2 && bitRate == 550) {
+			return DEFAULT_STAGES;
+		}
+		List<Double> video = Arrays.asList(videoSize, chunkSize, bitRate);
+		StageProgram[] programs = streamingStages.get(video);
+		if (programs == null) {
+			programs = compileStreamingStages(videoSize, chunkSize, bitRate);
+			streamingStages.put(video, programs);
 		}
+		return programs;
+	}
 
-		firstCloudlet.getStages().add(new TaskStage(NetworkConstants.WAIT_SEND, packetsize, 0, firstCloudletStageId++,
-				firstCloudlet.getMemory(), getBrokerVmId(), getBrokerCloudletId()));
+	/**
+	 * @param videoSize
+	 *            duration of the video in seconds
+	 * @param chunkSize
+	 *            duration of the chunks in seconds
+	 * @param bitRate
+	 *            bandwidth between the VMs in kBps
+	 * @return the programs of the first, second and third cloudlets which
+	 *         stream the video
+	 */
+	private static StageProgram[] compileStreamingStages(double videoSize, double chunkSize, double bitRate) {
+		double numOfChunks = videoSize / chunkSize;
+		double packetsize = chunkSize * bitRate;
+
+		StageProgram.Builder first = new StageProgram.Builder();
+		StageProgram.Builder second = new StageProgram.Builder();
+		StageProgram.Builder third = new StageProgram.Builder();
+
+		first.add(NetworkConstants.WAIT_RECV, packetsize, 0, BROKER_ROLE);
+		for (int j = 0; j < numOfChunks; j++) {
+			first.add(NetworkConstants.EXECUTION, 0, 10240 * 0.8, FIRST_ROLE);
+			first.add(NetworkConstants.WAIT_SEND, packetsize, 0, SECOND_ROLE);
+
+			second.add(NetworkConstants.WAIT_RECV, packetsize, 0, FIRST_ROLE);
+			second.add(NetworkConstants.EXECUTION, 0, 10240 * 0.8, SECOND_ROLE);
+			second.add(NetworkConstants.WAIT_SEND, packetsize, 0, THIRD_ROLE);
+
+			third.add(NetworkConstants.WAIT_RECV, packetsize, 0, SECOND_ROLE);
+			third.add(NetworkConstants.EXECUTION, 0, 10240 * 0.8, THIRD_ROLE);
+			third.add(NetworkConstants.WAIT_SEND, packetsize, 0, SECOND_ROLE);
+
+			second.add(NetworkConstants.WAIT_RECV, packetsize, 0, THIRD_ROLE);
+			second.add(NetworkConstants.EXECUTION, 0, 10240 * 0.8, SECOND_ROLE);
+			second.add(NetworkConstants.WAIT_SEND, packetsize, 0, FIRST_ROLE);
+
+			first.add(NetworkConstants.WAIT_RECV, packetsize, 0, SECOND_ROLE);
+		}
+		first.add(NetworkConstants.WAIT_SEND, packetsize, 0, BROKER_ROLE);
 
+		return new StageProgram[] { first.build(), second.build(), third.build() };
 	}
 
 	/**
@@ -179,7 +221,7 @@ public class EdgeStreamingService extends EdgeService {
 	public void initCloudletStage(NetworkCloudlet cl, double stageNum) {
 		cl.setNumStage(stageNum);
 		cl.setSubmittime(CloudSim.clock());
-		cl.setStages(new ArrayList<TaskStage>());
+		cl.setStages(null);
 		cl.setCurrStagenum(-1);
 	}
 
@@ -18,10 +18,35 @@ import org.cloudbus.cloudsim.edge.vm.T2Small;
 import org.cloudbus.cloudsim.edge.vm.VmType;
 import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
 import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
-import org.cloudbus.cloudsim.network.datacenter.TaskStage;
+import org.cloudbus.cloudsim.network.datacenter.StageProgram;
 
 public class EdgeWebService extends EdgeService {
 
+	/** The stages of the first cloudlet, which gets the request and answers it. */
+	private static final StageProgram FIRST_STAGES = new StageProgram.Builder()
+			.add(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, BROKER_ROLE)
+			.add(NetworkConstants.EXECUTION, 0, 10240 * 0.8, FIRST_ROLE)
+			.add(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, SECOND_ROLE)
+			.add(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, SECOND_ROLE)
+			.add(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, BROKER_ROLE).build();
+
+	/** The stages of the second cloudlet. */
+	private static final StageProgram SECOND_STAGES = new StageProgram.Builder()
+			.add(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, FIRST_ROLE)
+			.add(NetworkConstants.EXECUTION, 0, 10240 * 0.8, SECOND_ROLE)
+			.add(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, THIRD_ROLE)
+			.add(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, THIRD_ROLE)
+			.add(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, FIRST_ROLE).build();
+
+	/** The stages of the third cloudlet. */
+	private static final StageProgram THIRD_STAGES = new StageProgram.Builder()
+			.add(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, SECOND_ROLE)
+			.add(NetworkConstants.EXECUTION, 0, 10240 * 0.8, THIRD_ROLE)
+			.add(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, SECOND_ROLE).build();
+
+	/** The stages of the cloudlets, by their roles. */
+	private static final StageProgram[] STAGES = { FIRST_STAGES, SECOND_STAGES, THIRD_STAGES };
+
 	public EdgeWebService(String name, double lifeLength) {
 		super("EdgeWebService-" + name, lifeLength);
 		 setServiceTyp(ServiceTyp.WEB);
@@ -85,59 +110,39 @@ public class EdgeWebService extends EdgeService {
 		}
 	}
 
+	@Override
+	protected StageProgram[] getStagePrograms() {
+		return STAGES;
+	}
+
 	public void createStages() {
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": [INFO]: Service #" + getId()
 				+ ": called createStages with " + " getCloudletReceivedList #" + getCloudletReceivedList().size()
 				+ " and getCloudletSubmittedList(): " + getCloudletSubmittedList().size());
 		assignVmToCloudlets();
-		ArrayList<Cloudlet> cList = (ArrayList<Cloudlet>) getCloudletList();
+		// the cloudlets of the request share the ids bound to the roles
+		int[] cloudletIds = getRoleCloudletIds();
+		int[] vmIds = getRoleVmIds();
+		List<Cloudlet> cList = getCloudletList();
 		for (int i = 0; i < cList.size(); i++) {
 			NetworkCloudlet cl = (NetworkCloudlet) cList.get(i);
 			if (cl.getCloudletId() == getFirstCloudlet().getCloudletId()) {
 				cl.setNumStage(5);
 				cl.setSubmittime(CloudSim.clock());
-				cl.setStages(new ArrayList<TaskStage>());
+				cl.setProgram(FIRST_STAGES, cloudletIds, vmIds);
 				cl.setCurrStagenum(-1);
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, 0,
-						cl.getMemory(), getBrokerVmId(), getBrokerCloudletId()));
-
-				cl.getStages().add(new TaskStage(NetworkConstants.EXECUTION, 0, 10240 * 0.8, 1, cl.getMemory(),
-						cl.getVmId(), cl.getCloudletId()));
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, 2,
-						cl.getMemory(), getSecondCloudlet().getVmId(), getSecondCloudlet().getCloudletId()));
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, 3,
-						cl.getMemory(), getSecondCloudlet().getVmId(), getSecondCloudlet().getCloudletId()));
-
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, 4,
-						cl.getMemory(), getBrokerVmId(), getBrokerCloudletId()));
 			}
 			if (cl.getCloudletId() == getSecondCloudlet().getCloudletId()) {
 				cl.setNumStage(5);
 				cl.setSubmittime(CloudSim.clock());
-				cl.setStages(new ArrayList<TaskStage>());
+				cl.setProgram(SECOND_STAGES, cloudletIds, vmIds);
 				cl.setCurrStagenum(-1);
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, 0,
-						cl.getMemory(), getFirstCloudlet().getVmId(), getFirstCloudlet().getCloudletId()));
-				cl.getStages().add(new TaskStage(NetworkConstants.EXECUTION, 0, 10240 * 0.8, 1, cl.getMemory(),
-						cl.getVmId(), cl.getCloudletId()));
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, 2,
-						cl.getMemory(), getThirdCloudlet().getVmId(), getThirdCloudlet().getCloudletId()));
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, 3,
-						cl.getMemory(), getThirdCloudlet().getVmId(), getThirdCloudlet().getCloudletId()));
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, 4,
-						cl.getMemory(), getFirstCloudlet().getVmId(), getFirstCloudlet().getCloudletId()));
 			}
 			if (cl.getCloudletId() == getThirdCloudlet().getCloudletId()) {
 				cl.setNumStage(3);
 				cl.setSubmittime(CloudSim.clock());
-				cl.setStages(new ArrayList<TaskStage>());
+				cl.setProgram(THIRD_STAGES, cloudletIds, vmIds);
 				cl.setCurrStagenum(-1);
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, 0,
-						cl.getMemory(), getSecondCloudlet().getVmId(), getSecondCloudlet().getCloudletId()));
-				cl.getStages().add(new TaskStage(NetworkConstants.EXECUTION, 0, 10240 * 0.8, 1, cl.getMemory(),
-						cl.getVmId(), cl.getCloudletId()));
-				cl.getStages().add(new TaskStage(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, 2,
-						cl.getMemory(), getSecondCloudlet().getVmId(), getSecondCloudlet().getCloudletId()));
 			}
 
 		}
@@ -0,0 +1,182 @@
+package org.cloudbus.cloudsim.edge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.edge.ServiceTyp;
+import org.cloudbus.cloudsim.edge.util.TextUtil;
+import org.cloudbus.cloudsim.edge.vm.EdgeVm;
+import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
+import org.cloudbus.cloudsim.network.datacenter.StageProgram;
+
+/**
+ * A service whose chain is given by a {@link ServiceGraph}: a VM and a
+ * cloudlet for each node of the graph, the cloudlet of the root first, with
+ * the stage programs of the graph.
+ */
+public class GraphService extends EdgeService {
+
+	private final ServiceGraph graph;
+
+	/** The cloudlets of the nodes, the root first. */
+	private final List<NetworkCloudlet> chainCloudlets = new ArrayList<>();
+
+	/** The number of responses to the requests of this service. */
+	private int responses;
+
+	private double totalResponseTime;
+
+	private double shortestResponseTime = Double.MAX_VALUE;
+
+	public GraphService(String name, double lifeLength, ServiceGraph graph) {
+		super("GraphService-" + name, lifeLength);
+		this.graph = graph;
+		setServiceTyp(ServiceTyp.GRAPH);
+	}
+
+	public GraphService(String name, ServiceGraph graph) {
+		super("GraphService-" + name);
+		this.graph = graph;
+		setServiceTyp(ServiceTyp.GRAPH);
+	}
+
+	public ServiceGraph getGraph() {
+		return graph;
+	}
+
+	@Override
+	protected void generateCloudlets() {
+		if (!isCloudletGenerated()) {
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": [INFO]: Service #" + getId()
+					+ ": called generateCloudlets ");
+			List<Cloudlet> cList = new ArrayList<Cloudlet>();
+			UtilizationModel utilizationModel = new UtilizationModelFull();
+
+			for (int node = 0; node < graph.size(); node++) {
+				NetworkCloudlet ncl = new NetworkCloudlet(40000, graph.getPes(node), 1000, 1000, 256,
+						utilizationModel, utilizationModel, utilizationModel, getId());
+				ncl.setVmType(graph.getVmType(node));
+				cList.add(ncl);
+				chainCloudlets.add(ncl);
+				addCloudletIdServiceMapping(ncl.getCloudletId(), this);
+			}
+			setFirstCloudlet(chainCloudlets.get(0));
+
+			setCloudletList(cList);
+			createStages();
+			setCloudletGenerated(true);
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": [INFO]: Service #" + getId() + ": "
+					+ cList.size() + " cloudlets generated");
+		}
+	}
+
+	/**
+	 * This method is used to send to the broker the list with virtual machines
+	 * that must be created: one for each node of the graph, in its order.
+	 *
+	 * @pre list !=null
+	 * @post $none
+	 */
+	public void submitVmList() {
+		for (int node = 0; node < graph.size(); node++) {
+			getVmList().add(EdgeVm.create(graph.getVmType(node)));
+		}
+		for (Vm vm : getVmList()) {
+			vm.setUserId(this.getId());
+		}
+	}
+
+	public void createStages() {
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": [INFO]: Service #" + getId()
+				+ ": called createStages with " + " getCloudletReceivedList #" + getCloudletReceivedList().size()
+				+ " and getCloudletSubmittedList(): " + getCloudletSubmittedList().size());
+		assignVmToCloudlets();
+		// the cloudlets of the request share the ids bound to the roles
+		int[] cloudletIds = getRoleCloudletIds();
+		int[] vmIds = getRoleVmIds();
+		for (int node = 0; node < chainCloudlets.size(); node++) {
+			NetworkCloudlet cl = chainCloudlets.get(node);
+			StageProgram program = graph.getProgram(node);
+			cl.setNumStage(program.size());
+			cl.setSubmittime(CloudSim.clock());
+			cl.setProgram(program, cloudletIds, vmIds);
+			cl.setCurrStagenum(-1);
+		}
+	}
+
+	@Override
+	public List<NetworkCloudlet> getChainCloudlets() {
+		return chainCloudlets;
+	}
+
+	/**
+	 * Before the cloudlets are generated, the data two VMs exchange is taken
+	 * from the graph, the VMs being in the order of its nodes.
+	 */
+	@Override
+	public double getTraffic(int vmId, int peerVmId) {
+		if (isCloudletGenerated()) {
+			return super.getTraffic(vmId, peerVmId);
+		}
+		int node = -1;
+		int peer = -1;
+		for (int i = 0; i < getVmList().size() && i < graph.size(); i++) {
+			int id = getVmList().get(i).getId();
+			if (id == vmId) {
+				node = i;
+			} else if (id == peerVmId) {
+				peer = i;
+			}
+		}
+		return node == -1 || peer == -1 ? 0 : graph.getTraffic(node, peer);
+	}
+
+	@Override
+	public void responseReceived(double responseTime) {
+		super.responseReceived(responseTime);
+		responses++;
+		totalResponseTime += responseTime;
+		shortestResponseTime = Math.min(shortestResponseTime, responseTime);
+	}
+
+	/**
+	 * Reports the response times of the requests against the critical path
+	 * of the graph: the nodes called at once run in parallel, so a request
+	 * takes at least the time of the critical path and, without the network,
+	 * no more. A service that shuts itself down before the end of the
+	 * simulation is shut down again then, so the report is printed once.
+	 */
+	@Override
+	public void shutdownEntity() {
+		if (responses > 0) {
+			double criticalPath = graph.getCriticalPathTime();
+			double allNodes = 0;
+			for (int node = 0; node < graph.size(); node++) {
+				allNodes += graph.getTime(node);
+			}
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + getId() + ": " + responses
+					+ " response(s), mean " + TextUtil.toString(totalResponseTime / responses) + " and shortest "
+					+ TextUtil.toString(shortestResponseTime) + ", critical path of the graph "
+					+ TextUtil.toString(criticalPath) + " and its nodes one after another "
+					+ TextUtil.toString(allNodes));
+			if (shortestResponseTime < criticalPath) {
+				Log.printLine(TextUtil.toString(CloudSim.clock()) + ": [ERROR]: Service #" + getId()
+						+ " answered a request faster than the critical path of its graph");
+			}
+			responses = 0;
+		}
+		super.shutdownEntity();
+	}
+
+	public void startEntity() {
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service GRAPH #" + getId() + " is starting...");
+		super.startEntity();
+	}
+
+}
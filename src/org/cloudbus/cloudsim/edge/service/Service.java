@@ -14,7 +14,6 @@ import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.DatacenterCharacteristics;
 import org.cloudbus.cloudsim.Host;
 import org.cloudbus.cloudsim.Log;
-import org.cloudbus.cloudsim.NetworkTopology;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
@@ -27,14 +26,17 @@ import org.cloudbus.cloudsim.edge.PresetEvent;
 import org.cloudbus.cloudsim.edge.ServiceTyp;
 import org.cloudbus.cloudsim.edge.util.BaseDatacenter;
 import org.cloudbus.cloudsim.edge.util.CustomLog;
+import org.cloudbus.cloudsim.edge.util.NearestDatacenters;
 import org.cloudbus.cloudsim.edge.util.TextUtil;
 import org.cloudbus.cloudsim.edge.vm.VMStatus;
 import org.cloudbus.cloudsim.edge.vm.EdgeVm;
 import org.cloudbus.cloudsim.lists.CloudletList;
 import org.cloudbus.cloudsim.lists.VmList;
 import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
-import org.cloudbus.cloudsim.network.datacenter.NetworkDatacenter;
-import org.cloudbus.cloudsim.network.datacenter.TaskStage;
+import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
+import org.cloudbus.cloudsim.network.datacenter.StageProgram;
+import org.cloudbus.cloudsim.util.IntIntMap;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * @author Brice Kamneng Kwam
@@ -112,6 +114,18 @@ public abstract class Service extends SimEntity {
 	/** Number of VM destructions acknowledged. */
 	private int vmDestructsAcks = 0;
 
+	/** The VMs of the chain the current reservation is for. */
+	private List<Vm> chainVms;
+
+	/** The cursor over the datacenters not requested yet. */
+	private NearestDatacenters.Cursor dcCursor;
+
+	/** The autoscaler of the tiers, or null if they are not scaled. */
+	private final TierAutoscaler autoscaler;
+
+	/** The request of each copy of a cloudlet still running for a request. */
+	private final IntObjectMap<ServiceRequest> requestCloudlets = new IntObjectMap<>();
+
 	/**
 	 * The first Cloudlet of this Service. The one that communicates with the
 	 * Broker
@@ -147,6 +161,15 @@ public abstract class Service extends SimEntity {
 
 	private Map<Integer, Integer> vmCreationAttempts;
 
+	/**
+	 * The roles of the cloudlet of the broker and of the cloudlets of the
+	 * chain in the stage programs of the services (see {@link StageProgram}).
+	 */
+	public static final int BROKER_ROLE = 0;
+	public static final int FIRST_ROLE = 1;
+	public static final int SECOND_ROLE = 2;
+	public static final int THIRD_ROLE = 3;
+
 	/**
 	 * mapping between services and their Cloudlets (to help identify Services
 	 * with their Cloudlets Id)
@@ -170,15 +193,15 @@ public abstract class Service extends SimEntity {
 	public Service(String name, final double lifeLength) {
 		super(name);
 		this.lifeLength = lifeLength;
-		setCloudletList(new ArrayList<Cloudlet>());
-		setCloudletSubmittedList(new ArrayList<Cloudlet>());
-		setCloudletReceivedList(new ArrayList<Cloudlet>());
+		setCloudletList(CloudletList.<Cloudlet> createIndexedList());
+		setCloudletSubmittedList(CloudletList.<Cloudlet> createIndexedList());
+		setCloudletReceivedList(CloudletList.<Cloudlet> createIndexedList());
 		setVmsToDatacentersMap(new HashMap<Integer, Integer>());
 		cloudletsSubmitted = 0;
 		cloudletGenerated = false;
 
-		setVmList(new ArrayList<Vm>());
-		setVmsCreatedList(new ArrayList<Vm>());
+		setVmList(VmList.<Vm> createIndexedList());
+		setVmsCreatedList(VmList.<Vm> createIndexedList());
 
 		setVmsRequested(0);
 		setVmsAcks(0);
@@ -189,6 +212,7 @@ public abstract class Service extends SimEntity {
 		setVmsToDatacentersMap(new HashMap<Integer, Integer>());
 		setDatacenterCharacteristicsList(new HashMap<Integer, DatacenterCharacteristics>());
 		setVmCreationAttempts(new HashMap<Integer, Integer>());
+		autoscaler = NetworkConstants.autoscaling ? new TierAutoscaler(this) : null;
 
 	}
 
@@ -309,18 +333,17 @@ public abstract class Service extends SimEntity {
 	}
 
 	public void printChain() {
-		Vm firstVm = getVmsCreatedList().get(0);
-		Host firstHost = firstVm.getHost();
-		Vm secondVm = getVmsCreatedList().get(1);
-		Host secondHost = secondVm.getHost();
-		Vm thirdVm = getVmsCreatedList().get(2);
-		Host thirdHost = thirdVm.getHost();
-
-		CustomLog.printServiceChain("\t\t%s\t\t%s\t\t\t%s\t\t%s\t\t\t%s", TextUtil.toString(CloudSim.clock()),
-				"#" + getId(), 
-				"#"+ firstVm.getId() + "->#" + firstHost.getDatacenter().getId() + ":#" + firstHost.getId(),
-				"#"+ secondVm.getId() +"->#" + secondHost.getDatacenter().getId() + ":#" + secondHost.getId(),
-				"#"+ thirdVm.getId() +"->#" + thirdHost.getDatacenter().getId() + ":#" + thirdHost.getId());
+		StringBuilder format = new StringBuilder("\t\t%s\t\t%s");
+		Object[] args = new Object[getVmsCreatedList().size() + 2];
+		args[0] = TextUtil.toString(CloudSim.clock());
+		args[1] = "#" + getId();
+		for (int i = 0; i < getVmsCreatedList().size(); i++) {
+			Vm vm = getVmsCreatedList().get(i);
+			Host host = vm.getHost();
+			format.append(i % 2 == 0 ? "\t\t\t%s" : "\t\t%s");
+			args[i + 2] = "#" + vm.getId() + "->#" + host.getDatacenter().getId() + ":#" + host.getId();
+		}
+		CustomLog.printServiceChain(format.toString(), args);
 	}
 
 	/**
@@ -357,6 +380,90 @@ public abstract class Service extends SimEntity {
 		setVmsAcks(0);
 	}
 
+	/**
+	 * Reserves hosts for all the VMs of the chain which are not created yet,
+	 * in the nearest datacenter which has not been tried yet. The datacenter
+	 * reserves hosts for all of them or for none, and the chain is then
+	 * created there or the next one is tried (see
+	 * {@link #processChainReserveAck(SimEvent)}). Only one datacenter is
+	 * asked at a time, so a chain never holds hosts another chain is refused.
+	 * 
+	 * @pre $none
+	 * @post $none
+	 */
+	protected void reserveChain() {
+		List<Vm> vms = new ArrayList<>();
+		for (Vm vm : getVmList()) {
+			if (!getVmsToDatacentersMap().containsKey(vm.getId())) {
+				vms.add(vm);
+				// Statistics
+				if (getVmCreationAttempts().containsKey(vm.getId())) {
+					getVmCreationAttempts().put(vm.getId(), getVmCreationAttempts().get(vm.getId()) + 1);
+				} else {
+					getVmCreationAttempts().put(vm.getId(), 1);
+				}
+			}
+		}
+
+		chainVms = vms;
+		reserveChainInNextDatacenter();
+	}
+
+	/**
+	 * Sends the reservation of the chain to the nearest datacenter which has
+	 * not been tried yet, or aborts the Service if all have been.
+	 */
+	private void reserveChainInNextDatacenter() {
+		int dcId = getDcCursor().nearest();
+		if (dcId == -1) {
+			chainNotPlaced();
+			return;
+		}
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + getId() + ": Trying to reserve "
+				+ chainVms.size() + " VM(s) in Datacenter #" + dcId);
+		sendNow(dcId, CloudSimTags.VM_CHAIN_RESERVE, chainVms);
+		getDatacenterRequestedIdsList().add(dcId);
+	}
+
+	/**
+	 * Process the answer of a datacenter to a chain reservation. The chain is
+	 * committed in the datacenter if it reserved, otherwise the next one is
+	 * tried. A datacenter only refuses once no other chain holds hosts there,
+	 * so it is not tried again (see
+	 * {@link org.cloudbus.cloudsim.network.datacenter.NetworkDatacenter#processChainReserve(SimEvent)}).
+	 * 
+	 * @param ev
+	 *            a SimEvent object
+	 * @pre ev != null
+	 * @post $none
+	 */
+	protected void processChainReserveAck(SimEvent ev) {
+		int[] data = (int[]) ev.getData();
+		if (data[1] != CloudSimTags.TRUE) {
+			reserveChainInNextDatacenter();
+			return;
+		}
+		chainVms = null;
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + getId()
+				+ ": Creating the reserved VMs in Datacenter #" + data[0]);
+		setVmsRequested(getVmList().size() - getVmsToDatacentersMap().size());
+		setVmsAcks(0);
+		sendNow(data[0], CloudSimTags.VM_CHAIN_COMMIT);
+	}
+
+	/**
+	 * Aborts the Service when no datacenter could reserve hosts for its
+	 * chain. No VM has been created then.
+	 */
+	private void chainNotPlaced() {
+		chainVms = null;
+		CustomLog.printVmRequest("%s\t\t%s\t\t\t\t%s\t\t\t%s\t\t\t%s\t\t\t\t%s",
+				TextUtil.toString(CloudSim.clock()), "#", "#", "#", "#" + getId(), "block");
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + getId()
+				+ ": no datacenter could reserve the required VMs. Aborting");
+		finishExecution();
+	}
+
 	/**
 	 * Destroy the virtual machines running in datacenters.
 	 * 
@@ -371,7 +478,7 @@ public abstract class Service extends SimEntity {
 			}
 
 			// Update the cloudlets before we send the kill event
-			vm.getHost().updateVmsProcessing(CloudSim.clock());
+			vm.getHost().getDatacenter().updateHostProcessing(vm.getHost());
 
 			Log.printLine(CloudSim.clock() + ": Service #" + getId() + ": Trying to Destroy VM #" + vm.getId()
 					+ " in DC #" + getVmsToDatacentersMap().get(vm.getId()));
@@ -735,7 +842,7 @@ public abstract class Service extends SimEntity {
 			}
 
 			// Update the cloudlets before we send the kill event
-			vm.getHost().updateVmsProcessing(CloudSim.clock());
+			vm.getHost().getDatacenter().updateHostProcessing(vm.getHost());
 
 			int datacenterId = vm.getHost().getDatacenter().getId();
 
@@ -757,24 +864,117 @@ public abstract class Service extends SimEntity {
 	 * @return the next datacenter with the shortest delay
 	 */
 	public int getNextDcIdWithShortestDelay() {
-		int datacenterId = -1;
-		double delay = Double.MAX_VALUE;
-
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + "[INFO]: Service #: " + getId() + " Issue with UserDC");
-		int userDcId = ((EdgeDatacenterBroker) CloudSim.getEntity(getUserId())).getUserDC().getId();
+		return getDcCursor().nearest();
+	}
+
+	/**
+	 * @return the cursor over the datacenters which are not user datacenters
+	 *         and have not been requested yet, the nearest to the user
+	 *         datacenter of the broker first
+	 */
+	protected NearestDatacenters.Cursor getDcCursor() {
+		NearestDatacenters nearestDcs = ((EdgeDatacenterBroker) CloudSim.getEntity(getUserId())).getNearestDcs();
+		if (dcCursor == null || dcCursor.getDatacenters() != nearestDcs
+				|| dcCursor.getTried() != getDatacenterRequestedIdsList()) {
+			dcCursor = nearestDcs.cursor(getDatacenterRequestedIdsList());
+		}
+		return dcCursor;
+	}
 
-		for (Integer dcId : datacenterIdsList) {
-			if (!((NetworkDatacenter) CloudSim.getEntity(dcId)).isUserDC()
-					&& !getDatacenterRequestedIdsList().contains(dcId)) {
-				double tmpDelay = NetworkTopology.getDelay(userDcId, dcId);
+	/**
+	 * The data two VMs of this Service send to each other for a request. Once
+	 * the cloudlets are generated, it is taken from the WAIT_SEND stages of
+	 * the cloudlets of the chain (see {@link #getChainCloudlets()}) on the two
+	 * VMs. Before that, which is when the VMs are placed, it is taken from the
+	 * WAIT_SEND stages of the programs of {@link #getStagePrograms()}, the VMs
+	 * being in the order of the roles. A Service without programs has each VM
+	 * exchange {@link CloudSimTagsExt#DATA_SIZE} each way with the next one.
+	 * 
+	 * @param vmId
+	 *            the id of a VM
+	 * @param peerVmId
+	 *            the id of another VM
+	 * @return the data they exchange for a request
+	 */
+	public double getTraffic(int vmId, int peerVmId) {
+		if (vmId == peerVmId) {
+			return 0;
+		}
+		if (!isCloudletGenerated()) {
+			StageProgram[] programs = getStagePrograms();
+			if (programs != null) {
+				int role = -1;
+				int peerRole = -1;
+				for (int i = 0; i < getVmList().size() && i < programs.length; i++) {
+					int id = getVmList().get(i).getId();
+					if (id == vmId) {
+						role = FIRST_ROLE + i;
+					} else if (id == peerVmId) {
+						peerRole = FIRST_ROLE + i;
+					}
+				}
+				if (role == -1 || peerRole == -1) {
+					return 0;
+				}
+				return getSentData(programs[role - FIRST_ROLE], peerRole)
+						+ getSentData(programs[peerRole - FIRST_ROLE], role);
+			}
+			for (int i = 1; i < getVmList().size(); i++) {
+				int first = getVmList().get(i - 1).getId();
+				int second = getVmList().get(i).getId();
+				if ((first == vmId && second == peerVmId) || (first == peerVmId && second == vmId)) {
+					return 2.0 * CloudSimTagsExt.DATA_SIZE;
+				}
+			}
+			return 0;
+		}
 
-				if (tmpDelay < delay && !(getDatacenterRequestedIdsList().contains(dcId))) {
-					datacenterId = dcId;
-					delay = tmpDelay;
+		double data = 0;
+		for (NetworkCloudlet cloudlet : getChainCloudlets()) {
+			int peer;
+			if (cloudlet.getVmId() == vmId) {
+				peer = peerVmId;
+			} else if (cloudlet.getVmId() == peerVmId) {
+				peer = vmId;
+			} else {
+				continue;
+			}
+			for (int stage = 0; stage < cloudlet.getStageCount(); stage++) {
+				if (cloudlet.getStageType(stage) == NetworkConstants.WAIT_SEND && cloudlet.getStagePeer(stage) == peer) {
+					data += cloudlet.getStageData(stage);
 				}
 			}
 		}
-		return datacenterId;
+		return data;
+	}
+
+	/**
+	 * @param program
+	 *            the program of a cloudlet
+	 * @param role
+	 *            the role of another cloudlet
+	 * @return the data the program sends to the other cloudlet
+	 */
+	private static double getSentData(StageProgram program, int role) {
+		double data = 0;
+		for (int stage = 0; stage < program.size(); stage++) {
+			if (program.getType(stage) == NetworkConstants.WAIT_SEND && program.getRole(stage) == role) {
+				data += program.getData(stage);
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * @return the stage programs the cloudlets of the chain get for each
+	 *         request, the one of {@link #FIRST_ROLE} first, from which the
+	 *         traffic between the VMs is known before the cloudlets are
+	 *         generated (see {@link #getTraffic(int, int)}); null if the
+	 *         Service has none
+	 */
+	protected StageProgram[] getStagePrograms() {
+		return null;
 	}
 
 	// ==============================BROKER========================================
@@ -885,7 +1085,11 @@ public abstract class Service extends SimEntity {
 				// if (vm.isBeingInstantiated()) {
 				vm.setBeingInstantiated(false);
 			}
-			processVmCreate(ev);
+			if (autoscaler != null && autoscaler.isCreating(vmId)) {
+				autoscaler.processReplicaCreate(ev);
+			} else {
+				processVmCreate(ev);
+			}
 			break;
 		// start submitting Cloudlets
 		case CloudSimTagsExt.CLOUDLET_SERVICE_SUBMIT:
@@ -971,13 +1175,30 @@ public abstract class Service extends SimEntity {
 		}
 		switch (ev.getTag()) {
 		case CloudSimTags.VM_DESTROY_ACK:
-			processVMDestroy(ev);
+			if (autoscaler != null && autoscaler.isDestroying(((int[]) ev.getData())[1])) {
+				autoscaler.processReplicaDestroy(ev);
+			} else {
+				processVMDestroy(ev);
+			}
+			break;
+		case CloudSimTagsExt.SERVICE_AUTOSCALE:
+			autoscaler.evaluate();
+			break;
+		case CloudSimTagsExt.SERVICE_REQUEST:
+			processServiceRequest(ev);
 			break;
 		case CloudSimTagsExt.SERVICE_DESTROY_VMS_NOW:
 			destroyVMList((List<Vm>) ev.getData());
 			break;
 		case CloudSimTagsExt.SERVICE_SUBMIT_VMS_NOW:
-			createVmsInDatacenter(getNextDcIdWithShortestDelay());
+			if (NetworkConstants.chainPlacement) {
+				reserveChain();
+			} else {
+				createVmsInDatacenter(getNextDcIdWithShortestDelay());
+			}
+			break;
+		case CloudSimTags.VM_CHAIN_RESERVE_ACK:
+			processChainReserveAck(ev);
 			break;
 		case CloudSimTagsExt.SERVICE_CLOUDLET_DONE_VM:
 			System.out.println(TextUtil.toString(CloudSim.clock()) + ": Service #" + getId() + ": Service #"
@@ -1026,6 +1247,119 @@ public abstract class Service extends SimEntity {
 
 	}
 
+	/**
+	 * Processes a request the broker dispatched to this Service to run on
+	 * cloudlets of its own (see {@link ServiceRequest}): a copy of each
+	 * cloudlet of the chain is made, with the stage program of the cloudlet
+	 * exchanging packets with the other copies and the cloudlet of the
+	 * request instead, and submitted. The copies share the program and only
+	 * keep the ids of their peers, so the cloudlets of the chain must have a
+	 * program. The request is then acknowledged to the broker, which submits
+	 * its cloudlet. A request over the lifetime of this Service is sent back
+	 * to the broker as rejected.
+	 * 
+	 * @param ev
+	 *            a SimEvent object with the {@link ServiceRequest}
+	 */
+	protected void processServiceRequest(SimEvent ev) {
+		ServiceRequest request = (ServiceRequest) ev.getData();
+		if (this.getLifeLength() > 0 && CloudSim.clock() > this.getLifeLength()) {
+			// Drop Request, since it is over this entity lifetime
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + "[REQUEST]: Service #" + getId()
+					+ " DROPING REQUEST #" + request.getRequestId() + "... from Broker #" + ev.getSource()
+					+ "... since over this service lifetime");
+			sendNow(getUserId(), CloudSimTagsExt.SERVICE_REQUEST_REJECT, request);
+			return;
+		}
+		if (!cloudletGenerated) {
+			generateCloudlets();
+			setCloudletGenerated(true);
+		}
+		// the stages of the cloudlets, with the VMs they are bound to now
+		createStages();
+
+		List<NetworkCloudlet> templates = getChainCloudlets();
+
+		IntIntMap copyIds = new IntIntMap(templates.size() + 1);
+		copyIds.put(getBrokerCloudletId(), request.getBrokerCloudlet().getCloudletId());
+		long mips = request.getMessage() != null ? request.getMessage().getMips() : 0;
+		for (NetworkCloudlet template : templates) {
+			NetworkCloudlet copy = new NetworkCloudlet(template.getCloudletLength() + mips,
+					template.getNumberOfPes(), template.getCloudletFileSize(), template.getCloudletOutputSize(),
+					template.getMemory(), template.getUtilizationModelCpu(), template.getUtilizationModelRam(),
+					template.getUtilizationModelBw(), getId());
+			copy.setVmType(template.getVmType());
+			copy.setVmId(template.getVmId());
+			copy.setRequestId(request.getRequestId());
+			copyIds.put(template.getCloudletId(), copy.getCloudletId());
+			request.getCloudlets().add(copy);
+		}
+
+		// the templates share their ids of the cloudlets bound to the roles,
+		// so the copies share the ids of the copies
+		int[] templateIds = null;
+		int[] copyPeerIds = null;
+		for (int i = 0; i < templates.size(); i++) {
+			NetworkCloudlet template = templates.get(i);
+			NetworkCloudlet copy = request.getCloudlets().get(i);
+			if (template.getProgram() == null) {
+				throw new IllegalStateException("Cloudlet #" + template.getCloudletId() + " of Service #" + getId()
+						+ " has no stage program to run requests with");
+			}
+			if (template.getPeerCloudletIds() != templateIds) {
+				templateIds = template.getPeerCloudletIds();
+				copyPeerIds = new int[templateIds.length];
+				for (int role = 0; role < templateIds.length; role++) {
+					copyPeerIds[role] = copyIds.get(templateIds[role]);
+				}
+			}
+			copy.setProgram(template.getProgram(), copyPeerIds, template.getPeerVmIds());
+			copy.setNumStage(template.getNumStage());
+			copy.setSubmittime(CloudSim.clock());
+			copy.setCurrStagenum(-1);
+
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + getId() + ": Sending cloudlet #"
+					+ copy.getCloudletId() + " of request #" + request.getRequestId() + " to VM #" + copy.getVmId());
+			sendNow(getVmsToDatacentersMap().get(copy.getVmId()), CloudSimTags.CLOUDLET_SUBMIT, copy);
+			getCloudletSubmittedList().add(copy);
+			requestCloudlets.put(copy.getCloudletId(), request);
+		}
+		sendNow(getUserId(), CloudSimTagsExt.SERVICE_REQUEST_ACK, request);
+	}
+
+	/**
+	 * Processes the return of a copy of a cloudlet run for a request.
+	 * 
+	 * @param cloudlet
+	 *            the copy
+	 * @param request
+	 *            its request
+	 */
+	protected void processRequestCloudletReturn(Cloudlet cloudlet, ServiceRequest request) {
+		requestCloudlets.remove(cloudlet.getCloudletId());
+		getCloudletSubmittedList().remove(cloudlet);
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + getId() + ": Cloudlet #"
+				+ cloudlet.getCloudletId() + " of request #" + request.getRequestId() + " received");
+		if (request.cloudletReturned()) {
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + getId() + ": All Cloudlets of request #"
+					+ request.getRequestId() + " executed");
+		}
+	}
+
+	/**
+	 * @param vmId
+	 *            the id of a VM of this Service
+	 * @return true if a submitted cloudlet bound to the VM has not returned
+	 */
+	public boolean isVmInUse(int vmId) {
+		for (Cloudlet cloudlet : getCloudletSubmittedList()) {
+			if (cloudlet.getVmId() == vmId && cloudlet.getCloudletStatus() != Cloudlet.SUCCESS) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	protected void processCloudletPausedAck(SimEvent ev) {
 		int[] data = (int[]) ev.getData();
 		int cloudletId = data[1];
@@ -1056,6 +1390,9 @@ public abstract class Service extends SimEntity {
 
 		// }
 
+		if (autoscaler != null) {
+			autoscaler.printReport();
+		}
 		for (Vm vm : getVmList()) {
 			finilizeVM(vm);
 		}
@@ -1235,6 +1572,11 @@ public abstract class Service extends SimEntity {
 	 */
 	protected void processCloudletReturn(SimEvent ev) {
 		Cloudlet cloudlet = (Cloudlet) ev.getData();
+		ServiceRequest request = requestCloudlets.get(cloudlet.getCloudletId());
+		if (request != null) {
+			processRequestCloudletReturn(cloudlet, request);
+			return;
+		}
 		// int clId = cloudlet.getCloudletId();
 		getCloudletReceivedList().add(cloudlet);
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + getId() + ": Cloudlet #"
@@ -1418,6 +1760,21 @@ public abstract class Service extends SimEntity {
 		this.thirdCloudlet = thirdCloudlet;
 	}
 
+	/**
+	 * @return the cloudlets of the chain in the order of their roles in the
+	 *         stage programs, the first one first: by default the first,
+	 *         second and third cloudlets which are set
+	 */
+	public List<NetworkCloudlet> getChainCloudlets() {
+		List<NetworkCloudlet> chain = new ArrayList<>(3);
+		for (NetworkCloudlet cloudlet : new NetworkCloudlet[] { firstCloudlet, secondCloudlet, thirdCloudlet }) {
+			if (cloudlet != null) {
+				chain.add(cloudlet);
+			}
+		}
+		return chain;
+	}
+
 	/**
 	 * @return the brokerCloudletId
 	 */
@@ -1486,12 +1843,33 @@ public abstract class Service extends SimEntity {
 	 */
 	public void resetCloudlets() {
 		setCloudletList(getCloudletReceivedList().size() > 0 ? getCloudletReceivedList() : getCloudletList());
-		setCloudletSubmittedList(new ArrayList<Cloudlet>());
-		setCloudletReceivedList(new ArrayList<Cloudlet>());
+		setCloudletSubmittedList(CloudletList.<Cloudlet> createIndexedList());
+		setCloudletReceivedList(CloudletList.<Cloudlet> createIndexedList());
 		setCloudletsSubmitted(0);
 		for (Cloudlet networkCloudlet : getCloudletList()) {
 			((NetworkCloudlet) networkCloudlet).reset();
-			((NetworkCloudlet) networkCloudlet).setStages(new ArrayList<TaskStage>());
+		}
+	}
+
+	/**
+	 * @return the autoscaler of the tiers, or null if
+	 *         {@link NetworkConstants#autoscaling} is not set
+	 */
+	public TierAutoscaler getAutoscaler() {
+		return autoscaler;
+	}
+
+	/**
+	 * Called when the broker received the response to a request of this
+	 * Service, so that the autoscaler takes it into account.
+	 * 
+	 * @param responseTime
+	 *            the time between the request and the response
+	 */
+	public void responseReceived(double responseTime) {
+		if (autoscaler != null) {
+			autoscaler.observe(responseTime);
+			scheduleNow(getId(), CloudSimTagsExt.SERVICE_AUTOSCALE);
 		}
 	}
 
@@ -1511,6 +1889,38 @@ public abstract class Service extends SimEntity {
 		cloudletIdToService.put(cloudletId, service);
 	}
 
+	/**
+	 * @return the ids of the cloudlets bound to the roles of the stage
+	 *         programs, for the cloudlets of the next request
+	 */
+	protected int[] getRoleCloudletIds() {
+		List<NetworkCloudlet> chain = getChainCloudlets();
+		int[] ids = new int[chain.size() + 1];
+		ids[BROKER_ROLE] = getBrokerCloudletId();
+		for (int i = 0; i < chain.size(); i++) {
+			ids[FIRST_ROLE + i] = chain.get(i).getCloudletId();
+		}
+		return ids;
+	}
+
+	/**
+	 * @return the ids of the VMs of the cloudlets bound to the roles of the
+	 *         stage programs, for the cloudlets of the next request
+	 */
+	protected int[] getRoleVmIds() {
+		List<NetworkCloudlet> chain = getChainCloudlets();
+		int[] ids = new int[chain.size() + 1];
+		ids[BROKER_ROLE] = getBrokerVmId();
+		for (int i = 0; i < chain.size(); i++) {
+			ids[FIRST_ROLE + i] = chain.get(i).getVmId();
+		}
+		return ids;
+	}
+
+	public static void removeCloudletIdServiceMapping(int cloudletId) {
+		cloudletIdToService.remove(cloudletId);
+	}
+
 	public static Service getServiceWithCloudletId(int cloudletId) {
 		return getCloudletIdToService().get(cloudletId);
 	}
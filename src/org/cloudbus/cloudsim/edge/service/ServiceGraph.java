@@ -0,0 +1,219 @@
+package org.cloudbus.cloudsim.edge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudbus.cloudsim.edge.CloudSimTagsExt;
+import org.cloudbus.cloudsim.edge.vm.VmType;
+import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
+import org.cloudbus.cloudsim.network.datacenter.StageProgram;
+
+/**
+ * The call graph of a {@link GraphService}: a directed acyclic graph whose
+ * nodes are the tiers of the service, each run by a cloudlet on a VM of its
+ * own, and whose edges are the calls between them. The request of the broker
+ * goes to node 0, the root, and every other node is called by at least one
+ * node added before it, so the nodes are in topological order.
+ * <p>
+ * Each node receives the calls of its callers, executes, calls all of its
+ * callees at once, waits for their answers and answers its callers. The
+ * callees of a node thus run in parallel and a request takes the time of the
+ * critical path of the graph (see {@link #getCriticalPathTime()}) rather than
+ * the sum of the times of its nodes.
+ * <p>
+ * The node i takes the role i + 1 in the stage programs (see
+ * {@link Service#FIRST_ROLE}), which are compiled the first time they are
+ * asked for. The graph cannot be changed afterwards.
+ */
+public class ServiceGraph {
+
+	private final List<VmType> vmTypes = new ArrayList<>();
+
+	private final List<Integer> pes = new ArrayList<>();
+
+	private final List<Double> times = new ArrayList<>();
+
+	/** The callees of each node, with the data sent each way. */
+	private final List<List<Integer>> callees = new ArrayList<>();
+
+	private final List<List<Double>> calleeData = new ArrayList<>();
+
+	/** The callers of each node, with the data sent each way. */
+	private final List<List<Integer>> callers = new ArrayList<>();
+
+	private final List<List<Double>> callerData = new ArrayList<>();
+
+	/** The stage programs of the nodes, or null before they are compiled. */
+	private StageProgram[] programs;
+
+	/**
+	 * Adds a node.
+	 *
+	 * @param vmType
+	 *            the type of the VM of the node
+	 * @param pes
+	 *            the number of PEs of its cloudlet
+	 * @param time
+	 *            the time it executes for a request
+	 * @return the number of the node
+	 */
+	public int addNode(VmType vmType, int pes, double time) {
+		checkNotCompiled();
+		vmTypes.add(vmType);
+		this.pes.add(pes);
+		times.add(time);
+		callees.add(new ArrayList<Integer>());
+		calleeData.add(new ArrayList<Double>());
+		callers.add(new ArrayList<Integer>());
+		callerData.add(new ArrayList<Double>());
+		return vmTypes.size() - 1;
+	}
+
+	/**
+	 * Adds a call.
+	 *
+	 * @param from
+	 *            the calling node
+	 * @param to
+	 *            the called node, added after the calling one
+	 * @param data
+	 *            the data of the call and of its answer
+	 */
+	public void addEdge(int from, int to, double data) {
+		checkNotCompiled();
+		if (from < 0 || to >= size() || from >= to) {
+			throw new IllegalArgumentException("No call from node " + from + " to node " + to + " in a graph of "
+					+ size() + " nodes, a node only calls the nodes added after it");
+		}
+		if (callees.get(from).contains(to)) {
+			throw new IllegalArgumentException("Node " + from + " already calls node " + to);
+		}
+		callees.get(from).add(to);
+		calleeData.get(from).add(data);
+		callers.get(to).add(from);
+		callerData.get(to).add(data);
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return vmTypes.size();
+	}
+
+	public VmType getVmType(int node) {
+		return vmTypes.get(node);
+	}
+
+	public int getPes(int node) {
+		return pes.get(node);
+	}
+
+	public double getTime(int node) {
+		return times.get(node);
+	}
+
+	/**
+	 * @param node
+	 *            a node
+	 * @param peer
+	 *            another node
+	 * @return the data they send each other for a request, 0 if neither
+	 *         calls the other
+	 */
+	public double getTraffic(int node, int peer) {
+		int from = Math.min(node, peer);
+		int to = Math.max(node, peer);
+		int i = callees.get(from).indexOf(to);
+		return i == -1 ? 0 : 2.0 * calleeData.get(from).get(i);
+	}
+
+	/**
+	 * @param node
+	 *            a node
+	 * @return the stage program of its cloudlet
+	 */
+	public StageProgram getProgram(int node) {
+		if (programs == null) {
+			compile();
+		}
+		return programs[node];
+	}
+
+	/**
+	 * @return the time a request executes on the longest path of calls from
+	 *         the root, the time it takes without the network
+	 */
+	public double getCriticalPathTime() {
+		// the nodes are in topological order, so the callers of a node are
+		// done before it
+		double[] finish = new double[size()];
+		double time = 0;
+		for (int node = 0; node < size(); node++) {
+			double start = 0;
+			for (int caller : callers.get(node)) {
+				start = Math.max(start, finish[caller]);
+			}
+			finish[node] = start + times.get(node);
+			time = Math.max(time, finish[node]);
+		}
+		return time;
+	}
+
+	private void compile() {
+		if (size() == 0) {
+			throw new IllegalStateException("A service graph needs at least one node");
+		}
+		for (int node = 1; node < size(); node++) {
+			if (callers.get(node).isEmpty()) {
+				throw new IllegalStateException("Node " + node + " is not called by any node");
+			}
+		}
+
+		StageProgram[] compiled = new StageProgram[size()];
+		for (int node = 0; node < size(); node++) {
+			StageProgram.Builder builder = new StageProgram.Builder();
+			if (node == 0) {
+				builder.add(NetworkConstants.WAIT_RECV, CloudSimTagsExt.DATA_SIZE, 0, Service.BROKER_ROLE);
+			}
+			for (int i = 0; i < callers.get(node).size(); i++) {
+				builder.add(NetworkConstants.WAIT_RECV, callerData.get(node).get(i), 0,
+						role(callers.get(node).get(i)));
+			}
+			builder.add(NetworkConstants.EXECUTION, 0, times.get(node), role(node));
+			for (int i = 0; i < callees.get(node).size(); i++) {
+				builder.add(NetworkConstants.WAIT_SEND, calleeData.get(node).get(i), 0,
+						role(callees.get(node).get(i)));
+			}
+			for (int i = 0; i < callees.get(node).size(); i++) {
+				builder.add(NetworkConstants.WAIT_RECV, calleeData.get(node).get(i), 0,
+						role(callees.get(node).get(i)));
+			}
+			for (int i = 0; i < callers.get(node).size(); i++) {
+				builder.add(NetworkConstants.WAIT_SEND, callerData.get(node).get(i), 0,
+						role(callers.get(node).get(i)));
+			}
+			if (node == 0) {
+				builder.add(NetworkConstants.WAIT_SEND, CloudSimTagsExt.DATA_SIZE, 0, Service.BROKER_ROLE);
+			}
+			compiled[node] = builder.build();
+		}
+		programs = compiled;
+	}
+
+	/**
+	 * @param node
+	 *            a node
+	 * @return its role in the stage programs
+	 */
+	private static int role(int node) {
+		return Service.FIRST_ROLE + node;
+	}
+
+	private void checkNotCompiled() {
+		if (programs != null) {
+			throw new IllegalStateException("The stage programs of the graph are compiled already");
+		}
+	}
+
+}
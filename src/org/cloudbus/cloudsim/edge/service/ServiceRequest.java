@@ -0,0 +1,95 @@
+package org.cloudbus.cloudsim.edge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudbus.cloudsim.edge.Message;
+import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
+import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
+
+/**
+ * A request to a {@link Service} run on cloudlets of its own (see
+ * {@link NetworkConstants#requestScopedExecution}): a copy of the cloudlet of
+ * the broker and a copy of each cloudlet of the service chain, whose stages
+ * exchange packets with the other copies only. Several requests of the same
+ * service can thus be in flight at once without sharing stages.
+ * <p>
+ * The broker creates the request with its cloudlet, the service adds the
+ * copies of its cloudlets and acknowledges it, and the broker then submits
+ * its cloudlet, which sends the request to the copy of the first cloudlet.
+ */
+public class ServiceRequest {
+
+	private final int requestId;
+
+	private final int serviceId;
+
+	private final Message message;
+
+	/** The cloudlet of the broker which sends the request and gets the response. */
+	private final NetworkCloudlet brokerCloudlet;
+
+	/** The copies of the cloudlets of the service, the first one first. */
+	private final List<NetworkCloudlet> cloudlets = new ArrayList<>();
+
+	private int cloudletsReturned;
+
+	/** The time the broker dispatched the request. */
+	private final double dispatchTime;
+
+	public ServiceRequest(int requestId, int serviceId, Message message, NetworkCloudlet brokerCloudlet,
+			double dispatchTime) {
+		this.requestId = requestId;
+		this.serviceId = serviceId;
+		this.message = message;
+		this.brokerCloudlet = brokerCloudlet;
+		this.dispatchTime = dispatchTime;
+	}
+
+	public int getRequestId() {
+		return requestId;
+	}
+
+	public int getServiceId() {
+		return serviceId;
+	}
+
+	public Message getMessage() {
+		return message;
+	}
+
+	public NetworkCloudlet getBrokerCloudlet() {
+		return brokerCloudlet;
+	}
+
+	/**
+	 * @return the copies of the cloudlets of the service, the first one first
+	 */
+	public List<NetworkCloudlet> getCloudlets() {
+		return cloudlets;
+	}
+
+	/**
+	 * @return the copy of the first cloudlet of the service, which receives
+	 *         the request from the broker, or null before the service added
+	 *         its copies
+	 */
+	public NetworkCloudlet getFirstCloudlet() {
+		return cloudlets.isEmpty() ? null : cloudlets.get(0);
+	}
+
+	/**
+	 * Counts a copy of a cloudlet of the service which returned.
+	 *
+	 * @return true if all copies have returned
+	 */
+	public boolean cloudletReturned() {
+		cloudletsReturned++;
+		return cloudletsReturned == cloudlets.size();
+	}
+
+	public double getDispatchTime() {
+		return dispatchTime;
+	}
+
+}
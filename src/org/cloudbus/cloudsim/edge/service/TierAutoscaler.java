@@ -0,0 +1,390 @@
+package org.cloudbus.cloudsim.edge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.edge.EdgeDatacenterBroker;
+import org.cloudbus.cloudsim.edge.util.NearestDatacenters;
+import org.cloudbus.cloudsim.edge.util.TextUtil;
+import org.cloudbus.cloudsim.edge.vm.EdgeVm;
+import org.cloudbus.cloudsim.edge.vm.VMStatus;
+import org.cloudbus.cloudsim.lists.VmList;
+import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
+import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
+import org.cloudbus.cloudsim.util.IntIntMap;
+import org.cloudbus.cloudsim.util.IntObjectMap;
+import org.cloudbus.cloudsim.util.IntSet;
+
+/**
+ * Scales the tiers of a {@link Service} out and in with the response time of
+ * its requests and the number of its requests queued at the broker (see
+ * {@link NetworkConstants#autoscaling}). A tier is a cloudlet of the chain
+ * with the VMs it can run on: the VM the service was created with, which the
+ * tier always keeps, and the replicas added since. The replicas are created
+ * and destroyed through the datacenters like the other VMs of the service,
+ * in the datacenter of the tier first and then in the nearest ones.
+ * <p>
+ * A scale out adds a replica to the tier with the most work per VM, a scale
+ * in removes one from the tier with the least work per VM once it is gone.
+ * Before each request the broker calls {@link #balance()}, which binds each
+ * tier to its next VM, round robin.
+ */
+public class TierAutoscaler {
+
+	/** The weight of the last response time in the smoothed one. */
+	private static final double SMOOTHING = 0.5;
+
+	private final Service service;
+
+	/** The cloudlets of the tiers. */
+	private final List<NetworkCloudlet> cloudlets = new ArrayList<>();
+
+	/** The created VMs of each tier, the one the service was created with first. */
+	private final List<List<EdgeVm>> replicas = new ArrayList<>();
+
+	/** The position of the VM each tier is bound to next. */
+	private int[] next;
+
+	/** The tier of each replica being created. */
+	private final IntIntMap creating = new IntIntMap();
+
+	/** The datacenters tried for each replica being created. */
+	private final IntObjectMap<NearestDatacenters.Cursor> cursors = new IntObjectMap<>();
+
+	/** The tier of each replica being destroyed. */
+	private final IntIntMap destroying = new IntIntMap();
+
+	/** The response time smoothed over the requests, or -1 before the first. */
+	private double responseTime = -1;
+
+	private double lastScaling = Double.NEGATIVE_INFINITY;
+
+	private int scaleOuts;
+
+	private int scaleIns;
+
+	/** The most VMs the tiers had at once. */
+	private int peakVms;
+
+	/**
+	 * @param service
+	 *            the service whose tiers are scaled
+	 * @throws IllegalStateException
+	 *             if the requests are not executed in cloudlets of their own
+	 *             (see {@link NetworkConstants#requestScopedExecution}): the
+	 *             requests of a service would then still run one after
+	 *             another, and its replicas would only add VMs
+	 */
+	public TierAutoscaler(Service service) {
+		if (!NetworkConstants.requestScopedExecution) {
+			throw new IllegalStateException("Autoscaling Service #" + service.getId()
+					+ " needs NetworkConstants.requestScopedExecution, its requests run one after another otherwise");
+		}
+		this.service = service;
+	}
+
+	/**
+	 * Takes the response time of a request of the service into account.
+	 *
+	 * @param time
+	 *            the time between the request sent by the broker and the
+	 *            response it received
+	 */
+	public void observe(double time) {
+		responseTime = responseTime < 0 ? time : SMOOTHING * time + (1 - SMOOTHING) * responseTime;
+	}
+
+	/**
+	 * Binds the cloudlet of each tier to the next VM of the tier, before a
+	 * request.
+	 */
+	public void balance() {
+		if (!findTiers()) {
+			return;
+		}
+		for (int tier = 0; tier < cloudlets.size(); tier++) {
+			List<EdgeVm> vms = replicas.get(tier);
+			next[tier] %= vms.size();
+			cloudlets.get(tier).setVmId(vms.get(next[tier]).getId());
+			next[tier] = (next[tier] + 1) % vms.size();
+		}
+		service.setFirstVmId(service.getFirstCloudlet().getVmId());
+	}
+
+	/**
+	 * Scales a tier out or in if the response time or the queue of the
+	 * service call for it, unless a replica is still being created or
+	 * destroyed or the last scaling is too recent.
+	 */
+	public void evaluate() {
+		if (!findTiers() || responseTime < 0 || !creating.isEmpty() || !destroying.isEmpty()
+				|| CloudSim.clock() - lastScaling < NetworkConstants.scaleCooldown) {
+			return;
+		}
+		int queued = getBroker().getQueuedRequests(service.getId());
+		if (responseTime > NetworkConstants.scaleOutResponseTime || queued >= NetworkConstants.scaleOutQueueLength) {
+			int bottleneck = -1;
+			for (int tier = 0; tier < cloudlets.size(); tier++) {
+				int vms = replicas.get(tier).size();
+				if (vms < NetworkConstants.maxReplicas
+						&& (bottleneck == -1 || work(tier, vms) > work(bottleneck, replicas.get(bottleneck).size()))) {
+					bottleneck = tier;
+				}
+			}
+			if (bottleneck != -1) {
+				scaleOut(bottleneck, queued);
+			}
+		} else if (responseTime < NetworkConstants.scaleInResponseTime && queued == 0) {
+			int idlest = -1;
+			for (int tier = 0; tier < cloudlets.size(); tier++) {
+				int vms = replicas.get(tier).size();
+				if (vms > 1 && (idlest == -1 || work(tier, vms - 1) < work(idlest, replicas.get(idlest).size() - 1))) {
+					idlest = tier;
+				}
+			}
+			if (idlest != -1) {
+				scaleIn(idlest);
+			}
+		}
+	}
+
+	/**
+	 * @param vmId
+	 *            the id of a VM of the service
+	 * @return $true if it is a replica being created
+	 */
+	public boolean isCreating(int vmId) {
+		return creating.containsKey(vmId);
+	}
+
+	/**
+	 * @param vmId
+	 *            the id of a VM of the service
+	 * @return $true if it is a replica being destroyed
+	 */
+	public boolean isDestroying(int vmId) {
+		return destroying.containsKey(vmId);
+	}
+
+	/**
+	 * Process the ack of a datacenter to the creation of a replica. The
+	 * replica is tried in the next nearest datacenter if it was not created.
+	 *
+	 * @param ev
+	 *            a SimEvent object
+	 */
+	public void processReplicaCreate(SimEvent ev) {
+		int[] data = (int[]) ev.getData();
+		int datacenterId = data[0];
+		int vmId = data[1];
+		EdgeVm vm = VmList.getById(service.getVmList(), vmId);
+		int tier = creating.get(vmId);
+
+		if (data[2] == CloudSimTags.TRUE) {
+			creating.remove(vmId);
+			cursors.remove(vmId);
+			service.getVmsToDatacentersMap().put(vmId, datacenterId);
+			service.getVmsCreatedList().add(vm);
+			replicas.get(tier).add(vm);
+			scaleOuts++;
+			peakVms = Math.max(peakVms, getVmCount());
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + service.getId() + ": replica VM #"
+					+ vmId + " of tier " + tier + " created in Datacenter #" + datacenterId + ", Host #"
+					+ vm.getHost().getId());
+			return;
+		}
+
+		int dcId = cursors.get(vmId).nearest();
+		if (dcId != -1) {
+			create(vm, dcId);
+			return;
+		}
+		creating.remove(vmId);
+		cursors.remove(vmId);
+		service.getVmList().remove(vm);
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + service.getId()
+				+ ": no datacenter could create replica VM #" + vmId + " of tier " + tier);
+	}
+
+	/**
+	 * Process the ack of a datacenter to the destruction of a replica.
+	 *
+	 * @param ev
+	 *            a SimEvent object
+	 */
+	public void processReplicaDestroy(SimEvent ev) {
+		int[] data = (int[]) ev.getData();
+		int datacenterId = data[0];
+		int vmId = data[1];
+		EdgeVm vm = VmList.getById(service.getVmList(), vmId);
+		int tier = destroying.remove(vmId);
+
+		if (data[2] == CloudSimTags.TRUE) {
+			service.getVmsCreatedList().remove(vm);
+			service.getVmList().remove(vm);
+			service.getVmsToDatacentersMap().remove(vmId);
+			if (vm.getStatus() != VMStatus.TERMINATED) {
+				vm.setStatus(VMStatus.TERMINATED);
+			}
+			scaleIns++;
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + service.getId() + ": replica VM #"
+					+ vmId + " of tier " + tier + " destroyed in Datacenter #" + datacenterId);
+		} else {
+			// the tier keeps the replica
+			replicas.get(tier).add(vm);
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + service.getId()
+					+ ": destruction of replica VM #" + vmId + " failed in Datacenter #" + datacenterId);
+		}
+	}
+
+	/**
+	 * Prints how the service scaled.
+	 */
+	public void printReport() {
+		StringBuilder tiers = new StringBuilder();
+		for (List<EdgeVm> vms : replicas) {
+			tiers.append(tiers.length() == 0 ? "" : "/").append(vms.size());
+		}
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + service.getId() + " scaled out "
+				+ scaleOuts + " and in " + scaleIns + " time(s), with up to " + peakVms
+				+ " VM(s) and VMs per tier " + (tiers.length() == 0 ? "none" : tiers) + " at the end");
+	}
+
+	public int getScaleOuts() {
+		return scaleOuts;
+	}
+
+	public int getScaleIns() {
+		return scaleIns;
+	}
+
+	public int getPeakVms() {
+		return peakVms;
+	}
+
+	/**
+	 * @return the smoothed response time of the service, or -1 before its
+	 *         first response
+	 */
+	public double getResponseTime() {
+		return responseTime;
+	}
+
+	/**
+	 * @param tier
+	 *            a tier
+	 * @return the created VMs of the tier
+	 */
+	public List<EdgeVm> getReplicas(int tier) {
+		return replicas.get(tier);
+	}
+
+	/**
+	 * @return the number of created VMs of all tiers
+	 */
+	public int getVmCount() {
+		int count = 0;
+		for (List<EdgeVm> vms : replicas) {
+			count += vms.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the tiers the first time the cloudlets of the service are bound
+	 * to their VMs.
+	 *
+	 * @return $true if the tiers are known
+	 */
+	private boolean findTiers() {
+		if (next != null) {
+			return true;
+		}
+		if (service.getFirstCloudlet() == null) {
+			return false;
+		}
+		for (NetworkCloudlet cloudlet : service.getChainCloudlets()) {
+			EdgeVm vm = VmList.getById(service.getVmsCreatedList(), cloudlet.getVmId());
+			if (vm != null) {
+				cloudlets.add(cloudlet);
+				List<EdgeVm> vms = new ArrayList<>();
+				vms.add(vm);
+				replicas.add(vms);
+			}
+		}
+		next = new int[cloudlets.size()];
+		peakVms = getVmCount();
+		return true;
+	}
+
+	/**
+	 * @param tier
+	 *            a tier
+	 * @param vms
+	 *            a number of VMs
+	 * @return the time the cloudlet of the tier takes on its VM, divided by
+	 *         the number of VMs
+	 */
+	private double work(int tier, int vms) {
+		EdgeVm vm = replicas.get(tier).get(0);
+		return cloudlets.get(tier).getCloudletLength() / (vm.getMips() * vm.getNumberOfPes()) / vms;
+	}
+
+	private void scaleOut(int tier, int queued) {
+		EdgeVm original = replicas.get(tier).get(0);
+		EdgeVm replica = EdgeVm.create(original.getType());
+		if (replica == null) {
+			return;
+		}
+		replica.setUserId(service.getId());
+		service.getVmList().add(replica);
+		creating.put(replica.getId(), tier);
+		cursors.put(replica.getId(), getBroker().getNearestDcs().cursor(new ArrayList<Integer>()));
+		lastScaling = CloudSim.clock();
+
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + service.getId() + ": scaling out tier "
+				+ tier + " with VM #" + replica.getId() + ", response time " + TextUtil.toString(responseTime)
+				+ ", " + queued + " request(s) queued");
+		create(replica, service.getVmsToDatacentersMap().get(original.getId()));
+	}
+
+	private void scaleIn(int tier) {
+		List<EdgeVm> vms = replicas.get(tier);
+		// the last replica the cloudlet of the tier is not bound to and no
+		// request runs on
+		EdgeVm replica = null;
+		for (int i = vms.size() - 1; i > 0 && replica == null; i--) {
+			if (vms.get(i).getId() != cloudlets.get(tier).getVmId() && !service.isVmInUse(vms.get(i).getId())) {
+				replica = vms.remove(i);
+			}
+		}
+		if (replica == null) {
+			return;
+		}
+		destroying.put(replica.getId(), tier);
+		lastScaling = CloudSim.clock();
+
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + service.getId() + ": scaling in tier "
+				+ tier + " without VM #" + replica.getId() + ", response time " + TextUtil.toString(responseTime));
+		// Update the cloudlets before we send the kill event
+		replica.getHost().getDatacenter().updateHostProcessing(replica.getHost());
+		service.scheduleNow(service.getVmsToDatacentersMap().get(replica.getId()), CloudSimTags.VM_DESTROY_ACK,
+				replica);
+	}
+
+	private void create(EdgeVm vm, int datacenterId) {
+		cursors.get(vm.getId()).getTried().add(datacenterId);
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Service #" + service.getId()
+				+ ": Trying to Create replica VM #" + vm.getId() + " in Datacenter #" + datacenterId);
+		service.scheduleNow(datacenterId, CloudSimTags.VM_CREATE_ACK, vm);
+	}
+
+	private EdgeDatacenterBroker getBroker() {
+		return (EdgeDatacenterBroker) CloudSim.getEntity(service.getUserId());
+	}
+
+}
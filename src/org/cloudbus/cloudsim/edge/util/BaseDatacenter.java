@@ -13,6 +13,7 @@ import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.NetworkTopology;
 import org.cloudbus.cloudsim.Pe;
 import org.cloudbus.cloudsim.Storage;
+import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.cloudbus.cloudsim.VmSchedulerSpaceShared;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.edge.CloudSimTagsExt;
@@ -25,11 +26,17 @@ import org.cloudbus.cloudsim.edge.random.ExponentialRNS;
 import org.cloudbus.cloudsim.edge.service.EdgeDbService;
 import org.cloudbus.cloudsim.edge.service.EdgeStreamingService;
 import org.cloudbus.cloudsim.edge.service.EdgeWebService;
+import org.cloudbus.cloudsim.edge.service.GraphService;
 import org.cloudbus.cloudsim.edge.service.Service;
+import org.cloudbus.cloudsim.edge.service.ServiceGraph;
 import org.cloudbus.cloudsim.edge.vm.T2Nano;
+import org.cloudbus.cloudsim.edge.vm.VmType;
+import org.cloudbus.cloudsim.edge.vmallocationpolicy.VmAllocationPolicyAffinity;
 import org.cloudbus.cloudsim.edge.vmallocationpolicy.VmAllocationPolicyCpu;
+import org.cloudbus.cloudsim.edge.vmallocationpolicy.VmAllocationPolicyMultiResource;
 import org.cloudbus.cloudsim.network.datacenter.AggregateSwitch;
 import org.cloudbus.cloudsim.network.datacenter.EdgeSwitch;
+import org.cloudbus.cloudsim.network.datacenter.FlowNetwork;
 import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
 import org.cloudbus.cloudsim.network.datacenter.NetworkDatacenter;
 import org.cloudbus.cloudsim.network.datacenter.NetworkHost;
@@ -94,7 +101,7 @@ public class BaseDatacenter {
 		// create a NetworkDatacenter object.
 		NetworkDatacenter datacenter = null;
 		try {
-			datacenter = new NetworkDatacenter(name, characteristics, new VmAllocationPolicyCpu(hostList), storageList,
+			datacenter = new NetworkDatacenter(name, characteristics, createVmAllocationPolicy(hostList), storageList,
 					0);
 
 		} catch (Exception e) {
@@ -157,7 +164,7 @@ public class BaseDatacenter {
 		// create the NetworkDatacenter object.
 		NetworkDatacenter datacenter = null;
 		try {
-			datacenter = new NetworkDatacenter(name, characteristics, new VmAllocationPolicyCpu(hostList), storageList,
+			datacenter = new NetworkDatacenter(name, characteristics, createVmAllocationPolicy(hostList), storageList,
 					0);
 
 		} catch (Exception e) {
@@ -193,6 +200,25 @@ public class BaseDatacenter {
 				new VmSchedulerSpaceShared(peList));
 	}
 
+	/**
+	 * Creates the VM allocation policy of a data center, by
+	 * {@link NetworkConstants#trafficAwarePlacement} and
+	 * {@link NetworkConstants#multiResourcePlacement}.
+	 * 
+	 * @param hostList
+	 *            the hosts of the data center
+	 * @return the policy
+	 */
+	public static VmAllocationPolicy createVmAllocationPolicy(List<EdgeHost> hostList) {
+		if (NetworkConstants.trafficAwarePlacement) {
+			return new VmAllocationPolicyAffinity(hostList, NetworkConstants.placementHeuristic);
+		}
+		if (NetworkConstants.multiResourcePlacement) {
+			return new VmAllocationPolicyMultiResource(hostList, NetworkConstants.placementHeuristic);
+		}
+		return new VmAllocationPolicyCpu(hostList);
+	}
+
 	/**
 	 * inter-connect data centers.
 	 * 
@@ -267,6 +293,100 @@ public class BaseDatacenter {
 		NetworkTopology.mapNode(dcs.get(3).getId(), 11);
 		NetworkTopology.mapNode(getDcFirstEdgeSwitch(dcs.get(3)), 12);
 
+		// transfers between hosts as flows instead of packets
+		if (NetworkConstants.flowModel) {
+			FlowNetwork.create();
+		}
+
+	}
+
+	/**
+	 * Inter-connects the data centers of {@link #createNetworkWorkingFirst()}
+	 * and adds {@link GraphService}s whose calls form a diamond (see
+	 * {@link #createDiamondGraph()}). At the end of the simulation each
+	 * service reports its response times against the critical path of the
+	 * graph.
+	 * 
+	 * @throws Exception
+	 */
+	public static void createNetworkWorkingGraph() throws Exception {
+		ArrayList<NetworkDatacenter> dcs = new ArrayList<>();
+		ArrayList<AggregateSwitch> aggSwitch = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			dcs.add(createNetworkDatacenter("DC" + i, 2, 16 * 1024, 8));
+		}
+		for (int i = 0; i < 3; i++) {
+			aggSwitch.add(new AggregateSwitch("Agg" + i, NetworkConstants.Agg_LEVEL, dcs.get(0)));
+		}
+		NetworkDatacenter udc = createNetworkDatacenter("UDC", 2, 8048, 4);
+		udc.setUserDC(true);
+
+		EdgeDatacenterBroker broker = new EdgeDatacenterBroker("Broker_GRAPH");
+		broker.setUserDC(udc);
+
+		aggSwitch.get(0).uplinkswitches.add(aggSwitch.get(1));
+
+		aggSwitch.get(1).uplinkswitches.add(aggSwitch.get(0));
+		aggSwitch.get(1).uplinkswitches.add(aggSwitch.get(2));
+
+		aggSwitch.get(2).uplinkswitches.add(aggSwitch.get(1));
+
+		// Generate Graph Service start times
+		List<Double> graphServiceStarts = getServiceStartTime(0.000001);
+
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + "[INFO]: BaseDatacenter # OF GRAPH SERVICES: "
+				+ graphServiceStarts.size());
+
+		// Add Graph Services
+		addServices(broker, graphServiceStarts, ServiceTyp.GRAPH, createDiamondGraph(), 0.000001);
+		// add requests for Graph Services
+		addRequests(broker, graphServiceStarts, ServiceTyp.GRAPH, 0.00001);
+
+		// maps CloudSim entities to BRITE entities
+		NetworkTopology.mapNode(udc.getId(), 0);
+		NetworkTopology.mapNode(getDcFirstEdgeSwitch(udc), 1);
+
+		NetworkTopology.mapNode(aggSwitch.get(0).getId(), 2);
+
+		NetworkTopology.mapNode(dcs.get(0).getId(), 3);
+		NetworkTopology.mapNode(getDcFirstEdgeSwitch(dcs.get(0)), 4);
+
+		NetworkTopology.mapNode(aggSwitch.get(1).getId(), 5);
+
+		NetworkTopology.mapNode(dcs.get(1).getId(), 6);
+		NetworkTopology.mapNode(getDcFirstEdgeSwitch(dcs.get(1)), 7);
+
+		NetworkTopology.mapNode(dcs.get(2).getId(), 8);
+		NetworkTopology.mapNode(getDcFirstEdgeSwitch(dcs.get(2)), 9);
+
+		NetworkTopology.mapNode(aggSwitch.get(2).getId(), 10);
+
+		NetworkTopology.mapNode(dcs.get(3).getId(), 11);
+		NetworkTopology.mapNode(getDcFirstEdgeSwitch(dcs.get(3)), 12);
+
+		// transfers between hosts as flows instead of packets
+		if (NetworkConstants.flowModel) {
+			FlowNetwork.create();
+		}
+	}
+
+	/**
+	 * @return a call graph whose root calls two nodes at once, which both
+	 *         call a fourth one. The slow branch takes twice the time of the
+	 *         other, so the critical path is the root, the slow branch and the
+	 *         fourth node, and the fast branch runs while the slow one does.
+	 */
+	public static ServiceGraph createDiamondGraph() {
+		ServiceGraph graph = new ServiceGraph();
+		int root = graph.addNode(VmType.T2SMALL, 2, 10240 * 0.8);
+		int slow = graph.addNode(VmType.T2SMALL, 2, 10240 * 0.8 * 2);
+		int fast = graph.addNode(VmType.T2SMALL, 2, 10240 * 0.8);
+		int join = graph.addNode(VmType.T2SMALL, 2, 10240 * 0.8);
+		graph.addEdge(root, slow, CloudSimTagsExt.DATA_SIZE);
+		graph.addEdge(root, fast, CloudSimTagsExt.DATA_SIZE);
+		graph.addEdge(slow, join, CloudSimTagsExt.DATA_SIZE);
+		graph.addEdge(fast, join, CloudSimTagsExt.DATA_SIZE);
+		return graph;
 	}
 
 	/**
@@ -421,6 +541,11 @@ public class BaseDatacenter {
 		NetworkTopology.mapNode(getDcFirstEdgeSwitch(udcs.get(3)), 20);
 		NetworkTopology.mapNode(udcs.get(3).getId(), 21);
 
+		// transfers between hosts as flows instead of packets
+		if (NetworkConstants.flowModel) {
+			FlowNetwork.create();
+		}
+
 	}
 
 	/**
@@ -456,6 +581,18 @@ public class BaseDatacenter {
 	 */
 	public static void addServices(EdgeDatacenterBroker broker, List<Double> serviceStarts, ServiceTyp serviceType,
 			double lambda) {
+		addServices(broker, serviceStarts, serviceType, null, lambda);
+	}
+
+	/**
+	 * Adds services of a type to a broker, one for each start time.
+	 * 
+	 * @param graph
+	 *            the call graph of the services of type
+	 *            {@link ServiceTyp#GRAPH}, null for the other types
+	 */
+	public static void addServices(EdgeDatacenterBroker broker, List<Double> serviceStarts, ServiceTyp serviceType,
+			ServiceGraph graph, double lambda) {
 		ExponentialRNS serviceLifetimeDist = new ExponentialRNS(lambda);
 		Service service;
 		// Add number of Web Service X based on the service start times.
@@ -474,6 +611,9 @@ public class BaseDatacenter {
 			case STREAMING:
 				service = new EdgeStreamingService("ESS" + i, startPlusLifetime);
 				break;
+			case GRAPH:
+				service = new GraphService("EGS" + i, startPlusLifetime, graph);
+				break;
 
 			default:
 				service = null;
@@ -524,6 +664,9 @@ public class BaseDatacenter {
 		case STREAMING:
 			serviceTypeList = ServiceList.getStreamingServices(serviceList);
 			break;
+		case GRAPH:
+			serviceTypeList = ServiceList.getGraphServices(serviceList);
+			break;
 
 		default:
 			serviceTypeList = new ArrayList<>();
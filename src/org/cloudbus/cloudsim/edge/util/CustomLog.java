@@ -90,6 +90,7 @@ public class CustomLog {
 	public static final String FILE_RESPONSE_PATH_PROP_KEY = "ResponseFilePath";
 	public static final String FILE_VM_REQUEST_PATH_PROP_KEY = "VmRequestFilePath";
 	public static final String FILE_SERVICE_CHAIN_PATH_PROP_KEY = "serviceChainFilePath";
+	public static final String FILE_LINK_PATH_PROP_KEY = "LinkFilePath";
 
 	/**
 	 * A key for a boolean property specifying whether the standard CloudSim
@@ -116,6 +117,7 @@ public class CustomLog {
 	private static final Logger LOGGER_RESPONSE = Logger.getLogger("Response");
 	private static final Logger LOGGER_VM_REQUEST = Logger.getLogger("VmRequest");
 	private static final Logger LOGGER_SERVICE_CHAIN = Logger.getLogger("serviceChain");
+	private static final Logger LOGGER_LINK = Logger.getLogger("Link");
 
 	/** Buffer to avoid creating new string builder upon every print. */
 	private static StringBuilder builder = new StringBuilder();
@@ -279,6 +281,10 @@ public class CustomLog {
 		printf(LOGGER_SERVICE_CHAIN, DEFAULT_LEVEL, String.format(format, args));
 	}
 
+	public static void printLink(final String format, final Object... args) {
+		printf(LOGGER_LINK, DEFAULT_LEVEL, String.format(format, args));
+	}
+
 	/**
 	 * Prints a header for the specified class. The format is as per the
 	 * specification in {@link TextUtil}
@@ -605,6 +611,8 @@ public class CustomLog {
 				? props.getProperty(FILE_VM_REQUEST_PATH_PROP_KEY).toString() : null;
 		final String serviceChainFileName = props.containsKey(FILE_SERVICE_CHAIN_PATH_PROP_KEY)
 				? props.getProperty(FILE_SERVICE_CHAIN_PATH_PROP_KEY).toString() : null;
+		final String linkFileName = props.containsKey(FILE_LINK_PATH_PROP_KEY)
+				? props.getProperty(FILE_LINK_PATH_PROP_KEY).toString() : null;
 		final String format = props.getProperty(LOG_FORMAT_PROP_KEY, "getLevel;getMessage").toString().trim();
 		final boolean prefixCloudSimClock = Boolean
 				.parseBoolean(props.getProperty(LOG_CLOUD_SIM_CLOCK_PROP_KEY, "false").toString().trim());
@@ -627,6 +635,7 @@ public class CustomLog {
 		LOGGER_RESPONSE.setUseParentHandlers(false);
 		LOGGER_VM_REQUEST.setUseParentHandlers(false);
 		LOGGER_SERVICE_CHAIN.setUseParentHandlers(false);
+		LOGGER_LINK.setUseParentHandlers(false);
 		formatter = new CustomFormatter(prefixCloudSimClock, prefixReadableCloudSimClock, prefixRealTimeClock, format);
 
 		redirectToFile(LOGGER, fileName);
@@ -634,6 +643,7 @@ public class CustomLog {
 		redirectToFile(LOGGER_RESPONSE, responseFileName);
 		redirectToFile(LOGGER_VM_REQUEST, vmRequestFileName);
 		redirectToFile(LOGGER_SERVICE_CHAIN, serviceChainFileName);
+		redirectToFile(LOGGER_LINK, linkFileName);
 	}
 
 	/**
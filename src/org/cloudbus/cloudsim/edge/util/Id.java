@@ -1,9 +1,6 @@
 package org.cloudbus.cloudsim.edge.util;
 
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.DatacenterBroker;
@@ -15,66 +12,113 @@ import org.cloudbus.cloudsim.Vm;
  * A factory for CloudSim entities' ids. CloudSim requires a lot of ids, that
  * are provided by the end user. This class is a utility for automatically
  * generating valid ids.
- * 
+ * <p>
+ * The ids are taken from a {@link Scope}. By default all threads share one
+ * scope. Simulations built in parallel can each set their own scope with
+ * {@link #setScope(Scope)}, so that their ids do not depend on each other.
+ *
  * @author nikolay.grozev
- * 
+ *
  */
 public final class Id {
 
-    private static final Map<Class<?>, Integer> COUNTERS = new LinkedHashMap<>();
-    private static final Set<Class<?>> NO_COUNTERS = new HashSet<>();
-    private static int globalCounter = 1;
+    /** The classes with their own counter. Other classes share the global one. */
+    private static final Class<?>[] COUNTERS = { Cloudlet.class, Vm.class, Host.class, DatacenterBroker.class,
+            Pe.class };
 
-    static {
-        COUNTERS.put(Cloudlet.class, 0);
-        COUNTERS.put(Vm.class, 0);
-        COUNTERS.put(Host.class, 0);
-        COUNTERS.put(DatacenterBroker.class, 0);
-        COUNTERS.put(Pe.class, 0);
-    }
+    /** The index of the global counter in a scope. */
+    private static final int GLOBAL_COUNTER = COUNTERS.length;
+
+    /** The counter of each class, looked up once per class. */
+    private static final ClassValue<Integer> COUNTER_INDEX = new ClassValue<Integer>() {
+
+        @Override
+        protected Integer computeValue(Class<?> clazz) {
+            for (int i = 0; i < COUNTERS.length; i++) {
+                if (COUNTERS[i].isAssignableFrom(clazz)) {
+                    return i;
+                }
+            }
+            return GLOBAL_COUNTER;
+        }
+    };
+
+    private static final Scope DEFAULT_SCOPE = new Scope();
+
+    /** The scope of the threads which have set one, and of the threads they start. */
+    private static final ThreadLocal<Scope> SCOPE = new InheritableThreadLocal<>();
 
     private Id() {
     }
 
     /**
      * Returns a valid id for the specified class.
-     * 
+     *
      * @param clazz
      *            - the class of the object to get an id for. Must not be null.
      * @return a valid id for the specified class.
      */
-    public static synchronized int pollId(final Class<?> clazz) {
-        Class<?> matchClass = null;
-        if (COUNTERS.containsKey(clazz)) {
-            matchClass = clazz;
-        } else if (!NO_COUNTERS.contains(clazz)) {
-            for (Class<?> key : COUNTERS.keySet()) {
-                if (key.isAssignableFrom(clazz)) {
-                    matchClass = key;
-                    break;
-                }
-            }
-        }
+    public static int pollId(final Class<?> clazz) {
+        return getScope().pollId(clazz);
+    }
 
-        int result = -1;
-        if (matchClass == null) {
-            NO_COUNTERS.add(clazz);
-            result = pollGlobalId();
+    /**
+     * @return the scope the current thread takes ids from.
+     */
+    public static Scope getScope() {
+        Scope scope = SCOPE.get();
+        return scope == null ? DEFAULT_SCOPE : scope;
+    }
+
+    /**
+     * Sets the scope the current thread, and the threads it starts from now
+     * on, take ids from.
+     *
+     * @param scope
+     *            - the scope, or null to use the shared one again.
+     */
+    public static void setScope(final Scope scope) {
+        if (scope == null) {
+            SCOPE.remove();
         } else {
-            result = COUNTERS.get(matchClass);
-            COUNTERS.put(matchClass, result + 1);
+            SCOPE.set(scope);
         }
+    }
 
-        if (result < 0) {
-            throw new IllegalStateException("The generated id for class:" + clazz.getName()
-                    + " is negative. Possible integer overflow.");
+    /**
+     * The counters of one id space. A new scope hands out the same ids in the
+     * same order as a new JVM, so a simulation built in its own scope gets
+     * the same ids in every run.
+     */
+    public static final class Scope {
+
+        private final AtomicInteger[] counters;
+
+        public Scope() {
+            counters = new AtomicInteger[COUNTERS.length + 1];
+            for (int i = 0; i < COUNTERS.length; i++) {
+                counters[i] = new AtomicInteger(0);
+            }
+            counters[GLOBAL_COUNTER] = new AtomicInteger(1);
         }
 
-        return result;
-    }
+        /**
+         * Returns a valid id for the specified class.
+         *
+         * @param clazz
+         *            - the class of the object to get an id for. Must not be
+         *            null.
+         * @return a valid id for the specified class.
+         */
+        public int pollId(final Class<?> clazz) {
+            int result = counters[COUNTER_INDEX.get(clazz)].getAndIncrement();
+            if (result < 0) {
+                throw new IllegalStateException("The generated id for class:" + clazz.getName()
+                        + " is negative. Possible integer overflow.");
+            }
+            return result;
+        }
 
-    private static synchronized int pollGlobalId() {
-        return globalCounter++;
     }
 
 }
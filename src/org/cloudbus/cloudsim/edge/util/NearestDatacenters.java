@@ -0,0 +1,182 @@
+package org.cloudbus.cloudsim.edge.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.cloudbus.cloudsim.NetworkTopology;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.network.datacenter.NetworkDatacenter;
+import org.cloudbus.cloudsim.util.IntSet;
+
+/**
+ * The datacenters of one kind, user datacenters or the others, sorted by
+ * their delay from an origin datacenter, and at equal delay by their
+ * bandwidth from it, the most first, and then by their order in the cloud
+ * resource list. The order is computed once and again only when the network
+ * topology or the cloud resource list change (see
+ * {@link NetworkTopology#getVersion()}).
+ * <p>
+ * A placement goes through the datacenters with a {@link Cursor}, which skips
+ * those already tried without going through them again.
+ */
+public class NearestDatacenters {
+
+	/** The datacenter the delays are measured from, or -1 for none. */
+	private final int originId;
+
+	/** Whether the datacenters are user datacenters. */
+	private final boolean userDcs;
+
+	/** The ids of the datacenters, the nearest first. */
+	private int[] ids;
+
+	/** The topology version the order was computed for. */
+	private int version = -1;
+
+	/** The size of the cloud resource list the order was computed for. */
+	private int resourceCount = -1;
+
+	/**
+	 * @param originId
+	 *            the datacenter the delays are measured from, or -1 to keep
+	 *            the order of the cloud resource list
+	 * @param userDcs
+	 *            $true for the user datacenters, $false for the others
+	 */
+	public NearestDatacenters(int originId, boolean userDcs) {
+		this.originId = originId;
+		this.userDcs = userDcs;
+	}
+
+	public int getOriginId() {
+		return originId;
+	}
+
+	/**
+	 * @return the ids of the datacenters, the nearest first
+	 */
+	public int[] getIds() {
+		List<Integer> resources = CloudSim.getCloudResourceList();
+		int count = resources == null ? 0 : resources.size();
+		if (ids == null || version != NetworkTopology.getVersion() || resourceCount != count) {
+			sort(resources);
+			version = NetworkTopology.getVersion();
+			resourceCount = count;
+		}
+		return ids;
+	}
+
+	/**
+	 * @param tried
+	 *            the ids of the datacenters already tried, to which the
+	 *            placement adds the next ones it tries
+	 * @return a cursor over the datacenters, skipping those tried
+	 */
+	public Cursor cursor(List<Integer> tried) {
+		return new Cursor(tried);
+	}
+
+	private void sort(List<Integer> resources) {
+		List<Integer> candidates = new ArrayList<Integer>();
+		if (resources != null) {
+			for (Integer dcId : resources) {
+				SimEntity entity = CloudSim.getEntity(dcId);
+				if (entity instanceof NetworkDatacenter && ((NetworkDatacenter) entity).isUserDC() == userDcs) {
+					candidates.add(dcId);
+				}
+			}
+		}
+
+		final int size = candidates.size();
+		final double[] delays = new double[size];
+		final double[] bws = new double[size];
+		List<Integer> positions = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++) {
+			if (originId != -1) {
+				delays[i] = NetworkTopology.getDelay(originId, candidates.get(i));
+				bws[i] = NetworkTopology.getBw(originId, candidates.get(i));
+			}
+			positions.add(i);
+		}
+		// a stable sort, so equal datacenters stay in the order of the list
+		Collections.sort(positions, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer p1, Integer p2) {
+				int result = Double.compare(delays[p1], delays[p2]);
+				if (result == 0) {
+					result = Double.compare(bws[p2], bws[p1]);
+				}
+				return result;
+			}
+		});
+
+		ids = new int[size];
+		for (int i = 0; i < size; i++) {
+			ids[i] = candidates.get(positions.get(i));
+		}
+	}
+
+	/**
+	 * Goes through the datacenters from the nearest one, skipping those in a
+	 * list of tried datacenters. The list only grows while the cursor is
+	 * used, so each of its ids and each datacenter is looked at once.
+	 */
+	public class Cursor {
+
+		private final List<Integer> tried;
+
+		/** The number of ids of the tried list already in the set. */
+		private int seen;
+
+		private final IntSet triedSet = new IntSet();
+
+		/** The order the position is in. */
+		private int[] order;
+
+		/** The position of the first datacenter which may not have been tried. */
+		private int position;
+
+		private Cursor(List<Integer> tried) {
+			this.tried = tried;
+		}
+
+		/**
+		 * @return the datacenters the cursor goes through
+		 */
+		public NearestDatacenters getDatacenters() {
+			return NearestDatacenters.this;
+		}
+
+		/**
+		 * @return the list of tried datacenters the cursor skips
+		 */
+		public List<Integer> getTried() {
+			return tried;
+		}
+
+		/**
+		 * @return the id of the nearest datacenter not tried yet, or -1 if all
+		 *         have been tried
+		 */
+		public int nearest() {
+			int[] current = getIds();
+			if (current != order) {
+				order = current;
+				position = 0;
+			}
+			for (; seen < tried.size(); seen++) {
+				triedSet.add(tried.get(seen));
+			}
+			while (position < order.length && triedSet.contains(order[position])) {
+				position++;
+			}
+			return position < order.length ? order[position] : -1;
+		}
+
+	}
+
+}
@@ -7,9 +7,12 @@ import java.util.Objects;
 import org.cloudbus.cloudsim.CloudletScheduler;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.edge.EdgeCloudletSpaceSharedScheduler;
+import org.cloudbus.cloudsim.edge.EdgeCloudletTimeSharedScheduler;
 import org.cloudbus.cloudsim.edge.util.Id;
 import org.cloudbus.cloudsim.network.datacenter.HostPacket;
 import org.cloudbus.cloudsim.network.datacenter.NetworkCloudlet;
+import org.cloudbus.cloudsim.network.datacenter.NetworkConstants;
 
 /**
  * An extension of the base cloudsim VM, adding information about:
@@ -93,6 +96,37 @@ public class EdgeVm extends Vm {
         this.cloudletlist = new ArrayList<NetworkCloudlet>();
     }
 
+    /**
+     * @return a new cloudlet scheduler for an edge VM, time-shared if
+     *         {@link NetworkConstants#timeSharedVms} is set
+     */
+    public static CloudletScheduler createCloudletScheduler() {
+        if (NetworkConstants.timeSharedVms) {
+            return new EdgeCloudletTimeSharedScheduler();
+        }
+        return new EdgeCloudletSpaceSharedScheduler();
+    }
+
+    /**
+     * @param type
+     *            the type of a VM
+     * @return a new VM of the type
+     */
+    public static EdgeVm create(VmType type) {
+        switch (type) {
+        case T2NANO:
+            return new T2Nano();
+        case T2SMALL:
+            return new T2Small();
+        case T2Large:
+            return new T2Large();
+        case M4XLARGE:
+            return new M4XLarge();
+        default:
+            return null;
+        }
+    }
+
     // Unfortunately the super class already has a boolean property if the VM is
     // in init state, so we need to make sure the to properties are in synch.
     // That's why we override the set/get methods to make sure they are synched.
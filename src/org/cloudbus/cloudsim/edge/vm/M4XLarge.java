@@ -1,7 +1,6 @@
 package org.cloudbus.cloudsim.edge.vm;
 
 import org.cloudbus.cloudsim.CloudletScheduler;
-import org.cloudbus.cloudsim.edge.EdgeCloudletSpaceSharedScheduler;
 
 /**
  * Amazon m4.large instance. 8 vCPU, 16 GB RAM
@@ -17,7 +16,7 @@ public class M4XLarge extends EdgeVm {
 	}
 
 	public M4XLarge() {
-		this("m4.xlarge", -1, 1000, 8, 16384, 1024, 1024, "Xen", new EdgeCloudletSpaceSharedScheduler());
+		this("m4.xlarge", -1, 1000, 8, 16384, 1024, 1024, "Xen", createCloudletScheduler());
 		setType(VmType.M4XLARGE);
 	}
 }
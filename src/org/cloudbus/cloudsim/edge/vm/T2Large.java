@@ -1,7 +1,6 @@
 package org.cloudbus.cloudsim.edge.vm;
 
 import org.cloudbus.cloudsim.CloudletScheduler;
-import org.cloudbus.cloudsim.edge.EdgeCloudletSpaceSharedScheduler;
 
 /**
  * Amazon t2.large instance. 4 vCPU, 6 GB RAM
@@ -17,7 +16,7 @@ public class T2Large extends EdgeVm {
 	}
 
 	public T2Large() {
-		this("t2.large", -1, 11270 * 2, 4, 6144, 1024, 1024, "Xen", new EdgeCloudletSpaceSharedScheduler());
+		this("t2.large", -1, 11270 * 2, 4, 6144, 1024, 1024, "Xen", createCloudletScheduler());
 		setType(VmType.T2Large);
 	}
 
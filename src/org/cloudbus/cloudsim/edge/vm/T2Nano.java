@@ -1,7 +1,6 @@
 package org.cloudbus.cloudsim.edge.vm;
 
 import org.cloudbus.cloudsim.CloudletScheduler;
-import org.cloudbus.cloudsim.edge.EdgeCloudletSpaceSharedScheduler;
 
 /**
  * Amazon t2.nano instance. 1 vCPU, 512 MB RAM
@@ -17,7 +16,7 @@ public class T2Nano extends EdgeVm {
 	}
 
 	public T2Nano() {
-		this("t2.nano", -1, 1270 * 2, 1, 512, 1024, 1024, "Xen", new EdgeCloudletSpaceSharedScheduler());
+		this("t2.nano", -1, 1270 * 2, 1, 512, 1024, 1024, "Xen", createCloudletScheduler());
 		setType(VmType.T2NANO);
 	}
 
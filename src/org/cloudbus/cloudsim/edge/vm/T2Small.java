@@ -1,7 +1,6 @@
 package org.cloudbus.cloudsim.edge.vm;
 
 import org.cloudbus.cloudsim.CloudletScheduler;
-import org.cloudbus.cloudsim.edge.EdgeCloudletSpaceSharedScheduler;
 
 /**
  * Amazon t2.small instance. 2 vCPU, 2 GB RAM.
@@ -18,7 +17,7 @@ public class T2Small extends EdgeVm {
 
 	
 	public T2Small() {
-		this("t2.small", -1, 11720 * 2, 2, 2048, 1024, 1024, "Xen", new EdgeCloudletSpaceSharedScheduler());
+		this("t2.small", -1, 11720 * 2, 2, 2048, 1024, 1024, "Xen", createCloudletScheduler());
 		setType(VmType.T2SMALL);
 	}
 
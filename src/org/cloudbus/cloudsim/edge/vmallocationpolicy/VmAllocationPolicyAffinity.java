@@ -0,0 +1,97 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.edge.vmallocationpolicy;
+
+import java.util.List;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.edge.service.Service;
+import org.cloudbus.cloudsim.network.datacenter.NetworkHost;
+
+/**
+ * VmAllocationPolicyAffinity is a {@link VmAllocationPolicyMultiResource} which places the VMs of a
+ * service chain near the VMs of the chain they exchange data with. The data is given by the
+ * communication graph of the {@link Service} which owns the VM (see
+ * {@link Service#getTraffic(int, int)}). Among the hosts which fit the VM, the one with the least
+ * data times distance to the VMs of the chain already placed in this datacenter is chosen: the
+ * distance is 0 on the same host, 1 under the same edge switch and 2 otherwise. The hosts which are
+ * equally near are compared by the heuristic of the superclass.
+ * <p>
+ * The policy only sees the VMs of its own datacenter, so the data between datacenters is kept down
+ * by placing each chain in one datacenter (see
+ * {@link org.cloudbus.cloudsim.network.datacenter.NetworkConstants#chainPlacement}).
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class VmAllocationPolicyAffinity extends VmAllocationPolicyMultiResource {
+
+	/**
+	 * Creates the new VmAllocationPolicyAffinity object.
+	 *
+	 * @param list the list of hosts
+	 * @param heuristic the heuristic which compares the hosts equally near the peers of a VM, see
+	 *            {@link VmAllocationPolicyMultiResource}
+	 */
+	public VmAllocationPolicyAffinity(List<? extends Host> list, int heuristic) {
+		super(list, heuristic);
+	}
+
+	/**
+	 * @param vm a vm
+	 * @param idx the position of a host which fits the vm
+	 * @return minus the data the vm sends to and receives from the VMs of its chain for a request,
+	 *         times their distance from the host
+	 */
+	@Override
+	protected double affinity(Vm vm, int idx) {
+		SimEntity owner = CloudSim.getEntity(vm.getUserId());
+		if (!(owner instanceof Service)) {
+			return 0;
+		}
+		Service service = (Service) owner;
+		Host host = getHostList().get(idx);
+
+		double cost = 0;
+		for (Vm peer : service.getVmList()) {
+			if (peer.getId() == vm.getId()) {
+				continue;
+			}
+			// the peer may be reserved but not created yet, so it is looked up in this policy
+			Host peerHost = getHost(peer.getId(), peer.getUserId());
+			if (peerHost == null) {
+				continue;
+			}
+			double data = service.getTraffic(vm.getId(), peer.getId());
+			if (data > 0) {
+				cost += data * distance(host, peerHost);
+			}
+		}
+		return -cost;
+	}
+
+	/**
+	 * @param host a host
+	 * @param other another host of the same datacenter
+	 * @return 0 if they are the same host, 1 if they are under the same edge switch, 2 otherwise
+	 */
+	private static int distance(Host host, Host other) {
+		if (host == other) {
+			return 0;
+		}
+		if (host instanceof NetworkHost && other instanceof NetworkHost
+				&& ((NetworkHost) host).sw != null && ((NetworkHost) host).sw == ((NetworkHost) other).sw) {
+			return 1;
+		}
+		return 2;
+	}
+
+}
@@ -8,12 +8,12 @@
 
 package org.cloudbus.cloudsim.edge.vmallocationpolicy;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.HostCapacityIndex;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
@@ -41,7 +41,7 @@ public class VmAllocationPolicyBw extends VmAllocationPolicy {
 	private Map<String, Long> usedBw;
 
 	/** The free bw. */
-	private List<Long> freeBw;
+	private HostCapacityIndex freeBw;
 
 	/**
 	 * Creates the new VmAllocationPolicySimple object.
@@ -53,10 +53,9 @@ public class VmAllocationPolicyBw extends VmAllocationPolicy {
 	public VmAllocationPolicyBw(List<? extends Host> list) {
 		super(list);
 
-		setFreeBw(new ArrayList<Long>());
-		for (Host host : getHostList()) {
-			getFreeBw().add(host.getBw());
-
+		setFreeBw(new HostCapacityIndex(getHostList()));
+		for (int i = 0; i < getHostList().size(); i++) {
+			getFreeBw().set(i, getHostList().get(i).getBw());
 		}
 
 		setVmTable(new HashMap<String, Host>());
@@ -75,25 +74,10 @@ public class VmAllocationPolicyBw extends VmAllocationPolicy {
 	public boolean allocateHostForVm(Vm vm) {
 		long requiredBw = vm.getSize();
 		boolean result = false;
-		int tries = 0;
-		List<Long> freeBwTmp = new ArrayList<Long>();
-		for (long freeBw : getFreeBw()) {
-			freeBwTmp.add(freeBw);
-		}
 
 		if (!getVmTable().containsKey(vm.getUid())) { // if this vm was not created
-			do {// we still trying until we find a host or until we try all of them
-				long moreFree = Long.MIN_VALUE;
-				int idx = -1;
-
-				// we want the host with less bw in use
-				for (int i = 0; i < freeBwTmp.size(); i++) {
-					if (freeBwTmp.get(i) > moreFree) {
-						moreFree = freeBwTmp.get(i);
-						idx = i;
-					}
-				}
-
+			// we want the host with less bw in use, and try the next ones until one accepts the vm
+			for (int idx = getFreeBw().worstFit(); idx >= 0; idx = getFreeBw().worstFit()) {
 				Host host = getHostList().get(idx);
 				result = host.vmCreate(vm);
 
@@ -101,14 +85,11 @@ public class VmAllocationPolicyBw extends VmAllocationPolicy {
 					getVmTable().put(vm.getUid(), host);
 					getUsedBw().put(vm.getUid(), requiredBw);
 					getFreeBw().set(idx, getFreeBw().get(idx) - requiredBw);
-					result = true;
 					break;
-				} else {
-					freeBwTmp.set(idx, Long.MIN_VALUE);
 				}
-				tries++;
-			} while (!result && tries < getFreeBw().size());
-
+				getFreeBw().exclude(idx);
+			}
+			getFreeBw().includeAll();
 		}
 
 		return result;
@@ -124,7 +105,7 @@ public class VmAllocationPolicyBw extends VmAllocationPolicy {
 	@Override
 	public void deallocateHostForVm(Vm vm) {
 		Host host = getVmTable().remove(vm.getUid());
-		int idx = getHostList().indexOf(host);
+		int idx = getFreeBw().indexOf(host);
 		
 		
 		
@@ -203,7 +184,7 @@ public class VmAllocationPolicyBw extends VmAllocationPolicy {
 	 * 
 	 * @return the free bw
 	 */
-	protected List<Long> getFreeBw() {
+	protected HostCapacityIndex getFreeBw() {
 		return freeBw;
 	}
 
@@ -212,7 +193,7 @@ public class VmAllocationPolicyBw extends VmAllocationPolicy {
 	 * 
 	 * @param freeBw the new free bw
 	 */
-	protected void setFreeBw(List<Long> freeBw) {
+	protected void setFreeBw(HostCapacityIndex freeBw) {
 		this.freeBw = freeBw;
 	}
 
@@ -237,7 +218,7 @@ public class VmAllocationPolicyBw extends VmAllocationPolicy {
 			getVmTable().put(vm.getUid(), host);
 
 			long requiredBw = vm.getSize();
-			int idx = getHostList().indexOf(host);
+			int idx = getFreeBw().indexOf(host);
 			getUsedBw().put(vm.getUid(), requiredBw);
 			getFreeBw().set(idx, getFreeBw().get(idx) - requiredBw);
 
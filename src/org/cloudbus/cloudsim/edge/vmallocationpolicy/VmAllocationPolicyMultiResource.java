@@ -0,0 +1,540 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.edge.vmallocationpolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.Datacenter;
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.HostCapacityIndex;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.VmAllocationPolicy;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.edge.util.TextUtil;
+
+/**
+ * VmAllocationPolicyMultiResource is a VmAllocationPolicy that places a VM by its whole demand
+ * vector of MIPS, RAM, bandwidth and storage, instead of by one resource. The free capacity of each
+ * resource is kept in a {@link HostCapacityIndex}, which gives the hosts with room for the resource
+ * the VM is shortest of, so that the others are not looked at. The hosts among them which fit in
+ * all resources are ranked once per VM by one of the vector bin packing heuristics, and are tried
+ * in that order:
+ * <ul>
+ * <li>{@link #DOT_PRODUCT}: the host whose free capacity is most aligned with the demand;</li>
+ * <li>{@link #DOMINANT_RESOURCE}: the host whose most used resource is the most used after the
+ * placement;</li>
+ * <li>{@link #NORM}: the host with the least free capacity left after the placement.</li>
+ * </ul>
+ * All quantities are normalized by the capacity of the host. The policy counts the VMs it placed
+ * and refused, and reports the packing density of the hosts in use.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class VmAllocationPolicyMultiResource extends VmAllocationPolicy {
+
+	public static final int DOT_PRODUCT = 0;
+	public static final int DOMINANT_RESOURCE = 1;
+	public static final int NORM = 2;
+
+	/** The resources, in the order of the indexes. */
+	public static final int MIPS = 0;
+	public static final int RAM = 1;
+	public static final int BW = 2;
+	public static final int STORAGE = 3;
+	public static final int RESOURCES = 4;
+
+	private static final String[] RESOURCE_NAMES = { "MIPS", "RAM", "BW", "storage" };
+
+	/** The heuristic which scores the hosts. */
+	private final int heuristic;
+
+	/** The vm table. */
+	private Map<String, Host> vmTable;
+
+	/** The free capacity of each resource of the hosts. */
+	private final HostCapacityIndex[] free;
+
+	/** The capacity of each resource of the hosts. */
+	private final long[][] capacities;
+
+	/** The number of VMs on each host. */
+	private final int[] vmCounts;
+
+	private int allocatedVms;
+
+	private int rejectedVms;
+
+	/**
+	 * Creates the new VmAllocationPolicyMultiResource object.
+	 *
+	 * @param list the list of hosts
+	 * @param heuristic {@link #DOT_PRODUCT}, {@link #DOMINANT_RESOURCE} or {@link #NORM}
+	 */
+	public VmAllocationPolicyMultiResource(List<? extends Host> list, int heuristic) {
+		super(list);
+		if (heuristic < DOT_PRODUCT || heuristic > NORM) {
+			throw new IllegalArgumentException("Unknown heuristic: " + heuristic);
+		}
+		this.heuristic = heuristic;
+
+		int size = getHostList().size();
+		free = new HostCapacityIndex[RESOURCES];
+		capacities = new long[RESOURCES][size];
+		for (int r = 0; r < RESOURCES; r++) {
+			free[r] = new HostCapacityIndex(getHostList());
+		}
+		for (int i = 0; i < size; i++) {
+			Host host = getHostList().get(i);
+			capacities[MIPS][i] = (long) host.getTotalMips();
+			capacities[RAM][i] = host.getRamProvisioner().getRam();
+			capacities[BW][i] = host.getBwProvisioner().getBw();
+			capacities[STORAGE][i] = host.getStorage();
+			update(i);
+		}
+		vmCounts = new int[size];
+
+		setVmTable(new HashMap<String, Host>());
+	}
+
+	/**
+	 * Allocates a host for a given VM.
+	 *
+	 * @param vm VM specification
+	 * @return $true if the host could be allocated; $false otherwise
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public boolean allocateHostForVm(Vm vm) {
+		return place(vm, false) != null;
+	}
+
+	/**
+	 * Reserves the best ranked host for a VM. The VM is looked up in this policy, so that the
+	 * VMs of a chain reserved after it are placed near it, until the reservation is cancelled.
+	 *
+	 * @param vm the vm
+	 * @return the reserved host; $null if no host has room for the vm
+	 */
+	@Override
+	public Host reserveHostForVm(Vm vm) {
+		return place(vm, true);
+	}
+
+	@Override
+	public void cancelReservation(Vm vm, Host host) {
+		getVmTable().remove(vm.getUid());
+		host.vmCancelReservation(vm);
+		update(free[MIPS].indexOf(host));
+	}
+
+	/**
+	 * Creates or reserves a VM in the best ranked host which accepts it.
+	 *
+	 * @param vm the vm
+	 * @param reserve whether the host only reserves room for the vm
+	 * @return the host; $null if no host accepts the vm
+	 */
+	private Host place(Vm vm, boolean reserve) {
+		if (getVmTable().containsKey(vm.getUid())) {
+			return null;
+		}
+		// a host which refuses the vm leaves the ranking of the others as it is
+		for (Candidate candidate : rank(vm, demandOf(vm))) {
+			Host host = getHostList().get(candidate.idx);
+			if (reserve ? host.vmReserve(vm) : host.vmCreate(vm)) {
+				if (reserve) {
+					getVmTable().put(vm.getUid(), host);
+					update(candidate.idx);
+				} else {
+					placed(vm, host, candidate.idx);
+				}
+				return host;
+			}
+		}
+
+		rejectedVms++;
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": VM #" + vm.getId() + " fits on none of the "
+				+ getHostList().size() + " host(s)");
+		return null;
+	}
+
+	/**
+	 * Releases the host used by a VM.
+	 *
+	 * @param vm the vm
+	 * @pre $none
+	 * @post none
+	 */
+	@Override
+	public void deallocateHostForVm(Vm vm) {
+		Host host = getVmTable().remove(vm.getUid());
+		if (host != null) {
+			int idx = free[MIPS].indexOf(host);
+			host.vmDestroy(vm);
+			vmCounts[idx]--;
+			update(idx);
+		}
+	}
+
+	/**
+	 * Gets the host that is executing the given VM belonging to the given user.
+	 *
+	 * @param vm the vm
+	 * @return the Host with the given vmID and userID; $null if not found
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public Host getHost(Vm vm) {
+		return getVmTable().get(vm.getUid());
+	}
+
+	/**
+	 * Gets the host that is executing the given VM belonging to the given user.
+	 *
+	 * @param vmId the vm id
+	 * @param userId the user id
+	 * @return the Host with the given vmID and userID; $null if not found
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public Host getHost(int vmId, int userId) {
+		return getVmTable().get(Vm.getUid(userId, vmId));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see cloudsim.VmAllocationPolicy#optimizeAllocation(double, cloudsim.VmList, double)
+	 */
+	@Override
+	public List<Map<String, Object>> optimizeAllocation(List<? extends Vm> vmList) {
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.VmAllocationPolicy#allocateHostForVm(org.cloudbus.cloudsim.Vm,
+	 * org.cloudbus.cloudsim.Host)
+	 */
+	@Override
+	public boolean allocateHostForVm(Vm vm, Host host) {
+		if (host.vmCreate(vm)) { // if vm has been succesfully created in the host
+			placed(vm, host, free[MIPS].indexOf(host));
+
+			Log.formatLine(
+					"%.2f: VM #" + vm.getId() + " has been allocated to the host #" + host.getId(),
+					CloudSim.clock());
+			return true;
+		}
+
+		rejectedVms++;
+		return false;
+	}
+
+	/**
+	 * Gets the vm table.
+	 *
+	 * @return the vm table
+	 */
+	public Map<String, Host> getVmTable() {
+		return vmTable;
+	}
+
+	/**
+	 * Sets the vm table.
+	 *
+	 * @param vmTable the vm table
+	 */
+	protected void setVmTable(Map<String, Host> vmTable) {
+		this.vmTable = vmTable;
+	}
+
+	/**
+	 * @return the heuristic which scores the hosts
+	 */
+	public int getHeuristic() {
+		return heuristic;
+	}
+
+	/**
+	 * @return the number of VMs placed on a host since the policy was created
+	 */
+	public int getAllocatedVms() {
+		return allocatedVms;
+	}
+
+	/**
+	 * @return the number of VMs no host took since the policy was created
+	 */
+	public int getRejectedVms() {
+		return rejectedVms;
+	}
+
+	/**
+	 * @return the number of hosts which run at least one VM
+	 */
+	public int getHostsInUse() {
+		int count = 0;
+		for (int vms : vmCounts) {
+			if (vms > 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The packing density of a resource: the share of its capacity in use, over the hosts which run
+	 * at least one VM.
+	 *
+	 * @param resource {@link #MIPS}, {@link #RAM}, {@link #BW} or {@link #STORAGE}
+	 * @return the packing density, between 0 and 1; 0 if no host is in use
+	 */
+	public double getPackingDensity(int resource) {
+		long used = 0;
+		long capacity = 0;
+		for (int i = 0; i < vmCounts.length; i++) {
+			if (vmCounts[i] > 0) {
+				used += capacities[resource][i] - free[resource].get(i);
+				capacity += capacities[resource][i];
+			}
+		}
+		return capacity == 0 ? 0 : (double) used / capacity;
+	}
+
+	/**
+	 * @return the placed and rejected VMs and the packing density of each resource, on one line
+	 */
+	public String getPackingReport() {
+		StringBuilder report = new StringBuilder();
+		report.append(allocatedVms).append(" VM(s) placed, ").append(rejectedVms).append(" rejected, ")
+				.append(getHostsInUse()).append(" of ").append(vmCounts.length).append(" host(s) in use, density");
+		for (int r = 0; r < RESOURCES; r++) {
+			report.append(r == 0 ? " " : ", ").append(RESOURCE_NAMES[r]).append(' ')
+					.append(String.format("%.2f", getPackingDensity(r)));
+		}
+		return report.toString();
+	}
+
+	@Override
+	public void printStatistics(Datacenter datacenter) {
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Datacenter #" + datacenter.getId() + " "
+				+ getPackingReport());
+	}
+
+	/**
+	 * Ranks the hosts which fit the demand. Only the hosts with room for the scarcest resource
+	 * (see {@link #scarcest(long[])}) are looked at, and none if a resource has no host with room
+	 * for it. They are compared by their {@link #affinity(Vm, int)} first, then by their score and
+	 * then by their position.
+	 *
+	 * @param vm the vm
+	 * @param demand the demand of the VM
+	 * @return the hosts, the best first
+	 */
+	private List<Candidate> rank(Vm vm, long[] demand) {
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		int scarcest = scarcest(demand);
+		if (scarcest == -1) {
+			return candidates;
+		}
+		HostCapacityIndex index = free[scarcest];
+		for (int idx = index.firstFit(demand[scarcest]); idx != -1; idx = index.firstFit(demand[scarcest])) {
+			index.exclude(idx);
+			if (fits(demand, idx)) {
+				candidates.add(new Candidate(idx, affinity(vm, idx), score(demand, idx)));
+			}
+		}
+		index.includeAll();
+		Collections.sort(candidates, Candidate.BEST_FIRST);
+		return candidates;
+	}
+
+	/**
+	 * The resource the demand takes the largest share of on the host with the most of it free,
+	 * which the fewest hosts are likely to have room for.
+	 *
+	 * @param demand the demand of a VM
+	 * @return the resource; -1 if no host has room for one of the resources
+	 */
+	private int scarcest(long[] demand) {
+		int scarcest = MIPS;
+		double share = -1;
+		for (int r = 0; r < RESOURCES; r++) {
+			int widest = free[r].worstFit();
+			if (widest == -1 || free[r].get(widest) < demand[r]) {
+				return -1;
+			}
+			long most = free[r].get(widest);
+			double s = most == 0 ? 0 : (double) demand[r] / most;
+			if (s > share) {
+				scarcest = r;
+				share = s;
+			}
+		}
+		return scarcest;
+	}
+
+	/**
+	 * How much a VM is to be placed on a host apart from the resources, for instance to be near
+	 * the VMs it talks to. This policy has no preference.
+	 *
+	 * @param vm a vm
+	 * @param idx the position of a host which fits the vm
+	 * @return the affinity of the vm to the host, the higher the better
+	 */
+	protected double affinity(Vm vm, int idx) {
+		return 0;
+	}
+
+	/**
+	 * @param demand the demand of a VM
+	 * @param idx the position of a host
+	 * @return $true if the host has enough of each resource
+	 */
+	private boolean fits(long[] demand, int idx) {
+		for (int r = 0; r < RESOURCES; r++) {
+			if (free[r].get(idx) < demand[r]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param demand the demand of a VM which fits on a host
+	 * @param idx the position of the host
+	 * @return the score of the host for the VM by the heuristic, the higher the better
+	 */
+	private double score(long[] demand, int idx) {
+		double score = 0;
+		for (int r = 0; r < RESOURCES; r++) {
+			double capacity = capacities[r][idx];
+			if (capacity == 0) {
+				continue;
+			}
+			double need = demand[r] / capacity;
+			double left = free[r].get(idx) / capacity;
+			switch (heuristic) {
+			case DOT_PRODUCT:
+				score += need * left;
+				break;
+			case DOMINANT_RESOURCE:
+				score = Math.max(score, 1 - left + need);
+				break;
+			default:
+				score -= (left - need) * (left - need);
+				break;
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * @param vm a vm
+	 * @return the MIPS, RAM, bandwidth and storage the vm needs
+	 */
+	private static long[] demandOf(Vm vm) {
+		long[] demand = new long[RESOURCES];
+		demand[MIPS] = (long) Math.ceil(vm.getMips() * vm.getNumberOfPes());
+		demand[RAM] = vm.getRam();
+		demand[BW] = vm.getBw();
+		demand[STORAGE] = vm.getSize();
+		return demand;
+	}
+
+	/**
+	 * The MIPS of the free PEs of a host. The available MIPS of a space-shared VM scheduler do not
+	 * count the last PE given to a VM, so they are not used.
+	 *
+	 * @param host a host
+	 * @return the MIPS of its free PEs
+	 */
+	private static long freeMips(Host host) {
+		long mips = 0;
+		for (Pe pe : host.<Pe> getPeList()) {
+			if (pe.getStatus() == Pe.FREE) {
+				mips += pe.getMips();
+			}
+		}
+		return mips;
+	}
+
+	/**
+	 * Records a VM a host has created.
+	 *
+	 * @param vm the vm
+	 * @param host the host
+	 * @param idx the position of the host
+	 */
+	private void placed(Vm vm, Host host, int idx) {
+		getVmTable().put(vm.getUid(), host);
+		vmCounts[idx]++;
+		allocatedVms++;
+		update(idx);
+	}
+
+	/**
+	 * Sets the free capacities of a host in the indexes from what the host has left.
+	 *
+	 * @param idx the position of the host
+	 */
+	private void update(int idx) {
+		Host host = getHostList().get(idx);
+		free[MIPS].set(idx, freeMips(host));
+		free[RAM].set(idx, host.getRamProvisioner().getAvailableRam());
+		free[BW].set(idx, host.getBwProvisioner().getAvailableBw());
+		free[STORAGE].set(idx, host.getStorage());
+	}
+
+	/**
+	 * A host which fits a VM, with its affinity and score for it.
+	 */
+	private static class Candidate {
+
+		/** Orders the candidates by affinity, then by score, the highest first, then by position. */
+		private static final Comparator<Candidate> BEST_FIRST = new Comparator<Candidate>() {
+
+			@Override
+			public int compare(Candidate c1, Candidate c2) {
+				int result = Double.compare(c2.affinity, c1.affinity);
+				if (result == 0) {
+					result = Double.compare(c2.score, c1.score);
+				}
+				if (result == 0) {
+					result = Integer.compare(c1.idx, c2.idx);
+				}
+				return result;
+			}
+		};
+
+		private final int idx;
+
+		private final double affinity;
+
+		private final double score;
+
+		public Candidate(int idx, double affinity, double score) {
+			this.idx = idx;
+			this.affinity = affinity;
+			this.score = score;
+		}
+
+	}
+
+}
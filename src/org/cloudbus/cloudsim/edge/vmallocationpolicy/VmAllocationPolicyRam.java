@@ -8,12 +8,12 @@
 
 package org.cloudbus.cloudsim.edge.vmallocationpolicy;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.HostCapacityIndex;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
@@ -36,7 +36,7 @@ public class VmAllocationPolicyRam extends VmAllocationPolicy {
 	private Map<String, Integer> usedRam;
 
 	/** The free ram. */
-	private List<Integer> freeRam;
+	private HostCapacityIndex freeRam;
 
 	/**
 	 * Creates the new VmAllocationPolicySimple object.
@@ -48,10 +48,9 @@ public class VmAllocationPolicyRam extends VmAllocationPolicy {
 	public VmAllocationPolicyRam(List<? extends Host> list) {
 		super(list);
 
-		setFreeRam(new ArrayList<Integer>());
-		for (Host host : getHostList()) {
-			getFreeRam().add(host.getRam());
-
+		setFreeRam(new HostCapacityIndex(getHostList()));
+		for (int i = 0; i < getHostList().size(); i++) {
+			getFreeRam().set(i, getHostList().get(i).getRam());
 		}
 
 		setVmTable(new HashMap<String, Host>());
@@ -70,25 +69,10 @@ public class VmAllocationPolicyRam extends VmAllocationPolicy {
 	public boolean allocateHostForVm(Vm vm) {
 		int requiredRam = vm.getRam();
 		boolean result = false;
-		int tries = 0;
-		List<Integer> freeRamTmp = new ArrayList<Integer>();
-		for (Integer freeRam : getFreeRam()) {
-			freeRamTmp.add(freeRam);
-		}
 
 		if (!getVmTable().containsKey(vm.getUid())) { // if this vm was not created
-			do {// we still trying until we find a host or until we try all of them
-				int moreFree = Integer.MIN_VALUE;
-				int idx = -1;
-
-				// we want the host with less ram in use
-				for (int i = 0; i < freeRamTmp.size(); i++) {
-					if (freeRamTmp.get(i) > moreFree) {
-						moreFree = freeRamTmp.get(i);
-						idx = i;
-					}
-				}
-
+			// we want the host with less ram in use, and try the next ones until one accepts the vm
+			for (int idx = getFreeRam().worstFit(); idx >= 0; idx = getFreeRam().worstFit()) {
 				Host host = getHostList().get(idx);
 				result = host.vmCreate(vm);
 
@@ -96,14 +80,11 @@ public class VmAllocationPolicyRam extends VmAllocationPolicy {
 					getVmTable().put(vm.getUid(), host);
 					getUsedRam().put(vm.getUid(), requiredRam);
 					getFreeRam().set(idx, getFreeRam().get(idx) - requiredRam);
-					result = true;
 					break;
-				} else {
-					freeRamTmp.set(idx, Integer.MIN_VALUE);
 				}
-				tries++;
-			} while (!result && tries < getFreeRam().size());
-
+				getFreeRam().exclude(idx);
+			}
+			getFreeRam().includeAll();
 		}
 
 		return result;
@@ -119,7 +100,7 @@ public class VmAllocationPolicyRam extends VmAllocationPolicy {
 	@Override
 	public void deallocateHostForVm(Vm vm) {
 		Host host = getVmTable().remove(vm.getUid());
-		int idx = getHostList().indexOf(host);
+		int idx = getFreeRam().indexOf(host);
 		int ram = getUsedRam().remove(vm.getUid());
 		if (host != null) {
 			host.vmDestroy(vm);
@@ -195,7 +176,7 @@ public class VmAllocationPolicyRam extends VmAllocationPolicy {
 	 * 
 	 * @return the free ram
 	 */
-	protected List<Integer> getFreeRam() {
+	protected HostCapacityIndex getFreeRam() {
 		return freeRam;
 	}
 
@@ -204,7 +185,7 @@ public class VmAllocationPolicyRam extends VmAllocationPolicy {
 	 * 
 	 * @param freeRam the new free ram
 	 */
-	protected void setFreeRam(List<Integer> freeRam) {
+	protected void setFreeRam(HostCapacityIndex freeRam) {
 		this.freeRam = freeRam;
 	}
 
@@ -229,7 +210,7 @@ public class VmAllocationPolicyRam extends VmAllocationPolicy {
 			getVmTable().put(vm.getUid(), host);
 
 			int requiredRam = vm.getRam();
-			int idx = getHostList().indexOf(host);
+			int idx = getFreeRam().indexOf(host);
 			getUsedRam().put(vm.getUid(), requiredRam);
 			getFreeRam().set(idx, getFreeRam().get(idx) - requiredRam);
 
@@ -8,12 +8,12 @@
 
 package org.cloudbus.cloudsim.edge.vmallocationpolicy;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.HostCapacityIndex;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.cloudbus.cloudsim.Log;
@@ -36,7 +36,7 @@ public class VmAllocationPolicyStorage extends VmAllocationPolicy {
 	private Map<String, Long> usedStorage;
 
 	/** The free storage. */
-	private List<Long> freeStorage;
+	private HostCapacityIndex freeStorage;
 
 	/**
 	 * Creates the new VmAllocationPolicySimple object.
@@ -48,10 +48,9 @@ public class VmAllocationPolicyStorage extends VmAllocationPolicy {
 	public VmAllocationPolicyStorage(List<? extends Host> list) {
 		super(list);
 
-		setFreeStorage(new ArrayList<Long>());
-		for (Host host : getHostList()) {
-			getFreeStorage().add(host.getStorage());
-
+		setFreeStorage(new HostCapacityIndex(getHostList()));
+		for (int i = 0; i < getHostList().size(); i++) {
+			getFreeStorage().set(i, getHostList().get(i).getStorage());
 		}
 
 		setVmTable(new HashMap<String, Host>());
@@ -70,25 +69,10 @@ public class VmAllocationPolicyStorage extends VmAllocationPolicy {
 	public boolean allocateHostForVm(Vm vm) {
 		long requiredStorage = vm.getSize();
 		boolean result = false;
-		int tries = 0;
-		List<Long> freeStorageTmp = new ArrayList<Long>();
-		for (long freeStorage : getFreeStorage()) {
-			freeStorageTmp.add(freeStorage);
-		}
 
 		if (!getVmTable().containsKey(vm.getUid())) { // if this vm was not created
-			do {// we still trying until we find a host or until we try all of them
-				long moreFree = Long.MIN_VALUE;
-				int idx = -1;
-
-				// we want the host with less storage in use
-				for (int i = 0; i < freeStorageTmp.size(); i++) {
-					if (freeStorageTmp.get(i) > moreFree) {
-						moreFree = freeStorageTmp.get(i);
-						idx = i;
-					}
-				}
-
+			// we want the host with less storage in use, and try the next ones until one accepts the vm
+			for (int idx = getFreeStorage().worstFit(); idx >= 0; idx = getFreeStorage().worstFit()) {
 				Host host = getHostList().get(idx);
 				result = host.vmCreate(vm);
 
@@ -96,14 +80,11 @@ public class VmAllocationPolicyStorage extends VmAllocationPolicy {
 					getVmTable().put(vm.getUid(), host);
 					getUsedStorage().put(vm.getUid(), requiredStorage);
 					getFreeStorage().set(idx, getFreeStorage().get(idx) - requiredStorage);
-					result = true;
 					break;
-				} else {
-					freeStorageTmp.set(idx, Long.MIN_VALUE);
 				}
-				tries++;
-			} while (!result && tries < getFreeStorage().size());
-
+				getFreeStorage().exclude(idx);
+			}
+			getFreeStorage().includeAll();
 		}
 
 		return result;
@@ -119,7 +100,7 @@ public class VmAllocationPolicyStorage extends VmAllocationPolicy {
 	@Override
 	public void deallocateHostForVm(Vm vm) {
 		Host host = getVmTable().remove(vm.getUid());
-		int idx = getHostList().indexOf(host);
+		int idx = getFreeStorage().indexOf(host);
 		
 		
 		
@@ -198,7 +179,7 @@ public class VmAllocationPolicyStorage extends VmAllocationPolicy {
 	 * 
 	 * @return the free storage
 	 */
-	protected List<Long> getFreeStorage() {
+	protected HostCapacityIndex getFreeStorage() {
 		return freeStorage;
 	}
 
@@ -207,7 +188,7 @@ public class VmAllocationPolicyStorage extends VmAllocationPolicy {
 	 * 
 	 * @param freeStorage the new free storage
 	 */
-	protected void setFreeStorage(List<Long> freeStorage) {
+	protected void setFreeStorage(HostCapacityIndex freeStorage) {
 		this.freeStorage = freeStorage;
 	}
 
@@ -232,7 +213,7 @@ public class VmAllocationPolicyStorage extends VmAllocationPolicy {
 			getVmTable().put(vm.getUid(), host);
 
 			long requiredStorage = vm.getSize();
-			int idx = getHostList().indexOf(host);
+			int idx = getFreeStorage().indexOf(host);
 			getUsedStorage().put(vm.getUid(), requiredStorage);
 			getFreeStorage().set(idx, getFreeStorage().get(idx) - requiredStorage);
 
@@ -30,6 +30,9 @@ public class CloudletList {
 	 * @return the by id
 	 */
 	public static <T extends Cloudlet> T getById(List<T> cloudletList, int id) {
+		if (cloudletList instanceof IndexedList) {
+			return ((IndexedList<T>) cloudletList).getById(id);
+		}
 		for (T cloudlet : cloudletList) {
 			if (cloudlet.getCloudletId() == id) {
 				return cloudlet;
@@ -38,6 +41,23 @@ public class CloudletList {
 		return null;
 	}
 
+	/**
+	 * Creates an empty list of cloudlets indexed by id, in which {@link #getById(List, int)} does
+	 * not scan the list.
+	 * 
+	 * @param <T> the type of the cloudlets
+	 * @return the list
+	 */
+	public static <T extends Cloudlet> List<T> createIndexedList() {
+		return new IndexedList<T>() {
+
+			@Override
+			protected int getId(T cloudlet) {
+				return cloudlet.getCloudletId();
+			}
+		};
+	}
+
 	/**
 	 * Returns the position of the cloudlet with that id, if it exists. Otherwise -1.
 	 * @param cloudletList - the list of cloudlets.
@@ -0,0 +1,155 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.lists;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * IndexedList is a list which keeps an index of its elements by id, so that {@link VmList},
+ * {@link CloudletList} and the other lists utilities find an element by id in O(1) instead of
+ * scanning the list. It behaves like an {@link ArrayList}; the id of an element must not change
+ * while it is in the list. If several elements have the same id, the index returns the first one,
+ * like a scan would.
+ *
+ * @param <T> the type of the elements
+ * @since CloudSim Toolkit 3.0
+ */
+public abstract class IndexedList<T> extends AbstractList<T> implements RandomAccess {
+
+	/** The elements, in order. */
+	private final List<T> elements = new ArrayList<T>();
+
+	/** The first element and the number of elements with each id. */
+	private final Map<Integer, Slot<T>> index = new HashMap<Integer, Slot<T>>();
+
+	/**
+	 * Gets the id of an element.
+	 *
+	 * @param element the element
+	 * @return its id
+	 */
+	protected abstract int getId(T element);
+
+	/**
+	 * Gets the first element with the given id.
+	 *
+	 * @param id the id
+	 * @return the element, $null if not found
+	 */
+	public T getById(int id) {
+		Slot<T> slot = index.get(id);
+		return slot == null ? null : slot.first;
+	}
+
+	@Override
+	public T get(int position) {
+		return elements.get(position);
+	}
+
+	@Override
+	public int size() {
+		return elements.size();
+	}
+
+	@Override
+	public void add(int position, T element) {
+		elements.add(position, element);
+		Slot<T> slot = index.get(getId(element));
+		if (slot == null) {
+			index.put(getId(element), new Slot<T>(element));
+		} else {
+			slot.count++;
+			if (position < elements.size() - 1) {
+				slot.first = findFirst(getId(element));
+			}
+		}
+		modCount++;
+	}
+
+	@Override
+	public T set(int position, T element) {
+		T previous = elements.set(position, element);
+		unindex(previous);
+		Slot<T> slot = index.get(getId(element));
+		if (slot == null) {
+			index.put(getId(element), new Slot<T>(element));
+		} else {
+			slot.count++;
+			slot.first = findFirst(getId(element));
+		}
+		return previous;
+	}
+
+	@Override
+	public T remove(int position) {
+		T previous = elements.remove(position);
+		unindex(previous);
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		elements.clear();
+		index.clear();
+		modCount++;
+	}
+
+	/**
+	 * Removes an element which left the list from the index.
+	 *
+	 * @param element the element
+	 */
+	private void unindex(T element) {
+		int id = getId(element);
+		Slot<T> slot = index.get(id);
+		if (--slot.count == 0) {
+			index.remove(id);
+		} else if (slot.first == element) {
+			slot.first = findFirst(id);
+		}
+	}
+
+	/**
+	 * Scans the list for the first element with an id, when there is more than one.
+	 *
+	 * @param id the id
+	 * @return the element
+	 */
+	private T findFirst(int id) {
+		for (T element : elements) {
+			if (getId(element) == id) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The indexed elements with one id.
+	 */
+	private static class Slot<T> {
+
+		private T first;
+
+		private int count;
+
+		public Slot(T first) {
+			this.first = first;
+			count = 1;
+		}
+
+	}
+
+}
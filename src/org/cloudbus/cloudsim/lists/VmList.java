@@ -30,6 +30,9 @@ public class VmList {
 	 * @post $none
 	 */
 	public static <T extends Vm> T getById(List<T> vmList, int id) {
+		if (vmList instanceof IndexedList) {
+			return ((IndexedList<T>) vmList).getById(id);
+		}
 		for (T vm : vmList) {
 			if (vm.getId() == id) {
 				return vm;
@@ -49,6 +52,12 @@ public class VmList {
 	 * @post $none
 	 */
 	public static <T extends Vm> T getByIdAndUserId(List<T> vmList, int id, int userId) {
+		if (vmList instanceof IndexedList) {
+			T vm = ((IndexedList<T>) vmList).getById(id);
+			if (vm == null || vm.getUserId() == userId) {
+				return vm;
+			}
+		}
 		for (T vm : vmList) {
 			if (vm.getId() == id && vm.getUserId() == userId) {
 				return vm;
@@ -57,4 +66,21 @@ public class VmList {
 		return null;
 	}
 
+	/**
+	 * Creates an empty list of VMs indexed by id, in which {@link #getById(List, int)} does not
+	 * scan the list.
+	 * 
+	 * @param <T> the type of the VMs
+	 * @return the list
+	 */
+	public static <T extends Vm> List<T> createIndexedList() {
+		return new IndexedList<T>() {
+
+			@Override
+			protected int getId(T vm) {
+				return vm.getId();
+			}
+		};
+	}
+
 }
@@ -0,0 +1,232 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A topological graph which keeps its nodes and links in primitive arrays instead of one
+ * {@link TopologicalNode}/{@link TopologicalLink} object per entry. It is filled by
+ * {@link GraphReaderBriteNio} and {@link TopologyCache}; the node and link iterators of
+ * {@link TopologicalGraph} are still supported, but they create the objects on the fly.
+ *
+ * @since CloudSim Toolkit 1.0
+ */
+public class CompactTopologicalGraph extends TopologicalGraph {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int numNodes = 0;
+
+	private int[] nodeIds;
+
+	private int[] nodeX;
+
+	private int[] nodeY;
+
+	private int numLinks = 0;
+
+	private int[] linkSrc;
+
+	private int[] linkDest;
+
+	private float[] linkDelay;
+
+	private float[] linkBw;
+
+	/**
+	 * creates an empty graph-object
+	 */
+	public CompactTopologicalGraph() {
+		this(INITIAL_CAPACITY, INITIAL_CAPACITY);
+	}
+
+	/**
+	 * creates an empty graph-object with the given initial capacities
+	 *
+	 * @param nodeCapacity expected number of nodes
+	 * @param linkCapacity expected number of links
+	 */
+	public CompactTopologicalGraph(int nodeCapacity, int linkCapacity) {
+		nodeCapacity = Math.max(nodeCapacity, 1);
+		linkCapacity = Math.max(linkCapacity, 1);
+		nodeIds = new int[nodeCapacity];
+		nodeX = new int[nodeCapacity];
+		nodeY = new int[nodeCapacity];
+		linkSrc = new int[linkCapacity];
+		linkDest = new int[linkCapacity];
+		linkDelay = new float[linkCapacity];
+		linkBw = new float[linkCapacity];
+	}
+
+	/**
+	 * adds a node without creating a {@link TopologicalNode}
+	 *
+	 * @param nodeID the node id
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 */
+	public void addNode(int nodeID, int x, int y) {
+		if (numNodes == nodeIds.length) {
+			int capacity = nodeIds.length << 1;
+			nodeIds = Arrays.copyOf(nodeIds, capacity);
+			nodeX = Arrays.copyOf(nodeX, capacity);
+			nodeY = Arrays.copyOf(nodeY, capacity);
+		}
+		nodeIds[numNodes] = nodeID;
+		nodeX[numNodes] = x;
+		nodeY[numNodes] = y;
+		numNodes++;
+	}
+
+	/**
+	 * adds a link without creating a {@link TopologicalLink}
+	 *
+	 * @param srcNode the source node id
+	 * @param destNode the destination node id
+	 * @param delay the link delay
+	 * @param bw the link bandwidth
+	 */
+	public void addLink(int srcNode, int destNode, float delay, float bw) {
+		if (numLinks == linkSrc.length) {
+			int capacity = linkSrc.length << 1;
+			linkSrc = Arrays.copyOf(linkSrc, capacity);
+			linkDest = Arrays.copyOf(linkDest, capacity);
+			linkDelay = Arrays.copyOf(linkDelay, capacity);
+			linkBw = Arrays.copyOf(linkBw, capacity);
+		}
+		linkSrc[numLinks] = srcNode;
+		linkDest[numLinks] = destNode;
+		linkDelay[numLinks] = delay;
+		linkBw[numLinks] = bw;
+		numLinks++;
+	}
+
+	@Override
+	public void addLink(TopologicalLink edge) {
+		addLink(edge.getSrcNodeID(), edge.getDestNodeID(), edge.getLinkDelay(), edge.getLinkBw());
+	}
+
+	@Override
+	public void addNode(TopologicalNode node) {
+		addNode(node.getNodeID(), node.getCoordinateX(), node.getCoordinateY());
+	}
+
+	@Override
+	public int getNumberOfNodes() {
+		return numNodes;
+	}
+
+	@Override
+	public int getNumberOfLinks() {
+		return numLinks;
+	}
+
+	public int getNodeId(int index) {
+		return nodeIds[index];
+	}
+
+	public int getNodeX(int index) {
+		return nodeX[index];
+	}
+
+	public int getNodeY(int index) {
+		return nodeY[index];
+	}
+
+	public int getLinkSrc(int index) {
+		return linkSrc[index];
+	}
+
+	public int getLinkDest(int index) {
+		return linkDest[index];
+	}
+
+	public float getLinkDelay(int index) {
+		return linkDelay[index];
+	}
+
+	public float getLinkBw(int index) {
+		return linkBw[index];
+	}
+
+	@Override
+	public Iterator<TopologicalLink> getLinkIterator() {
+		return new Iterator<TopologicalLink>() {
+
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < numLinks;
+			}
+
+			@Override
+			public TopologicalLink next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int i = next++;
+				return new TopologicalLink(linkSrc[i], linkDest[i], linkDelay[i], linkBw[i]);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public Iterator<TopologicalNode> getNodeIterator() {
+		return new Iterator<TopologicalNode>() {
+
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < numNodes;
+			}
+
+			@Override
+			public TopologicalNode next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int i = next++;
+				return new TopologicalNode(nodeIds[i], nodeX[i], nodeY[i]);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("topological-node-information: \n");
+
+		for (int i = 0; i < numNodes; i++) {
+			buffer.append(nodeIds[i] + " | x is: " + nodeX[i] + " y is: " + nodeY[i] + "\n");
+		}
+
+		buffer.append("\n\n node-link-information:\n");
+
+		for (int i = 0; i < numLinks; i++) {
+			buffer.append("from: " + linkSrc[i] + " to: " + linkDest[i] + " delay: " + linkDelay[i] + "\n");
+		}
+		return buffer.toString();
+	}
+
+}
@@ -8,6 +8,7 @@
 
 package org.cloudbus.cloudsim.network;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
@@ -33,10 +34,9 @@ public class DelayMatrix_Float {
 	protected int[][] nextHopMatrix = null;
 
 	/**
-	 * private constructor to ensure that only an correct initialized delay-matrix could be created
+	 * constructor for subclasses which provide their own (e.g. precomputed) delay information
 	 */
-	@SuppressWarnings("unused")
-	private DelayMatrix_Float() {
+	protected DelayMatrix_Float() {
 	};
 
 	/**
@@ -54,6 +54,39 @@ public class DelayMatrix_Float {
 		calculateShortestPath();
 	}
 
+	/**
+	 * this constructor creates an correct initialized Float-Delay-Matrix from the primitive link
+	 * arrays of the given graph
+	 * 
+	 * @param graph the topological graph as source-information
+	 * @param directed true if an directed matrix should be computed, false otherwise
+	 */
+	public DelayMatrix_Float(CompactTopologicalGraph graph, boolean directed) {
+		mTotalNodeNum = graph.getNumberOfNodes();
+		mDelayMatrix = new float[mTotalNodeNum][mTotalNodeNum];
+
+		for (int row = 0; row < mTotalNodeNum; ++row) {
+			Arrays.fill(mDelayMatrix[row], Float.MAX_VALUE);
+		}
+
+		for (int i = 0; i < graph.getNumberOfLinks(); i++) {
+			mDelayMatrix[graph.getLinkSrc(i)][graph.getLinkDest(i)] = graph.getLinkDelay(i);
+
+			if (!directed) {
+				mDelayMatrix[graph.getLinkDest(i)][graph.getLinkSrc(i)] = graph.getLinkDelay(i);
+			}
+		}
+
+		calculateShortestPath();
+	}
+
+	/**
+	 * @return the number of nodes in the distance-aware-topology
+	 */
+	public int getTotalNodeNum() {
+		return mTotalNodeNum;
+	}
+
 	/**
 	 * @param srcID the id of the source-node
 	 * @param destID the id of the destination-node
@@ -136,10 +169,11 @@ public class DelayMatrix_Float {
 			buffer.append("\n" + row);
 
 			for (int col = 0; col < mTotalNodeNum; ++col) {
-				if (mDelayMatrix[row][col] == Float.MAX_VALUE) {
+				float delay = getDelay(row, col);
+				if (delay == Float.MAX_VALUE) {
 					buffer.append("\t" + "-");
 				} else {
-					buffer.append("\t" + mDelayMatrix[row][col]);
+					buffer.append("\t" + delay);
 				}
 			}
 		}
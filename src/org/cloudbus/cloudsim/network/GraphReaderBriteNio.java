@@ -0,0 +1,244 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fast reader for the brite-format. It reads the same sections and columns as
+ * {@link GraphReaderBrite}, but memory-maps the file and tokenizes it byte by byte straight into
+ * the primitive arrays of a {@link CompactTopologicalGraph}. No String, StringTokenizer or
+ * per-entry node/link object is created while parsing.
+ *
+ * @since CloudSim Toolkit 1.0
+ */
+public class GraphReaderBriteNio implements GraphReaderIF {
+
+	private static final int PARSE_NOTHING = 0;
+
+	private static final int PARSE_NODES = 1;
+
+	private static final int PARSE_EDGES = 2;
+
+	private static final byte[] NODES_MARKER = { 'N', 'o', 'd', 'e', 's', ':' };
+
+	private static final byte[] EDGES_MARKER = { 'E', 'd', 'g', 'e', 's', ':' };
+
+	/** the file currently parsed */
+	private MappedByteBuffer buffer;
+
+	/** position of the next byte to tokenize */
+	private int pos;
+
+	/** end of the current line (exclusive) */
+	private int lineEnd;
+
+	/**
+	 * this method just reads the file and creates an TopologicalGraph object
+	 *
+	 * @param filename name of the file to read
+	 * @return created TopologicalGraph, a {@link CompactTopologicalGraph}
+	 * @throws IOException
+	 */
+	@Override
+	public TopologicalGraph readGraphFile(String filename) throws IOException {
+		return readCompactGraphFile(filename);
+	}
+
+	/**
+	 * reads the file into a {@link CompactTopologicalGraph}
+	 *
+	 * @param filename name of the file to read
+	 * @return created graph
+	 * @throws IOException
+	 */
+	public CompactTopologicalGraph readCompactGraphFile(String filename) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("BRITE file " + filename + " is too large to be mapped: " + size + " bytes");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return parse((int) size);
+		} finally {
+			buffer = null;
+			file.close();
+		}
+	}
+
+	private CompactTopologicalGraph parse(int size) {
+		// a rough guess of the entries, one line of the edge section is ~40 bytes
+		CompactTopologicalGraph graph = new CompactTopologicalGraph(size / 256, size / 48);
+		int state = PARSE_NOTHING;
+		pos = 0;
+
+		while (pos < size) {
+			lineEnd = pos;
+			while (lineEnd < size && buffer.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			int lineStart = pos;
+
+			if (state == PARSE_NOTHING) {
+				if (lineContains(lineStart, NODES_MARKER)) {
+					state = PARSE_NODES;
+				}
+			} else if (state == PARSE_NODES) {
+				if (lineContains(lineStart, EDGES_MARKER)) {
+					state = PARSE_EDGES;
+				} else if (skipBlanks()) {
+					// NodeID, xpos, ypos, indegree, outdegree, ASid, type(router/AS)
+					int nodeID = nextInt();
+					int xPos = skipBlanks() ? nextInt() : 0;
+					int yPos = skipBlanks() ? nextInt() : 0;
+					graph.addNode(nodeID, xPos, yPos);
+				}
+			} else if (state == PARSE_EDGES) {
+				if (skipBlanks()) {
+					// EdgeID, fromNode, toNode, euclideanLength, linkDelay, linkBandwith, ...
+					skipToken();
+					int fromNode = skipBlanks() ? nextInt() : 0;
+					int toNode = skipBlanks() ? nextInt() : 0;
+					if (skipBlanks()) {
+						skipToken();
+					}
+					float linkDelay = skipBlanks() ? nextFloat() : 0;
+					int linkBandwith = skipBlanks() ? (int) nextFloat() : 0;
+					graph.addLink(fromNode, toNode, linkDelay, linkBandwith);
+				}
+			}
+
+			// step over the line break
+			pos = lineEnd + 1;
+		}
+
+		return graph;
+	}
+
+	/**
+	 * @return true if the current line contains the given marker
+	 */
+	private boolean lineContains(int lineStart, byte[] marker) {
+		int last = lineEnd - marker.length;
+		for (int i = lineStart; i <= last; i++) {
+			int j = 0;
+			while (j < marker.length && buffer.get(i + j) == marker[j]) {
+				j++;
+			}
+			if (j == marker.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isBlank(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	/**
+	 * moves the position to the start of the next token of the current line
+	 *
+	 * @return false if the line contains no more tokens
+	 */
+	private boolean skipBlanks() {
+		while (pos < lineEnd && isBlank(buffer.get(pos))) {
+			pos++;
+		}
+		return pos < lineEnd;
+	}
+
+	private void skipToken() {
+		while (pos < lineEnd && !isBlank(buffer.get(pos))) {
+			pos++;
+		}
+	}
+
+	private int nextInt() {
+		int start = pos;
+		boolean negative = false;
+		byte b = buffer.get(pos);
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			pos++;
+		}
+		int value = 0;
+		while (pos < lineEnd) {
+			b = buffer.get(pos);
+			if (b < '0' || b > '9') {
+				break;
+			}
+			value = value * 10 + (b - '0');
+			pos++;
+		}
+		if (pos < lineEnd && !isBlank(buffer.get(pos))) {
+			// not a plain integer, e.g. "3.0", fall back to the slow path
+			return (int) Float.parseFloat(tokenFrom(start));
+		}
+		return negative ? -value : value;
+	}
+
+	private float nextFloat() {
+		int start = pos;
+		boolean negative = false;
+		byte b = buffer.get(pos);
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			pos++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean fraction = false;
+		while (pos < lineEnd) {
+			b = buffer.get(pos);
+			if (b >= '0' && b <= '9') {
+				// keep the mantissa exact, further digits only move the decimal point
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (b - '0');
+					digits += mantissa == 0 ? 0 : 1;
+					if (fraction) {
+						scale--;
+					}
+				} else if (!fraction) {
+					scale++;
+				}
+			} else if (b == '.' && !fraction) {
+				fraction = true;
+			} else {
+				break;
+			}
+			pos++;
+		}
+		if (pos < lineEnd && !isBlank(buffer.get(pos))) {
+			// exponent or something unusual, fall back to the slow path
+			return Float.parseFloat(tokenFrom(start));
+		}
+		double value = scale < 0 ? mantissa / Math.pow(10, -scale) : mantissa * Math.pow(10, scale);
+		return (float) (negative ? -value : value);
+	}
+
+	/**
+	 * reads the rest of the token starting at the given position as a String
+	 */
+	private String tokenFrom(int start) {
+		skipToken();
+		StringBuilder sb = new StringBuilder(pos - start);
+		for (int i = start; i < pos; i++) {
+			sb.append((char) buffer.get(i));
+		}
+		return sb.toString();
+	}
+
+}
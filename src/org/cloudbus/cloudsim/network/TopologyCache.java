@@ -0,0 +1,242 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compact binary image of a topology: the nodes and links of the graph plus the precomputed
+ * all-pairs delay and next-hop matrices. A cache written once from a BRITE file can be
+ * memory-mapped by later runs, which then skip both the parsing and the shortest path
+ * calculation.
+ * <p>
+ * Layout (big endian): magic, version, source length, source last-modified, number of nodes,
+ * number of links, node ids, node x, node y, link src, link dest, link delay, link bw, the delay
+ * matrix (row major floats) and the next-hop matrix (row major ints).
+ *
+ * @since CloudSim Toolkit 1.0
+ */
+public class TopologyCache {
+
+	private static final int MAGIC = 0x42525443; // "BRTC"
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+
+	private final CompactTopologicalGraph graph;
+
+	private final DelayMatrix_Float delayMatrix;
+
+	private TopologyCache(CompactTopologicalGraph graph, DelayMatrix_Float delayMatrix) {
+		this.graph = graph;
+		this.delayMatrix = delayMatrix;
+	}
+
+	/**
+	 * @return the graph stored in the cache
+	 */
+	public CompactTopologicalGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the delay and next-hop matrices, backed by the mapped file
+	 */
+	public DelayMatrix_Float getDelayMatrix() {
+		return delayMatrix;
+	}
+
+	/**
+	 * writes a cache file for the given graph and its delay matrix
+	 *
+	 * @param cacheFileName the cache file to (over)write
+	 * @param sourceFileName the BRITE file the graph was read from, used to detect stale caches
+	 * @param graph the graph
+	 * @param delayMatrix the delay matrix computed for the graph
+	 * @throws IOException
+	 */
+	public static void write(String cacheFileName, String sourceFileName, CompactTopologicalGraph graph,
+			DelayMatrix_Float delayMatrix) throws IOException {
+		File source = new File(sourceFileName);
+		int nodes = graph.getNumberOfNodes();
+		int links = graph.getNumberOfLinks();
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFileName),
+				1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(source.length());
+			out.writeLong(source.lastModified());
+			out.writeInt(nodes);
+			out.writeInt(links);
+
+			for (int i = 0; i < nodes; i++) {
+				out.writeInt(graph.getNodeId(i));
+			}
+			for (int i = 0; i < nodes; i++) {
+				out.writeInt(graph.getNodeX(i));
+			}
+			for (int i = 0; i < nodes; i++) {
+				out.writeInt(graph.getNodeY(i));
+			}
+			for (int i = 0; i < links; i++) {
+				out.writeInt(graph.getLinkSrc(i));
+			}
+			for (int i = 0; i < links; i++) {
+				out.writeInt(graph.getLinkDest(i));
+			}
+			for (int i = 0; i < links; i++) {
+				out.writeFloat(graph.getLinkDelay(i));
+			}
+			for (int i = 0; i < links; i++) {
+				out.writeFloat(graph.getLinkBw(i));
+			}
+
+			for (int row = 0; row < nodes; row++) {
+				for (int col = 0; col < nodes; col++) {
+					out.writeFloat(delayMatrix.getDelay(row, col));
+				}
+			}
+			for (int row = 0; row < nodes; row++) {
+				for (int col = 0; col < nodes; col++) {
+					out.writeInt(delayMatrix.getNextHop(row, col));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @param cacheFileName the cache file
+	 * @param sourceFileName the BRITE file
+	 * @return true if the cache file exists and was written for the current version of the BRITE
+	 *         file
+	 */
+	public static boolean isUpToDate(String cacheFileName, String sourceFileName) {
+		File cache = new File(cacheFileName);
+		if (!cache.isFile() || cache.length() < HEADER_SIZE) {
+			return false;
+		}
+		File source = new File(sourceFileName);
+		try {
+			RandomAccessFile file = new RandomAccessFile(cache, "r");
+			try {
+				return file.readInt() == MAGIC && file.readInt() == VERSION && file.readLong() == source.length()
+						&& file.readLong() == source.lastModified();
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * memory-maps a cache file
+	 *
+	 * @param cacheFileName the cache file
+	 * @return the cache content
+	 * @throws IOException if the file can not be read or is not a topology cache
+	 */
+	public static TopologyCache load(String cacheFileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(cacheFileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException(cacheFileName + " is not a topology cache of version " + VERSION);
+			}
+			header.getLong();
+			header.getLong();
+			int nodes = header.getInt();
+			int links = header.getInt();
+
+			long position = HEADER_SIZE;
+			long graphSize = 4L * (3L * nodes + 4L * links);
+			long matrixSize = 4L * nodes * nodes;
+			if (matrixSize > Integer.MAX_VALUE || graphSize > Integer.MAX_VALUE) {
+				throw new IOException(cacheFileName + " is too large to be mapped");
+			}
+			if (channel.size() != position + graphSize + 2 * matrixSize) {
+				throw new IOException(cacheFileName + " is truncated");
+			}
+
+			ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, position, graphSize);
+			CompactTopologicalGraph graph = new CompactTopologicalGraph(nodes, links);
+			IntBuffer ints = data.asIntBuffer();
+			for (int i = 0; i < nodes; i++) {
+				graph.addNode(ints.get(i), ints.get(nodes + i), ints.get(2 * nodes + i));
+			}
+			int linkBase = 3 * nodes;
+			FloatBuffer floats = data.asFloatBuffer();
+			for (int i = 0; i < links; i++) {
+				graph.addLink(ints.get(linkBase + i), ints.get(linkBase + links + i),
+						floats.get(linkBase + 2 * links + i), floats.get(linkBase + 3 * links + i));
+			}
+			position += graphSize;
+
+			MappedByteBuffer delays = channel.map(FileChannel.MapMode.READ_ONLY, position, matrixSize);
+			position += matrixSize;
+			MappedByteBuffer nextHops = channel.map(FileChannel.MapMode.READ_ONLY, position, matrixSize);
+
+			return new TopologyCache(graph, new MappedDelayMatrix(nodes, delays.asFloatBuffer(),
+					nextHops.asIntBuffer()));
+		} finally {
+			// the mappings stay valid after the channel is closed
+			file.close();
+		}
+	}
+
+	/**
+	 * A delay matrix which reads its values straight from a mapped cache file.
+	 */
+	private static class MappedDelayMatrix extends DelayMatrix_Float {
+
+		private final FloatBuffer delays;
+
+		private final IntBuffer nextHops;
+
+		MappedDelayMatrix(int totalNodeNum, FloatBuffer delays, IntBuffer nextHops) {
+			mTotalNodeNum = totalNodeNum;
+			this.delays = delays;
+			this.nextHops = nextHops;
+		}
+
+		@Override
+		public float getDelay(int srcID, int destID) {
+			if (srcID >= mTotalNodeNum || destID >= mTotalNodeNum) {
+				throw new ArrayIndexOutOfBoundsException("srcID or destID is higher than highest stored node-ID!");
+			}
+			return delays.get(srcID * mTotalNodeNum + destID);
+		}
+
+		@Override
+		public int getNextHop(int srcID, int destID) {
+			if (srcID >= mTotalNodeNum || destID >= mTotalNodeNum) {
+				throw new ArrayIndexOutOfBoundsException("srcID or destID is higher than highest stored node-ID!");
+			}
+			return nextHops.get(srcID * mTotalNodeNum + destID);
+		}
+
+	}
+
+}
@@ -9,17 +9,15 @@
 package org.cloudbus.cloudsim.network.datacenter;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-import org.cloudbus.cloudsim.NetworkTopology;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.core.predicates.PredicateType;
 import org.cloudbus.cloudsim.edge.util.CustomLog;
 import org.cloudbus.cloudsim.edge.util.TextUtil;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * This class allows to simulate aggregate switch for Datacenter network. It
@@ -52,8 +50,8 @@ public class AggregateSwitch extends Switch {
 	public AggregateSwitch(String name, int level, NetworkDatacenter dc) {
 		//TODO load down-/uplink bandwidth from BRITE file
 		super(name, level, dc);
-		downlinkswitchpktlist = new HashMap<Integer, List<NetworkPacket>>();
-		uplinkswitchpktlist = new HashMap<Integer, List<NetworkPacket>>();
+		downlinkswitchpktlist = new IntObjectMap<List<NetworkPacket>>();
+		uplinkswitchpktlist = new IntObjectMap<List<NetworkPacket>>();
 		uplinkbandwidth = NetworkConstants.BandWidthAggRoot; // as defined in the BRITE file
 		downlinkbandwidth = NetworkConstants.BandWidthEdgeAgg; // as defined in the BRITE file
 		latency = NetworkConstants.SwitchingDelayAgg;
@@ -78,22 +76,21 @@ public class AggregateSwitch extends Switch {
 		// add packet in the host list
 		
 		
-		NetworkPacket hspkt = (NetworkPacket) ev.getData();
-		int recvVMid = hspkt.pkt.getReciever();
 		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
 		schedule(getId(), latency, CloudSimTags.Network_Event_send);
 
 		if (level == NetworkConstants.Agg_LEVEL) {
 			// packet is coming from root so need to be sent to edgelevel swich
 			// find the id for edgelevel switch
-			// int switchid = dc.VmToSwitchid.get(recvVMid);
-			int switchid = getVmToSwitchid().get(recvVMid);
-			List<NetworkPacket> pktlist = downlinkswitchpktlist.get(switchid);
-			if (pktlist == null) {
-				pktlist = new ArrayList<NetworkPacket>();
-				downlinkswitchpktlist.put(switchid, pktlist);
+			List<NetworkPacket> pkts = NetworkPacketBatch.getPackets(ev);
+			resolveDestinations(pkts);
+			for (NetworkPacket hspkt : pkts) {
+				if (!resolveDestination(hspkt)) {
+					dropPacket(hspkt);
+					continue;
+				}
+				enqueue(downlinkswitchpktlist, hspkt.getDestswitchid(), hspkt);
 			}
-			pktlist.add(hspkt);
 			return;
 		}
 
@@ -115,45 +112,31 @@ public class AggregateSwitch extends Switch {
 		// int src=ev.getSource();
 		
 		
-		NetworkPacket hspkt = (NetworkPacket) ev.getData();
-		int recvVMid = hspkt.pkt.getReciever();
 		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
 		schedule(getId(), switching_delay, CloudSimTags.Network_Event_send);
 
 		if (level == NetworkConstants.Agg_LEVEL) {
 			// packet is coming from edge level router so need to be sent to
-			// either root or another edge level swich
-			// find the id for edgelevel switch
-			// int switchid = dc.VmToSwitchid.get(recvVMid);
-			Map<Integer, Integer> map = getVmToSwitchid();
-			boolean flagtoswtich = false;
-			int switchid = -1;
-			if (map.containsKey(recvVMid)) {
-				switchid = map.get(recvVMid);
-				for (Switch sw : downlinkswitches) {
-					if (switchid == sw.getId()) {
-						flagtoswtich = true;
-					}
-				}
-			}
-			if (flagtoswtich) {
-				List<NetworkPacket> pktlist = downlinkswitchpktlist.get(switchid);
-				if (pktlist == null) {
-					pktlist = new ArrayList<NetworkPacket>();
-					downlinkswitchpktlist.put(switchid, pktlist);
+			// either another switch on the path or to an edge level switch
+			// connected to a downlink port
+			ForwardingTable table = getForwardingTable();
+			List<NetworkPacket> pkts = NetworkPacketBatch.getPackets(ev);
+			resolveDestinations(pkts);
+			for (NetworkPacket hspkt : pkts) {
+				if (!resolveDestination(hspkt)) {
+					dropPacket(hspkt);
+					continue;
 				}
-				pktlist.add(hspkt);
-			} else {
-				// send to up
-				// get the next hop for this switchID
-				int nextHopId = NetworkTopology.getNextHop(getId(), switchid);
-				
-				List<NetworkPacket> pktlist = uplinkswitchpktlist.get(nextHopId);
-				if (pktlist == null) {
-					pktlist = new ArrayList<NetworkPacket>();
-					uplinkswitchpktlist.put(nextHopId, pktlist);
+				int destSwitchId = hspkt.getDestswitchid();
+				int nextHopId = table.getNextHop(destSwitchId, hspkt.getFlowHash());
+				if (nextHopId == ForwardingTable.NO_ROUTE) {
+					dropPacket(hspkt);
+				} else if (table.isDownlink(destSwitchId)) {
+					enqueue(downlinkswitchpktlist, destSwitchId, hspkt);
+				} else {
+					// send to up
+					enqueue(uplinkswitchpktlist, nextHopId, hspkt);
 				}
-				pktlist.add(hspkt);
 			}
 		}
 	}
@@ -9,10 +9,10 @@
 package org.cloudbus.cloudsim.network.datacenter;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Map;
 
 import org.cloudbus.cloudsim.NetworkTopology;
 import org.cloudbus.cloudsim.core.CloudSim;
@@ -21,6 +21,7 @@ import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.core.predicates.PredicateType;
 import org.cloudbus.cloudsim.edge.util.CustomLog;
 import org.cloudbus.cloudsim.edge.util.TextUtil;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * This class allows to simulate Edge switch for Datacenter network. It
@@ -53,9 +54,9 @@ public class EdgeSwitch extends Switch {
 	public EdgeSwitch(String name, int level, NetworkDatacenter dc) {
 		//TODO load down-/uplink bandwidth from BRITE file
 		super(name, level, dc);
-		hostlist = new HashMap<Integer, NetworkHost>();
-		uplinkswitchpktlist = new HashMap<Integer, List<NetworkPacket>>();
-		packetTohost = new HashMap<Integer, List<NetworkPacket>>();
+		hostlist = new IntObjectMap<NetworkHost>();
+		uplinkswitchpktlist = new IntObjectMap<List<NetworkPacket>>();
+		packetTohost = new IntObjectMap<List<NetworkPacket>>();
 		uplinkbandwidth = NetworkConstants.BandWidthEdgeAgg; // as defined in the BRITE file
 		downlinkbandwidth = NetworkConstants.BandWidthEdgeHost; // as defined in the BRITE file
 		switching_delay = NetworkConstants.SwitchingDelayEdge;
@@ -79,55 +80,38 @@ public class EdgeSwitch extends Switch {
 		// int src=ev.getSource();
 		
 		
-		NetworkPacket hspkt = (NetworkPacket) ev.getData();
-		int recvVMid = hspkt.getPkt().getReciever();
 		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
 		schedule(getId(), switching_delay, CloudSimTags.Network_Event_send);
-
-		// packet is recieved from host
-		// packet is to be sent to aggregate level or to another host in the
-		// same level
-
-		try {
-			int hostid = dc.VmtoHostlist.get(recvVMid);
-			NetworkHost hs = hostlist.get(hostid);
-			hspkt.setRecieverhostid(hostid);
-
-			// packet needs to go to a host which is connected directly to
-			// switch
-			if (hs != null) {
-				// packet to be sent to host connected to the switch
-				List<NetworkPacket> pktlist = packetTohost.get(hostid);
-				if (pktlist == null) {
-					pktlist = new ArrayList<NetworkPacket>();
-					packetTohost.put(hostid, pktlist);
-				}
-				pktlist.add(hspkt);
-				return;
-
-			}
-		} catch (NullPointerException e) {
-			// host(id) not found in this data center... forward packet up.
+		List<NetworkPacket> pkts = NetworkPacketBatch.getPackets(ev);
+		resolveDestinations(pkts);
+		for (NetworkPacket hspkt : pkts) {
+			forwardUp(hspkt);
 		}
-		// otherwise
-		// packet is to be sent to upper switch
-		// ASSUMPTION EACH EDGE is Connected to one aggregate level switch
-		// if there are more than one Aggregate level switch one need to modify
-		// following code
-
-		int destSwitchId = getVmToSwitchid().get(recvVMid);
+	}
 
-		// get the next hop for this switchID
-		int nextHopId = NetworkTopology.getNextHop(getId(), destSwitchId);
+	private void forwardUp(NetworkPacket hspkt) {
+		if (!resolveDestination(hspkt)) {
+			dropPacket(hspkt);
+			return;
+		}
 
-		List<NetworkPacket> pktlist = uplinkswitchpktlist.get(nextHopId);
-		if (pktlist == null) {
-			pktlist = new ArrayList<NetworkPacket>();
-			uplinkswitchpktlist.put(nextHopId, pktlist);
+		// packet needs to go to a host which is connected directly to
+		// switch
+		int destSwitchId = hspkt.getDestswitchid();
+		if (destSwitchId == getId()) {
+			enqueue(packetTohost, hspkt.getRecieverhostid(), hspkt);
+			return;
 		}
-		pktlist.add(hspkt);
-		return;
 
+		// otherwise
+		// packet is to be sent to the next hop towards the edge switch of
+		// the receiver, as compiled in the forwarding table
+		int nextHopId = getForwardingTable().getNextHop(destSwitchId, hspkt.getFlowHash());
+		if (nextHopId == ForwardingTable.NO_ROUTE) {
+			dropPacket(hspkt);
+			return;
+		}
+		enqueue(uplinkswitchpktlist, nextHopId, hspkt);
 	}
 
 	/**
@@ -141,18 +125,25 @@ public class EdgeSwitch extends Switch {
 		// search for the host and packets..send to them
 		
 		if (uplinkswitchpktlist != null) {
-			for (Entry<Integer, List<NetworkPacket>> es : uplinkswitchpktlist.entrySet()) {
-				int tosend = es.getKey();
-				List<NetworkPacket> hspktlist = es.getValue();
+			for (int slot = uplinkswitchpktlist.nextSlot(-1); slot >= 0; slot = uplinkswitchpktlist.nextSlot(slot)) {
+				int tosend = uplinkswitchpktlist.keyAt(slot);
+				List<NetworkPacket> hspktlist = uplinkswitchpktlist.valueAt(slot);
 				if (!hspktlist.isEmpty()) {
 					// sharing bandwidth between packets
 					double bw = NetworkTopology.isNetworkEnabled() ? NetworkTopology.getBw(getId(), tosend)
 							: uplinkbandwidth;
 					double avband = bw / hspktlist.size();
+					Map<Double, List<NetworkPacket>> batches = new LinkedHashMap<Double, List<NetworkPacket>>();
 					Iterator<NetworkPacket> it = hspktlist.iterator();
 					while (it.hasNext()) {
 						NetworkPacket hspkt = it.next();
 						double delay = hspkt.pkt.data / (avband * 1000);
+						if (NetworkConstants.portQueues) {
+							delay = queuePacket(linkStatistics, tosend, false, hspkt, bw);
+							if (delay < 0) {
+								continue;
+							}
+						}
 
 						CustomLog.printf("%s\t\t%s\t\t%s\t\t\t%s\t\t\t%s", TextUtil.toString(CloudSim.clock()),
 								"#" + this.getId() + "->#" + tosend,
@@ -160,31 +151,43 @@ public class EdgeSwitch extends Switch {
 								delay,
 								TextUtil.toString(hspkt.pkt.data));
 						
-						this.send(tosend, delay, CloudSimTags.Network_Event_UP, hspkt);
+						recordTransmission(linkStatistics, tosend, false, hspkt.pkt.data, bw);
+						NetworkPacketBatch.add(batches, delay, hspkt);
 					}
 					hspktlist.clear();
+					sendBatches(tosend, CloudSimTags.Network_Event_UP, batches);
 				}
 			}
 		}
 		if (packetTohost != null) {
-			for (Entry<Integer, List<NetworkPacket>> es : packetTohost.entrySet()) {
-				List<NetworkPacket> hspktlist = es.getValue();
+			for (int slot = packetTohost.nextSlot(-1); slot >= 0; slot = packetTohost.nextSlot(slot)) {
+				int hostid = packetTohost.keyAt(slot);
+				List<NetworkPacket> hspktlist = packetTohost.valueAt(slot);
 				if (!hspktlist.isEmpty()) {
 					double avband = downlinkbandwidth / hspktlist.size();
+					Map<Double, List<NetworkPacket>> batches = new LinkedHashMap<Double, List<NetworkPacket>>();
 					Iterator<NetworkPacket> it = hspktlist.iterator();
 					while (it.hasNext()) {
 						NetworkPacket hspkt = it.next();
 						double delay = hspkt.pkt.data / (avband * 1000); 
+						if (NetworkConstants.portQueues) {
+							delay = queuePacket(hostLinkStatistics, hostid, true, hspkt, downlinkbandwidth);
+							if (delay < 0) {
+								continue;
+							}
+						}
 						
 						CustomLog.printf("%s\t\t%s\t\t%s\t\t\t%s\t\t\t%s", TextUtil.toString(CloudSim.clock()),
-								"#" + this.getId() + "->Host#" + es.getKey(),
+								"#" + this.getId() + "->Host#" + hostid,
 								TextUtil.toString(downlinkbandwidth + " | " + hspkt.pkt.data + "/(" + avband + "*" + 1000+")"),
 								delay,
 								TextUtil.toString(hspkt.pkt.data));
 						
-						this.send(getId(), delay, CloudSimTags.Network_Event_Host, hspkt);
+						recordTransmission(hostLinkStatistics, hostid, true, hspkt.pkt.data, downlinkbandwidth);
+						NetworkPacketBatch.add(batches, delay, hspkt);
 					}
 					hspktlist.clear();
+					sendBatches(getId(), CloudSimTags.Network_Event_Host, batches);
 				}
 			}
 		}
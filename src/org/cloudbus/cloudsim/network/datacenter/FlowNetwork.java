@@ -0,0 +1,410 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network.datacenter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.NetworkTopology;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
+import org.cloudbus.cloudsim.edge.util.TextUtil;
+
+/**
+ * FlowNetwork is a flow-level (fluid) model of the switch network, used instead of the per-packet
+ * events of the switches if {@link NetworkConstants#flowModel} is set. Every packet a host sends to
+ * another host is a flow over its whole path: the uplink of the sending host, the links between
+ * the switches as given by their forwarding tables and the downlink to the receiving host.
+ * <p>
+ * All active flows share the links max-min fairly. The rates are only computed again when a flow
+ * starts or finishes, and a single event is kept scheduled for the next flow to finish. A finished
+ * flow is handed to the edge switch of the receiver after the switching delays of its path and is
+ * delivered to the host from there, as in the packet model.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class FlowNetwork extends SimEntity {
+
+	/** remaining data below which a flow counts as finished, to absorb rounding errors */
+	private static final double EPSILON = 1e-9;
+
+	/** paths longer than this are taken as a routing loop */
+	private static final int MAX_HOPS = 255;
+
+	private static FlowNetwork instance;
+
+	/** links used by active flows, by {@link #linkKey(int, int)} */
+	private final Map<Long, Link> links = new HashMap<Long, Link>();
+
+	private final List<Flow> flows = new ArrayList<Flow>();
+
+	/** time up to which the remaining data of the flows is accounted */
+	private double lastUpdate;
+
+	/** number of flows finished so far */
+	private long finishedFlows;
+
+	/** number of times the rates were computed */
+	private long rateUpdates;
+
+	public FlowNetwork(String name) {
+		super(name);
+		instance = this;
+	}
+
+	/**
+	 * @return the flow network of the simulation, or null if packets are
+	 *         simulated by the switches
+	 */
+	public static FlowNetwork getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Creates the flow network of the simulation, unless it exists already.
+	 * 
+	 * @return the flow network of the simulation
+	 */
+	public static FlowNetwork create() {
+		if (instance == null || CloudSim.getEntity(instance.getName()) != instance) {
+			new FlowNetwork("FlowNetwork");
+		}
+		return instance;
+	}
+
+	@Override
+	public void startEntity() {
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": FlowNetwork #" + getId() + " is starting...");
+	}
+
+	@Override
+	public void processEvent(SimEvent ev) {
+		switch (ev.getTag()) {
+		case CloudSimTags.Network_Event_Flow:
+			updateFlows();
+			break;
+		default:
+			Log.printLine(CloudSim.clock() + " [DEBUG]:[FlowNetwork]: do not know this event #" + ev.getTag());
+			break;
+		}
+	}
+
+	@Override
+	public void shutdownEntity() {
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": FlowNetwork #" + getId() + " is shutting down... "
+				+ finishedFlows + " flow(s) finished, " + flows.size() + " still active, rates computed "
+				+ rateUpdates + " time(s)");
+		if (instance == this) {
+			instance = null;
+		}
+	}
+
+	/**
+	 * Starts the transfer of the packets a host sends to VMs on other hosts.
+	 * The rates are computed once for all of them.
+	 *
+	 * @param host
+	 *            the sending host
+	 * @param pkts
+	 *            the packets
+	 */
+	public void startFlows(NetworkHost host, List<NetworkPacket> pkts) {
+		advance();
+		for (NetworkPacket pkt : pkts) {
+			Flow flow = createFlow(host, pkt);
+			if (flow == null) {
+				host.sw.dropPacket(pkt);
+				continue;
+			}
+			flows.add(flow);
+			for (Link link : flow.path) {
+				link.flows.add(flow);
+			}
+		}
+		reschedule();
+	}
+
+	/**
+	 * Follows the forwarding tables from the edge switch of the sending host
+	 * to the edge switch of the receiver and collects the links on the way.
+	 *
+	 * @return the flow or null if the receiver can not be reached
+	 */
+	private Flow createFlow(NetworkHost host, NetworkPacket pkt) {
+		Switch sw = host.sw;
+		if (!sw.resolveDestination(pkt)) {
+			return null;
+		}
+		int destSwitchId = pkt.getDestswitchid();
+		int flowHash = pkt.getFlowHash();
+		double data = pkt.getPkt().getData();
+
+		// the hops between switches, recorded in the link statistics once the flow exists
+		List<Switch> hops = new ArrayList<Switch>();
+		List<Integer> nextHops = new ArrayList<Integer>();
+		List<Double> hopBws = new ArrayList<Double>();
+		double latency = sw.switching_delay;
+		while (sw.getId() != destSwitchId) {
+			ForwardingTable table = sw.getForwardingTable();
+			int nextHopId = table.getNextHop(destSwitchId, flowHash);
+			boolean down = table.isDownlink(destSwitchId);
+			if (nextHopId == ForwardingTable.NO_ROUTE || hops.size() >= MAX_HOPS) {
+				return null;
+			}
+			double bw = down ? sw.downlinkbandwidth : sw.uplinkbandwidth;
+			if (NetworkTopology.isNetworkEnabled() && NetworkTopology.getBw(sw.getId(), nextHopId) > 0) {
+				bw = NetworkTopology.getBw(sw.getId(), nextHopId);
+			}
+			hops.add(sw);
+			nextHops.add(nextHopId);
+			hopBws.add(bw);
+
+			Switch next = (Switch) CloudSim.getEntity(nextHopId);
+			if (next == null) {
+				return null;
+			}
+			// the delay a switch waits before forwarding, as in the packet model
+			latency += down ? next.latency : next.switching_delay;
+			sw = next;
+		}
+
+		Link[] path = new Link[hops.size() + 2];
+		path[0] = getLink(-host.getId() - 1, host.sw.getId(), host.bandwidth);
+		for (int i = 0; i < hops.size(); i++) {
+			Switch hop = hops.get(i);
+			path[i + 1] = getLink(hop.getId(), nextHops.get(i), hopBws.get(i));
+			hop.recordTransmission(hop.linkStatistics, nextHops.get(i), false, data, hopBws.get(i));
+		}
+		path[path.length - 1] = getLink(sw.getId(), -pkt.getRecieverhostid() - 1, sw.downlinkbandwidth);
+		sw.recordTransmission(sw.hostLinkStatistics, pkt.getRecieverhostid(), true, data, sw.downlinkbandwidth);
+
+		return new Flow(pkt, sw, path, data, latency);
+	}
+
+	/**
+	 * @param from
+	 *            id of the sending switch, or -(host id + 1) for a host
+	 * @param to
+	 *            id of the receiving switch, or -(host id + 1) for a host
+	 */
+	private Link getLink(int from, int to, double bw) {
+		long key = linkKey(from, to);
+		Link link = links.get(key);
+		if (link == null) {
+			link = new Link(key);
+			links.put(key, link);
+		}
+		// capacity in data per time unit, as in the delays of the packet model
+		link.capacity = bw * 1000;
+		return link;
+	}
+
+	private static long linkKey(int from, int to) {
+		return ((long) from << 32) | (to & 0xffffffffL);
+	}
+
+	/**
+	 * Accounts the data sent by every flow since the last update.
+	 */
+	private void advance() {
+		double now = CloudSim.clock();
+		double elapsed = now - lastUpdate;
+		if (elapsed > 0) {
+			for (Flow flow : flows) {
+				flow.remaining -= flow.rate * elapsed;
+			}
+		}
+		lastUpdate = now;
+	}
+
+	/**
+	 * Finishes the flows which have sent all their data.
+	 */
+	private void updateFlows() {
+		advance();
+		double now = CloudSim.clock();
+		Iterator<Flow> it = flows.iterator();
+		while (it.hasNext()) {
+			Flow flow = it.next();
+			// a rest which would finish within the resolution of the clock
+			// is a rounding error as well
+			if (flow.remaining <= EPSILON * Math.max(1, flow.data)
+					|| flow.rate > 0 && now + flow.remaining / flow.rate == now) {
+				it.remove();
+				for (Link link : flow.path) {
+					link.flows.remove(flow);
+					// a link is kept only while flows use it
+					if (link.flows.isEmpty()) {
+						links.remove(link.key);
+					}
+				}
+				finishedFlows++;
+				send(flow.destSwitch.getId(), flow.latency, CloudSimTags.Network_Event_Host, flow.pkt);
+			}
+		}
+		reschedule();
+	}
+
+	/**
+	 * Computes the rates of all flows and schedules the next flow completion.
+	 */
+	private void reschedule() {
+		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_Flow));
+		if (flows.isEmpty()) {
+			return;
+		}
+		computeRates();
+
+		double next = Double.MAX_VALUE;
+		for (Flow flow : flows) {
+			if (flow.rate > 0) {
+				next = Math.min(next, Math.max(0, flow.remaining) / flow.rate);
+			}
+		}
+		if (next < Double.MAX_VALUE) {
+			schedule(getId(), next, CloudSimTags.Network_Event_Flow);
+		}
+	}
+
+	/**
+	 * Max-min fair rates by progressive filling: the link with the smallest
+	 * fair share among its unassigned flows is the bottleneck of these flows,
+	 * they get that share and it is taken from every other link on their
+	 * paths. This is repeated until every flow has a rate.
+	 */
+	private void computeRates() {
+		rateUpdates++;
+		List<Link> active = new ArrayList<Link>();
+		Iterator<Link> it = links.values().iterator();
+		while (it.hasNext()) {
+			Link link = it.next();
+			if (link.flows.isEmpty()) {
+				// on the path of a packet that was dropped
+				it.remove();
+				continue;
+			}
+			link.residual = link.capacity;
+			link.unassigned = link.flows.size();
+			active.add(link);
+		}
+		for (Flow flow : flows) {
+			flow.assigned = false;
+		}
+
+		int unassigned = flows.size();
+		while (unassigned > 0) {
+			Link bottleneck = null;
+			double share = Double.MAX_VALUE;
+			for (Link link : active) {
+				if (link.unassigned > 0) {
+					double linkShare = Math.max(0, link.residual) / link.unassigned;
+					if (linkShare < share) {
+						share = linkShare;
+						bottleneck = link;
+					}
+				}
+			}
+			if (bottleneck == null) {
+				break;
+			}
+			for (Flow flow : bottleneck.flows) {
+				if (!flow.assigned) {
+					flow.assigned = true;
+					flow.rate = share;
+					unassigned--;
+					for (Link link : flow.path) {
+						link.residual -= share;
+						link.unassigned--;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of flows currently in transfer
+	 */
+	public int getNumberOfActiveFlows() {
+		return flows.size();
+	}
+
+	/**
+	 * @return the number of flows finished so far
+	 */
+	public long getFinishedFlows() {
+		return finishedFlows;
+	}
+
+	/**
+	 * A directed link between a host and its edge switch or between two
+	 * switches.
+	 */
+	private static class Link {
+
+		final long key;
+
+		/** data per time unit */
+		double capacity;
+
+		final List<Flow> flows = new ArrayList<Flow>();
+
+		/** capacity not yet assigned while computing the rates */
+		double residual;
+
+		/** flows without a rate while computing the rates */
+		int unassigned;
+
+		Link(long key) {
+			this.key = key;
+		}
+
+	}
+
+	/**
+	 * The transfer of one packet.
+	 */
+	private static class Flow {
+
+		final NetworkPacket pkt;
+
+		/** edge switch of the receiver */
+		final Switch destSwitch;
+
+		final Link[] path;
+
+		final double data;
+
+		/** switching delays along the path */
+		final double latency;
+
+		double remaining;
+
+		double rate;
+
+		boolean assigned;
+
+		Flow(NetworkPacket pkt, Switch destSwitch, Link[] path, double data, double latency) {
+			this.pkt = pkt;
+			this.destSwitch = destSwitch;
+			this.path = path;
+			this.data = data;
+			this.latency = latency;
+			this.remaining = data;
+		}
+
+	}
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network.datacenter;
+
+import java.util.Arrays;
+
+import org.cloudbus.cloudsim.NetworkTopology;
+
+/**
+ * ForwardingTable is the compiled routing state of one {@link Switch}. For every destination
+ * entity (switch or datacenter) mapped in the {@link NetworkTopology} it stores the egress port,
+ * i.e. the id of the next hop entity and whether it is reached through a downlink port. The table
+ * is indexed by the destination entity id, so forwarding a packet is a single array lookup.
+ * <p>
+ * If multipath routing is enabled (see {@link NetworkConstants#routing}), the table also keeps all
+ * equal-cost next hops of a destination. A packet is then forwarded to one of them chosen by the
+ * hash of its flow, so packets of one flow keep their order while different flows are spread
+ * across the paths. With {@link NetworkConstants#WECMP} the choice is weighted by the bandwidth
+ * of the link to each next hop.
+ * <p>
+ * A table is compiled against one version of the topology (see
+ * {@link NetworkTopology#getVersion()}) and is recompiled by its switch when the topology or the
+ * routing mode changes.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class ForwardingTable {
+
+	/** no route to the destination */
+	public static final int NO_ROUTE = -1;
+
+	/** next hop entity per destination entity id */
+	private final int[] nextHop;
+
+	/** true if the next hop is one of the downlink switches */
+	private final boolean[] downlink;
+
+	/** start of the next hop group of each destination in {@link #groupHops}, null if single path */
+	private final int[] groupStart;
+
+	/** equal-cost next hops of all destinations, one group after another */
+	private final int[] groupHops;
+
+	/** cumulative weight of the next hops within their group */
+	private final double[] groupWeights;
+
+	/** salt of the flow hash, so that switches on a path do not all pick the same index */
+	private final int salt;
+
+	/** topology version this table was compiled for */
+	private final int version;
+
+	/** routing mode this table was compiled for */
+	private final int routing;
+
+	private ForwardingTable(int[] nextHop, boolean[] downlink, int[] groupStart, int[] groupHops,
+			double[] groupWeights, int salt, int version, int routing) {
+		this.nextHop = nextHop;
+		this.downlink = downlink;
+		this.groupStart = groupStart;
+		this.groupHops = groupHops;
+		this.groupWeights = groupWeights;
+		this.salt = salt;
+		this.version = version;
+		this.routing = routing;
+	}
+
+	/**
+	 * Compiles the forwarding table of a switch from the current network
+	 * topology. Destinations which are directly connected downlink switches
+	 * are forwarded to them, all others to the next hop on the shortest path.
+	 * If the topology knows no next hop, the first uplink switch is used.
+	 *
+	 * @param sw
+	 *            the switch
+	 * @return the compiled table
+	 */
+	public static ForwardingTable compile(Switch sw) {
+		int version = NetworkTopology.getVersion();
+		int routing = NetworkConstants.routing;
+		int[][] groups = null;
+		int[] nextHop;
+		if (routing == NetworkConstants.SINGLE_PATH) {
+			nextHop = NetworkTopology.getNextHopTable(sw.getId());
+		} else {
+			groups = NetworkTopology.getNextHopGroups(sw.getId());
+			nextHop = new int[groups.length];
+			for (int dest = 0; dest < groups.length; dest++) {
+				nextHop[dest] = groups[dest] == null ? NO_ROUTE : groups[dest][0];
+			}
+		}
+		int size = nextHop.length;
+		if (sw.downlinkswitches != null) {
+			for (Switch down : sw.downlinkswitches) {
+				size = Math.max(size, down.getId() + 1);
+			}
+		}
+		if (size > nextHop.length) {
+			int oldSize = nextHop.length;
+			nextHop = Arrays.copyOf(nextHop, size);
+			Arrays.fill(nextHop, oldSize, size, NO_ROUTE);
+		}
+
+		int defaultHop = NO_ROUTE;
+		if (sw.uplinkswitches != null && !sw.uplinkswitches.isEmpty()) {
+			defaultHop = sw.uplinkswitches.get(0).getId();
+		}
+		for (int dest = 0; dest < size; dest++) {
+			if (nextHop[dest] == NO_ROUTE && dest != sw.getId() && NetworkTopology.isMapped(dest)) {
+				nextHop[dest] = defaultHop;
+			}
+		}
+
+		boolean[] downlink = new boolean[size];
+		if (sw.downlinkswitches != null) {
+			for (Switch down : sw.downlinkswitches) {
+				nextHop[down.getId()] = down.getId();
+				downlink[down.getId()] = true;
+			}
+		}
+
+		int[] groupStart = null;
+		int[] groupHops = null;
+		double[] groupWeights = null;
+		if (groups != null) {
+			groupStart = new int[size + 1];
+			int total = 0;
+			for (int dest = 0; dest < size; dest++) {
+				groupStart[dest] = total;
+				if (dest < groups.length && groups[dest] != null && !downlink[dest]) {
+					total += groups[dest].length;
+				}
+			}
+			groupStart[size] = total;
+			groupHops = new int[total];
+			groupWeights = new double[total];
+			for (int dest = 0; dest < size; dest++) {
+				double cumulative = 0;
+				for (int i = groupStart[dest]; i < groupStart[dest + 1]; i++) {
+					int hop = groups[dest][i - groupStart[dest]];
+					groupHops[i] = hop;
+					double weight = routing == NetworkConstants.WECMP ? NetworkTopology.getBw(sw.getId(), hop) : 1;
+					cumulative += weight > 0 ? weight : 1;
+					groupWeights[i] = cumulative;
+				}
+			}
+		}
+		return new ForwardingTable(nextHop, downlink, groupStart, groupHops, groupWeights, sw.getId(), version,
+				routing);
+	}
+
+	/**
+	 * @param destId
+	 *            the destination entity id
+	 * @return the next hop entity id or {@link #NO_ROUTE}
+	 */
+	public int getNextHop(int destId) {
+		if (destId < 0 || destId >= nextHop.length) {
+			return NO_ROUTE;
+		}
+		return nextHop[destId];
+	}
+
+	/**
+	 * Selects the next hop of a flow. With single path routing or a single
+	 * equal-cost next hop this is the same as {@link #getNextHop(int)}.
+	 * 
+	 * @param destId
+	 *            the destination entity id
+	 * @param flowHash
+	 *            the hash of the flow the packet belongs to
+	 * @return the next hop entity id or {@link #NO_ROUTE}
+	 */
+	public int getNextHop(int destId, int flowHash) {
+		if (groupStart == null || destId < 0 || destId >= nextHop.length) {
+			return getNextHop(destId);
+		}
+		int start = groupStart[destId];
+		int end = groupStart[destId + 1];
+		if (end - start <= 1) {
+			return nextHop[destId];
+		}
+
+		int hash = mix(flowHash ^ salt * 0x9E3779B9);
+		if (routing == NetworkConstants.WECMP) {
+			double point = (hash >>> 1) / 2147483648.0 * groupWeights[end - 1];
+			for (int i = start; i < end; i++) {
+				if (point < groupWeights[i]) {
+					return groupHops[i];
+				}
+			}
+			return groupHops[end - 1];
+		}
+		return groupHops[start + (hash >>> 1) % (end - start)];
+	}
+
+	/**
+	 * @param destId
+	 *            the destination entity id
+	 * @return the number of equal-cost next hops towards the destination
+	 */
+	public int getNumberOfPaths(int destId) {
+		if (destId < 0 || destId >= nextHop.length || nextHop[destId] == NO_ROUTE) {
+			return 0;
+		}
+		if (groupStart == null) {
+			return 1;
+		}
+		return Math.max(1, groupStart[destId + 1] - groupStart[destId]);
+	}
+
+	/**
+	 * Finalisation step of MurmurHash3, spreads the bits of a flow hash.
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * @param destId
+	 *            the destination entity id
+	 * @return true if the destination is reached through a downlink port
+	 */
+	public boolean isDownlink(int destId) {
+		return destId >= 0 && destId < downlink.length && downlink[destId];
+	}
+
+	/**
+	 * @return true if the topology or the routing mode changed since this
+	 *         table was compiled
+	 */
+	public boolean isStale() {
+		return version != NetworkTopology.getVersion() || routing != NetworkConstants.routing;
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network.datacenter;
+
+/**
+ * LinkStatistics accumulates the traffic a {@link Switch} sent through one of its egress ports,
+ * i.e. over the link to one next hop switch or host, or the traffic an edge host sent over its
+ * uplink to its switch.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class LinkStatistics {
+
+	/** id of the sending switch, or host for the uplink of a host */
+	private final int src;
+
+	/** id of the switch or host on the other end of the link */
+	private final int dest;
+
+	/** true if the link goes to a host */
+	private final boolean toHost;
+
+	/** capacity of the link, as used for the last packet */
+	private double bandwidth;
+
+	private long packets;
+
+	private double data;
+
+	/** the egress queue of the port, if port queues are simulated */
+	private PortQueue queue;
+
+	public LinkStatistics(int src, int dest, boolean toHost) {
+		this.src = src;
+		this.dest = dest;
+		this.toHost = toHost;
+	}
+
+	/**
+	 * Records a packet sent over the link.
+	 *
+	 * @param size
+	 *            the data of the packet
+	 * @param bw
+	 *            the bandwidth of the link
+	 */
+	public void record(double size, double bw) {
+		packets++;
+		data += size;
+		bandwidth = bw;
+	}
+
+	/**
+	 * @param duration
+	 *            the observed time
+	 * @return the fraction of the link capacity used in the given time, with
+	 *         the capacity in the same unit as the transmission delays of the
+	 *         switches (bw * 1000 per time unit)
+	 */
+	public double getUtilization(double duration) {
+		if (duration <= 0 || bandwidth <= 0) {
+			return 0;
+		}
+		return data / (bandwidth * 1000 * duration);
+	}
+
+	public int getSrc() {
+		return src;
+	}
+
+	public int getDest() {
+		return dest;
+	}
+
+	public boolean isToHost() {
+		return toHost;
+	}
+
+	public double getBandwidth() {
+		return bandwidth;
+	}
+
+	public long getPackets() {
+		return packets;
+	}
+
+	public double getData() {
+		return data;
+	}
+
+	public PortQueue getQueue() {
+		return queue;
+	}
+
+	public void setQueue(PortQueue queue) {
+		this.queue = queue;
+	}
+
+}
@@ -105,8 +105,8 @@ public class NetDatacenterBroker extends SimEntity {
 	public NetDatacenterBroker(String name) throws Exception {
 		super(name);
 
-		setVmList(new ArrayList<NetworkVm>());
-		setVmsCreatedList(new ArrayList<NetworkVm>());
+		setVmList(VmList.<NetworkVm> createIndexedList());
+		setVmsCreatedList(VmList.<NetworkVm> createIndexedList());
 		setCloudletList(new ArrayList<NetworkCloudlet>());
 		setAppCloudletList(new ArrayList<AppCloudlet>());
 		setCloudletSubmittedList(new ArrayList<Cloudlet>());
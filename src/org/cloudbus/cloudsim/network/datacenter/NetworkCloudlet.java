@@ -42,6 +42,30 @@ public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
 	 */
 	private double serviceTime = 0.0;
 
+	/**
+	 * The request this cloudlet runs for, or -1 if it runs the requests of
+	 * its owner one after another.
+	 */
+	private int requestId = -1;
+
+	/**
+	 * The compiled stages this cloudlet runs instead of its list of stages,
+	 * or null.
+	 */
+	private StageProgram program;
+
+	/** The ids of the cloudlets bound to the roles of the program. */
+	private int[] peerCloudletIds;
+
+	/** The ids of the VMs of the cloudlets bound to the roles of the program. */
+	private int[] peerVmIds;
+
+	/**
+	 * Incremented each time the stages are replaced, so that an event of a
+	 * former run of the cloudlet can be told apart.
+	 */
+	private int stagesVersion;
+
 	public NetworkCloudlet(int cloudletId, long cloudletLength, int pesNumber, long cloudletFileSize,
 			long cloudletOutputSize, long memory, UtilizationModel utilizationModelCpu,
 			UtilizationModel utilizationModelRam, UtilizationModel utilizationModelBw) {
@@ -50,7 +74,6 @@ public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
 
 		currStagenum = -1;
 		this.setMemory(memory);
-		stages = new ArrayList<TaskStage>();
 	}
 
 	public NetworkCloudlet(long cloudletLength, int pesNumber, long cloudletFileSize, long cloudletOutputSize,
@@ -68,7 +91,6 @@ public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
 
 		currStagenum = -1;
 		this.setMemory(memory);
-		stages = new ArrayList<TaskStage>();
 	}
 
 	private double submittime; // time when cloudlet will be submitted
@@ -89,7 +111,8 @@ public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
 
 	private ArrayList<TaskStage> stages; // all stages which cloudlet execution
 
-	// consists of.
+	// consists of, made when first asked for, so that a cloudlet which runs
+	// a program has none.
 
 	private double starttime;
 
@@ -216,9 +239,12 @@ public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
 	}
 
 	/**
-	 * @return the stages
+	 * @return the stages, an empty list if there are none yet
 	 */
 	public ArrayList<TaskStage> getStages() {
+		if (stages == null) {
+			stages = new ArrayList<TaskStage>();
+		}
 		return stages;
 	}
 
@@ -228,6 +254,112 @@ public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
 	 */
 	public void setStages(ArrayList<TaskStage> stages) {
 		this.stages = stages;
+		program = null;
+		peerCloudletIds = null;
+		peerVmIds = null;
+		stagesVersion++;
+	}
+
+	/**
+	 * @return the compiled stages this cloudlet runs, or null if it runs its
+	 *         list of stages
+	 */
+	public StageProgram getProgram() {
+		return program;
+	}
+
+	/**
+	 * Makes this cloudlet run a compiled program instead of its list of
+	 * stages. The arrays of ids are usually shared by all the cloudlets of a
+	 * request, and are not copied.
+	 * 
+	 * @param program
+	 *            the program
+	 * @param peerCloudletIds
+	 *            the ids of the cloudlets bound to the roles of the program
+	 * @param peerVmIds
+	 *            the ids of their VMs
+	 */
+	public void setProgram(StageProgram program, int[] peerCloudletIds, int[] peerVmIds) {
+		this.stages = null;
+		this.program = program;
+		this.peerCloudletIds = peerCloudletIds;
+		this.peerVmIds = peerVmIds;
+		stagesVersion++;
+	}
+
+	/**
+	 * @return the ids of the cloudlets bound to the roles of the program, or
+	 *         null
+	 */
+	public int[] getPeerCloudletIds() {
+		return peerCloudletIds;
+	}
+
+	/**
+	 * @return the ids of the VMs bound to the roles of the program, or null
+	 */
+	public int[] getPeerVmIds() {
+		return peerVmIds;
+	}
+
+	/**
+	 * @return the number of times the stages were replaced
+	 */
+	public int getStagesVersion() {
+		return stagesVersion;
+	}
+
+	/**
+	 * @return the number of stages of the program, or else of the list
+	 */
+	public int getStageCount() {
+		return program != null ? program.size() : getStages().size();
+	}
+
+	/**
+	 * @param stage
+	 *            the number of a stage
+	 * @return its type
+	 */
+	public int getStageType(int stage) {
+		return program != null ? program.getType(stage) : getStages().get(stage).getType();
+	}
+
+	/**
+	 * @param stage
+	 *            the number of a stage
+	 * @return the data it sends or receives
+	 */
+	public double getStageData(int stage) {
+		return program != null ? program.getData(stage) : getStages().get(stage).getData();
+	}
+
+	/**
+	 * @param stage
+	 *            the number of a stage
+	 * @return the time it executes
+	 */
+	public double getStageTime(int stage) {
+		return program != null ? program.getTime(stage) : getStages().get(stage).getTime();
+	}
+
+	/**
+	 * @param stage
+	 *            the number of a stage
+	 * @return the id of the VM of its peer
+	 */
+	public int getStagePeer(int stage) {
+		return program != null ? peerVmIds[program.getRole(stage)] : getStages().get(stage).getPeer();
+	}
+
+	/**
+	 * @param stage
+	 *            the number of a stage
+	 * @return the id of its peer cloudlet
+	 */
+	public int getStageVpeer(int stage) {
+		return program != null ? peerCloudletIds[program.getRole(stage)] : getStages().get(stage).getVpeer();
 	}
 
 	/**
@@ -292,7 +424,7 @@ public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
 		setIndex(-1);
 		setAccumulatedBwCost(0.0);
 		setCostPerBw(0.0);
-		setStages(new ArrayList<TaskStage>());
+		setStages(null);
 		setCurrStagenum(-1);
 		setNumStage(0);
 
@@ -323,6 +455,21 @@ public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
 		this.serviceTime = serviceTime;
 	}
 
+	/**
+	 * @return the request this cloudlet runs for, or -1 if it runs the
+	 *         requests of its owner one after another
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+
+	/**
+	 * @param requestId the request this cloudlet runs for
+	 */
+	public void setRequestId(int requestId) {
+		this.requestId = requestId;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
@@ -11,12 +11,16 @@ package org.cloudbus.cloudsim.network.datacenter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.CloudletScheduler;
+import org.cloudbus.cloudsim.Host;
 import org.cloudbus.cloudsim.ResCloudlet;
+import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 
@@ -57,6 +61,27 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 
 	public Map<Integer, List<HostPacket>> pktrecv;
 
+	/** Cloudlets in a WAIT_RECV stage whose packet has not arrived. */
+	private List<NetworkCloudlet> waitingCloudlets;
+
+	/** Cloudlets in the exec list, by id. */
+	private Map<Integer, ResCloudlet> runningCloudlets;
+
+	/** Cloudlets which entered the exec list and have not run a stage yet. */
+	private LinkedList<NetworkCloudlet> startingCloudlets;
+
+	/** Ids of the cloudlets which have run all their stages. */
+	private List<Integer> finishingCloudlets;
+
+	/** Completion times of the running EXECUTION stages, earliest first. */
+	private PriorityQueue<StageTimer> stageTimers;
+
+	/** Tie breaker of timers with the same deadline, in scheduling order. */
+	private long timerSequence;
+
+	/** true while the stages are updated by {@link #updateVmProcessing} */
+	private boolean updating;
+
 	/**
 	 * Creates a new CloudletSchedulerSpaceShared object. This method must be invoked before
 	 * starting the actual simulation.
@@ -74,6 +99,11 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 		currentCpus = 0;
 		pkttosend = new HashMap<Integer, List<HostPacket>>();
 		pktrecv = new HashMap<Integer, List<HostPacket>>();
+		waitingCloudlets = new ArrayList<NetworkCloudlet>();
+		runningCloudlets = new HashMap<Integer, ResCloudlet>();
+		startingCloudlets = new LinkedList<NetworkCloudlet>();
+		finishingCloudlets = new ArrayList<Integer>();
+		stageTimers = new PriorityQueue<StageTimer>();
 	}
 
 	/**
@@ -89,195 +119,222 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 	@Override
 	public double updateVmProcessing(double currentTime, List<Double> mipsShare) {
 		setCurrentMipsShare(mipsShare);
-		// update
-		double capacity = 0.0;
 		int cpus = 0;
-
 		for (Double mips : mipsShare) { // count the CPUs available to the VMM
-			capacity += mips;
 			if (mips > 0) {
 				cpus++;
 			}
 		}
 		currentCpus = cpus;
-		capacity /= cpus; // average capacity of each cpu
 
-		for (ResCloudlet rcl : getCloudletExecList()) { // each machine in the
-			// exec list has the
-			// same amount of cpu
-
-			NetworkCloudlet cl = (NetworkCloudlet) rcl.getCloudlet();
-
-			// check status
-			// if execution stage
-			// update the cloudlet finishtime
-			// CHECK WHETHER IT IS WAITING FOR THE PACKET
-			// if packet received change the status of job and update the time.
-			//
-			if ((cl.getCurrStagenum() != -1)) {
-				if (cl.getCurrStagenum() == NetworkConstants.FINISH) {
-					break;
-				}
-				TaskStage st = cl.getStages().get(cl.getCurrStagenum());
-				if (st.getType() == NetworkConstants.EXECUTION) {
-
-					// update the time
-					cl.setTimespentInStage(Math.round(CloudSim.clock() - cl.getTimetostartStage()));
-					if (cl.getTimespentInStage() >= st.getTime()) {
-						changetonextstage(cl, st);
-						// change the stage
-					}
-				}
-				if (st.getType() == NetworkConstants.WAIT_RECV) {
-					List<HostPacket> pktlist = pktrecv.get(st.getPeer());
-					List<HostPacket> pkttoremove = new ArrayList<HostPacket>();
-					if (pktlist != null) {
-						Iterator<HostPacket> it = pktlist.iterator();
-						HostPacket pkt = null;
-						if (it.hasNext()) {
-							pkt = it.next();
-							// Asumption packet will not arrive in the same cycle
-							if (pkt.getReciever() == cl.getVmId()) {
-								pkt.setRecievetime(CloudSim.clock());
-								st.setTime(CloudSim.clock() - pkt.getSendtime());
-								changetonextstage(cl, st);
-								pkttoremove.add(pkt);
-							}
-						}
-						pktlist.removeAll(pkttoremove);
-						// if(pkt!=null)
-						// else wait for recieving the packet
-					}
-				}
+		updating = true;
+		do {
+			// cloudlets which entered the exec list start their first stage
+			while (!startingCloudlets.isEmpty()) {
+				runStages(startingCloudlets.poll());
+			}
 
-			} else {
-				cl.setCurrStagenum(0);
-				cl.setTimetostartStage(CloudSim.clock());
-
-				if (cl.getStages().get(0).getType() == NetworkConstants.EXECUTION) {
-					NetDatacenterBroker.linkDC.schedule(
-							NetDatacenterBroker.linkDC.getId(),
-							cl.getStages().get(0).getTime(),
-							CloudSimTags.VM_DATACENTER_EVENT);
-				} else {
-					NetDatacenterBroker.linkDC.schedule(
-							NetDatacenterBroker.linkDC.getId(),
-							0.0001,
-							CloudSimTags.VM_DATACENTER_EVENT);
-					// /sendstage///
+			// complete the execution stages which are due
+			while (!stageTimers.isEmpty() && stageTimers.peek().deadline <= currentTime) {
+				StageTimer timer = stageTimers.poll();
+				NetworkCloudlet cl = timer.cloudlet;
+				if (isCurrentStage(cl, timer.stage)) {
+					cl.setTimespentInStage(currentTime - cl.getTimetostartStage());
+					cl.setCurrStagenum(cl.getCurrStagenum() + 1);
+					runStages(cl);
 				}
 			}
 
-		}
+			finishCloudlets();
+		} while (!startingCloudlets.isEmpty());
+		updating = false;
 
+		setPreviousTime(currentTime);
 		if (getCloudletExecList().size() == 0 && getCloudletWaitingList().size() == 0) { // no
 			// more cloudlets in this scheduler
-			setPreviousTime(currentTime);
 			return 0.0;
 		}
+		// execution stages schedule their own completion, waiting cloudlets
+		// are resumed by the arrival of their packet
+		return Double.MAX_VALUE;
+	}
 
-		// update each cloudlet
-		int finished = 0;
-		List<ResCloudlet> toRemove = new ArrayList<ResCloudlet>();
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			// rounding issue...
-			if (((NetworkCloudlet) (rcl.getCloudlet())).getCurrStagenum() == NetworkConstants.FINISH) {
-				// stage is changed and packet to send
-				((NetworkCloudlet) (rcl.getCloudlet())).setFinishtime(CloudSim.clock());
-				toRemove.add(rcl);
-				cloudletFinish(rcl);
-				finished++;
-			}
+	/**
+	 * Runs the current stage of a cloudlet and all following stages which complete at once. Stops
+	 * at an EXECUTION stage, whose completion is scheduled, at a WAIT_RECV stage still waiting for
+	 * its packet, or when the cloudlet has run all its stages.
+	 */
+	private void runStages(NetworkCloudlet cl) {
+		if (cl.getCurrStagenum() == -1) {
+			cl.setCurrStagenum(0);
 		}
-		getCloudletExecList().removeAll(toRemove);
-		// add all the CloudletExecList in waitingList.
-		// sort the waitinglist
-
-		// for each finished cloudlet, add a new one from the waiting list
-		if (!getCloudletWaitingList().isEmpty()) {
-			for (int i = 0; i < finished; i++) {
-				toRemove.clear();
-				for (ResCloudlet rcl : getCloudletWaitingList()) {
-					if ((currentCpus - usedPes) >= rcl.getNumberOfPes()) {
-						rcl.setCloudletStatus(Cloudlet.INEXEC);
-						for (int k = 0; k < rcl.getNumberOfPes(); k++) {
-							rcl.setMachineAndPeId(0, i);
-						}
-						getCloudletExecList().add(rcl);
-						usedPes += rcl.getNumberOfPes();
-						toRemove.add(rcl);
-						break;
-					}
+		while (cl.getCurrStagenum() != NetworkConstants.FINISH) {
+			if (cl.getCurrStagenum() >= cl.getStages().size()) {
+				cl.setCurrStagenum(NetworkConstants.FINISH);
+				finishingCloudlets.add(cl.getCloudletId());
+				if (!updating) {
+					scheduleStageEvent(cl, 0);
+				}
+				return;
+			}
+			TaskStage st = cl.getStages().get(cl.getCurrStagenum());
+			cl.setTimespentInStage(0);
+			cl.setTimetostartStage(CloudSim.clock());
+
+			if (st.getType() == NetworkConstants.EXECUTION && st.getTime() > 0) {
+				stageTimers.add(new StageTimer(CloudSim.clock() + st.getTime(), timerSequence++, cl, st));
+				scheduleStageEvent(cl, st.getTime());
+				return;
+			}
+			if (st.getType() == NetworkConstants.WAIT_RECV) {
+				HostPacket pkt = pollPacket(cl, st.getPeer());
+				if (pkt == null) {
+					// wait for the packet, its arrival wakes the cloudlet up
+					waitingCloudlets.add(cl);
+					return;
+				}
+				pkt.setRecievetime(CloudSim.clock());
+				st.setTime(CloudSim.clock() - pkt.getSendtime());
+			}
+			if (st.getType() == NetworkConstants.WAIT_SEND) {
+				HostPacket pkt = new HostPacket(
+						cl.getVmId(),
+						st.getPeer(),
+						st.getData(),
+						CloudSim.clock(),
+						-1,
+						cl.getCloudletId(),
+						st.getVpeer());
+				List<HostPacket> pktlist = pkttosend.get(cl.getVmId());
+				if (pktlist == null) {
+					pktlist = new ArrayList<HostPacket>();
+					pkttosend.put(cl.getVmId(), pktlist);
 				}
-				getCloudletWaitingList().removeAll(toRemove);
-			}// for(cont)
+				pktlist.add(pkt);
+			}
+			cl.setCurrStagenum(cl.getCurrStagenum() + 1);
 		}
+	}
 
-		// estimate finish time of cloudlets in the execution queue
-		double nextEvent = Double.MAX_VALUE;
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			double remainingLength = rcl.getRemainingCloudletLength();
-			double estimatedFinishTime = currentTime + (remainingLength / (capacity * rcl.getNumberOfPes()));
-			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
-				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
+	/**
+	 * Delivers a packet received from another VM. The first cloudlet waiting for a packet of that
+	 * VM moves on to its next stage.
+	 * 
+	 * @param pkt the received packet
+	 */
+	public void deliverPacket(HostPacket pkt) {
+		List<HostPacket> pktlist = pktrecv.get(pkt.sender);
+		if (pktlist == null) {
+			pktlist = new ArrayList<HostPacket>();
+			pktrecv.put(pkt.sender, pktlist);
+		}
+		pktlist.add(pkt);
+
+		Iterator<NetworkCloudlet> it = waitingCloudlets.iterator();
+		while (it.hasNext()) {
+			NetworkCloudlet cl = it.next();
+			int stageNum = cl.getCurrStagenum();
+			if (stageNum < 0 || stageNum >= cl.getStages().size()) {
+				it.remove();
+				continue;
 			}
-			if (estimatedFinishTime < nextEvent) {
-				nextEvent = estimatedFinishTime;
+			TaskStage st = cl.getStages().get(stageNum);
+			if (st.getType() == NetworkConstants.WAIT_RECV && st.getPeer() == pkt.sender
+					&& pkt.getReciever() == cl.getVmId()) {
+				it.remove();
+				runStages(cl);
+				return;
 			}
 		}
-		setPreviousTime(currentTime);
-		return nextEvent;
-	}
-
-	private void changetonextstage(NetworkCloudlet cl, TaskStage st) {
-		cl.setTimespentInStage(0);
-		cl.setTimetostartStage(CloudSim.clock());
-		int currstage = cl.getCurrStagenum();
-		if (currstage >= (cl.getStages().size() - 1)) {
-			cl.setCurrStagenum(NetworkConstants.FINISH);
-		} else {
-			cl.setCurrStagenum(currstage + 1);
-			int i = 0;
-			for (i = cl.getCurrStagenum(); i < cl.getStages().size(); i++) {
-				if (cl.getStages().get(i).getType() == NetworkConstants.WAIT_SEND) {
-					HostPacket pkt = new HostPacket(
-							cl.getVmId(),
-							cl.getStages().get(i).getPeer(),
-							cl.getStages().get(i).getData(),
-							CloudSim.clock(),
-							-1,
-							cl.getCloudletId(),
-							cl.getStages().get(i).getVpeer());
-					List<HostPacket> pktlist = pkttosend.get(cl.getVmId());
-					if (pktlist == null) {
-						pktlist = new ArrayList<HostPacket>();
-					}
-					pktlist.add(pkt);
-					pkttosend.put(cl.getVmId(), pktlist);
+	}
 
-				} else {
-					break;
-				}
+	/**
+	 * @return the oldest packet received from a VM and addressed to the VM of a cloudlet, or null
+	 *         if there is none
+	 */
+	private HostPacket pollPacket(NetworkCloudlet cl, int senderVmId) {
+		List<HostPacket> pktlist = pktrecv.get(senderVmId);
+		if (pktlist == null) {
+			return null;
+		}
+		for (Iterator<HostPacket> it = pktlist.iterator(); it.hasNext();) {
+			HostPacket pkt = it.next();
+			if (pkt.getReciever() == cl.getVmId()) {
+				it.remove();
+				return pkt;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if the cloudlet is still running and in the given stage
+	 */
+	private boolean isCurrentStage(NetworkCloudlet cl, TaskStage stage) {
+		int stageNum = cl.getCurrStagenum();
+		return runningCloudlets.containsKey(cl.getCloudletId()) && stageNum >= 0
+				&& stageNum < cl.getStages().size() && cl.getStages().get(stageNum) == stage;
+	}
 
+	/**
+	 * Removes the cloudlets which have run all their stages from the exec list and moves waiting
+	 * cloudlets into the freed PEs.
+	 */
+	private void finishCloudlets() {
+		if (finishingCloudlets.isEmpty()) {
+			return;
+		}
+		for (Integer cloudletId : finishingCloudlets) {
+			ResCloudlet rcl = runningCloudlets.get(cloudletId);
+			if (rcl == null) {
+				continue;
 			}
-			NetDatacenterBroker.linkDC.schedule(
-					NetDatacenterBroker.linkDC.getId(),
-					0.0001,
-					CloudSimTags.VM_DATACENTER_EVENT);
-			if (i == cl.getStages().size()) {
-				cl.setCurrStagenum(NetworkConstants.FINISH);
-			} else {
-				cl.setCurrStagenum(i);
-				if (cl.getStages().get(i).getType() == NetworkConstants.EXECUTION) {
-					NetDatacenterBroker.linkDC.schedule(
-							NetDatacenterBroker.linkDC.getId(),
-							cl.getStages().get(i).getTime(),
-							CloudSimTags.VM_DATACENTER_EVENT);
-				}
+			((NetworkCloudlet) rcl.getCloudlet()).setFinishtime(CloudSim.clock());
+			getCloudletExecList().remove(rcl);
+			cloudletFinish(rcl);
+		}
+		finishingCloudlets.clear();
 
+		List<ResCloudlet> toRemove = new ArrayList<ResCloudlet>();
+		for (ResCloudlet rcl : getCloudletWaitingList()) {
+			if ((currentCpus - usedPes) >= rcl.getNumberOfPes()) {
+				rcl.setCloudletStatus(Cloudlet.INEXEC);
+				for (int k = 0; k < rcl.getNumberOfPes(); k++) {
+					rcl.setMachineAndPeId(0, k);
+				}
+				addToExecList(rcl);
+				toRemove.add(rcl);
 			}
 		}
+		getCloudletWaitingList().removeAll(toRemove);
+	}
+
+	/**
+	 * Puts a cloudlet into the exec list. Its current stage runs at the next update of the VM.
+	 */
+	private void addToExecList(ResCloudlet rcl) {
+		getCloudletExecList().add(rcl);
+		usedPes += rcl.getNumberOfPes();
+		runningCloudlets.put(rcl.getCloudletId(), rcl);
+		NetworkCloudlet cl = (NetworkCloudlet) rcl.getCloudlet();
+		startingCloudlets.add(cl);
+		if (!updating) {
+			scheduleStageEvent(cl, 0);
+		}
+	}
 
+	/**
+	 * Schedules the update of the VM of a cloudlet, which runs the due stage transitions and
+	 * collects finished cloudlets.
+	 */
+	private void scheduleStageEvent(NetworkCloudlet cl, double delay) {
+		NetworkDatacenter dc = NetDatacenterBroker.linkDC;
+		Host host = dc.getVmAllocationPolicy().getHost(cl.getVmId(), cl.getUserId());
+		if (host == null) {
+			return;
+		}
+		Vm vm = host.getVm(cl.getVmId(), cl.getUserId());
+		dc.schedule(dc.getId(), delay, CloudSimTags.CLOUDLET_STAGE_EVENT, vm);
 	}
 
 	/**
@@ -302,6 +359,8 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 		for (ResCloudlet rcl : getCloudletExecList()) {
 			if (rcl.getCloudletId() == cloudletId) {
 				getCloudletExecList().remove(rcl);
+				runningCloudlets.remove(cloudletId);
+				waitingCloudlets.remove(rcl.getCloudlet());
 				if (rcl.getRemainingCloudletLength() == 0.0) {
 					cloudletFinish(rcl);
 				} else {
@@ -357,6 +416,8 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 		if (found) {
 			// moves to the paused list
 			ResCloudlet rgl = getCloudletExecList().remove(position);
+			runningCloudlets.remove(cloudletId);
+			waitingCloudlets.remove(rgl.getCloudlet());
 			if (rgl.getRemainingCloudletLength() == 0.0) {
 				cloudletFinish(rgl);
 			} else {
@@ -407,6 +468,7 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 		rcl.finalizeCloudlet();
 		getCloudletFinishedList().add(rcl);
 		usedPes -= rcl.getNumberOfPes();
+		runningCloudlets.remove(rcl.getCloudletId());
 	}
 
 	/**
@@ -445,8 +507,7 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 				size *= rcl.getNumberOfPes();
 				rcl.getCloudlet().setCloudletLength(size);
 
-				getCloudletExecList().add(rcl);
-				usedPes += rcl.getNumberOfPes();
+				addToExecList(rcl);
 
 				// calculate the expected time for cloudlet completion
 				double capacity = 0.0;
@@ -503,8 +564,7 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 				rcl.setMachineAndPeId(0, i);
 			}
 
-			getCloudletExecList().add(rcl);
-			usedPes += cloudlet.getNumberOfPes();
+			addToExecList(rcl);
 		} else {// no enough free PEs: go to the waiting queue
 			ResCloudlet rcl = new ResCloudlet(cloudlet);
 			rcl.setCloudletStatus(Cloudlet.QUEUED);
@@ -642,6 +702,8 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 		rcl.finalizeCloudlet();
 		Cloudlet cl = rcl.getCloudlet();
 		usedPes -= cl.getNumberOfPes();
+		runningCloudlets.remove(cl.getCloudletId());
+		waitingCloudlets.remove(cl);
 		return cl;
 	}
 
@@ -794,4 +856,32 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 		return 0;
 	}
 
+	/**
+	 * The scheduled completion of an EXECUTION stage.
+	 */
+	private static class StageTimer implements Comparable<StageTimer> {
+
+		final double deadline;
+
+		final long sequence;
+
+		final NetworkCloudlet cloudlet;
+
+		final TaskStage stage;
+
+		StageTimer(double deadline, long sequence, NetworkCloudlet cloudlet, TaskStage stage) {
+			this.deadline = deadline;
+			this.sequence = sequence;
+			this.cloudlet = cloudlet;
+			this.stage = stage;
+		}
+
+		@Override
+		public int compareTo(StageTimer o) {
+			int c = Double.compare(deadline, o.deadline);
+			return c != 0 ? c : Long.compare(sequence, o.sequence);
+		}
+
+	}
+
 }
@@ -32,6 +32,75 @@ public class NetworkConstants {
 	public static final int Agg_LEVEL = 1;
 	public static final int EDGE_LEVEL = 2;
 
+	// routing of packets between switches
+	public static final int SINGLE_PATH = 0; // shortest path of the topology
+	public static final int ECMP = 1; // equal-cost multipath, flows hashed evenly
+	public static final int WECMP = 2; // equal-cost multipath, flows weighted by link bandwidth
+
+	public static int routing = SINGLE_PATH;
+
+	// transfers between hosts as flows with max-min fair rates (see FlowNetwork)
+	// instead of packet events at every switch
+	public static boolean flowModel = false;
+
+	// FIFO egress queues at the switch ports (see PortQueue), with the buffer
+	// size and the queue length at which packets count as ECN marked
+	public static boolean portQueues = false;
+	public static int portBufferSize = 256; // packets
+	public static int ecnThreshold = 64; // packets
+
+	// edge VMs share their PEs among all their cloudlets (see
+	// EdgeCloudletTimeSharedScheduler) instead of queueing them
+	public static boolean timeSharedVms = false;
+
+	// edge VMs placed on the joint MIPS/RAM/BW/storage vector (see
+	// VmAllocationPolicyMultiResource) instead of by free PEs, with the heuristic
+	// which scores the hosts
+	public static boolean multiResourcePlacement = false;
+	public static int placementHeuristic = 0; // dot product
+
+	// the VMs of a service chain placed near the VMs they exchange data with
+	// (see VmAllocationPolicyAffinity), with the heuristic above for the rest
+	public static boolean trafficAwarePlacement = false;
+
+	// the VMs of a service are reserved all together in the nearest datacenter
+	// which can host all of them and then created there (see
+	// Service#reserveChain), instead of creating them one by one in a
+	// datacenter and trying the next one with those which failed
+	public static boolean chainPlacement = false;
+
+	// the tiers of a service get replica VMs when its smoothed response time or
+	// its queue of requests at the broker grow, and lose them when both shrink
+	// again (see TierAutoscaler), the requests going round robin to the replicas;
+	// it needs requestScopedExecution, without which the replicas get no requests
+	// in parallel
+	public static boolean autoscaling = false;
+	public static double scaleOutResponseTime = 30000.0; // ms
+	public static double scaleInResponseTime = 15000.0; // ms
+	public static int scaleOutQueueLength = 2; // requests
+	public static int maxReplicas = 3; // VMs per tier
+	public static double scaleCooldown = 60000.0; // ms between two scalings
+
+	// each request of a service runs on copies of the cloudlets of the chain
+	// (see ServiceRequest), so that up to maxInFlightRequests requests of the
+	// same service are processed at once instead of one after another
+	public static boolean requestScopedExecution = false;
+	public static int maxInFlightRequests = 4; // requests per service
+
+	// the broker admits the requests of each service into a queue of at most
+	// requestQueueCapacity requests, dispatched as the service frees up instead
+	// of retrying every request each 100 ms; a request which waits longer than
+	// requestDeadline expires, and sheddingPolicy picks the request dropped
+	// when the queue is full
+	public static final int DROP_TAIL = 0; // the arriving request
+	public static final int DROP_OLDEST = 1; // the request which waited longest
+	public static final int DROP_LEAST_SLACK = 2; // the request nearest to missing its deadline
+
+	public static boolean admissionControl = false;
+	public static int requestQueueCapacity = 8; // requests per service
+	public static double requestDeadline = 60000.0; // ms in the queue, 0 for none
+	public static int sheddingPolicy = DROP_TAIL;
+
 	public static final int PES_NUMBER = 4;
 	public static final int FILE_SIZE = 300;
 	public static final int OUTPUT_SIZE = 300;
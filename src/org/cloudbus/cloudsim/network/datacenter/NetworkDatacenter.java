@@ -8,7 +8,9 @@
 
 package org.cloudbus.cloudsim.network.datacenter;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -27,6 +29,8 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.edge.util.TextUtil;
+import org.cloudbus.cloudsim.util.IntIntMap;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * NetworkDatacenter class is a Datacenter whose hostList are virtualized and
@@ -50,19 +54,28 @@ import org.cloudbus.cloudsim.edge.util.TextUtil;
  */
 public class NetworkDatacenter extends Datacenter {
 
-	public Map<Integer, Integer> VmToSwitchid;
+	public IntIntMap VmToSwitchid;
 
-	public Map<Integer, Integer> HostToSwitchid;
+	public IntIntMap HostToSwitchid;
 
 	public Map<Integer, Switch> Switchlist;
 
-	public Map<Integer, Integer> VmtoHostlist;
+	public IntIntMap VmtoHostlist;
 
 	/**
 	 * flag to reserve this datacenter for the user VM only.
 	 */
 	private boolean userDC;
 
+	/** The hosts reserved for VMs, by the id of the entity which reserved them. */
+	private final IntObjectMap<Map<Vm, Host>> chainReservations = new IntObjectMap<Map<Vm, Host>>();
+
+	/**
+	 * The reservations refused while other entities held hosts, which are
+	 * tried again once those are committed or released.
+	 */
+	private final List<SimEvent> waitingChainReserves = new ArrayList<SimEvent>();
+
 	/**
 	 * Allocates a new NetworkDatacenter object.
 	 * 
@@ -96,9 +109,9 @@ public class NetworkDatacenter extends Datacenter {
 			VmAllocationPolicy vmAllocationPolicy, List<Storage> storageList, double schedulingInterval)
 			throws Exception {
 		super(name, characteristics, vmAllocationPolicy, storageList, schedulingInterval);
-		VmToSwitchid = new HashMap<Integer, Integer>();
-		HostToSwitchid = new HashMap<Integer, Integer>();
-		VmtoHostlist = new HashMap<Integer, Integer>();
+		VmToSwitchid = new IntIntMap();
+		HostToSwitchid = new IntIntMap();
+		VmtoHostlist = new IntIntMap();
 		Switchlist = new HashMap<Integer, Switch>();
 		this.setUserDC(false);
 	}
@@ -122,7 +135,7 @@ public class NetworkDatacenter extends Datacenter {
 	/**
 	 * @return the vmtoHostlist
 	 */
-	public Map<Integer, Integer> getVmtoHostlist() {
+	public IntIntMap getVmtoHostlist() {
 		return VmtoHostlist;
 	}
 
@@ -143,6 +156,7 @@ public class NetworkDatacenter extends Datacenter {
 					+ " is created on Host #" + vm.getHost().getId());
 
 			getVmList().add(vm);
+			markHostDirty(vm.getHost());
 
 			vm.updateVmProcessing(CloudSim.clock(),
 					getVmAllocationPolicy().getHost(vm).getVmScheduler().getAllocatedMipsForVm(vm));
@@ -183,19 +197,147 @@ public class NetworkDatacenter extends Datacenter {
 		}
 
 		if (result) {
-			VmToSwitchid.put(vm.getId(), ((NetworkHost) vm.getHost()).sw.getId());
-			VmtoHostlist.put(vm.getId(), vm.getHost().getId());
-			System.out.println(TextUtil.toString(CloudSim.clock()) + ": Datacenter #" + getId() + " - VM #" + vm.getId()
-					+ " is created on Host #" + vm.getHost().getId());
+			vmCreated(vm);
+		}
+	}
 
-			getVmList().add(vm);
+	/**
+	 * Adds a VM which has a host to this datacenter.
+	 * 
+	 * @param vm
+	 *            the vm
+	 */
+	private void vmCreated(Vm vm) {
+		VmToSwitchid.put(vm.getId(), ((NetworkHost) vm.getHost()).sw.getId());
+		VmtoHostlist.put(vm.getId(), vm.getHost().getId());
+		System.out.println(TextUtil.toString(CloudSim.clock()) + ": Datacenter #" + getId() + " - VM #" + vm.getId()
+				+ " is created on Host #" + vm.getHost().getId());
+
+		getVmList().add(vm);
+		markHostDirty(vm.getHost());
+
+		if (vm.isBeingInstantiated()) {
+			vm.setBeingInstantiated(false);
+		}
+
+		vm.updateVmProcessing(CloudSim.clock(),
+				getVmAllocationPolicy().getHost(vm).getVmScheduler().getAllocatedMipsForVm(vm));
+	}
 
-			if (vm.isBeingInstantiated()) {
-				vm.setBeingInstantiated(false);
+	/**
+	 * Reserves hosts for all the VMs of a list, or for none of them. The hosts
+	 * keep room for the VMs, which are only created when the reservation is
+	 * committed. A reservation refused while other entities hold hosts here
+	 * may only be refused because of them, so it is not answered until they
+	 * are committed or released, and is then tried again.
+	 * 
+	 * @param ev
+	 *            the event, with the list of VMs
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processChainReserve(SimEvent ev) {
+		List<Vm> vms = (List<Vm>) ev.getData();
+		Map<Vm, Host> previous = chainReservations.remove(ev.getSource());
+		if (previous != null) {
+			release(previous);
+		}
+
+		Map<Vm, Host> reserved = new LinkedHashMap<Vm, Host>();
+		for (Vm vm : vms) {
+			vm.setUid(vm.getUserId() + "-" + vm.getId());
+			Host host = getVmAllocationPolicy().reserveHostForVm(vm);
+			if (host == null) {
+				break;
 			}
+			reserved.put(vm, host);
+		}
 
-			vm.updateVmProcessing(CloudSim.clock(),
-					getVmAllocationPolicy().getHost(vm).getVmScheduler().getAllocatedMipsForVm(vm));
+		boolean result = reserved.size() == vms.size();
+		if (result) {
+			chainReservations.put(ev.getSource(), reserved);
+		} else {
+			release(reserved);
+			if (!chainReservations.isEmpty()) {
+				Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Datacenter #" + getId()
+						+ ": the hosts for the " + vms.size() + " VM(s) of #" + ev.getSource()
+						+ " wait for the reservations of " + chainReservations.size() + " other(s)");
+				waitingChainReserves.add(ev);
+				return;
+			}
+		}
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Datacenter #" + getId() + ": "
+				+ (result ? "reserved" : "could not reserve") + " hosts for the " + vms.size() + " VM(s) of #"
+				+ ev.getSource());
+
+		int[] data = { getId(), result ? CloudSimTags.TRUE : CloudSimTags.FALSE };
+		send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), CloudSimTags.VM_CHAIN_RESERVE_ACK, data);
+	}
+
+	/**
+	 * Creates the VMs reserved for the sender of the event on their reserved
+	 * hosts, and acknowledges each of them as a created VM.
+	 * 
+	 * @param ev
+	 *            the event
+	 */
+	protected void processChainCommit(SimEvent ev) {
+		Map<Vm, Host> reserved = chainReservations.remove(ev.getSource());
+		if (reserved == null) {
+			return;
+		}
+		for (Entry<Vm, Host> entry : reserved.entrySet()) {
+			Vm vm = entry.getKey();
+			// the room kept for the vm is given back to the host, which creates it at once
+			getVmAllocationPolicy().cancelReservation(vm, entry.getValue());
+			boolean result = getVmAllocationPolicy().allocateHostForVm(vm, entry.getValue());
+			if (result) {
+				vmCreated(vm);
+			}
+			int[] data = { getId(), vm.getId(), result ? CloudSimTags.TRUE : CloudSimTags.FALSE };
+			send(vm.getUserId(), CloudSim.getMinTimeBetweenEvents(), CloudSimTags.VM_CREATE_ACK, data);
+		}
+		retryChainReserves();
+	}
+
+	/**
+	 * Releases the hosts reserved for an entity, if any.
+	 * 
+	 * @param ownerId
+	 *            the id of the entity
+	 */
+	protected void releaseChain(int ownerId) {
+		Map<Vm, Host> reserved = chainReservations.remove(ownerId);
+		if (reserved != null) {
+			release(reserved);
+			retryChainReserves();
+		}
+	}
+
+	/**
+	 * Tries again the reservations which waited for those of other entities.
+	 * Those still refused while reservations are held wait again, the others
+	 * are answered.
+	 */
+	private void retryChainReserves() {
+		if (waitingChainReserves.isEmpty()) {
+			return;
+		}
+		List<SimEvent> waiting = new ArrayList<SimEvent>(waitingChainReserves);
+		waitingChainReserves.clear();
+		for (SimEvent ev : waiting) {
+			processChainReserve(ev);
+		}
+	}
+
+	/**
+	 * Releases the hosts reserved for VMs.
+	 * 
+	 * @param reserved
+	 *            the hosts, by reserved VM
+	 */
+	private void release(Map<Vm, Host> reserved) {
+		for (Entry<Vm, Host> entry : reserved.entrySet()) {
+			getVmAllocationPolicy().cancelReservation(entry.getKey(), entry.getValue());
 		}
 	}
 
@@ -212,6 +354,11 @@ public class NetworkDatacenter extends Datacenter {
 	 */
 	@Override
 	protected void processCloudletSubmit(SimEvent ev, boolean ack) {
+		// the host is brought up to date before the cloudlet joins it
+		if (ev.getData() instanceof Cloudlet) {
+			Cloudlet cl = (Cloudlet) ev.getData();
+			markHostDirty(getVmAllocationPolicy().getHost(cl.getVmId(), cl.getUserId()));
+		}
 		updateCloudletProcessing();
 		
 		int userId = -1;
@@ -265,6 +412,7 @@ public class NetworkDatacenter extends Datacenter {
 			Vm vm = host.getVm(vmId, userId);
 			CloudletScheduler scheduler = vm.getCloudletScheduler();
 			double estimatedFinishTime = scheduler.cloudletSubmit(cl, fileTransferTime);
+			markHostDirty(host);
 
 			if (estimatedFinishTime > 0.0) { // if this cloudlet is in the exec
 				// time to process the cloudlet
@@ -308,9 +456,8 @@ public class NetworkDatacenter extends Datacenter {
 	 */
 	@Override
 	protected void checkCloudletCompletion() {
-		List<? extends Host> list = getVmAllocationPolicy().getHostList();
-		for (int i = 0; i < list.size(); i++) {
-			Host host = list.get(i);
+		// cloudlets only finish on hosts which were updated or touched
+		for (Host host : takeTouchedHosts()) {
 			for (Vm vm : host.getVmList()) {
 				while (vm.getCloudletScheduler().isFinishedCloudlets()) {
 					Cloudlet cl = vm.getCloudletScheduler().getNextFinishedCloudlet();
@@ -322,6 +469,49 @@ public class NetworkDatacenter extends Datacenter {
 		}
 	}
 
+	/**
+	 * Only the dirty and due hosts are updated: the VM and cloudlet events of
+	 * {@link Datacenter}, the VMs created here and the cloudlets submitted
+	 * here mark their hosts, and the stage transitions and packets update
+	 * their hosts at once (see {@link Switch}).
+	 */
+	@Override
+	protected boolean isDirtyHostsUpdate() {
+		return true;
+	}
+
+	/**
+	 * Handles the stage transitions of NetworkCloudlets: the host of the VM in
+	 * the event is updated at once, even within the minimum time between two
+	 * updates of all hosts.
+	 */
+	@Override
+	protected void processOtherEvent(SimEvent ev) {
+		if (ev != null && ev.getTag() == CloudSimTags.CLOUDLET_STAGE_EVENT) {
+			Vm vm = (Vm) ev.getData();
+			Host host = vm.getHost();
+			if (host != null && host.getVmList().contains(vm)) {
+				updateHostProcessing(host);
+				checkCloudletCompletion();
+			}
+			return;
+		}
+		if (ev != null) {
+			switch (ev.getTag()) {
+			case CloudSimTags.VM_CHAIN_RESERVE:
+				processChainReserve(ev);
+				return;
+			case CloudSimTags.VM_CHAIN_COMMIT:
+				processChainCommit(ev);
+				return;
+			case CloudSimTags.VM_CHAIN_RELEASE:
+				releaseChain(ev.getSource());
+				return;
+			}
+		}
+		super.processOtherEvent(ev);
+	}
+
 	/**
 	 * Processes a Cloudlet based on the event type.
 	 * 
@@ -411,6 +601,33 @@ public class NetworkDatacenter extends Datacenter {
 		this.userDC = userDC;
 	}
 
+	/**
+	 * @return the share of the data sent by the VMs of this datacenter which
+	 *         stayed on one host, or 0 if no data was sent. The rest went to
+	 *         VMs on other hosts, of this datacenter or of another one.
+	 */
+	public double getHostLocalTrafficFraction() {
+		double local = 0;
+		double remote = 0;
+		for (Host host : getHostList()) {
+			if (host instanceof NetworkHost) {
+				local += ((NetworkHost) host).localData;
+				remote += ((NetworkHost) host).remoteData;
+			}
+		}
+		return local + remote == 0 ? 0 : local / (local + remote);
+	}
+
+	@Override
+	public void shutdownEntity() {
+		super.shutdownEntity();
+		if (NetworkConstants.trafficAwarePlacement) {
+			Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Datacenter #" + getId() + " kept "
+					+ String.format("%.2f", getHostLocalTrafficFraction()) + " of the data sent by its VMs host-local");
+		}
+		getVmAllocationPolicy().printStatistics(this);
+	}
+
 	public void startEntity() {
 		String typ = isUserDC() ? "User" : "";
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Datacenter " + typ + " #" + getId() + " is starting...");
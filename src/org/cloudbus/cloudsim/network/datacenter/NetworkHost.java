@@ -52,6 +52,11 @@ public class NetworkHost extends Host {
 
 	public double bandwidth;// latency
 
+	/** data of the packets sent to VMs on this host, and to VMs on other hosts */
+	public double localData = 0;
+
+	public double remoteData = 0;
+
 	/** time when last job will finish on CPU1 **/
 	public List<Double> CPUfinTimeCPU = new ArrayList<Double>();
 
@@ -114,17 +119,7 @@ public class NetworkHost extends Host {
 
 			// insertthe packet in recievedlist of VM
 			Vm vm = VmList.getById(getVmList(), hs.pkt.getReciever());
-			List<HostPacket> pktlist = ((NetworkCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv
-					.get(hs.pkt.sender);
-
-			if (pktlist == null) {
-				pktlist = new ArrayList<HostPacket>();
-				((NetworkCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv.put(
-						hs.pkt.sender,
-						pktlist);
-
-			}
-			pktlist.add(hs.pkt);
+			((NetworkCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).deliverPacket(hs.pkt);
 
 		}
 		packetrecieved.clear();
@@ -137,50 +132,38 @@ public class NetworkHost extends Host {
 	 */
 	protected void sendpackets() {
 
-		for (Vm vm : super.getVmList()) {
-			for (Entry<Integer, List<HostPacket>> es : ((NetworkCloudletSpaceSharedScheduler) vm
-					.getCloudletScheduler()).pkttosend.entrySet()) {
-				List<HostPacket> pktlist = es.getValue();
-				for (HostPacket pkt : pktlist) {
-					NetworkPacket hpkt = new NetworkPacket(getId(), pkt, vm.getId(), pkt.sender);
-					Vm vm2 = VmList.getById(this.getVmList(), hpkt.getRecievervmid());
-					if (vm2 != null) {
-						packetTosendLocal.add(hpkt);
-					} else {
-						packetTosendGlobal.add(hpkt);
+		// a packet delivered to a local VM may let its cloudlet send the next packets at once, so
+		// collect until no local packets are left
+		do {
+			packetTosendLocal.clear();
+			for (Vm vm : super.getVmList()) {
+				for (Entry<Integer, List<HostPacket>> es : ((NetworkCloudletSpaceSharedScheduler) vm
+						.getCloudletScheduler()).pkttosend.entrySet()) {
+					List<HostPacket> pktlist = es.getValue();
+					for (HostPacket pkt : pktlist) {
+						NetworkPacket hpkt = new NetworkPacket(getId(), pkt, vm.getId(), pkt.sender);
+						Vm vm2 = VmList.getById(this.getVmList(), hpkt.getRecievervmid());
+						if (vm2 != null) {
+							packetTosendLocal.add(hpkt);
+						} else {
+							packetTosendGlobal.add(hpkt);
+						}
 					}
-				}
-				pktlist.clear();
-
-			}
+					pktlist.clear();
 
-		}
-
-		boolean flag = false;
-
-		for (NetworkPacket hs : packetTosendLocal) {
-			flag = true;
-			hs.stime = hs.rtime;
-			hs.pkt.setRecievetime(CloudSim.clock());
-			// insertthe packet in recievedlist
-			Vm vm = VmList.getById(getVmList(), hs.pkt.getReciever());
+				}
 
-			List<HostPacket> pktlist = ((NetworkCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv
-					.get(hs.pkt.sender);
-			if (pktlist == null) {
-				pktlist = new ArrayList<HostPacket>();
-				((NetworkCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).pktrecv.put(
-						hs.pkt.sender,
-						pktlist);
 			}
-			pktlist.add(hs.pkt);
 
-		}
-		if (flag) {
-			for (Vm vm : super.getVmList()) {
-				vm.updateVmProcessing(CloudSim.clock(), getVmScheduler().getAllocatedMipsForVm(vm));
+			for (NetworkPacket hs : packetTosendLocal) {
+				hs.stime = hs.rtime;
+				hs.pkt.setRecievetime(CloudSim.clock());
+				// insertthe packet in recievedlist
+				Vm vm = VmList.getById(getVmList(), hs.pkt.getReciever());
+				((NetworkCloudletSpaceSharedScheduler) vm.getCloudletScheduler()).deliverPacket(hs.pkt);
+				localData += hs.pkt.data;
 			}
-		}
+		} while (!packetTosendLocal.isEmpty());
 
 		// Sending packet to other VMs therefore packet is forwarded to a Edge switch
 		packetTosendLocal.clear();
@@ -188,6 +171,7 @@ public class NetworkHost extends Host {
 		for (NetworkPacket hs : packetTosendGlobal) {
 			double delay = (1000 * hs.pkt.data) / avband;
 			NetworkConstants.totaldatatransfer += hs.pkt.data;
+			remoteData += hs.pkt.data;
 
 			CloudSim.send(getDatacenter().getId(), sw.getId(), delay, CloudSimTags.Network_Event_UP, hs);
 			// send to switch with delay
@@ -54,6 +54,8 @@ public class NetworkPacket {
 
 	int cloudletid;
 
+	int destswitchid = -1;// edge switch of the receiver VM, resolved at the first switch
+
 	double stime;// time when sent
 
 	double rtime;// time when received
@@ -128,6 +130,31 @@ public class NetworkPacket {
 		this.cloudletid = cloudletid;
 	}
 
+	/**
+	 * @return the edge switch id of the receiver VM, -1 if not resolved yet
+	 */
+	public int getDestswitchid() {
+		return destswitchid;
+	}
+
+	/**
+	 * @param destswitchid the destswitchid to set
+	 */
+	public void setDestswitchid(int destswitchid) {
+		this.destswitchid = destswitchid;
+	}
+
+	/**
+	 * @return the hash of the flow of this packet, i.e. of the sender VM, the
+	 *         receiver VM and the sending cloudlet
+	 */
+	public int getFlowHash() {
+		int hash = sendervmid;
+		hash = 31 * hash + recievervmid;
+		hash = 31 * hash + pkt.virtualsendid;
+		return hash;
+	}
+
 	/**
 	 * @return the stime
 	 */
@@ -0,0 +1,92 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network.datacenter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.SimEvent;
+
+/**
+ * NetworkPacketBatch carries several {@link NetworkPacket}s from one sender to one next hop
+ * (switch or host) in a single event. A host or switch puts all packets for the same next hop
+ * which arrive there at the same time into one batch, so a chatty service chain costs one event
+ * per hop and not one per packet. Switches accept a single packet or a batch as the data of
+ * their network events.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class NetworkPacketBatch {
+
+	private final List<NetworkPacket> packets;
+
+	public NetworkPacketBatch(List<NetworkPacket> packets) {
+		this.packets = packets;
+	}
+
+	/**
+	 * @return the packets of the batch
+	 */
+	public List<NetworkPacket> getPackets() {
+		return packets;
+	}
+
+	public int size() {
+		return packets.size();
+	}
+
+	/**
+	 * @param ev
+	 *            a network event
+	 * @return the packets carried by the event, which has either a single
+	 *         packet or a batch as its data
+	 */
+	public static List<NetworkPacket> getPackets(SimEvent ev) {
+		Object data = ev.getData();
+		if (data instanceof NetworkPacketBatch) {
+			return ((NetworkPacketBatch) data).getPackets();
+		}
+		return Collections.singletonList((NetworkPacket) data);
+	}
+
+	/**
+	 * Adds a packet to the batch of packets sent with the given delay.
+	 *
+	 * @param batches
+	 *            the batches of one next hop, by delay
+	 * @param delay
+	 *            the delay of the packet
+	 * @param pkt
+	 *            the packet
+	 */
+	public static void add(Map<Double, List<NetworkPacket>> batches, double delay, NetworkPacket pkt) {
+		List<NetworkPacket> batch = batches.get(delay);
+		if (batch == null) {
+			batch = new ArrayList<NetworkPacket>();
+			batches.put(delay, batch);
+		}
+		batch.add(pkt);
+	}
+
+	/**
+	 * @param batch
+	 *            packets with the same next hop and delay
+	 * @return the data of the event sending them, the packet itself if it is
+	 *         the only one
+	 */
+	public static Object wrap(List<NetworkPacket> batch) {
+		if (batch.size() == 1) {
+			return batch.get(0);
+		}
+		return new NetworkPacketBatch(batch);
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network.datacenter;
+
+/**
+ * PortQueue is the FIFO egress queue of one port of a switch or host, used if
+ * {@link NetworkConstants#portQueues} is set. Packets are serialized onto the link one after
+ * another at the bandwidth of the link, so a packet waits for all packets queued before it.
+ * <p>
+ * The queue only keeps the departure times of the queued packets, in a ring buffer of the size of
+ * the buffer; a packet has left the queue once its departure time has passed. A packet arriving at
+ * a full buffer is dropped, a packet arriving at a queue of at least
+ * {@link NetworkConstants#ecnThreshold} packets is counted as ECN marked.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class PortQueue {
+
+	/** departure times of the queued packets, oldest first from head */
+	private final double[] departures;
+
+	private int head;
+
+	private int size;
+
+	/** time the last queued packet leaves the port */
+	private double busyUntil;
+
+	private long drops;
+
+	private long marks;
+
+	private long queued;
+
+	private double queueingDelay;
+
+	private int maxLength;
+
+	/**
+	 * @param bufferSize
+	 *            the number of packets the port can hold
+	 */
+	public PortQueue(int bufferSize) {
+		departures = new double[Math.max(bufferSize, 1)];
+	}
+
+	/**
+	 * Queues a packet for transmission.
+	 *
+	 * @param now
+	 *            the arrival time of the packet at the port
+	 * @param data
+	 *            the data of the packet
+	 * @param bw
+	 *            the bandwidth of the link
+	 * @return the time the packet has been completely sent, or a negative
+	 *         value if it was dropped
+	 */
+	public double offer(double now, double data, double bw) {
+		while (size > 0 && departures[head] <= now) {
+			head = head + 1 == departures.length ? 0 : head + 1;
+			size--;
+		}
+		if (size == departures.length) {
+			drops++;
+			return -1;
+		}
+		if (size >= NetworkConstants.ecnThreshold) {
+			marks++;
+		}
+
+		double start = Math.max(now, busyUntil);
+		// serialization delay, in the unit of the packet model (bw * 1000 per time unit)
+		double departure = start + data / (bw * 1000);
+		busyUntil = departure;
+
+		int tail = head + size;
+		departures[tail >= departures.length ? tail - departures.length : tail] = departure;
+		size++;
+		maxLength = Math.max(maxLength, size);
+		queued++;
+		queueingDelay += start - now;
+		return departure;
+	}
+
+	/**
+	 * @return the number of packets dropped because the buffer was full
+	 */
+	public long getDrops() {
+		return drops;
+	}
+
+	/**
+	 * @return the number of packets which found at least
+	 *         {@link NetworkConstants#ecnThreshold} packets in the queue
+	 */
+	public long getMarks() {
+		return marks;
+	}
+
+	/**
+	 * @return the number of packets queued, i.e. not dropped
+	 */
+	public long getQueued() {
+		return queued;
+	}
+
+	/**
+	 * @return the mean time a queued packet waited before its transmission
+	 *         started
+	 */
+	public double getMeanQueueingDelay() {
+		return queued == 0 ? 0 : queueingDelay / queued;
+	}
+
+	/**
+	 * @return the largest number of packets in the queue so far
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+}
@@ -9,13 +9,13 @@
 package org.cloudbus.cloudsim.network.datacenter;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.core.predicates.PredicateType;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 /**
  * This class allows to simulate Root switch which connects Datacenter to external network. It
@@ -42,7 +42,7 @@ public class RootSwitch extends Switch {
 	 */
 	public RootSwitch(String name, int level, NetworkDatacenter dc) {
 		super(name, level, dc);
-		downlinkswitchpktlist = new HashMap<Integer, List<NetworkPacket>>();
+		downlinkswitchpktlist = new IntObjectMap<List<NetworkPacket>>();
 		downlinkswitches = new ArrayList<Switch>();
 
 		downlinkbandwidth = NetworkConstants.BandWidthAggRoot;
@@ -63,11 +63,16 @@ public class RootSwitch extends Switch {
 		// check which switch to forward to
 		// add packet in the switch list
 
-		NetworkPacket hspkt = (NetworkPacket) ev.getData();
-		int recvVMid = hspkt.pkt.getReciever();
 		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
 		schedule(getId(), switching_delay, CloudSimTags.Network_Event_send);
 
+		for (NetworkPacket hspkt : NetworkPacketBatch.getPackets(ev)) {
+			forwardDown(hspkt);
+		}
+	}
+
+	private void forwardDown(NetworkPacket hspkt) {
+		int recvVMid = hspkt.pkt.getReciever();
 		if (level == NetworkConstants.ROOT_LEVEL) {
 			// get id of edge router
 			int edgeswitchid = dc.VmToSwitchid.get(recvVMid);
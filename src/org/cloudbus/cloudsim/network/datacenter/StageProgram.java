@@ -0,0 +1,131 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.network.datacenter;
+
+import java.util.Arrays;
+
+/**
+ * StageProgram is the compiled, immutable list of stages of a {@link NetworkCloudlet}, kept in
+ * primitive arrays. Unlike a list of {@link TaskStage}s, it does not name the peers of the stages
+ * but their roles, e.g. the cloudlet which sends the request or the next cloudlet of a chain, so
+ * that one program is shared by all the cloudlets which run the same stages: the cloudlets of all
+ * requests to all services of a type. Each cloudlet binds the roles to the ids of its peers (see
+ * {@link NetworkCloudlet#setProgram(StageProgram, int[], int[])}) and its current stage number is
+ * its cursor in the program, so that running a request allocates no stages.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class StageProgram {
+
+	private final int[] types;
+
+	private final double[] data;
+
+	private final double[] times;
+
+	/** The role of the peer of each stage. */
+	private final int[] roles;
+
+	private StageProgram(Builder builder) {
+		types = Arrays.copyOf(builder.types, builder.size);
+		data = Arrays.copyOf(builder.data, builder.size);
+		times = Arrays.copyOf(builder.times, builder.size);
+		roles = Arrays.copyOf(builder.roles, builder.size);
+	}
+
+	/**
+	 * @return the number of stages
+	 */
+	public int size() {
+		return types.length;
+	}
+
+	/**
+	 * @param stage the number of a stage
+	 * @return its type, see {@link NetworkConstants}
+	 */
+	public int getType(int stage) {
+		return types[stage];
+	}
+
+	/**
+	 * @param stage the number of a stage
+	 * @return the data it sends or receives
+	 */
+	public double getData(int stage) {
+		return data[stage];
+	}
+
+	/**
+	 * @param stage the number of a stage
+	 * @return the time it executes
+	 */
+	public double getTime(int stage) {
+		return times[stage];
+	}
+
+	/**
+	 * @param stage the number of a stage
+	 * @return the role of its peer, i.e. the cloudlet it sends to or receives from, or the
+	 *         cloudlet itself for an execution stage
+	 */
+	public int getRole(int stage) {
+		return roles[stage];
+	}
+
+	/**
+	 * Compiles the stages of a program one after another.
+	 */
+	public static class Builder {
+
+		private int size;
+
+		private int[] types = new int[8];
+
+		private double[] data = new double[8];
+
+		private double[] times = new double[8];
+
+		private int[] roles = new int[8];
+
+		/**
+		 * Adds a stage.
+		 *
+		 * @param type the type of the stage, see {@link NetworkConstants}
+		 * @param data the data it sends or receives
+		 * @param time the time it executes
+		 * @param role the role of its peer
+		 * @return this builder
+		 */
+		public Builder add(int type, double data, double time, int role) {
+			if (size == types.length) {
+				int capacity = 2 * size;
+				types = Arrays.copyOf(types, capacity);
+				this.data = Arrays.copyOf(this.data, capacity);
+				times = Arrays.copyOf(times, capacity);
+				roles = Arrays.copyOf(roles, capacity);
+			}
+			types[size] = type;
+			this.data[size] = data;
+			times[size] = time;
+			roles[size] = role;
+			size++;
+			return this;
+		}
+
+		/**
+		 * @return the program of the stages added
+		 */
+		public StageProgram build() {
+			return new StageProgram(this);
+		}
+
+	}
+
+}
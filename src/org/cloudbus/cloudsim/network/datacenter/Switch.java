@@ -11,6 +11,7 @@ package org.cloudbus.cloudsim.network.datacenter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,8 @@ import org.cloudbus.cloudsim.edge.EdgeHost;
 import org.cloudbus.cloudsim.edge.util.CustomLog;
 import org.cloudbus.cloudsim.edge.util.TextUtil;
 import org.cloudbus.cloudsim.lists.VmList;
+import org.cloudbus.cloudsim.util.IntIntMap;
+import org.cloudbus.cloudsim.util.IntObjectMap;
 
 public class Switch extends SimEntity {
 
@@ -40,17 +43,17 @@ public class Switch extends SimEntity {
 
 	public int datacenterid;
 
-	public Map<Integer, List<NetworkPacket>> uplinkswitchpktlist;
+	public IntObjectMap<List<NetworkPacket>> uplinkswitchpktlist;
 
-	public Map<Integer, List<NetworkPacket>> downlinkswitchpktlist;
+	public IntObjectMap<List<NetworkPacket>> downlinkswitchpktlist;
 
-	public Map<Integer, NetworkHost> hostlist;
+	public IntObjectMap<NetworkHost> hostlist;
 
 	public List<Switch> uplinkswitches;
 
 	public List<Switch> downlinkswitches;
 
-	public Map<Integer, List<NetworkPacket>> packetTohost;
+	public IntObjectMap<List<NetworkPacket>> packetTohost;
 
 	int type;// edge switch or aggregation switch
 
@@ -81,6 +84,15 @@ public class Switch extends SimEntity {
 	/** The datacenter ids list. */
 	protected List<Integer> datacenterIdsList;
 
+	/** The compiled forwarding table of this switch. */
+	protected ForwardingTable forwardingTable;
+
+	/** Traffic sent to the next hop switches, by switch id. */
+	protected Map<Integer, LinkStatistics> linkStatistics = new HashMap<Integer, LinkStatistics>();
+
+	/** Traffic sent to the connected hosts, by host id. */
+	protected Map<Integer, LinkStatistics> hostLinkStatistics = new HashMap<Integer, LinkStatistics>();
+
 	public Switch(String name, int level, NetworkDatacenter dc) {
 		super(name);
 		this.level = level;
@@ -141,11 +153,17 @@ public class Switch extends SimEntity {
 
 	protected void processhostpacket(SimEvent ev) {
 		// Send packet to host
-		NetworkPacket hspkt = (NetworkPacket) ev.getData();
-		EdgeHost hs = (EdgeHost) hostlist.get(hspkt.recieverhostid);
-
-		hs.packetrecieved.add(hspkt);
-		hs.updateVmsProcessing(CloudSim.clock());
+		// a batch is sent to one host, update each host once for all its packets
+		EdgeHost last = null;
+		for (NetworkPacket hspkt : NetworkPacketBatch.getPackets(ev)) {
+			EdgeHost hs = (EdgeHost) hostlist.get(hspkt.recieverhostid);
+			if (last != null && last != hs) {
+				last.getDatacenter().updateHostProcessing(last);
+			}
+			hs.packetrecieved.add(hspkt);
+			last = hs;
+		}
+		last.getDatacenter().updateHostProcessing(last);
 	}
 
 	protected void processpacket_down(SimEvent ev) {
@@ -155,10 +173,15 @@ public class Switch extends SimEntity {
 		// add packet in the switch list
 		// add packet in the host list
 		// int src=ev.getSource();
-		NetworkPacket hspkt = (NetworkPacket) ev.getData();
-		int recvVMid = hspkt.pkt.getReciever();
 		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
 		schedule(getId(), latency, CloudSimTags.Network_Event_send);
+		for (NetworkPacket hspkt : NetworkPacketBatch.getPackets(ev)) {
+			enqueueDown(hspkt);
+		}
+	}
+
+	private void enqueueDown(NetworkPacket hspkt) {
+		int recvVMid = hspkt.pkt.getReciever();
 		if (level == NetworkConstants.EDGE_LEVEL) {
 			// packet is to be recieved by host
 			int hostid = dc.VmtoHostlist.get(recvVMid);
@@ -193,10 +216,15 @@ public class Switch extends SimEntity {
 		// add packet in the switch list
 		//
 		// int src=ev.getSource();
-		NetworkPacket hspkt = (NetworkPacket) ev.getData();
-		int recvVMid = hspkt.pkt.getReciever();
 		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
 		schedule(getId(), switching_delay, CloudSimTags.Network_Event_send);
+		for (NetworkPacket hspkt : NetworkPacketBatch.getPackets(ev)) {
+			enqueueUp(hspkt);
+		}
+	}
+
+	private void enqueueUp(NetworkPacket hspkt) {
+		int recvVMid = hspkt.pkt.getReciever();
 		if (level == NetworkConstants.EDGE_LEVEL) {
 			// packet is recieved from host
 			// packet is to be sent to aggregate level or to another host in the
@@ -307,74 +335,102 @@ public class Switch extends SimEntity {
 		// search for the host and packets..send to them
 
 		if (downlinkswitchpktlist != null) {
-			for (Entry<Integer, List<NetworkPacket>> es : downlinkswitchpktlist.entrySet()) {
-				int tosend = es.getKey();
-				List<NetworkPacket> hspktlist = es.getValue();
+			for (int slot = downlinkswitchpktlist.nextSlot(-1); slot >= 0; slot = downlinkswitchpktlist.nextSlot(slot)) {
+				int tosend = downlinkswitchpktlist.keyAt(slot);
+				List<NetworkPacket> hspktlist = downlinkswitchpktlist.valueAt(slot);
 				if (!hspktlist.isEmpty()) {
 					double bw = NetworkTopology.isNetworkEnabled() ? NetworkTopology.getBw(getId(), tosend)
 							: downlinkbandwidth;
 					double avband = bw / hspktlist.size();
+					Map<Double, List<NetworkPacket>> batches = new LinkedHashMap<Double, List<NetworkPacket>>();
 					Iterator<NetworkPacket> it = hspktlist.iterator();
 					while (it.hasNext()) {
 						NetworkPacket hspkt = it.next();
 						double delay = hspkt.pkt.data / (avband * 1000);
+						if (NetworkConstants.portQueues) {
+							delay = queuePacket(linkStatistics, tosend, false, hspkt, bw);
+							if (delay < 0) {
+								continue;
+							}
+						}
 
 						CustomLog.printf("%s\t\t%s\t\t%s\t\t\t%s\t\t\t%s", TextUtil.toString(CloudSim.clock()),
 								"#" + this.getId() + "->#" + tosend,
 								TextUtil.toString(hspkt.pkt.data + "/(" + avband + "*" + 1000 + ")"), delay,
 								TextUtil.toString(hspkt.pkt.data));
 
-						this.send(tosend, delay, CloudSimTags.Network_Event_DOWN, hspkt);
+						recordTransmission(linkStatistics, tosend, false, hspkt.pkt.data, bw);
+						NetworkPacketBatch.add(batches, delay, hspkt);
 					}
 					hspktlist.clear();
+					sendBatches(tosend, CloudSimTags.Network_Event_DOWN, batches);
 				}
 			}
 		}
 		if (uplinkswitchpktlist != null) {
-			for (Entry<Integer, List<NetworkPacket>> es : uplinkswitchpktlist.entrySet()) {
-				int tosend = es.getKey();
-				List<NetworkPacket> hspktlist = es.getValue();
+			for (int slot = uplinkswitchpktlist.nextSlot(-1); slot >= 0; slot = uplinkswitchpktlist.nextSlot(slot)) {
+				int tosend = uplinkswitchpktlist.keyAt(slot);
+				List<NetworkPacket> hspktlist = uplinkswitchpktlist.valueAt(slot);
 				if (!hspktlist.isEmpty()) {
 					// sharing bandwidth between packets
 					double bw = NetworkTopology.isNetworkEnabled() ? NetworkTopology.getBw(getId(), tosend)
 							: uplinkbandwidth;
 
 					double avband = bw / hspktlist.size();
+					Map<Double, List<NetworkPacket>> batches = new LinkedHashMap<Double, List<NetworkPacket>>();
 					Iterator<NetworkPacket> it = hspktlist.iterator();
 					while (it.hasNext()) {
 						NetworkPacket hspkt = it.next();
 						double delay = hspkt.pkt.data / (avband * 1000);
+						if (NetworkConstants.portQueues) {
+							delay = queuePacket(linkStatistics, tosend, false, hspkt, bw);
+							if (delay < 0) {
+								continue;
+							}
+						}
 
 						CustomLog.printf("%s\t\t%s\t\t%s\t\t\t%s\t\t\t%s", TextUtil.toString(CloudSim.clock()),
 								"#" + this.getId() + "->#" + tosend,
 								TextUtil.toString(hspkt.pkt.data + "/(" + avband + "*" + 1000 + ")"), delay,
 								TextUtil.toString(hspkt.pkt.data));
 
-						this.send(tosend, delay, CloudSimTags.Network_Event_UP, hspkt);
+						recordTransmission(linkStatistics, tosend, false, hspkt.pkt.data, bw);
+						NetworkPacketBatch.add(batches, delay, hspkt);
 					}
 					hspktlist.clear();
+					sendBatches(tosend, CloudSimTags.Network_Event_UP, batches);
 				}
 			}
 		}
 		if (packetTohost != null) {
-			for (Entry<Integer, List<NetworkPacket>> es : packetTohost.entrySet()) {
-				List<NetworkPacket> hspktlist = es.getValue();
+			for (int slot = packetTohost.nextSlot(-1); slot >= 0; slot = packetTohost.nextSlot(slot)) {
+				int hostid = packetTohost.keyAt(slot);
+				List<NetworkPacket> hspktlist = packetTohost.valueAt(slot);
 				if (!hspktlist.isEmpty()) {
 					double avband = downlinkbandwidth / hspktlist.size();
+					Map<Double, List<NetworkPacket>> batches = new LinkedHashMap<Double, List<NetworkPacket>>();
 					Iterator<NetworkPacket> it = hspktlist.iterator();
 					while (it.hasNext()) {
 						NetworkPacket hspkt = it.next();
 						double delay = hspkt.pkt.data / (avband * 1000);
+						if (NetworkConstants.portQueues) {
+							delay = queuePacket(hostLinkStatistics, hostid, true, hspkt, downlinkbandwidth);
+							if (delay < 0) {
+								continue;
+							}
+						}
 
 						CustomLog.printf("%s\t\t%s\t\t%s\t\t\t%s\t\t\t%s", TextUtil.toString(CloudSim.clock()),
-								"#" + this.getId() + "->Host#" + es.getKey(),
+								"#" + this.getId() + "->Host#" + hostid,
 								TextUtil.toString(
 										downlinkbandwidth + " | " + hspkt.pkt.data + "/(" + avband + "*" + 1000 + ")"),
 								delay, TextUtil.toString(hspkt.pkt.data));
 
-						this.send(getId(), delay, CloudSimTags.Network_Event_Host, hspkt);
+						recordTransmission(hostLinkStatistics, hostid, true, hspkt.pkt.data, downlinkbandwidth);
+						NetworkPacketBatch.add(batches, delay, hspkt);
 					}
 					hspktlist.clear();
+					sendBatches(getId(), CloudSimTags.Network_Event_Host, batches);
 				}
 			}
 		}
@@ -384,15 +440,32 @@ public class Switch extends SimEntity {
 
 	}
 
+	/**
+	 * Sends the packets of one port, one event per batch of packets with the
+	 * same delay.
+	 * 
+	 * @param dest
+	 *            the receiving entity
+	 * @param tag
+	 *            the network event
+	 * @param batches
+	 *            the packets by delay
+	 */
+	protected void sendBatches(int dest, int tag, Map<Double, List<NetworkPacket>> batches) {
+		for (Entry<Double, List<NetworkPacket>> batch : batches.entrySet()) {
+			this.send(dest, batch.getKey(), tag, NetworkPacketBatch.wrap(batch.getValue()));
+		}
+	}
+
 	//
 	// R: We changed visibility of the below methods from private to protected.
 	//
 
 	protected NetworkHost getHostwithVM(int vmid) {
-		for (Entry<Integer, NetworkHost> es : hostlist.entrySet()) {
-			Vm vm = VmList.getById(es.getValue().getVmList(), vmid);
+		for (int slot = hostlist.nextSlot(-1); slot >= 0; slot = hostlist.nextSlot(slot)) {
+			Vm vm = VmList.getById(hostlist.valueAt(slot).getVmList(), vmid);
 			if (vm != null) {
-				return es.getValue();
+				return hostlist.valueAt(slot);
 			}
 		}
 		return null;
@@ -414,9 +487,10 @@ public class Switch extends SimEntity {
 
 	protected List<NetworkHost> getfreehostlist(int numhost) {
 		List<NetworkHost> freehostls = new ArrayList<NetworkHost>();
-		for (Entry<Integer, NetworkHost> et : hostlist.entrySet()) {
-			if (et.getValue().getNumberOfFreePes() == et.getValue().getNumberOfPes()) {
-				freehostls.add(et.getValue());
+		for (int slot = hostlist.nextSlot(-1); slot >= 0; slot = hostlist.nextSlot(slot)) {
+			NetworkHost host = hostlist.valueAt(slot);
+			if (host.getNumberOfFreePes() == host.getNumberOfPes()) {
+				freehostls.add(host);
 			}
 			if (freehostls.size() == numhost) {
 				break;
@@ -429,6 +503,108 @@ public class Switch extends SimEntity {
 	@Override
 	public void shutdownEntity() {
 		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Switch #" + getId() + " is shutting down...");
+		printLinkStatistics(linkStatistics);
+		printLinkStatistics(hostLinkStatistics);
+		// the uplinks of the hosts end at this switch, they are reported with its links
+		for (int slot = hostlist == null ? -1 : hostlist.nextSlot(-1); slot >= 0; slot = hostlist.nextSlot(slot)) {
+			NetworkHost host = hostlist.valueAt(slot);
+			if (host instanceof EdgeHost && ((EdgeHost) host).getUplinkStatistics() != null) {
+				printLink("Host#" + host.getId() + "->#" + getId(), ((EdgeHost) host).getUplinkStatistics());
+			}
+		}
+	}
+
+	/**
+	 * Records a packet sent through a port of this switch.
+	 * 
+	 * @param statistics
+	 *            the statistics of the ports
+	 * @param port
+	 *            the port (id of the switch or host on the other end)
+	 * @param toHost
+	 *            true if the port is connected to a host
+	 * @param data
+	 *            the data of the packet
+	 * @param bw
+	 *            the bandwidth of the link
+	 */
+	protected void recordTransmission(Map<Integer, LinkStatistics> statistics, int port, boolean toHost,
+			double data, double bw) {
+		getLinkStatistics(statistics, port, toHost).record(data, bw);
+	}
+
+	private LinkStatistics getLinkStatistics(Map<Integer, LinkStatistics> statistics, int port, boolean toHost) {
+		LinkStatistics link = statistics.get(port);
+		if (link == null) {
+			link = new LinkStatistics(getId(), port, toHost);
+			statistics.put(port, link);
+		}
+		return link;
+	}
+
+	/**
+	 * Queues a packet at the egress queue of a port (see
+	 * {@link NetworkConstants#portQueues}). The packet is dropped if the
+	 * buffer of the port is full.
+	 * 
+	 * @param statistics
+	 *            the statistics of the ports
+	 * @param port
+	 *            the port (id of the switch or host on the other end)
+	 * @param toHost
+	 *            true if the port is connected to a host
+	 * @param pkt
+	 *            the packet
+	 * @param bw
+	 *            the bandwidth of the link
+	 * @return the delay until the packet arrives at the other end, i.e. the
+	 *         queueing, serialization and propagation delay, or a negative
+	 *         value if the packet was dropped
+	 */
+	protected double queuePacket(Map<Integer, LinkStatistics> statistics, int port, boolean toHost,
+			NetworkPacket pkt, double bw) {
+		LinkStatistics link = getLinkStatistics(statistics, port, toHost);
+		if (link.getQueue() == null) {
+			link.setQueue(new PortQueue(NetworkConstants.portBufferSize));
+		}
+		double now = CloudSim.clock();
+		double departure = link.getQueue().offer(now, pkt.pkt.data, bw);
+		if (departure < 0) {
+			Log.printLine(TextUtil.toString(now) + ": Switch #" + getId() + ": buffer of port "
+					+ (toHost ? "Host#" : "#") + port + " is full, dropping packet to VM #" + pkt.getRecievervmid());
+			return -1;
+		}
+		double propagation = toHost ? 0 : NetworkTopology.getDelay(getId(), port);
+		return departure - now + propagation;
+	}
+
+	private void printLinkStatistics(Map<Integer, LinkStatistics> statistics) {
+		for (LinkStatistics link : statistics.values()) {
+			printLink("#" + link.getSrc() + "->" + (link.isToHost() ? "Host#" : "#") + link.getDest(), link);
+		}
+	}
+
+	private void printLink(String name, LinkStatistics link) {
+		PortQueue queue = link.getQueue();
+		CustomLog.printLink("%s\t\t%s\t\t%s\t\t%s\t\t%s\t\t%.6f\t\t%s\t\t%s\t\t%.6f\t\t%s",
+				TextUtil.toString(CloudSim.clock()), name, link.getPackets(), TextUtil.toString(link.getData()),
+				TextUtil.toString(link.getBandwidth()), link.getUtilization(CloudSim.clock()),
+				queue == null ? 0 : queue.getDrops(), queue == null ? 0 : queue.getMarks(),
+				queue == null ? 0 : queue.getMeanQueueingDelay(), queue == null ? 0 : queue.getMaxLength());
+	}
+
+	/**
+	 * @return the traffic sent to the next hop switches, by switch id
+	 */
+	public Map<Integer, LinkStatistics> getLinkStatistics() {
+		return linkStatistics;
+	}
+
+	/**
+	 * @return the traffic sent to the connected hosts, by host id
+	 */
+	public Map<Integer, LinkStatistics> getHostLinkStatistics() {
+		return hostLinkStatistics;
 	}
 
 	/**
@@ -464,12 +640,123 @@ public class Switch extends SimEntity {
 		return datacenterIdsList;
 	}
 
+	/**
+	 * @return the forwarding table of this switch, compiled again if the
+	 *         network topology has changed since the last call.
+	 */
+	public ForwardingTable getForwardingTable() {
+		if (forwardingTable == null || forwardingTable.isStale()) {
+			forwardingTable = ForwardingTable.compile(this);
+		}
+		return forwardingTable;
+	}
+
+	/**
+	 * Looks up the edge switch and the host of the receiver VM of a packet,
+	 * once per packet. Later hops only use the stored switch id.
+	 * 
+	 * @param pkt
+	 *            the packet
+	 * @return false if the receiver VM is not known in any datacenter
+	 */
+	protected boolean resolveDestination(NetworkPacket pkt) {
+		return pkt.getDestswitchid() >= 0 || resolveDestination(pkt, null) != null;
+	}
+
+	/**
+	 * Looks up the destinations of the packets of one event at once. The
+	 * datacenter of the receiver VM of a packet is tried first for the next
+	 * packets, so that the datacenters are gone through once for a batch of
+	 * packets to the VMs of one datacenter. The packets whose receiver VM is
+	 * not known are left unresolved.
+	 * 
+	 * @param pkts
+	 *            the packets of the event
+	 */
+	protected void resolveDestinations(List<NetworkPacket> pkts) {
+		NetworkDatacenter last = null;
+		for (NetworkPacket pkt : pkts) {
+			if (pkt.getDestswitchid() < 0) {
+				NetworkDatacenter datacenter = resolveDestination(pkt, last);
+				if (datacenter != null) {
+					last = datacenter;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param pkt
+	 *            a packet
+	 * @param first
+	 *            the datacenter to try first, or null
+	 * @return the datacenter of the receiver VM of the packet, null if it is
+	 *         not known in any datacenter
+	 */
+	private NetworkDatacenter resolveDestination(NetworkPacket pkt, NetworkDatacenter first) {
+		if (first != null && setDestination(pkt, first)) {
+			return first;
+		}
+		for (int dcId : getDatacenterIdsList()) {
+			NetworkDatacenter datacenter = (NetworkDatacenter) CloudSim.getEntity(dcId);
+			if (datacenter != first && setDestination(pkt, datacenter)) {
+				return datacenter;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if the receiver VM of the packet is in the datacenter, whose
+	 *         edge switch and host of the VM are then stored in the packet
+	 */
+	private static boolean setDestination(NetworkPacket pkt, NetworkDatacenter datacenter) {
+		int recvVMid = pkt.getRecievervmid();
+		int switchid = datacenter.VmToSwitchid.get(recvVMid);
+		if (switchid == IntIntMap.NO_VALUE) {
+			return false;
+		}
+		pkt.setDestswitchid(switchid);
+		pkt.setRecieverhostid(datacenter.VmtoHostlist.get(recvVMid));
+		return true;
+	}
+
+	/**
+	 * Drops a packet whose receiver VM is unknown or can not be reached.
+	 * 
+	 * @param pkt
+	 *            the packet
+	 */
+	protected void dropPacket(NetworkPacket pkt) {
+		Log.printLine(TextUtil.toString(CloudSim.clock()) + ": Switch #" + getId() + ": no route to VM #"
+				+ pkt.getRecievervmid() + ", dropping packet");
+	}
+
+	/**
+	 * Adds a packet to the list of packets waiting for a port.
+	 * 
+	 * @param pktlists
+	 *            the packet lists of the ports
+	 * @param port
+	 *            the port (id of the entity on the other end)
+	 * @param pkt
+	 *            the packet
+	 */
+	protected static void enqueue(IntObjectMap<List<NetworkPacket>> pktlists, int port, NetworkPacket pkt) {
+		List<NetworkPacket> pktlist = pktlists.get(port);
+		if (pktlist == null) {
+			pktlist = new ArrayList<NetworkPacket>();
+			pktlists.put(port, pktlist);
+		}
+		pktlist.add(pkt);
+	}
+
 	/**
 	 * @return a mapping of the vms available in the simulation to their
 	 *         directly connected switches.
 	 */
-	public Map<Integer, Integer> getVmToSwitchid() {
-		Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+	public IntIntMap getVmToSwitchid() {
+		IntIntMap result = new IntIntMap();
 		NetworkDatacenter dc = null;
 		for (int dcId : getDatacenterIdsList()) {
 			dc = (NetworkDatacenter) CloudSim.getEntity(dcId);
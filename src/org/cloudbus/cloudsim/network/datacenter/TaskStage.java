@@ -47,6 +47,14 @@ public class TaskStage {
 		return peer;
 	}
 
+	public double getStageid() {
+		return stageid;
+	}
+
+	public long getMemory() {
+		return memory;
+	}
+
 	public void setPeer(int peer) {
 		this.peer = peer;
 	}
@@ -0,0 +1,191 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.util;
+
+import java.util.Arrays;
+
+/**
+ * IntIntMap is a hash map from int keys to int values, such as from VM ids to host or switch ids.
+ * Keys and values are kept in an open-addressing table with linear probing, so they are never
+ * boxed. A missing key has the value {@link #NO_VALUE}, which is also what CloudSim uses for "no
+ * id". The entries are visited by slot, like those of an {@link IntObjectMap}.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class IntIntMap {
+
+	/** The value of a missing key. */
+	public static final int NO_VALUE = -1;
+
+	private int[] keys;
+
+	private int[] values;
+
+	private boolean[] used;
+
+	private int size;
+
+	/** The number of entries at which the table grows. */
+	private int resizeAt;
+
+	public IntIntMap() {
+		this(8);
+	}
+
+	/**
+	 * @param expectedSize the number of entries the map holds without growing
+	 */
+	public IntIntMap(int expectedSize) {
+		allocate(IntSet.capacityFor(expectedSize));
+	}
+
+	/**
+	 * @param key the key
+	 * @return the value of the key, {@link #NO_VALUE} if the map has none
+	 */
+	public int get(int key) {
+		int slot = find(key);
+		return slot < 0 ? NO_VALUE : values[slot];
+	}
+
+	public boolean containsKey(int key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * @param key the key
+	 * @param value the value
+	 * @return the previous value of the key, {@link #NO_VALUE} if the map had none
+	 */
+	public int put(int key, int value) {
+		int mask = keys.length - 1;
+		int slot = IntSet.hash(key, mask);
+		while (used[slot]) {
+			if (keys[slot] == key) {
+				int previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		used[slot] = true;
+		if (++size > resizeAt) {
+			rehash(keys.length * 2);
+		}
+		return NO_VALUE;
+	}
+
+	/**
+	 * Puts all entries of another map in this one.
+	 *
+	 * @param map the other map
+	 */
+	public void putAll(IntIntMap map) {
+		for (int slot = map.nextSlot(-1); slot >= 0; slot = map.nextSlot(slot)) {
+			put(map.keyAt(slot), map.valueAt(slot));
+		}
+	}
+
+	/**
+	 * @param key the key
+	 * @return the removed value, {@link #NO_VALUE} if the map had none
+	 */
+	public int remove(int key) {
+		int slot = find(key);
+		if (slot < 0) {
+			return NO_VALUE;
+		}
+		int previous = values[slot];
+		int mask = keys.length - 1;
+		int gap = slot;
+		// shift back the entries which probed past the removed one
+		for (int i = (slot + 1) & mask; used[i]; i = (i + 1) & mask) {
+			int home = IntSet.hash(keys[i], mask);
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		used[gap] = false;
+		size--;
+		return previous;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * @param slot a slot, or -1 to start
+	 * @return the next slot after the given one which holds an entry, or -1 if there is none
+	 */
+	public int nextSlot(int slot) {
+		for (int i = slot + 1; i < used.length; i++) {
+			if (used[i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * @param key the key
+	 * @return the slot of the key, or -1 if the map has none
+	 */
+	private int find(int key) {
+		int mask = keys.length - 1;
+		for (int slot = IntSet.hash(key, mask); used[slot]; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		resizeAt = capacity / 2;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.util;
+
+import java.util.Arrays;
+
+/**
+ * IntObjectMap is a hash map from int keys, such as entity, host or VM ids, to objects. Keys are
+ * kept in an open-addressing table with linear probing, so they are never boxed.
+ * <p>
+ * The entries are visited by slot:
+ *
+ * <pre>
+ * for (int slot = map.nextSlot(-1); slot &gt;= 0; slot = map.nextSlot(slot)) {
+ * 	use(map.keyAt(slot), map.valueAt(slot));
+ * }
+ * </pre>
+ *
+ * The map must not get new keys or lose keys while its entries are visited.
+ *
+ * @param <V> the type of the values
+ * @since CloudSim Toolkit 3.0
+ */
+public class IntObjectMap<V> {
+
+	private int[] keys;
+
+	private V[] values;
+
+	private boolean[] used;
+
+	private int size;
+
+	/** The number of entries at which the table grows. */
+	private int resizeAt;
+
+	public IntObjectMap() {
+		this(8);
+	}
+
+	/**
+	 * @param expectedSize the number of entries the map holds without growing
+	 */
+	public IntObjectMap(int expectedSize) {
+		allocate(IntSet.capacityFor(expectedSize));
+	}
+
+	/**
+	 * @param key the key
+	 * @return the value of the key, $null if the map has none
+	 */
+	public V get(int key) {
+		int slot = find(key);
+		return slot < 0 ? null : values[slot];
+	}
+
+	public boolean containsKey(int key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * @param key the key
+	 * @param value the value
+	 * @return the previous value of the key, $null if the map had none
+	 */
+	public V put(int key, V value) {
+		int mask = keys.length - 1;
+		int slot = IntSet.hash(key, mask);
+		while (used[slot]) {
+			if (keys[slot] == key) {
+				V previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		used[slot] = true;
+		if (++size > resizeAt) {
+			rehash(keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * @param key the key
+	 * @return the removed value, $null if the map had none
+	 */
+	public V remove(int key) {
+		int slot = find(key);
+		if (slot < 0) {
+			return null;
+		}
+		V previous = values[slot];
+		int mask = keys.length - 1;
+		int gap = slot;
+		// shift back the entries which probed past the removed one
+		for (int i = (slot + 1) & mask; used[i]; i = (i + 1) & mask) {
+			int home = IntSet.hash(keys[i], mask);
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		used[gap] = false;
+		values[gap] = null;
+		size--;
+		return previous;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * @param slot a slot, or -1 to start
+	 * @return the next slot after the given one which holds an entry, or -1 if there is none
+	 */
+	public int nextSlot(int slot) {
+		for (int i = slot + 1; i < used.length; i++) {
+			if (used[i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	public V valueAt(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * @param key the key
+	 * @return the slot of the key, or -1 if the map has none
+	 */
+	private int find(int key) {
+		int mask = keys.length - 1;
+		for (int slot = IntSet.hash(key, mask); used[slot]; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = (V[]) new Object[capacity];
+		used = new boolean[capacity];
+		resizeAt = capacity / 2;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		V[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+}
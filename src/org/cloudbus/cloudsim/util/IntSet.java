@@ -0,0 +1,177 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.util;
+
+import java.util.Arrays;
+
+/**
+ * IntSet is a hash set of ints, such as entity ids. The ints are kept in an open-addressing table
+ * with linear probing, so they are never boxed. The elements are visited by slot, like the
+ * entries of an {@link IntObjectMap}.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class IntSet {
+
+	private int[] keys;
+
+	private boolean[] used;
+
+	private int size;
+
+	/** The number of elements at which the table grows. */
+	private int resizeAt;
+
+	public IntSet() {
+		this(8);
+	}
+
+	/**
+	 * @param expectedSize the number of elements the set holds without growing
+	 */
+	public IntSet(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	public boolean contains(int key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * @param key the element
+	 * @return $true if the set did not contain the element
+	 */
+	public boolean add(int key) {
+		int mask = keys.length - 1;
+		int slot = hash(key, mask);
+		while (used[slot]) {
+			if (keys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		used[slot] = true;
+		if (++size > resizeAt) {
+			rehash(keys.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * @param key the element
+	 * @return $true if the set contained the element
+	 */
+	public boolean remove(int key) {
+		int slot = find(key);
+		if (slot < 0) {
+			return false;
+		}
+		int mask = keys.length - 1;
+		int gap = slot;
+		// shift back the elements which probed past the removed one
+		for (int i = (slot + 1) & mask; used[i]; i = (i + 1) & mask) {
+			int home = hash(keys[i], mask);
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				gap = i;
+			}
+		}
+		used[gap] = false;
+		size--;
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * @param slot a slot, or -1 to start
+	 * @return the next slot after the given one which holds an element, or -1 if there is none
+	 */
+	public int nextSlot(int slot) {
+		for (int i = slot + 1; i < used.length; i++) {
+			if (used[i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * @param key the element
+	 * @return the slot of the element, or -1 if the set has none
+	 */
+	private int find(int key) {
+		int mask = keys.length - 1;
+		for (int slot = hash(key, mask); used[slot]; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		used = new boolean[capacity];
+		resizeAt = capacity / 2;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				add(oldKeys[i]);
+			}
+		}
+	}
+
+	/**
+	 * Spreads consecutive ids over the table, so they do not fill one run of slots.
+	 *
+	 * @param key the key
+	 * @param mask the table size minus one
+	 * @return the home slot of the key
+	 */
+	static int hash(int key, int mask) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * @param expectedSize a number of entries
+	 * @return the power of two table size which holds them at most half full
+	 */
+	static int capacityFor(int expectedSize) {
+		int capacity = 8;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+}